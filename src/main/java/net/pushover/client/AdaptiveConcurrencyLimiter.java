@@ -0,0 +1,315 @@
+package net.pushover.client;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive limit on the number of in-flight requests to the Pushover API.
+ * <p>
+ * The limit grows while the observed round trip time stays close to the best
+ * recently seen one and shrinks when latency rises or the API answers with
+ * 429 / 5xx. Callers above the limit either wait for a free slot or are
+ * rejected, depending on the configured {@link OverflowPolicy}.
+ * <p>
+ * Two algorithms are available: {@link Algorithm#AIMD} (additive increase,
+ * multiplicative decrease) and {@link Algorithm#GRADIENT}, which scales the
+ * limit by the ratio between the no-load RTT and the current RTT (Vegas style).
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Algorithm { AIMD, GRADIENT }
+
+    public enum OverflowPolicy {
+        /** wait up to the configured maximum wait for a free slot */
+        BLOCK,
+        /** fail immediately when the limit is reached */
+        REJECT
+    }
+
+    private final Algorithm algorithm;
+    private final OverflowPolicy overflowPolicy;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double rttTolerance;
+    private final long maxWaitNanos;
+    private final int rttWindow;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotAvailable = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+
+    private long noLoadRttNanos = Long.MAX_VALUE; //best RTT of the previous window
+    private long windowMinRttNanos = Long.MAX_VALUE;
+    private int windowSamples;
+
+    private AdaptiveConcurrencyLimiter(Builder builder) {
+        this.algorithm = builder.algorithm;
+        this.overflowPolicy = builder.overflowPolicy;
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.backoffRatio = builder.backoffRatio;
+        this.rttTolerance = builder.rttTolerance;
+        this.maxWaitNanos = builder.maxWait.toNanos();
+        this.rttWindow = builder.rttWindow;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, builder.initialLimit));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Takes a slot for one request. The returned permit must be completed exactly once.
+     *
+     * @return a {@link Permit} for the request
+     * @throws ConcurrencyLimitException when the limit is reached and the policy rejects, or the wait times out
+     * @throws PushoverException when interrupted while waiting
+     */
+    public Permit acquire() throws PushoverException {
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) {
+                if (overflowPolicy == OverflowPolicy.REJECT) {
+                    throw new ConcurrencyLimitException("concurrency limit of " + (int) limit + " reached");
+                }
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0L) {
+                        throw new ConcurrencyLimitException("timed out waiting for a free request slot");
+                    }
+                    remaining = slotAvailable.awaitNanos(remaining);
+                }
+            }
+            inFlight++;
+            return new Permit(inFlight, System.nanoTime());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PushoverException("interrupted waiting for a free request slot", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the current concurrency limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of requests currently holding a permit
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Permit permit, long rttNanos, boolean dropped, boolean sample) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (dropped) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (sample) {
+                updateLimit(rttNanos, permit.inFlightAtStart);
+            }
+            slotAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void updateLimit(long rttNanos, int inFlightAtStart) {
+        windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+        if (++windowSamples >= rttWindow) {
+            //roll the window so the baseline can follow a permanently slower path
+            noLoadRttNanos = windowMinRttNanos;
+            windowMinRttNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+        final long baseline = Math.min(noLoadRttNanos, windowMinRttNanos);
+
+        switch (algorithm) {
+            case AIMD -> {
+                if (rttNanos > baseline * rttTolerance) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                } else if (inFlightAtStart * 2 >= limit) {
+                    //only grow when the limit is actually being used
+                    limit = Math.min(maxLimit, limit + 1.0 / limit * Math.max(1, inFlightAtStart / 2));
+                }
+            }
+            case GRADIENT -> {
+                final double gradient = Math.max(0.5, Math.min(1.0, baseline * rttTolerance / rttNanos));
+                final double queueAllowance = Math.sqrt(limit);
+                final double target = limit * gradient + (inFlightAtStart * 2 >= limit ? queueAllowance : 0);
+                //smooth towards the target to avoid oscillating on single outliers
+                limit = Math.max(minLimit, Math.min(maxLimit, limit * 0.8 + target * 0.2));
+            }
+        }
+    }
+
+    /**
+     * One acquired request slot. Report the outcome with exactly one of the completion methods.
+     */
+    public final class Permit {
+
+        private final int inFlightAtStart;
+        private final long startNanos;
+        private boolean released;
+
+        private Permit(int inFlightAtStart, long startNanos) {
+            this.inFlightAtStart = inFlightAtStart;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * The request completed normally; its round trip time is used to adjust the limit.
+         */
+        public void onSuccess() {
+            complete(false, true);
+        }
+
+        /**
+         * The request was throttled (429), failed on the server (5xx) or on the transport.
+         */
+        public void onDropped() {
+            complete(true, false);
+        }
+
+        /**
+         * The request completed but its timing says nothing about the API, e.g. it was cancelled.
+         */
+        public void onIgnore() {
+            complete(false, false);
+        }
+
+        private void complete(boolean dropped, boolean sample) {
+            if (released) {
+                return;
+            }
+            released = true;
+            release(this, System.nanoTime() - startNanos, dropped, sample);
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private Algorithm algorithm = Algorithm.GRADIENT;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private int initialLimit = 4;
+        private int minLimit = 1;
+        private int maxLimit = 200;
+        private double backoffRatio = 0.9;
+        private double rttTolerance = 2.0;
+        private Duration maxWait = Duration.ofSeconds(30);
+        private int rttWindow = 100;
+
+        private Builder() {
+        }
+
+        public AdaptiveConcurrencyLimiter build() {
+            if (minLimit < 1 || maxLimit < minLimit) {
+                throw new IllegalArgumentException("invalid limit bounds " + minLimit + ".." + maxLimit);
+            }
+            return new AdaptiveConcurrencyLimiter(this);
+        }
+
+        /**
+         * @param algorithm (optional) - how the limit reacts to latency, defaults to GRADIENT
+         * @return the current Builder instance
+         */
+        public Builder setAlgorithm(Algorithm algorithm) {
+            this.algorithm = algorithm;
+            return this;
+        }
+
+        /**
+         * @param overflowPolicy (optional) - what happens to callers above the limit, defaults to BLOCK
+         * @return the current Builder instance
+         */
+        public Builder setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * @param initialLimit (optional) - starting number of in-flight requests, defaults to 4
+         * @return the current Builder instance
+         */
+        public Builder setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * @param minLimit (optional) - lower bound of the limit, defaults to 1
+         * @return the current Builder instance
+         */
+        public Builder setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * @param maxLimit (optional) - upper bound of the limit, defaults to 200
+         * @return the current Builder instance
+         */
+        public Builder setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * @param backoffRatio (optional) - factor applied to the limit on a drop, defaults to 0.9
+         * @return the current Builder instance
+         */
+        public Builder setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * @param rttTolerance (optional) - how many times the no-load RTT is still considered flat, defaults to 2.0
+         * @return the current Builder instance
+         */
+        public Builder setRttTolerance(double rttTolerance) {
+            this.rttTolerance = rttTolerance;
+            return this;
+        }
+
+        /**
+         * @param maxWait (optional) - longest time a BLOCK caller waits for a slot, defaults to 30 seconds
+         * @param unit the unit of maxWait
+         * @return the current Builder instance
+         */
+        public Builder setMaxWait(long maxWait, TimeUnit unit) {
+            this.maxWait = Duration.ofNanos(unit.toNanos(maxWait));
+            return this;
+        }
+
+        /**
+         * @param rttWindow (optional) - number of samples after which the no-load RTT is re-measured, defaults to 100
+         * @return the current Builder instance
+         */
+        public Builder setRttWindow(int rttWindow) {
+            this.rttWindow = rttWindow;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package net.pushover.client;
+
+import java.io.Serial;
+
+/**
+ * Thrown by the {@link AdaptiveConcurrencyLimiter} when a request is turned
+ * away. Rejections are expected under load, so no stack trace is captured.
+ */
+public class ConcurrencyLimitException extends PushoverException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public ConcurrencyLimitException(String message) {
+        super(message, null, false);
+    }
+}
@@ -0,0 +1,29 @@
+package net.pushover.client;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread factory for the pools and timers of this library.
+ * <p>
+ * The threads are daemon threads, so a pool that was never closed does not keep the JVM
+ * alive. They are platform threads on purpose: HttpClient 4 waits for a pooled connection
+ * inside synchronized code, which would pin a virtual thread to its carrier for as long as
+ * the wait lasts, and a few such sends can stall every other virtual thread.
+ */
+public final class DaemonThreads {
+
+    private DaemonThreads() {
+    }
+
+    /**
+     * @param name the name of the threads, shown in thread dumps
+     * @return a factory for daemon platform threads with that name
+     */
+    public static ThreadFactory factory(String name) {
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package net.pushover.client;
+
+import java.io.Serial;
+
+/**
+ * Thrown when a message is dropped without sending because its
+ * {@link PushoverMessage#getDeadline() deadline} had already passed. This is
+ * load shedding, not a problem with the message, so no stack trace is captured.
+ */
+public class DeadlineExpiredException extends PushoverException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExpiredException(String message) {
+        super(message, null, false);
+    }
+}
@@ -0,0 +1,136 @@
+package net.pushover.client;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps Pushover delivery groups in sync with recipient sets.
+ * <p>
+ * Group keys and memberships are cached per audience name, so a changed
+ * audience only costs the add/remove calls for the users that actually
+ * changed instead of a full rebuild. An audience without a cached group first
+ * adopts an existing group of the same name, so restarts do not pile up
+ * duplicate groups. Memberships edited outside this client are not noticed;
+ * call {@link #invalidate(String)} to forget an audience.
+ * <p>
+ * Groups for recurring ad-hoc recipient sets are named with the
+ * {@value #AUTOMATIC_PREFIX} prefix. The API cannot delete groups, so
+ * {@link #cleanup(String)} empties them instead; an emptied group is adopted
+ * again when its recipient set comes back.
+ */
+public class DeliveryGroups {
+
+    /**
+     * Name prefix of the groups created for recurring ad-hoc recipient sets.
+     */
+    public static final String AUTOMATIC_PREFIX = "pushover4j-";
+
+    private final PushoverRestClient client;
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    DeliveryGroups(PushoverRestClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Makes sure a delivery group for the audience exists and contains exactly the given members.
+     *
+     * @param apiToken API key for the application
+     * @param audience stable name of the recipient set
+     * @param members the user keys that should receive messages sent to the group
+     * @return the group key
+     * @throws PushoverException if the group could not be created or updated
+     */
+    public String sync(String apiToken, String audience, Set<String> members) throws PushoverException {
+        final Group group = groups.computeIfAbsent(apiToken + '\u0000' + audience, k -> new Group());
+        synchronized (group) {
+            if (group.key == null) {
+                final String existing = client.listDeliveryGroups(apiToken).get(audience);
+                if (existing != null) {
+                    group.members.addAll(client.getDeliveryGroupMembers(apiToken, existing));
+                    group.key = existing;
+                } else {
+                    group.key = client.createDeliveryGroup(apiToken, audience);
+                }
+            }
+            for (String member : members) {
+                if (!group.members.contains(member)) {
+                    requireSuccess(client.addUserToGroup(apiToken, group.key, member), member);
+                    group.members.add(member);
+                }
+            }
+            for (String member : Set.copyOf(group.members)) {
+                if (!members.contains(member)) {
+                    requireSuccess(client.removeUserFromGroup(apiToken, group.key, member), member);
+                    group.members.remove(member);
+                }
+            }
+            return group.key;
+        }
+    }
+
+    /**
+     * @param apiToken API key for the application
+     * @param audience name of the recipient set
+     * @return the cached members of the audience's group, empty if unknown
+     */
+    public Set<String> getMembers(String apiToken, String audience) {
+        final Group group = groups.get(apiToken + '\u0000' + audience);
+        if (group == null) {
+            return Set.of();
+        }
+        synchronized (group) {
+            return Set.copyOf(group.members);
+        }
+    }
+
+    /**
+     * Forgets the cached group of an audience; the next sync creates a new group.
+     *
+     * @param audience name of the recipient set
+     */
+    public void invalidate(String audience) {
+        groups.keySet().removeIf(key -> key.endsWith('\u0000' + audience));
+    }
+
+    /**
+     * Removes all members from the application's automatic groups, so that they no longer
+     * deliver anything, and forgets them.
+     *
+     * @param apiToken API key for the application
+     * @return number of groups emptied
+     * @throws PushoverException if the groups could not be listed or a member could not be removed
+     */
+    public int cleanup(String apiToken) throws PushoverException {
+        int emptied = 0;
+        for (Map.Entry<String, String> owned : client.listDeliveryGroups(apiToken).entrySet()) {
+            if (!owned.getKey().startsWith(AUTOMATIC_PREFIX)) {
+                continue;
+            }
+            final Group group = groups.computeIfAbsent(apiToken + '\u0000' + owned.getKey(), k -> new Group());
+            synchronized (group) {
+                for (String member : client.getDeliveryGroupMembers(apiToken, owned.getValue())) {
+                    requireSuccess(client.removeUserFromGroup(apiToken, owned.getValue(), member), member);
+                }
+                group.key = null;  //a sync still holding it adopts the emptied group again
+                group.members.clear();
+                groups.remove(apiToken + '\u0000' + owned.getKey(), group);
+            }
+            emptied++;
+        }
+        return emptied;
+    }
+
+    private static void requireSuccess(Response response, String member) throws PushoverException {
+        if (response.getStatus() != 1) {
+            throw new PushoverException("cannot update group membership of " + member + ": " + response.getErrors(), null);
+        }
+    }
+
+    private static final class Group {
+        private String key;
+        private final Set<String> members = new HashSet<>();
+    }
+}
@@ -0,0 +1,297 @@
+package net.pushover.client;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends messages at a later instant, or once the recipient's {@link DeliveryWindow} is open.
+ * <p>
+ * Pending sends are kept in a hierarchical timing wheel, so scheduling and cancelling are O(1)
+ * and millions of pending sends cost little more than their messages. A single daemon thread
+ * advances the wheel once per tick and hands all messages that became due to the
+ * {@link OrderedDispatcher} as one batch; messages to the same recipient due in the same tick
+ * keep their scheduling order. Pending sends only live in memory and are dropped on {@link #close()}.
+ * <p>
+ * Emergency messages ignore delivery windows.
+ */
+public class DeliveryScheduler implements AutoCloseable {
+
+    private final OrderedDispatcher dispatcher;
+    private final ExecutorService ownedExecutor;
+    private final long tickMillis;
+    private final TimingWheel<ScheduledSend> wheel;
+    private final Map<String, DeliveryWindow> windows = new ConcurrentHashMap<>();
+    private volatile DeliveryWindow defaultWindow;
+    private final Thread timer;
+    private volatile boolean closed;
+
+    private DeliveryScheduler(Builder builder) {
+        this.tickMillis = builder.tick.toMillis();
+        if (builder.dispatcher != null) {
+            this.dispatcher = builder.dispatcher;
+            this.ownedExecutor = null;
+        } else {
+            this.ownedExecutor = Executors.newFixedThreadPool(builder.parallelism, DaemonThreads.factory("pushover-scheduled-send"));
+            this.dispatcher = new OrderedDispatcher(Objects.requireNonNull(builder.client, "client is required"), ownedExecutor);
+        }
+        this.defaultWindow = builder.defaultWindow;
+        this.wheel = new TimingWheel<>(currentTick());
+        this.timer = new Thread(this::run, "pushover-scheduler");
+        this.timer.setDaemon(true);
+        this.timer.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Sends the message as soon as the delivery window of its recipient is open.
+     *
+     * @param msg the message to send
+     * @return the pending send
+     */
+    public ScheduledSend schedule(PushoverMessage msg) {
+        return schedule(msg, Instant.now());
+    }
+
+    /**
+     * Sends the message at the given instant, or later if the delivery window of its recipient is closed then.
+     *
+     * @param msg the message to send
+     * @param sendAt the earliest instant to send at, past instants send on the next tick
+     * @return the pending send
+     */
+    public ScheduledSend schedule(PushoverMessage msg, Instant sendAt) {
+        Objects.requireNonNull(msg);
+        final DeliveryWindow window = msg.getPriority() == MessagePriority.EMERGENCY ? null : windowOf(msg.getUserId());
+        final ScheduledSend send = new ScheduledSend(msg, window == null ? sendAt : window.nextOpen(sendAt));
+        synchronized (wheel) {
+            if (closed) {
+                throw new IllegalStateException("scheduler is closed");
+            }
+            send.entry = wheel.insert(tickOf(send.sendAt), send);
+        }
+        return send;
+    }
+
+    /**
+     * @param userId the user or group key
+     * @param window the delivery window of the recipient, null to remove it
+     */
+    public void setDeliveryWindow(String userId, DeliveryWindow window) {
+        if (window == null) {
+            windows.remove(userId);
+        } else {
+            windows.put(userId, window);
+        }
+    }
+
+    /**
+     * @param window the delivery window of recipients without their own window, null for none
+     */
+    public void setDefaultDeliveryWindow(DeliveryWindow window) {
+        this.defaultWindow = window;
+    }
+
+    /**
+     * @return number of sends that are not yet due
+     */
+    public int getPendingCount() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    /**
+     * Stops the scheduler. Sends that are not yet due are cancelled.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(timer);
+        try {
+            timer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final List<ScheduledSend> dropped;
+        synchronized (wheel) {
+            dropped = wheel.clear();
+        }
+        dropped.forEach(send -> send.result.completeExceptionally(new CancellationException("scheduler closed")));
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private DeliveryWindow windowOf(String userId) {
+        final DeliveryWindow window = userId == null ? null : windows.get(userId);
+        return window == null ? defaultWindow : window;
+    }
+
+    private void run() {
+        while (!closed) {
+            final long now = System.currentTimeMillis();
+            LockSupport.parkNanos(Duration.ofMillis(tickMillis - now % tickMillis).toNanos());
+            final List<ScheduledSend> due = new ArrayList<>();
+            synchronized (wheel) {
+                if (closed) {
+                    return;
+                }
+                final long tick = currentTick();
+                for (ScheduledSend send : wheel.advance(tick)) {
+                    if (tickOf(send.sendAt) > tick) {
+                        //beyond the range of the wheel, wait for another round
+                        send.entry = wheel.insert(tickOf(send.sendAt), send);
+                    } else {
+                        due.add(send);
+                    }
+                }
+            }
+            for (ScheduledSend send : due) {
+                dispatcher.dispatch(send.msg).whenComplete((status, e) -> {
+                    if (e == null) {
+                        send.result.complete(status);
+                    } else {
+                        send.result.completeExceptionally(e);
+                    }
+                });
+            }
+        }
+    }
+
+    private long currentTick() {
+        return System.currentTimeMillis() / tickMillis;
+    }
+
+    private long tickOf(Instant instant) {
+        return Math.ceilDiv(instant.toEpochMilli(), tickMillis);  //never early
+    }
+
+    /**
+     * A send waiting for its instant.
+     */
+    public final class ScheduledSend {
+
+        private final PushoverMessage msg;
+        private final Instant sendAt;
+        private final CompletableFuture<Status> result = new CompletableFuture<>();
+        private TimingWheel.Entry<ScheduledSend> entry;  //guarded by the wheel
+
+        private ScheduledSend(PushoverMessage msg, Instant sendAt) {
+            this.msg = msg;
+            this.sendAt = sendAt;
+        }
+
+        public PushoverMessage getMessage() {
+            return msg;
+        }
+
+        /**
+         * @return the instant the message is due, after adjusting for the delivery window
+         */
+        public Instant getSendAt() {
+            return sendAt;
+        }
+
+        /**
+         * @return completes with the {@link Status} of the send, or exceptionally if it failed or was cancelled
+         */
+        public CompletableFuture<Status> getResult() {
+            return result;
+        }
+
+        /**
+         * @return true if the send was still pending and will not happen
+         */
+        public boolean cancel() {
+            final boolean cancelled;
+            synchronized (wheel) {
+                cancelled = wheel.cancel(entry);
+            }
+            if (cancelled) {
+                result.cancel(false);
+            }
+            return cancelled;
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private PushoverClient client;
+        private OrderedDispatcher dispatcher;
+        private int parallelism = 4;
+        private Duration tick = Duration.ofMillis(100);
+        private DeliveryWindow defaultWindow;
+
+        private Builder() {
+        }
+
+        public DeliveryScheduler build() {
+            return new DeliveryScheduler(this);
+        }
+
+        /**
+         * @param client the client used to send, required unless a dispatcher is set
+         * @return the current Builder instance
+         */
+        public Builder setClient(PushoverClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * @param dispatcher (optional) - receives the due messages, its executor is not shut down on close
+         * @return the current Builder instance
+         */
+        public Builder setDispatcher(OrderedDispatcher dispatcher) {
+            this.dispatcher = dispatcher;
+            return this;
+        }
+
+        /**
+         * @param parallelism (optional) - recipients sent to in parallel when no dispatcher is set, defaults to 4
+         * @return the current Builder instance
+         */
+        public Builder setParallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be positive");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * @param tick (optional) - resolution of the send instants, defaults to 100 ms
+         * @return the current Builder instance
+         */
+        public Builder setTick(Duration tick) {
+            if (tick.toMillis() < 1) {
+                throw new IllegalArgumentException("tick must be at least 1 ms");
+            }
+            this.tick = tick;
+            return this;
+        }
+
+        /**
+         * @param defaultWindow (optional) - delivery window of recipients without their own window
+         * @return the current Builder instance
+         */
+        public Builder setDefaultDeliveryWindow(DeliveryWindow defaultWindow) {
+            this.defaultWindow = defaultWindow;
+            return this;
+        }
+    }
+}
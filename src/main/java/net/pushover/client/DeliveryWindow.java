@@ -0,0 +1,54 @@
+package net.pushover.client;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * Daily period in which a recipient may be notified, e.g. 08:00 to 22:00 in the recipient's
+ * time zone. A window whose end is before its start spans midnight. The time outside the
+ * window is the quiet hours.
+ *
+ * @param start first local time of the window
+ * @param end first local time after the window
+ * @param zone the time zone of the recipient
+ */
+public record DeliveryWindow(LocalTime start, LocalTime end, ZoneId zone) {
+
+    public DeliveryWindow {
+        Objects.requireNonNull(start, "start");
+        Objects.requireNonNull(end, "end");
+        Objects.requireNonNull(zone, "zone");
+        if (start.equals(end)) {
+            throw new IllegalArgumentException("window must not be empty");
+        }
+    }
+
+    /**
+     * @return true if the window is open at the given instant
+     */
+    public boolean isOpen(Instant instant) {
+        final LocalTime time = instant.atZone(zone).toLocalTime();
+        return start.isBefore(end)
+                ? !time.isBefore(start) && time.isBefore(end)
+                : !time.isBefore(start) || time.isBefore(end);
+    }
+
+    /**
+     * @return the instant itself if the window is open, otherwise the next opening of the window
+     */
+    public Instant nextOpen(Instant instant) {
+        if (isOpen(instant)) {
+            return instant;
+        }
+        final ZonedDateTime local = instant.atZone(zone);
+        LocalDate date = local.toLocalDate();
+        if (!local.toLocalTime().isBefore(start)) {
+            date = date.plusDays(1);
+        }
+        return ZonedDateTime.of(date, start, zone).toInstant();
+    }
+}
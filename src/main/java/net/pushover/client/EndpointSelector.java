@@ -0,0 +1,311 @@
+package net.pushover.client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses the API base URL for every call of a {@link PushoverRestClient},
+ * e.g. between regional egress relays.
+ * <p>
+ * Healthy endpoints are picked at random, weighted by the inverse of their
+ * smoothed latency. An endpoint that fails several times in a row is ejected
+ * for the ejection time, which doubles with every further ejection up to the
+ * maximum. After that it is re-admitted on probation: one more failure ejects
+ * it again, one success restores it fully.
+ * <p>
+ * Emergency receipts are bound to the endpoint that created them, so receipt
+ * polls and cancellations reach the relay that knows the receipt.
+ */
+public class EndpointSelector {
+
+    private static final double LATENCY_WEIGHT = 0.2;  //weight of a new sample in the smoothed latency
+    private static final int MAX_RECEIPTS = 100_000;
+
+    private final List<Endpoint> endpoints;
+    private final int failureThreshold;
+    private final long ejectionNanos;
+    private final long maxEjectionNanos;
+    private final long receiptTtlNanos;
+    private final boolean stickyReceipts;
+
+    private final Map<String, ReceiptBinding> receipts = new ConcurrentHashMap<>();
+
+    private EndpointSelector(Builder builder) {
+        final List<Endpoint> list = new ArrayList<>(builder.baseUrls.size());
+        for (String baseUrl : builder.baseUrls) {
+            list.add(new Endpoint(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/"));
+        }
+        this.endpoints = List.copyOf(list);
+        this.failureThreshold = builder.failureThreshold;
+        this.ejectionNanos = builder.ejectionTime.toNanos();
+        this.maxEjectionNanos = builder.maxEjectionTime.toNanos();
+        this.receiptTtlNanos = builder.receiptTtl.toNanos();
+        this.stickyReceipts = builder.stickyReceipts;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param baseUrls the API base URLs, e.g. {@code https://relay-eu.example.com/1/}
+     * @return a selector with default health settings
+     */
+    public static EndpointSelector of(String... baseUrls) {
+        final Builder builder = builder();
+        for (String baseUrl : baseUrls) {
+            builder.addEndpoint(baseUrl);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return all configured endpoints in configuration order
+     */
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Picks an endpoint for a new call. When every endpoint is ejected, the one that is
+     * re-admitted first is returned rather than failing the call locally.
+     *
+     * @param tried endpoints already used by this call, they are only picked if nothing else is left
+     * @return the endpoint to use, null if every endpoint was already tried
+     */
+    public Endpoint select(Collection<Endpoint> tried) {
+        final long now = System.nanoTime();
+        final List<Endpoint> candidates = new ArrayList<>(endpoints.size());
+        double knownMin = Double.MAX_VALUE;
+        Endpoint soonest = null;
+        for (Endpoint endpoint : endpoints) {
+            if (tried.contains(endpoint)) {
+                continue;
+            }
+            if (endpoint.isAvailable(now)) {
+                candidates.add(endpoint);
+                if (endpoint.latencyNanos > 0 && endpoint.latencyNanos < knownMin) {
+                    knownMin = endpoint.latencyNanos;
+                }
+            } else if (soonest == null || endpoint.ejectedUntilNanos - soonest.ejectedUntilNanos < 0) {
+                soonest = endpoint;
+            }
+        }
+        if (candidates.isEmpty()) {
+            return soonest;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        //endpoints without samples are weighted like the fastest one so they get probed
+        final double unknown = knownMin == Double.MAX_VALUE ? 1.0 : knownMin;
+        final double[] weights = new double[candidates.size()];
+        double total = 0.0;
+        for (int i = 0; i < weights.length; i++) {
+            final double latency = candidates.get(i).latencyNanos;
+            total += 1.0 / (latency > 0 ? latency : unknown);
+            weights[i] = total;
+        }
+        final double pick = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < weights.length; i++) {
+            if (pick < weights[i]) {
+                return candidates.get(i);
+            }
+        }
+        return candidates.get(candidates.size() - 1);
+    }
+
+    /**
+     * @param receipt an emergency receipt
+     * @return the endpoint that created the receipt, null if unknown or stickiness is disabled
+     */
+    public Endpoint forReceipt(String receipt) {
+        if (!stickyReceipts || receipt == null) {
+            return null;
+        }
+        final ReceiptBinding binding = receipts.get(receipt);
+        if (binding == null) {
+            return null;
+        }
+        if (binding.expiresAtNanos - System.nanoTime() <= 0L) {
+            receipts.remove(receipt, binding);
+            return null;
+        }
+        return binding.endpoint;
+    }
+
+    void bindReceipt(String receipt, Endpoint endpoint) {
+        if (!stickyReceipts || receipt == null || receipt.isEmpty() || endpoints.size() == 1) {
+            return;
+        }
+        final long now = System.nanoTime();
+        if (receipts.size() >= MAX_RECEIPTS) {
+            receipts.values().removeIf(binding -> binding.expiresAtNanos - now <= 0L);
+        }
+        if (receipts.size() < MAX_RECEIPTS) {
+            receipts.put(receipt, new ReceiptBinding(endpoint, now + receiptTtlNanos));
+        }
+    }
+
+    void onSuccess(Endpoint endpoint, long latencyNanos) {
+        endpoint.onSuccess(latencyNanos);
+    }
+
+    void onFailure(Endpoint endpoint) {
+        endpoint.onFailure(System.nanoTime(), failureThreshold, ejectionNanos, maxEjectionNanos);
+    }
+
+    private record ReceiptBinding(Endpoint endpoint, long expiresAtNanos) {
+    }
+
+    /**
+     * One API base URL and its health.
+     */
+    public static final class Endpoint {
+
+        private final String baseUrl;
+
+        private volatile double latencyNanos;
+        private volatile long ejectedUntilNanos;
+        private volatile boolean ejected;
+        private int consecutiveFailures;
+        private int ejections;
+
+        private Endpoint(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        /**
+         * @return the URL the API paths are appended to, always ending with a slash
+         */
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        /**
+         * @return the smoothed latency of successful calls in nanoseconds, 0 before the first one
+         */
+        public long getLatencyNanos() {
+            return (long) latencyNanos;
+        }
+
+        /**
+         * @return false while the endpoint is ejected
+         */
+        public boolean isHealthy() {
+            return isAvailable(System.nanoTime());
+        }
+
+        private boolean isAvailable(long now) {
+            return !ejected || ejectedUntilNanos - now <= 0L;
+        }
+
+        private synchronized void onSuccess(long nanos) {
+            latencyNanos = latencyNanos == 0 ? nanos : latencyNanos + LATENCY_WEIGHT * (nanos - latencyNanos);
+            consecutiveFailures = 0;
+            ejections = 0;
+            ejected = false;
+        }
+
+        private synchronized void onFailure(long now, int threshold, long ejectionNanos, long maxEjectionNanos) {
+            //re-admitted endpoints are on probation and go straight back out on a failure
+            if (++consecutiveFailures < threshold && ejections == 0) {
+                return;
+            }
+            if (ejected && ejectedUntilNanos - now > 0L) {
+                return;  //already out, e.g. concurrent calls failing together
+            }
+            final long backoff = ejectionNanos << Math.min(ejections, 20);
+            ejectedUntilNanos = now + Math.min(backoff <= 0 ? maxEjectionNanos : backoff, maxEjectionNanos);
+            ejected = true;
+            ejections++;
+        }
+
+        @Override
+        public String toString() {
+            return baseUrl;
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private final List<String> baseUrls = new ArrayList<>();
+        private int failureThreshold = 3;
+        private Duration ejectionTime = Duration.ofSeconds(30);
+        private Duration maxEjectionTime = Duration.ofMinutes(5);
+        private Duration receiptTtl = Duration.ofSeconds(MessageValidator.MAX_EMERGENCY_EXPIRE).plusHours(1);
+        private boolean stickyReceipts = true;
+
+        private Builder() {
+        }
+
+        public EndpointSelector build() {
+            if (baseUrls.isEmpty()) {
+                throw new IllegalArgumentException("at least one endpoint is required");
+            }
+            return new EndpointSelector(this);
+        }
+
+        /**
+         * @param baseUrl the URL the API paths are appended to, e.g. {@link PushoverRestClient#DEFAULT_API_BASE_URL}
+         * @return the current Builder instance
+         */
+        public Builder addEndpoint(String baseUrl) {
+            this.baseUrls.add(baseUrl);
+            return this;
+        }
+
+        /**
+         * @param failureThreshold (optional) - consecutive failures that eject an endpoint, defaults to 3
+         * @return the current Builder instance
+         */
+        public Builder setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        /**
+         * @param ejectionTime (optional) - how long an endpoint is ejected the first time, defaults to 30 seconds
+         * @return the current Builder instance
+         */
+        public Builder setEjectionTime(Duration ejectionTime) {
+            this.ejectionTime = ejectionTime;
+            return this;
+        }
+
+        /**
+         * @param maxEjectionTime (optional) - upper bound of the doubling ejection time, defaults to 5 minutes
+         * @return the current Builder instance
+         */
+        public Builder setMaxEjectionTime(Duration maxEjectionTime) {
+            this.maxEjectionTime = maxEjectionTime;
+            return this;
+        }
+
+        /**
+         * @param stickyReceipts (optional) - send receipt polls and cancellations to the endpoint
+         * that created the receipt, defaults to true
+         * @return the current Builder instance
+         */
+        public Builder setStickyReceipts(boolean stickyReceipts) {
+            this.stickyReceipts = stickyReceipts;
+            return this;
+        }
+
+        /**
+         * @param receiptTtl (optional) - how long a receipt stays bound to its endpoint, defaults to
+         * the longest emergency expiry plus one hour
+         * @return the current Builder instance
+         */
+        public Builder setReceiptTtl(Duration receiptTtl) {
+            this.receiptTtl = receiptTtl;
+            return this;
+        }
+    }
+}
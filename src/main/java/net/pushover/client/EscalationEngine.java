@@ -0,0 +1,395 @@
+package net.pushover.client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Escalates emergency messages along an {@link EscalationPolicy}: the message goes to the
+ * first step, and to the next one whenever the latest step neither acknowledged within its
+ * timeout nor can be alerted any more because its receipt expired. Earlier steps keep being
+ * alerted. As soon as anyone acknowledges, the receipts of all others are cancelled.
+ * <p>
+ * Acknowledgements are found by polling the receipts, or reported directly through
+ * {@link #acknowledged(String, String)}, e.g. from the handler of the emergency callback URL.
+ * <p>
+ * All escalations are driven by one scheduler thread; sends, receipt polls and cancels run
+ * on a small pool of I/O threads and report back to the scheduler, so thousands of concurrent
+ * escalations need neither a thread each nor any locking of their state.
+ */
+public class EscalationEngine implements AutoCloseable {
+
+    private static final int DEFAULT_RETRY = 60;
+    private static final int DEFAULT_EXPIRE = 3600;
+
+    private final PushoverRestClient client;
+    private final long pollMillis;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ExecutorService io;
+    private final Set<Escalation> active = new HashSet<>();           //scheduler thread only
+    private final Map<String, Escalation> byReceipt = new HashMap<>(); //scheduler thread only
+    private final LongAdder sends = new LongAdder();
+    private final LongAdder failedSends = new LongAdder();
+    private final LongAdder polls = new LongAdder();
+    private final LongAdder failedPolls = new LongAdder();
+    private final LongAdder cancels = new LongAdder();
+
+    private EscalationEngine(Builder builder) {
+        this.client = Objects.requireNonNull(builder.client, "client is required");
+        this.pollMillis = builder.pollInterval.toMillis();
+        this.scheduler = new ScheduledThreadPoolExecutor(1, DaemonThreads.factory("pushover-escalation"));
+        //step timeouts run for minutes, they must not keep a closed engine alive
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.io = Executors.newFixedThreadPool(builder.parallelism, DaemonThreads.factory("pushover-escalation-io"));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Starts an escalation.
+     *
+     * @param msg the message, sent with emergency priority to every step; retry and expire
+     *            default to 60 and 3600 seconds when not set
+     * @param policy the recipients
+     * @return the running escalation
+     */
+    public Escalation escalate(PushoverMessage msg, EscalationPolicy policy) {
+        final Escalation escalation = new Escalation(Objects.requireNonNull(msg), Objects.requireNonNull(policy));
+        if (!execute(() -> {
+            active.add(escalation);
+            escalation.poll = scheduler.scheduleWithFixedDelay(() -> poll(escalation), pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+            notifyNext(escalation);
+        })) {
+            throw new IllegalStateException("engine is closed");
+        }
+        return escalation;
+    }
+
+    /**
+     * Reports an acknowledgement received out of band, e.g. by the emergency callback URL.
+     * Unknown receipts are ignored.
+     *
+     * @param receipt the acknowledged receipt
+     * @param userKey (optional) - the user that acknowledged
+     */
+    public void acknowledged(String receipt, String userKey) {
+        execute(() -> {
+            final Escalation escalation = byReceipt.get(receipt);
+            if (escalation != null) {
+                finish(escalation, EscalationResult.Outcome.ACKNOWLEDGED, userKey, receipt);
+            }
+        });
+    }
+
+    /**
+     * Stops the engine. Running escalations complete with a {@link CancellationException};
+     * their receipts are left running, so the recipients keep being alerted. Sends and polls
+     * still in flight are interrupted and their answers ignored.
+     */
+    @Override
+    public void close() {
+        execute(() -> {
+            for (Escalation escalation : active) {
+                escalation.done = true;
+                escalation.poll.cancel(false);
+                if (escalation.timeout != null) {
+                    escalation.timeout.cancel(false);
+                }
+                escalation.result.completeExceptionally(new CancellationException("engine closed"));
+            }
+            active.clear();
+            byReceipt.clear();
+        });
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        io.shutdownNow();
+    }
+
+    /**
+     * Sends to the next step, or marks the policy as used up.
+     */
+    private void notifyNext(Escalation escalation) {
+        final List<EscalationPolicy.Step> steps = escalation.policy.getSteps();
+        final int index = escalation.notified;
+        if (index >= steps.size()) {
+            escalation.stepsUsedUp = true;
+            finishIfExhausted(escalation);
+            return;
+        }
+        escalation.notified++;
+        escalation.sending++;
+        final EscalationPolicy.Step step = steps.get(index);
+        final PushoverMessage msg = escalation.msg.toBuilder()
+                .setUserId(step.userId())
+                .setDevice(step.device())
+                .setPriority(MessagePriority.EMERGENCY)
+                .setRetry(escalation.msg.getRetry() > 0 ? escalation.msg.getRetry() : DEFAULT_RETRY)
+                .setExpire(escalation.msg.getExpire() > 0 ? escalation.msg.getExpire() : DEFAULT_EXPIRE)
+                .build();
+        sends.increment();
+        io.execute(() -> {
+            PushResult result = null;
+            try {
+                result = client.send(msg);
+            } catch (RuntimeException e) {
+                //counted as a failed send
+            }
+            final PushResult sent = result;
+            execute(() -> onSent(escalation, index, sent));
+        });
+    }
+
+    private void onSent(Escalation escalation, int index, PushResult result) {
+        escalation.sending--;
+        final String receipt = result instanceof PushResult.Success success ? success.response().getReceipt() : null;
+        if (receipt == null || receipt.isEmpty()) {
+            failedSends.increment();
+            if (!escalation.done) {
+                notifyNext(escalation);  //nobody was alerted, move on right away
+            }
+            return;
+        }
+        escalation.receipts.add(receipt);
+        if (escalation.done) {
+            cancel(escalation, receipt);  //finished while this send was in flight
+            return;
+        }
+        escalation.pending.add(receipt);
+        byReceipt.put(receipt, escalation);
+        escalation.latestReceipt = receipt;
+        final Duration timeout = escalation.policy.getSteps().get(index).timeout();
+        escalation.timeout = scheduler.schedule(() -> onTimeout(escalation, receipt), timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void onTimeout(Escalation escalation, String receipt) {
+        if (!escalation.done && receipt.equals(escalation.latestReceipt)) {
+            escalation.latestReceipt = null;
+            notifyNext(escalation);
+        }
+    }
+
+    private void poll(Escalation escalation) {
+        final String apiToken = escalation.msg.getApiToken();
+        for (String receipt : escalation.pending) {
+            if (!escalation.polling.add(receipt)) {
+                continue;  //the previous poll of this receipt is still running
+            }
+            polls.increment();
+            io.execute(() -> {
+                Receipt answer = null;
+                try {
+                    answer = client.requestEmergencyReceipt(apiToken, receipt);
+                } catch (PushoverException | RuntimeException e) {
+                    failedPolls.increment();  //polled again next round
+                }
+                final Receipt polled = answer;
+                execute(() -> onPolled(escalation, receipt, polled));
+            });
+        }
+    }
+
+    private void onPolled(Escalation escalation, String receipt, Receipt polled) {
+        escalation.polling.remove(receipt);
+        if (escalation.done || polled == null) {
+            return;
+        }
+        if (polled.getStatus() == 1 && polled.getAcknowledged() == 1) {
+            finish(escalation, EscalationResult.Outcome.ACKNOWLEDGED, polled.getAcknowledgedBy(), receipt);
+        } else if (polled.getStatus() != 1 || polled.getExpired() == 1) {
+            escalation.pending.remove(receipt);
+            byReceipt.remove(receipt);
+            //the latest step can no longer be alerted, no point in waiting for its timeout
+            onTimeout(escalation, receipt);
+            finishIfExhausted(escalation);
+        }
+    }
+
+    private void finishIfExhausted(Escalation escalation) {
+        if (!escalation.done && escalation.stepsUsedUp && escalation.sending == 0 && escalation.pending.isEmpty()) {
+            finish(escalation, escalation.receipts.isEmpty()
+                    ? EscalationResult.Outcome.FAILED
+                    : EscalationResult.Outcome.EXHAUSTED, null, null);
+        }
+    }
+
+    private void finish(Escalation escalation, EscalationResult.Outcome outcome, String acknowledgedBy, String acknowledgedReceipt) {
+        if (escalation.done) {
+            return;
+        }
+        escalation.done = true;
+        escalation.poll.cancel(false);
+        if (escalation.timeout != null) {
+            escalation.timeout.cancel(false);
+        }
+        for (String receipt : escalation.pending) {
+            byReceipt.remove(receipt);
+            if (!receipt.equals(acknowledgedReceipt)) {
+                cancel(escalation, receipt);
+            }
+        }
+        escalation.pending.clear();
+        active.remove(escalation);
+        escalation.result.complete(new EscalationResult(outcome, acknowledgedBy, escalation.notified));
+    }
+
+    private void cancel(Escalation escalation, String receipt) {
+        cancels.increment();
+        io.execute(() -> {
+            try {
+                client.cancelEmergencyMessage(escalation.msg.getApiToken(), receipt);
+            } catch (PushoverException | RuntimeException e) {
+                //the receipt expires on its own
+            }
+        });
+    }
+
+    private boolean execute(Runnable task) {
+        try {
+            scheduler.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;  //closed
+        }
+    }
+
+    public long getSendCount() {
+        return sends.sum();
+    }
+
+    public long getFailedSendCount() {
+        return failedSends.sum();
+    }
+
+    public long getPollCount() {
+        return polls.sum();
+    }
+
+    public long getFailedPollCount() {
+        return failedPolls.sum();
+    }
+
+    /**
+     * @return number of receipts cancelled because someone else acknowledged or the escalation was cancelled
+     */
+    public long getCancelledReceiptCount() {
+        return cancels.sum();
+    }
+
+    /**
+     * A running escalation. Its state is only touched by the scheduler thread.
+     */
+    public final class Escalation {
+
+        private final PushoverMessage msg;
+        private final EscalationPolicy policy;
+        private final CompletableFuture<EscalationResult> result = new CompletableFuture<>();
+        private final List<String> receipts = new CopyOnWriteArrayList<>();  //all receipts, readable by any thread
+        private final Set<String> pending = new LinkedHashSet<>();           //receipts neither expired nor cancelled
+        private final Set<String> polling = new HashSet<>();
+        private ScheduledFuture<?> poll;
+        private ScheduledFuture<?> timeout;
+        private String latestReceipt;  //receipt of the latest step, until it timed out
+        private int notified;
+        private int sending;
+        private boolean stepsUsedUp;
+        private boolean done;
+
+        private Escalation(PushoverMessage msg, EscalationPolicy policy) {
+            this.msg = msg;
+            this.policy = policy;
+        }
+
+        /**
+         * @return completes once someone acknowledged or the escalation ended otherwise
+         */
+        public CompletableFuture<EscalationResult> getResult() {
+            return result;
+        }
+
+        /**
+         * @return the receipts of the steps notified so far
+         */
+        public List<String> getReceipts() {
+            return new ArrayList<>(receipts);
+        }
+
+        /**
+         * Stops escalating and cancels all receipts.
+         */
+        public void cancel() {
+            execute(() -> finish(this, EscalationResult.Outcome.CANCELLED, null, null));
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private PushoverRestClient client;
+        private Duration pollInterval = Duration.ofSeconds(10);
+        private int parallelism = 8;
+
+        private Builder() {
+        }
+
+        public EscalationEngine build() {
+            return new EscalationEngine(this);
+        }
+
+        /**
+         * @param client the client used to send, poll and cancel
+         * @return the current Builder instance
+         */
+        public Builder setClient(PushoverRestClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * @param pollInterval (optional) - time between two polls of a receipt, defaults to 10 seconds.
+         *                     The API asks not to poll a receipt more often than every 5 seconds
+         * @return the current Builder instance
+         */
+        public Builder setPollInterval(Duration pollInterval) {
+            if (pollInterval.toMillis() < 1) {
+                throw new IllegalArgumentException("poll interval must be at least 1 ms");
+            }
+            this.pollInterval = pollInterval;
+            return this;
+        }
+
+        /**
+         * @param parallelism (optional) - sends, receipt polls and cancels run in parallel, defaults to 8
+         * @return the current Builder instance
+         */
+        public Builder setParallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be positive");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package net.pushover.client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Chain of recipients for an emergency message, e.g. the primary on-call, then the secondary,
+ * then the team lead. Every step is notified once the previous one did not acknowledge within
+ * its timeout. Immutable, created with the {@link Builder}.
+ */
+public class EscalationPolicy {
+
+    private final List<Step> steps;
+
+    private EscalationPolicy(Builder builder) {
+        this.steps = List.copyOf(builder.steps);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @param userId the user or group key to notify
+     * @param device (optional) - the device to notify, null for all devices of the user
+     * @param timeout time to wait for an acknowledgement before notifying the next step
+     */
+    public record Step(String userId, String device, Duration timeout) {
+
+        public Step {
+            Objects.requireNonNull(userId, "userId");
+            Objects.requireNonNull(timeout, "timeout");
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private final List<Step> steps = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @return the policy
+         * @throws IllegalStateException if no step was added
+         */
+        public EscalationPolicy build() {
+            if (steps.isEmpty()) {
+                throw new IllegalStateException("a policy needs at least one step");
+            }
+            return new EscalationPolicy(this);
+        }
+
+        /**
+         * @param userId the user or group key to notify
+         * @param timeout time to wait for an acknowledgement before notifying the next step
+         * @return the current Builder instance
+         */
+        public Builder addStep(String userId, Duration timeout) {
+            return addStep(userId, null, timeout);
+        }
+
+        /**
+         * @param userId the user or group key to notify
+         * @param device (optional) - the device to notify, null for all devices of the user
+         * @param timeout time to wait for an acknowledgement before notifying the next step
+         * @return the current Builder instance
+         */
+        public Builder addStep(String userId, String device, Duration timeout) {
+            steps.add(new Step(userId, device, timeout));
+            return this;
+        }
+    }
+}
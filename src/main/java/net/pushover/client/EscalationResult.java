@@ -0,0 +1,22 @@
+package net.pushover.client;
+
+/**
+ * How an escalation ended.
+ *
+ * @param outcome how it ended
+ * @param acknowledgedBy the user key that acknowledged, null unless {@link Outcome#ACKNOWLEDGED}
+ * @param notified number of steps of the policy that were notified
+ */
+public record EscalationResult(Outcome outcome, String acknowledgedBy, int notified) {
+
+    public enum Outcome {
+        /** a recipient acknowledged, the receipts of the others were cancelled */
+        ACKNOWLEDGED,
+        /** every step timed out and all receipts expired without an acknowledgement */
+        EXHAUSTED,
+        /** no step could be sent to */
+        FAILED,
+        /** cancelled by the caller, all receipts were cancelled */
+        CANCELLED
+    }
+}
@@ -0,0 +1,132 @@
+package net.pushover.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * {@link ReceiptRegistry} in a directory shared by the processes of one host, e.g. for local
+ * tests of a cluster. Every receipt and every node heartbeat is a small file that is replaced
+ * atomically, so readers never see partial writes.
+ */
+public class FileReceiptRegistry implements ReceiptRegistry {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+    private final Path receipts;
+    private final Path nodes;
+
+    /**
+     * @param directory the shared directory, created if missing
+     * @throws IOException if the directory cannot be created
+     */
+    public FileReceiptRegistry(Path directory) throws IOException {
+        this.receipts = Files.createDirectories(directory.resolve("receipts"));
+        this.nodes = Files.createDirectories(directory.resolve("nodes"));
+    }
+
+    @Override
+    public void register(TrackedReceipt receipt) {
+        write(receipts.resolve(checkName(receipt.receipt())),
+                receipt.apiToken() + "\n" + receipt.node() + "\n" + receipt.registeredAt() + "\n");
+    }
+
+    @Override
+    public void remove(String receipt) {
+        delete(receipts.resolve(checkName(receipt)));
+    }
+
+    @Override
+    public Collection<TrackedReceipt> getReceipts() {
+        final List<TrackedReceipt> result = new ArrayList<>();
+        for (Path file : list(receipts)) {
+            final List<String> lines = read(file);
+            if (lines != null && lines.size() >= 3) {
+                result.add(new TrackedReceipt(file.getFileName().toString(), lines.get(0), lines.get(1), Long.parseLong(lines.get(2))));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void heartbeat(String nodeId, long epochMillis) {
+        write(nodes.resolve(checkName(nodeId)), epochMillis + "\n");
+    }
+
+    @Override
+    public void leave(String nodeId) {
+        delete(nodes.resolve(checkName(nodeId)));
+    }
+
+    @Override
+    public Map<String, Long> getNodes() {
+        final Map<String, Long> result = new HashMap<>();
+        for (Path file : list(nodes)) {
+            final List<String> lines = read(file);
+            if (lines != null && !lines.isEmpty()) {
+                result.put(file.getFileName().toString(), Long.parseLong(lines.get(0)));
+            }
+        }
+        return result;
+    }
+
+    private static String checkName(String name) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("invalid receipt or node id: " + name);
+        }
+        return name;
+    }
+
+    private static List<Path> list(Path directory) {
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, file -> !file.getFileName().toString().startsWith("."))) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return files;
+    }
+
+    /**
+     * @return the lines of the file, null if it was removed meanwhile
+     */
+    private static List<String> read(Path file) {
+        try {
+            return Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(Path file, String content) {
+        final Path tmp = file.resolveSibling("." + file.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.writeString(tmp, content, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package net.pushover.client;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Minimal parser for the request bodies the Pushover API accepts:
+ * application/x-www-form-urlencoded and multipart/form-data. File parts are
+ * reduced to their size, stored under {@code <name>.size}. Shared by the
+ * relay and the simulator, which both receive API requests.
+ */
+public final class FormParser {
+
+    private FormParser() {
+    }
+
+    /**
+     * @param contentType the Content-Type header of the request, may be null
+     * @param body the raw request body
+     * @return the form fields in the order they appeared
+     */
+    public static Map<String, String> parse(String contentType, byte[] body) {
+        if (contentType != null && contentType.toLowerCase().startsWith("multipart/form-data")) {
+            return parseMultipart(boundaryOf(contentType), body);
+        }
+        return parseQuery(new String(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param query a url encoded query string or form body, may be null
+     * @return the decoded fields
+     */
+    public static Map<String, String> parseQuery(String query) {
+        final Map<String, String> fields = new LinkedHashMap<>();
+        if (query == null || query.isEmpty()) {
+            return fields;
+        }
+        for (String pair : query.split("&")) {
+            final int eq = pair.indexOf('=');
+            final String name = eq < 0 ? pair : pair.substring(0, eq);
+            final String value = eq < 0 ? "" : pair.substring(eq + 1);
+            fields.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return fields;
+    }
+
+    private static String boundaryOf(String contentType) {
+        for (String param : contentType.split(";")) {
+            final String trimmed = param.trim();
+            if (trimmed.startsWith("boundary=")) {
+                final String boundary = trimmed.substring("boundary=".length());
+                return boundary.startsWith("\"") ? boundary.substring(1, boundary.length() - 1) : boundary;
+            }
+        }
+        throw new IllegalArgumentException("multipart without boundary: " + contentType);
+    }
+
+    private static Map<String, String> parseMultipart(String boundary, byte[] body) {
+        final Map<String, String> fields = new LinkedHashMap<>();
+        final byte[] delimiter = ("--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        int pos = indexOf(body, delimiter, 0);
+        while (pos >= 0) {
+            int partStart = pos + delimiter.length;
+            if (partStart + 1 < body.length && body[partStart] == '-' && body[partStart + 1] == '-') {
+                break; //closing delimiter
+            }
+            partStart += 2; //CRLF after the delimiter
+            final int headerEnd = indexOf(body, "\r\n\r\n".getBytes(StandardCharsets.US_ASCII), partStart);
+            if (headerEnd < 0) {
+                break;
+            }
+            final int next = indexOf(body, delimiter, headerEnd + 4);
+            if (next < 0) {
+                break;
+            }
+            final String headers = new String(body, partStart, headerEnd - partStart, StandardCharsets.UTF_8);
+            final int contentStart = headerEnd + 4;
+            final int contentEnd = next - 2; //CRLF before the delimiter
+            final String name = dispositionParameter(headers, "name");
+            if (name != null) {
+                if (dispositionParameter(headers, "filename") != null) {
+                    fields.put(name + ".size", String.valueOf(contentEnd - contentStart));
+                } else {
+                    fields.put(name, new String(body, contentStart, contentEnd - contentStart, StandardCharsets.UTF_8));
+                }
+            }
+            pos = next;
+        }
+        return fields;
+    }
+
+    private static String dispositionParameter(String headers, String parameter) {
+        final String marker = parameter + "=\"";
+        int idx = headers.indexOf("; " + marker);
+        if (idx < 0) {
+            return null;
+        }
+        idx += 2 + marker.length();
+        return headers.substring(idx, headers.indexOf('"', idx));
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
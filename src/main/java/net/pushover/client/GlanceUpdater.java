@@ -0,0 +1,224 @@
+package net.pushover.client;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends glance updates at a bounded rate, coalescing updates that arrive faster.
+ * <p>
+ * Updates are kept per user and device in a concurrent map. An update to a user and device
+ * that was not sent to within the last interval goes out right away; later updates wait
+ * for the interval to pass and are merged into the pending one, last writer wins per field,
+ * so only the latest value of every field is sent. Updates of the same user and device are
+ * never sent concurrently or out of order. Failed sends are merged back under newer updates
+ * and retried after the interval; updates the API rejects are dropped.
+ */
+public class GlanceUpdater implements AutoCloseable {
+
+    private final PushoverRestClient client;
+    private final long intervalNanos;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private GlanceUpdater(Builder builder) {
+        this.client = Objects.requireNonNull(builder.client, "client is required");
+        this.intervalNanos = builder.interval.toNanos();
+        this.scheduler = new ScheduledThreadPoolExecutor(builder.parallelism, DaemonThreads.factory("pushover-glances"));
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Queues the update; it is sent as soon as the rate allows, merged with any later updates
+     * to the same user and device.
+     *
+     * @param glance the fields to change
+     */
+    public void update(PushoverGlance glance) {
+        Objects.requireNonNull(glance);
+        if (scheduler.isShutdown()) {
+            throw new IllegalStateException("updater is closed");
+        }
+        updates.increment();
+        final Slot slot = slots.computeIfAbsent(keyOf(glance), key -> new Slot());
+        synchronized (slot) {
+            if (slot.pending == null) {
+                slot.pending = glance;
+            } else {
+                slot.pending = slot.pending.mergeWith(glance);
+                coalesced.increment();
+            }
+            if (!slot.busy) {
+                slot.busy = true;
+                schedule(slot, slot.nextAllowed - System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * @return number of users and devices with an update waiting to be sent
+     */
+    public int getPendingCount() {
+        int pending = 0;
+        for (Slot slot : slots.values()) {
+            synchronized (slot) {
+                if (slot.pending != null) {
+                    pending++;
+                }
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Stops sending. Updates that were not sent yet are dropped.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void flush(Slot slot) {
+        final PushoverGlance glance;
+        synchronized (slot) {
+            glance = slot.pending;
+            slot.pending = null;
+        }
+        boolean retry = false;
+        try {
+            final Response response = client.pushGlance(glance);
+            if (response != null && response.getStatus() == 1) {
+                sent.increment();
+            } else {
+                rejected.increment();
+            }
+        } catch (PushoverException | RuntimeException e) {
+            failed.increment();
+            retry = true;
+        }
+        synchronized (slot) {
+            slot.nextAllowed = System.nanoTime() + intervalNanos;
+            if (retry) {
+                slot.pending = slot.pending == null ? glance : glance.mergeWith(slot.pending);
+            }
+            if (slot.pending != null) {
+                schedule(slot, intervalNanos);
+            } else {
+                slot.busy = false;
+            }
+        }
+    }
+
+    private void schedule(Slot slot, long delayNanos) {
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(() -> flush(slot), Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String keyOf(PushoverGlance glance) {
+        return glance.getUserId() + '\u0000' + (glance.getDevice() == null ? "" : glance.getDevice());
+    }
+
+    /**
+     * @return number of updates passed to {@link #update(PushoverGlance)}
+     */
+    public long getUpdateCount() {
+        return updates.sum();
+    }
+
+    /**
+     * @return number of updates merged into a pending one instead of being sent on their own
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    /**
+     * @return number of sends the API refused, e.g. for an invalid user; they are not retried
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return number of sends that failed to reach the API and were retried
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Latest update and send state of one user and device, guarded by itself.
+     */
+    private static final class Slot {
+        private PushoverGlance pending;
+        private boolean busy;       //a flush is scheduled or running
+        private long nextAllowed = System.nanoTime();
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private PushoverRestClient client;
+        private Duration interval = Duration.ofSeconds(20);
+        private int parallelism = 2;
+
+        private Builder() {
+        }
+
+        public GlanceUpdater build() {
+            return new GlanceUpdater(this);
+        }
+
+        /**
+         * @param client the client used to send the updates
+         * @return the current Builder instance
+         */
+        public Builder setClient(PushoverRestClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * @param interval (optional) - minimum time between two sends to the same user and device,
+         *                 defaults to 20 seconds
+         * @return the current Builder instance
+         */
+        public Builder setInterval(Duration interval) {
+            if (interval.isNegative()) {
+                throw new IllegalArgumentException("interval must not be negative");
+            }
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * @param parallelism (optional) - users and devices sent to in parallel, defaults to 2
+         * @return the current Builder instance
+         */
+        public Builder setParallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be positive");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package net.pushover.client;
+
+import java.time.Duration;
+
+/**
+ * Decides when a second copy of an idempotent request is fired and how many
+ * of those copies may be sent.
+ * <p>
+ * The hedge delay follows a percentile of the latencies observed for the
+ * hedged calls in the current and the previous window, bounded by a minimum
+ * and maximum delay. Older latencies are forgotten, so the delay follows the
+ * API when it gets faster or slower. Hedges are paid from a
+ * budget that every primary request tops up by {@code budgetPercent / 100},
+ * so hedging can never add more than that share of extra traffic.
+ * <p>
+ * Only read-only calls are hedged: receipts, sounds and user validation.
+ * Messages are never hedged because duplicates would reach the users.
+ */
+public class HedgingPolicy {
+
+    private static final double MAX_BUDGET_CREDITS = 10.0;
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final double creditPerRequest;
+    private final int minSamples;
+    private final long windowNanos;
+
+    //recorders only write to current, previous is the last complete window
+    private volatile LatencyHistogram current = new LatencyHistogram();
+    private volatile LatencyHistogram previous = new LatencyHistogram();
+    private volatile long windowStart = System.nanoTime();
+
+    private double credits;
+    private long hedgesSent;
+
+    private HedgingPolicy(Builder builder) {
+        this.percentile = builder.percentile;
+        this.minDelayNanos = builder.minDelay.toNanos();
+        this.maxDelayNanos = builder.maxDelay.toNanos();
+        this.creditPerRequest = builder.budgetPercent / 100.0;
+        this.minSamples = builder.minSamples;
+        this.windowNanos = builder.window.toNanos();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return how long to wait for the primary request before firing the hedge, in nanoseconds
+     */
+    public long getHedgeDelayNanos() {
+        rotateIfDue(System.nanoTime());
+        final LatencyHistogram recent = current;
+        final LatencyHistogram older = previous;
+        if (recent.getCount() + older.getCount() < minSamples) {
+            return maxDelayNanos;
+        }
+        return Math.max(minDelayNanos, Math.min(maxDelayNanos, LatencyHistogram.getPercentile(percentile, recent, older)));
+    }
+
+    /**
+     * @return number of hedge requests that were granted so far
+     */
+    public synchronized long getHedgesSent() {
+        return hedgesSent;
+    }
+
+    synchronized void onPrimary() {
+        credits = Math.min(MAX_BUDGET_CREDITS, credits + creditPerRequest);
+    }
+
+    synchronized boolean tryAcquireHedge() {
+        if (credits < 1.0) {
+            return false;
+        }
+        credits -= 1.0;
+        hedgesSent++;
+        return true;
+    }
+
+    void recordLatency(long nanos) {
+        rotateIfDue(System.nanoTime());
+        current.record(nanos);
+    }
+
+    private void rotateIfDue(long now) {
+        final long start = windowStart;
+        if (now - start < windowNanos) {
+            return;
+        }
+        synchronized (this) {
+            if (windowStart != start) {
+                return;
+            }
+            final LatencyHistogram expired = previous;
+            expired.reset();
+            if (now - start >= 2 * windowNanos) {
+                //nothing was asked for a whole window, the current latencies are stale as well
+                current.reset();
+            }
+            previous = current;
+            current = expired;
+            windowStart = now;
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private double percentile = 95.0;
+        private Duration minDelay = Duration.ofMillis(10);
+        private Duration maxDelay = Duration.ofSeconds(1);
+        private double budgetPercent = 5.0;
+        private int minSamples = 20;
+        private Duration window = Duration.ofMinutes(1);
+
+        private Builder() {
+        }
+
+        public HedgingPolicy build() {
+            if (budgetPercent < 0.0 || budgetPercent > 100.0) {
+                throw new IllegalArgumentException("budget must be between 0 and 100 percent: " + budgetPercent);
+            }
+            return new HedgingPolicy(this);
+        }
+
+        /**
+         * @param percentile (optional) - latency percentile used as hedge delay, defaults to 95
+         * @return the current Builder instance
+         */
+        public Builder setPercentile(double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * @param minDelay (optional) - lower bound of the hedge delay, defaults to 10ms
+         * @return the current Builder instance
+         */
+        public Builder setMinDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+            return this;
+        }
+
+        /**
+         * @param maxDelay (optional) - upper bound of the hedge delay, also used until enough
+         * latencies are known, defaults to 1 second
+         * @return the current Builder instance
+         */
+        public Builder setMaxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * @param budgetPercent (optional) - extra traffic hedges may add, in percent of the
+         * hedged calls, defaults to 5
+         * @return the current Builder instance
+         */
+        public Builder setBudgetPercent(double budgetPercent) {
+            this.budgetPercent = budgetPercent;
+            return this;
+        }
+
+        /**
+         * @param minSamples (optional) - latencies to observe before the percentile is trusted, defaults to 20
+         * @return the current Builder instance
+         */
+        public Builder setMinSamples(int minSamples) {
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        /**
+         * @param window (optional) - how long latencies count, the delay follows the latencies of the
+         * current and the previous window, defaults to 1 minute
+         * @return the current Builder instance
+         */
+        public Builder setWindow(Duration window) {
+            if (window.isNegative() || window.isZero()) {
+                throw new IllegalArgumentException("window must be positive");
+            }
+            this.window = window;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package net.pushover.client;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link QuotaStore} for the clients of one JVM.
+ */
+public class InMemoryQuotaStore implements QuotaStore {
+
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+
+    @Override
+    public Lease lease(String apiToken, int sends) {
+        final State state = states.computeIfAbsent(apiToken, token -> new State());
+        synchronized (state) {
+            if (state.period == 0) {
+                return new Lease(sends, 0);
+            }
+            final int granted = (int) Math.min(sends, state.available);
+            state.available -= granted;
+            return new Lease(granted, state.period);
+        }
+    }
+
+    @Override
+    public void release(String apiToken, Lease lease, int unused) {
+        final State state = states.get(apiToken);
+        if (state == null || unused <= 0) {
+            return;
+        }
+        synchronized (state) {
+            if (state.period != 0 && state.period == lease.period()) {
+                state.available += unused;
+            }
+        }
+    }
+
+    @Override
+    public void observe(String apiToken, Quota quota) {
+        if (!quota.isKnown()) {
+            return;
+        }
+        final long period = QuotaStore.periodOf(quota);
+        final State state = states.computeIfAbsent(apiToken, token -> new State());
+        synchronized (state) {
+            if (period > state.period) {
+                state.period = period;
+                state.available = Math.max(0, quota.remaining());
+            } else if (period == state.period) {
+                //the API does not know about sends leased but not yet made, so it can only lower the count
+                state.available = Math.min(state.available, Math.max(0, quota.remaining()));
+            }
+        }
+    }
+
+    /**
+     * @return sends of the current period that are not leased, -1 while unknown
+     */
+    public long getAvailable(String apiToken) {
+        final State state = states.get(apiToken);
+        if (state == null) {
+            return -1;
+        }
+        synchronized (state) {
+            return state.period == 0 ? -1 : state.available;
+        }
+    }
+
+    private static final class State {
+        private long period;
+        private long available;
+    }
+}
@@ -0,0 +1,45 @@
+package net.pushover.client;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ReceiptRegistry} for the trackers of one JVM, e.g. in tests.
+ */
+public class InMemoryReceiptRegistry implements ReceiptRegistry {
+
+    private final Map<String, TrackedReceipt> receipts = new ConcurrentHashMap<>();
+    private final Map<String, Long> nodes = new ConcurrentHashMap<>();
+
+    @Override
+    public void register(TrackedReceipt receipt) {
+        receipts.put(receipt.receipt(), receipt);
+    }
+
+    @Override
+    public void remove(String receipt) {
+        receipts.remove(receipt);
+    }
+
+    @Override
+    public Collection<TrackedReceipt> getReceipts() {
+        return List.copyOf(receipts.values());
+    }
+
+    @Override
+    public void heartbeat(String nodeId, long epochMillis) {
+        nodes.put(nodeId, epochMillis);
+    }
+
+    @Override
+    public void leave(String nodeId) {
+        nodes.remove(nodeId);
+    }
+
+    @Override
+    public Map<String, Long> getNodes() {
+        return Map.copyOf(nodes);
+    }
+}
@@ -0,0 +1,108 @@
+package net.pushover.client;
+
+/**
+ * Message received by a device through the Open Client API, as downloaded from {@code messages.json}.
+ */
+public class InboundMessage {
+
+    private long id;              //increasing per device, used to delete the messages up to it
+    private String umid;          //unique message id, e.g. for the message's own web page
+    private String title;         //title of the message, or the application name if it had none
+    private String message;       //body of the message
+    private String app;           //name of the sending application
+    private long aid;             //id of the sending application
+    private String icon;          //icon name of the sending application
+    private long date;            //unix timestamp of the message
+    private int priority;         //-2 to 2, see MessagePriority
+    private String sound;         //sound to play, null for the device's default
+    private String url;           //supplementary url
+    private String url_title;     //title of the supplementary url
+    private int acked;            //1 if an emergency message was already acknowledged
+    private String receipt;       //set on emergency messages, for acknowledging them
+    private int html;             //1 if the message is formatted with HTML
+
+    public InboundMessage() {
+    }
+
+    /**
+     * For messages read by the {@link ResponseAdapters}.
+     */
+    InboundMessage(long id, String umid, String title, String message, String app, long aid, String icon, long date,
+                   int priority, String sound, String url, String urlTitle, int acked, String receipt, int html) {
+        this.id = id;
+        this.umid = umid;
+        this.title = title;
+        this.message = message;
+        this.app = app;
+        this.aid = aid;
+        this.icon = icon;
+        this.date = date;
+        this.priority = priority;
+        this.sound = sound;
+        this.url = url;
+        this.url_title = urlTitle;
+        this.acked = acked;
+        this.receipt = receipt;
+        this.html = html;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getUmid() {
+        return umid;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getApp() {
+        return app;
+    }
+
+    public long getAid() {
+        return aid;
+    }
+
+    public String getIcon() {
+        return icon;
+    }
+
+    public long getDate() {
+        return date;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public String getSound() {
+        return sound;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUrlTitle() {
+        return url_title;
+    }
+
+    public boolean isAcknowledged() {
+        return acked == 1;
+    }
+
+    public String getReceipt() {
+        return receipt;
+    }
+
+    public boolean isHtml() {
+        return html == 1;
+    }
+}
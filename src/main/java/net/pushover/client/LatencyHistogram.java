@@ -0,0 +1,109 @@
+package net.pushover.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free log-linear latency histogram with microsecond resolution and
+ * roughly 6% relative precision. Recording never allocates, so it can sit on
+ * the request path.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 32;
+    private static final int SUB_BUCKETS = 16;
+    private static final int MAX_MSB = 40; //about 12 days in microseconds
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (MAX_MSB - 4) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * @param nanos a measured latency in nanoseconds
+     */
+    public void record(long nanos) {
+        buckets.incrementAndGet(bucketFor(TimeUnit.NANOSECONDS.toMicros(Math.max(0L, nanos))));
+        count.increment();
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency in nanoseconds at the given percentile, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        return getPercentile(percentile, this, null);
+    }
+
+    /**
+     * Reads the buckets twice instead of copying them, so it does not allocate either. Values
+     * recorded between the two passes can only move the result towards lower buckets.
+     *
+     * @param percentile between 0 and 100
+     * @param first the values to include
+     * @param second (optional) - more values to include, e.g. of the previous window
+     * @return the latency in nanoseconds at the given percentile of the values of both histograms,
+     * 0 if nothing was recorded
+     */
+    static long getPercentile(double percentile, LatencyHistogram first, LatencyHistogram second) {
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += bucket(first, second, i);
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        final long rank = Math.max(1L, (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += bucket(first, second, i);
+            if (seen >= rank) {
+                return TimeUnit.MICROSECONDS.toNanos(upperBound(i));
+            }
+        }
+        return TimeUnit.MICROSECONDS.toNanos(upperBound(BUCKET_COUNT - 1));
+    }
+
+    private static long bucket(LatencyHistogram first, LatencyHistogram second, int bucket) {
+        return first.buckets.get(bucket) + (second == null ? 0L : second.buckets.get(bucket));
+    }
+
+    /**
+     * Forgets all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0L);
+        }
+        count.reset();
+    }
+
+    static int bucketFor(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        final int msb = 63 - Long.numberOfLeadingZeros(micros);
+        if (msb >= MAX_MSB) {
+            return BUCKET_COUNT - 1;
+        }
+        final int shift = msb - 4;
+        return LINEAR_BUCKETS + (msb - 5) * SUB_BUCKETS + (int) ((micros >> shift) - SUB_BUCKETS);
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        final int offset = bucket - LINEAR_BUCKETS;
+        final int msb = offset / SUB_BUCKETS + 5;
+        final long top = SUB_BUCKETS + offset % SUB_BUCKETS;
+        return ((top + 1) << (msb - 4)) - 1;
+    }
+}
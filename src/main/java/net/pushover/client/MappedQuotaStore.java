@@ -0,0 +1,185 @@
+package net.pushover.client;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link QuotaStore} shared by the JVMs of one host through a memory-mapped file.
+ * <p>
+ * The file holds a table of 256 tokens. Every slot is a key, the period and the
+ * available sends, each a long that is only changed with compare-and-set, so processes
+ * coordinate without locks. The key is a hash of the token; the token itself is not stored.
+ * A period change is not atomic with the count: a lease racing with it may still take sends
+ * of the old count, which the next observation corrects.
+ */
+public class MappedQuotaStore implements QuotaStore, AutoCloseable {
+
+    static final int SLOTS = 256;
+    private static final int SLOT_SIZE = 32;
+    private static final int HEADER_SIZE = 16;
+    private static final long MAGIC = 0x505553484f564551L;  //"PUSHOVEQ"
+    private static final int KEY = 0;
+    private static final int PERIOD = 8;
+    private static final int AVAILABLE = 16;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+
+    private MappedQuotaStore(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens the store, creating the file if it does not exist yet.
+     *
+     * @param file the file shared by all processes
+     * @return the store
+     * @throws IOException if the file cannot be mapped or is not a quota store
+     */
+    public static MappedQuotaStore open(Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) SLOTS * SLOT_SIZE);
+            final long magic = (long) LONGS.compareAndExchange(buffer, 0, 0L, MAGIC);
+            if (magic != 0L && magic != MAGIC) {
+                throw new IOException(file + " is not a quota store");
+            }
+            return new MappedQuotaStore(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Lease lease(String apiToken, int sends) {
+        final int slot = slotOf(apiToken);
+        while (true) {
+            final long period = get(slot, PERIOD);
+            if (period == 0) {
+                return new Lease(sends, 0);
+            }
+            final long available = get(slot, AVAILABLE);
+            final long granted = Math.min(sends, Math.max(0, available));
+            if (granted == 0 || cas(slot, AVAILABLE, available, available - granted)) {
+                return new Lease((int) granted, period);
+            }
+        }
+    }
+
+    @Override
+    public void release(String apiToken, Lease lease, int unused) {
+        if (unused <= 0 || lease.period() == 0) {
+            return;
+        }
+        final int slot = slotOf(apiToken);
+        while (get(slot, PERIOD) == lease.period()) {
+            final long available = get(slot, AVAILABLE);
+            if (cas(slot, AVAILABLE, available, available + unused)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void observe(String apiToken, Quota quota) {
+        if (!quota.isKnown()) {
+            return;
+        }
+        final long period = QuotaStore.periodOf(quota);
+        final long remaining = Math.max(0, quota.remaining());
+        final int slot = slotOf(apiToken);
+        while (true) {
+            final long current = get(slot, PERIOD);
+            if (period > current) {
+                if (cas(slot, PERIOD, current, period)) {
+                    LONGS.setVolatile(buffer, offset(slot, AVAILABLE), remaining);
+                    return;
+                }
+            } else if (period == current) {
+                //the API does not know about sends leased but not yet made, so it can only lower the count
+                final long available = get(slot, AVAILABLE);
+                if (available <= remaining || cas(slot, AVAILABLE, available, remaining)) {
+                    return;
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return sends of the current period that are not leased, -1 while unknown
+     */
+    public long getAvailable(String apiToken) {
+        final int slot = slotOf(apiToken);
+        return get(slot, PERIOD) == 0 ? -1 : get(slot, AVAILABLE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Finds the slot of the token, claiming a free one on first use.
+     */
+    private int slotOf(String apiToken) {
+        return slots.computeIfAbsent(String.valueOf(apiToken), this::claimSlot);
+    }
+
+    private int claimSlot(String apiToken) {
+        final long key = keyOf(apiToken);
+        int slot = Math.floorMod(key, SLOTS);
+        for (int probe = 0; probe < SLOTS; probe++) {
+            final long existing = (long) LONGS.compareAndExchange(buffer, offset(slot, KEY), 0L, key);
+            if (existing == 0L || existing == key) {
+                return slot;
+            }
+            slot = (slot + 1) % SLOTS;
+        }
+        throw new IllegalStateException("quota store is full, at most " + SLOTS + " tokens are supported");
+    }
+
+    private long get(int slot, int field) {
+        return (long) LONGS.getVolatile(buffer, offset(slot, field));
+    }
+
+    private boolean cas(int slot, int field, long expected, long value) {
+        return LONGS.compareAndSet(buffer, offset(slot, field), expected, value);
+    }
+
+    private static int offset(int slot, int field) {
+        return HEADER_SIZE + slot * SLOT_SIZE + field;
+    }
+
+    private static long keyOf(String apiToken) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(String.valueOf(apiToken).getBytes(StandardCharsets.UTF_8));
+            long key = 0;
+            for (int i = 0; i < 8; i++) {
+                key = key << 8 | (digest[i] & 0xff);
+            }
+            return key == 0L ? 1L : key;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package net.pushover.client;
+
+import java.util.Map;
+
+/**
+ * Maps the field names of the message API ({@code token}, {@code user},
+ * {@code message}, {@code url_title}, ...) to a {@link PushoverMessage.Builder},
+ * for tools that receive messages as forms, JSON objects or CSV rows.
+ */
+public final class MessageFields {
+
+    private MessageFields() {
+    }
+
+    /**
+     * @param fields the message fields by API name, absent fields keep the builder defaults
+     * @return a builder with all given fields set, attachments are not mapped
+     * @throws IllegalArgumentException if a numeric field or the priority is invalid
+     */
+    public static PushoverMessage.Builder toBuilder(Map<String, String> fields) {
+        final PushoverMessage.Builder builder = PushoverMessage.builderWithApiToken(fields.get("token"))
+                .setUserId(fields.get("user"))
+                .setMessage(fields.get("message"))
+                .setTitle(fields.get("title"))
+                .setUrl(fields.get("url"))
+                .setTitleForURL(fields.get("url_title"))
+                .setDevice(fields.get("device"))
+                .setSound(fields.get("sound"))
+                .setCallbackUrl(fields.get("callback"))
+                .setHTML(isSet(fields.get("html")))
+                .setMonospace(isSet(fields.get("monospace")));
+        try {
+            if (fields.get("timestamp") != null) {
+                builder.setTimestamp(Long.parseLong(fields.get("timestamp").trim()));
+            }
+            if (fields.get("priority") != null) {
+                builder.setPriority(priorityOf(Integer.parseInt(fields.get("priority").trim())));
+            }
+            if (fields.get("retry") != null) {
+                builder.setRetry(Integer.parseInt(fields.get("retry").trim()));
+            }
+            if (fields.get("expire") != null) {
+                builder.setExpire(Integer.parseInt(fields.get("expire").trim()));
+            }
+            if (fields.get("ttl") != null) {
+                builder.setTtl(Integer.parseInt(fields.get("ttl").trim()));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid number: " + e.getMessage());
+        }
+        return builder;
+    }
+
+    /**
+     * @param priority the numeric priority of the API, -2 to 2
+     * @return the matching {@link MessagePriority}
+     * @throws IllegalArgumentException for any other value
+     */
+    public static MessagePriority priorityOf(int priority) {
+        return switch (priority) {
+            case -2 -> MessagePriority.LOWEST;
+            case -1 -> MessagePriority.LOW;
+            case 0 -> MessagePriority.NORMAL;
+            case 1 -> MessagePriority.HIGH;
+            case 2 -> MessagePriority.EMERGENCY;
+            default -> throw new IllegalArgumentException("priority is invalid: " + priority);
+        };
+    }
+
+    private static boolean isSet(String flag) {
+        return "1".equals(flag) || "true".equalsIgnoreCase(flag);
+    }
+}
@@ -0,0 +1,230 @@
+package net.pushover.client;
+
+import org.apache.http.HttpEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable, thread-safe template for messages that only differ in title and
+ * body, e.g. high-rate alerts.
+ * <p>
+ * The fixed fields (token, user, device, sound, priority, url, ...) are
+ * encoded into multipart form bytes once when the template is built. Messages
+ * created with {@link #message(String, String)} are sent with those bytes, so
+ * per send only the title and the body are encoded.
+ */
+public final class MessageTemplate {
+
+    private final PushoverMessage fixedFields;
+    private final String boundary;
+    private final byte[] encodedFixedParts;
+
+    private MessageTemplate(PushoverMessage fixedFields) {
+        this.fixedFields = fixedFields;
+        this.boundary = MultipartFormEntity.newBoundary();
+        this.encodedFixedParts = encodeFixedParts();
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static Builder builderWithApiToken(String token) {
+        return new Builder().setApiToken(token);
+    }
+
+    /**
+     * @param title the title, may be null to use the application's name
+     * @param message the body of the message
+     * @return an immutable message with the template's fixed fields
+     */
+    public PushoverMessage message(String title, String message) {
+        return fixedFields.toBuilder()
+                .setTitle(title)
+                .setMessage(message)
+                .setTemplate(this)
+                .build();
+    }
+
+    /**
+     * Creates the request body for a message of this template: the shared pre-encoded
+     * fixed parts followed by the freshly encoded title and message.
+     */
+    HttpEntity createEntity(PushoverMessage msg) {
+        final List<byte[]> parts = new ArrayList<>(3);
+        parts.add(encodedFixedParts);
+        parts.add(MultipartFormEntity.textPart(boundary, "message", msg.getMessage()));
+        if (msg.getTitle() != null) {
+            parts.add(MultipartFormEntity.textPart(boundary, "title", msg.getTitle()));
+        }
+        return new MultipartFormEntity(boundary, parts);
+    }
+
+    private byte[] encodeFixedParts() {
+        final List<byte[]> parts = new ArrayList<>();
+        addPart(parts, "token", fixedFields.getApiToken());
+        addPart(parts, "user", fixedFields.getUserId());
+        addPart(parts, "url", fixedFields.getUrl());
+        addPart(parts, "url_title", fixedFields.getTitleForURL());
+        addPart(parts, "device", fixedFields.getDevice());
+        addPart(parts, "sound", fixedFields.getSound());
+        if (!MessagePriority.NORMAL.equals(fixedFields.getPriority())) {
+            addPart(parts, "priority", fixedFields.getPriority());
+            if (MessagePriority.EMERGENCY.equals(fixedFields.getPriority())) {
+                addPart(parts, "retry", fixedFields.getRetry());
+                addPart(parts, "expire", fixedFields.getExpire());
+                addPart(parts, "callback", fixedFields.getCallbackUrl());
+            }
+        }
+        if (fixedFields.getHTML()) {
+            addPart(parts, "html", "1");
+        }
+        if (fixedFields.getMonospace()) {
+            addPart(parts, "monospace", "1");
+        }
+        if (fixedFields.getTtl() > 0) {
+            addPart(parts, "ttl", fixedFields.getTtl());
+        }
+        return MultipartFormEntity.concat(parts);
+    }
+
+    private void addPart(List<byte[]> parts, String name, Object value) {
+        if (value != null) {
+            parts.add(MultipartFormEntity.textPart(boundary, name, value.toString()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MessageTemplate{user=" + fixedFields.getUserId() + ", device=" + fixedFields.getDevice()
+                + ", encodedBytes=" + encodedFixedParts.length + "}";
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private final PushoverMessage.Builder fields = new PushoverMessage.Builder();
+
+        public Builder() {
+        }
+
+        public MessageTemplate build() {
+            return new MessageTemplate(fields.build());
+        }
+
+        /**
+         * @param apiToken (required) - your application's API token
+         * @return the current Builder instance
+         */
+        public Builder setApiToken(String apiToken) {
+            fields.setApiToken(apiToken);
+            return this;
+        }
+
+        /**
+         * @param userId (required) - the user/group key of the recipient
+         * @return the current Builder instance
+         */
+        public Builder setUserId(String userId) {
+            fields.setUserId(userId);
+            return this;
+        }
+
+        /**
+         * @param device (optional) - the device to send the messages to
+         * @return the current Builder instance
+         */
+        public Builder setDevice(String device) {
+            fields.setDevice(device);
+            return this;
+        }
+
+        /**
+         * @param url (optional) - a supplementary URL to show with the messages
+         * @return the current Builder instance
+         */
+        public Builder setUrl(String url) {
+            fields.setUrl(url);
+            return this;
+        }
+
+        /**
+         * @param titleForURL (optional) - a title for the supplementary URL
+         * @return the current Builder instance
+         */
+        public Builder setTitleForURL(String titleForURL) {
+            fields.setTitleForURL(titleForURL);
+            return this;
+        }
+
+        /**
+         * @param priority (optional) - priority of the messages
+         * @return the current Builder instance
+         */
+        public Builder setPriority(MessagePriority priority) {
+            fields.setPriority(priority);
+            return this;
+        }
+
+        /**
+         * @param sound (optional) - sound overriding the user's default
+         * @return the current Builder instance
+         */
+        public Builder setSound(String sound) {
+            fields.setSound(sound);
+            return this;
+        }
+
+        /**
+         * @param seconds (required when priority is emergency) - how often to retry alerting the user
+         * @return the current Builder instance
+         */
+        public Builder setRetry(int seconds) {
+            fields.setRetry(seconds);
+            return this;
+        }
+
+        /**
+         * @param seconds (required when priority is emergency) - how long to keep retrying
+         * @return the current Builder instance
+         */
+        public Builder setExpire(int seconds) {
+            fields.setExpire(seconds);
+            return this;
+        }
+
+        /**
+         * @param url (optional) - URL the system posts to when an emergency message is acknowledged
+         * @return the current Builder instance
+         */
+        public Builder setCallbackUrl(String url) {
+            fields.setCallbackUrl(url);
+            return this;
+        }
+
+        /**
+         * @param isHTML (optional) - format the messages with HTML tags
+         * @return the current Builder instance
+         */
+        public Builder setHTML(boolean isHTML) {
+            fields.setHTML(isHTML);
+            return this;
+        }
+
+        /**
+         * @param isMonospace (optional) - format the messages with a monospace font
+         * @return the current Builder instance
+         */
+        public Builder setMonospace(boolean isMonospace) {
+            fields.setMonospace(isMonospace);
+            return this;
+        }
+
+        /**
+         * @param seconds (optional) - delete the messages from the devices after this many seconds
+         * @return the current Builder instance
+         */
+        public Builder setTtl(int seconds) {
+            fields.setTtl(seconds);
+            return this;
+        }
+    }
+}
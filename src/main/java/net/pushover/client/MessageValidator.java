@@ -0,0 +1,206 @@
+package net.pushover.client;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks messages against the documented limits of the message API before
+ * they are sent, so invalid messages are rejected locally instead of costing
+ * a round trip and a quota unit.
+ * <p>
+ * Oversized titles and bodies are either rejected or, with
+ * {@link OversizePolicy#TRUNCATE}, shortened. {@link #split(PushoverMessage)}
+ * turns an oversized body into several messages instead.
+ */
+public class MessageValidator {
+
+    public static final int MAX_MESSAGE_LENGTH = 1024;
+    public static final int MAX_TITLE_LENGTH = 250;
+    public static final int MAX_URL_LENGTH = 512;
+    public static final int MAX_URL_TITLE_LENGTH = 100;
+    public static final int MIN_EMERGENCY_RETRY = 30;
+    public static final int MAX_EMERGENCY_EXPIRE = 10800;
+    public static final long MAX_ATTACHMENT_SIZE = 5L * 1024 * 1024;
+
+    /** sounds every application can use, custom sounds have to be added with {@link Builder#setKnownSounds(Collection)} */
+    public static final Set<String> BUILT_IN_SOUNDS = Set.of("pushover", "bike", "bugle", "cashregister",
+            "classical", "cosmic", "falling", "gamelan", "incoming", "intermission", "magic", "mechanical",
+            "pianobar", "siren", "spacealarm", "tugboat", "alien", "climb", "persistent", "echo", "updown",
+            "vibrate", "none");
+
+    private static final String ELLIPSIS = "…";
+
+    public enum OversizePolicy {
+        /** report oversized fields as errors */
+        REJECT,
+        /** cut oversized titles and bodies to the limit */
+        TRUNCATE
+    }
+
+    private final OversizePolicy oversizePolicy;
+    private final Set<String> knownSounds;
+
+    private MessageValidator(Builder builder) {
+        this.oversizePolicy = builder.oversizePolicy;
+        this.knownSounds = builder.knownSounds;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Applies the oversize policy: with TRUNCATE an oversized title or body is shortened,
+     * otherwise the message is returned unchanged.
+     *
+     * @param msg the message to send
+     * @return the message that should be validated and sent
+     */
+    public PushoverMessage prepare(PushoverMessage msg) {
+        if (oversizePolicy != OversizePolicy.TRUNCATE
+                || (length(msg.getMessage()) <= MAX_MESSAGE_LENGTH && length(msg.getTitle()) <= MAX_TITLE_LENGTH)) {
+            return msg;
+        }
+        return msg.toBuilder()
+                .setMessage(truncate(msg.getMessage(), MAX_MESSAGE_LENGTH))
+                .setTitle(truncate(msg.getTitle(), MAX_TITLE_LENGTH))
+                .build();
+    }
+
+    /**
+     * @param msg the message to check
+     * @return the violated limits, empty if the message can be sent
+     */
+    public List<String> validate(PushoverMessage msg) {
+        final List<String> errors = new ArrayList<>(2);
+
+        if (isBlank(msg.getApiToken())) {
+            errors.add("application token is invalid");
+        }
+        if (isBlank(msg.getUserId())) {
+            errors.add("user identifier is invalid");
+        }
+        if (isBlank(msg.getMessage())) {
+            errors.add("message cannot be blank");
+        } else if (length(msg.getMessage()) > MAX_MESSAGE_LENGTH) {
+            errors.add("message is too long, must be " + MAX_MESSAGE_LENGTH + " characters or less");
+        }
+        if (length(msg.getTitle()) > MAX_TITLE_LENGTH) {
+            errors.add("title is too long, must be " + MAX_TITLE_LENGTH + " characters or less");
+        }
+        if (length(msg.getUrl()) > MAX_URL_LENGTH) {
+            errors.add("url is too long, must be " + MAX_URL_LENGTH + " characters or less");
+        }
+        if (length(msg.getTitleForURL()) > MAX_URL_TITLE_LENGTH) {
+            errors.add("url title is too long, must be " + MAX_URL_TITLE_LENGTH + " characters or less");
+        }
+        if (MessagePriority.EMERGENCY.equals(msg.getPriority())) {
+            if (msg.getRetry() < MIN_EMERGENCY_RETRY) {
+                errors.add("retry is invalid, must be at least " + MIN_EMERGENCY_RETRY + " seconds");
+            }
+            if (msg.getExpire() <= 0 || msg.getExpire() > MAX_EMERGENCY_EXPIRE) {
+                errors.add("expire is invalid, must be " + MAX_EMERGENCY_EXPIRE + " seconds or less");
+            }
+        }
+        if (msg.getSound() != null && !knownSounds.contains(msg.getSound())) {
+            errors.add("sound is invalid");
+        }
+        if (msg.getTtl() < 0) {
+            errors.add("ttl is invalid, must be a positive number of seconds");
+        }
+        if (msg.getHTML() && msg.getMonospace()) {
+            errors.add("html and monospace cannot be used together");
+        }
+        final File image = msg.getImage();
+        if (image != null && image.length() > MAX_ATTACHMENT_SIZE) {
+            errors.add("attachment is too large, must be " + MAX_ATTACHMENT_SIZE + " bytes or less");
+        }
+        return errors;
+    }
+
+    /**
+     * Splits a message with an oversized body into several messages that each fit the limit.
+     * Splits prefer whitespace and the titles get a " (i/n)" suffix.
+     *
+     * @param msg the message to split
+     * @return the message itself if it fits, the parts otherwise
+     */
+    public List<PushoverMessage> split(PushoverMessage msg) {
+        final String body = msg.getMessage();
+        if (length(body) <= MAX_MESSAGE_LENGTH) {
+            return List.of(msg);
+        }
+        final List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < body.length()) {
+            int end = body.offsetByCodePoints(start, Math.min(MAX_MESSAGE_LENGTH, body.codePointCount(start, body.length())));
+            if (end < body.length()) {
+                final int space = body.lastIndexOf(' ', end - 1);
+                if (space > start + MAX_MESSAGE_LENGTH / 2) {
+                    end = space + 1;
+                }
+            }
+            chunks.add(body.substring(start, end));
+            start = end;
+        }
+        final List<PushoverMessage> parts = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            final String suffix = " (" + (i + 1) + "/" + chunks.size() + ")";
+            final String title = msg.getTitle() == null ? suffix.trim()
+                    : truncate(msg.getTitle(), MAX_TITLE_LENGTH - suffix.length()) + suffix;
+            parts.add(msg.toBuilder().setMessage(chunks.get(i)).setTitle(title).build());
+        }
+        return parts;
+    }
+
+    private static String truncate(String value, int maxLength) {
+        if (value == null || length(value) <= maxLength) {
+            return value;
+        }
+        return value.substring(0, value.offsetByCodePoints(0, maxLength - 1)) + ELLIPSIS;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.codePointCount(0, value.length());
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private OversizePolicy oversizePolicy = OversizePolicy.REJECT;
+        private Set<String> knownSounds = BUILT_IN_SOUNDS;
+
+        private Builder() {
+        }
+
+        public MessageValidator build() {
+            return new MessageValidator(this);
+        }
+
+        /**
+         * @param oversizePolicy (optional) - what to do with oversized titles and bodies, defaults to REJECT
+         * @return the current Builder instance
+         */
+        public Builder setOversizePolicy(OversizePolicy oversizePolicy) {
+            this.oversizePolicy = oversizePolicy;
+            return this;
+        }
+
+        /**
+         * @param knownSounds (optional) - accepted sound ids, e.g. the ids returned by
+         * {@link PushoverClient#getSounds()} to include custom sounds, defaults to {@link #BUILT_IN_SOUNDS}
+         * @return the current Builder instance
+         */
+        public Builder setKnownSounds(Collection<String> knownSounds) {
+            this.knownSounds = Set.copyOf(knownSounds);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package net.pushover.client;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * multipart/form-data entity assembled from already encoded parts. Parts are
+ * written as they are, so fixed parts can be encoded once and shared by many
+ * requests. The content length is known up front.
+ * <p>
+ * An optional file part is streamed from disk on every write and never copied
+ * into the heap as a whole: to a file stream it is transferred channel to channel,
+ * otherwise it is read through a memory-mapped window and a small fixed copy buffer.
+ */
+final class MultipartFormEntity extends AbstractHttpEntity {
+
+    private static final char[] BOUNDARY_CHARS =
+            "-_1234567890abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    /** size of the region of the file that is mapped at a time */
+    static final long MAPPED_WINDOW = 4 * 1024 * 1024;
+
+    /** size of the buffer the mapped region is copied through to a plain output stream */
+    static final int COPY_BUFFER = 8 * 1024;
+
+    private final List<byte[]> parts;
+    private final byte[] fileHeader;
+    private final Path file;
+    private final long fileSize;
+    private final byte[] closing;
+    private final long contentLength;
+
+    MultipartFormEntity(String boundary, List<byte[]> parts) {
+        this(boundary, parts, null, null, 0);
+    }
+
+    /**
+     * @param fileHeader (optional) - the encoded boundary line and headers of the file part, see {@link #filePartHeader}
+     * @param file (optional) - the file streamed after the file header
+     * @throws IOException if the size of the file cannot be read
+     */
+    MultipartFormEntity(String boundary, List<byte[]> parts, byte[] fileHeader, Path file) throws IOException {
+        this(boundary, parts, fileHeader, file, file != null ? Files.size(file) : 0);
+    }
+
+    private MultipartFormEntity(String boundary, List<byte[]> parts, byte[] fileHeader, Path file, long fileSize) {
+        this.parts = parts;
+        this.fileHeader = fileHeader;
+        this.file = file;
+        this.fileSize = fileSize;
+        this.closing = ("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        long length = closing.length;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        if (file != null) {
+            length += fileHeader.length + fileSize + CRLF.length;
+        }
+        this.contentLength = length;
+        setContentType("multipart/form-data; boundary=" + boundary);
+    }
+
+    static String newBoundary() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final char[] boundary = new char[32];
+        for (int i = 0; i < boundary.length; i++) {
+            boundary[i] = BOUNDARY_CHARS[random.nextInt(BOUNDARY_CHARS.length)];
+        }
+        return new String(boundary);
+    }
+
+    /**
+     * Encodes one text field including its leading boundary line and trailing line break.
+     */
+    static byte[] textPart(String boundary, String name, String value) {
+        final byte[] header = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n"
+                + "Content-Type: text/plain; charset=UTF-8\r\n"
+                + "Content-Transfer-Encoding: 8bit\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        final byte[] body = value.getBytes(StandardCharsets.UTF_8);
+        final byte[] part = new byte[header.length + body.length + 2];
+        System.arraycopy(header, 0, part, 0, header.length);
+        System.arraycopy(body, 0, part, header.length, body.length);
+        part[part.length - 2] = '\r';
+        part[part.length - 1] = '\n';
+        return part;
+    }
+
+    /**
+     * Encodes the boundary line and headers of a binary file field. The file itself and the
+     * trailing line break are added by the entity.
+     */
+    static byte[] filePartHeader(String boundary, String name, String filename, String contentType) {
+        return ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Transfer-Encoding: binary\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] concat(List<byte[]> parts) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        final List<InputStream> streams = new ArrayList<>(parts.size() + 4);
+        for (byte[] part : parts) {
+            streams.add(new ByteArrayInputStream(part));
+        }
+        if (file != null) {
+            streams.add(new ByteArrayInputStream(fileHeader));
+            streams.add(Files.newInputStream(file));
+            streams.add(new ByteArrayInputStream(CRLF));
+        }
+        streams.add(new ByteArrayInputStream(closing));
+        return new SequenceInputStream(Collections.enumeration(streams));
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+        if (file != null) {
+            out.write(fileHeader);
+            writeFileTo(out);
+            out.write(CRLF);
+        }
+        out.write(closing);
+        out.flush();
+    }
+
+    /**
+     * Streams exactly {@code fileSize} bytes of the file, so the content length announced up
+     * front stays correct. Fails if the file shrank in the meantime.
+     */
+    private void writeFileTo(OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (out instanceof FileOutputStream fileOut) {
+                out.flush();
+                transfer(channel, fileOut.getChannel());
+            } else {
+                copyMapped(channel, out);
+            }
+        }
+    }
+
+    private void transfer(FileChannel channel, FileChannel target) throws IOException {
+        long position = 0;
+        while (position < fileSize) {
+            final long transferred = channel.transferTo(position, fileSize - position, target);
+            if (transferred <= 0) {
+                throw new EOFException(file + " is shorter than the announced " + fileSize + " bytes");
+            }
+            position += transferred;
+        }
+    }
+
+    private void copyMapped(FileChannel channel, OutputStream out) throws IOException {
+        if (channel.size() < fileSize) {
+            throw new EOFException(file + " is shorter than the announced " + fileSize + " bytes");
+        }
+        final byte[] buffer = new byte[(int) Math.min(COPY_BUFFER, Math.max(fileSize, 1))];
+        for (long position = 0; position < fileSize; position += MAPPED_WINDOW) {
+            final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAPPED_WINDOW, fileSize - position));
+            while (window.hasRemaining()) {
+                final int length = Math.min(buffer.length, window.remaining());
+                window.get(buffer, 0, length);
+                out.write(buffer, 0, length);
+            }
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
@@ -0,0 +1,157 @@
+package net.pushover.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.message.BasicNameValuePair;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calls of the Open Client API, which lets a program receive messages like a Pushover
+ * device does: log in, register a device, download and delete its messages. Use an
+ * {@link OpenClientReceiver} to be notified of new messages as they arrive.
+ * <p>
+ * Requires a Pushover account with a desktop license for the registered devices.
+ */
+public class OpenClient {
+
+    private HttpClient httpClient = HttpClients.custom().useSystemProperties().build();
+
+    private String apiBaseUrl = PushoverRestClient.DEFAULT_API_BASE_URL;
+
+    /**
+     * Logs a user in.
+     *
+     * @param email the user's e-mail address
+     * @param password the user's password
+     * @param twofa (optional) - the current two-factor code if the account uses two-factor authentication
+     * @return the session, whose secret the other calls need
+     * @throws PushoverException if the login was refused or the API could not be reached
+     */
+    public OpenClientLogin login(String email, String password, String twofa) throws PushoverException {
+        final List<NameValuePair> nameValuePairs = new ArrayList<>();
+        nameValuePairs.add(new BasicNameValuePair("email", email));
+        nameValuePairs.add(new BasicNameValuePair("password", password));
+        if (twofa != null) {
+            nameValuePairs.add(new BasicNameValuePair("twofa", twofa));
+        }
+        try {
+            return PushoverResponseFactory.createLogin(execute(post("users/login.json", nameValuePairs)));
+        } catch (IOException e) {
+            throw new PushoverException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Registers a new desktop device for the logged in user. Register once and keep the id,
+     * every registration counts as a device of the account.
+     *
+     * @param secret the session secret
+     * @param name the device name, up to 25 letters, digits, _ and -
+     * @return the id of the device
+     * @throws PushoverException if the registration was refused or the API could not be reached
+     */
+    public String registerDevice(String secret, String name) throws PushoverException {
+        final List<NameValuePair> nameValuePairs = new ArrayList<>();
+        nameValuePairs.add(new BasicNameValuePair("secret", secret));
+        nameValuePairs.add(new BasicNameValuePair("name", name));
+        nameValuePairs.add(new BasicNameValuePair("os", "O"));
+        try {
+            return PushoverResponseFactory.createDeviceId(execute(post("devices.json", nameValuePairs)));
+        } catch (IOException e) {
+            throw new PushoverException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Downloads all messages of the device that were not deleted yet.
+     *
+     * @param secret the session secret
+     * @param deviceId the id of the device
+     * @return the messages in ascending id order
+     * @throws PushoverException if the download was refused or the API could not be reached
+     */
+    public List<InboundMessage> downloadMessages(String secret, String deviceId) throws PushoverException {
+        try {
+            final HttpGet get = new HttpGet(new URIBuilder(apiBaseUrl + "messages.json")
+                    .addParameter("secret", secret)
+                    .addParameter("device_id", deviceId)
+                    .build());
+            return PushoverResponseFactory.createInboundMessages(execute(get));
+        } catch (IOException | URISyntaxException e) {
+            throw new PushoverException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Deletes the messages of the device up to and including the given id, so they are not
+     * downloaded again.
+     *
+     * @param secret the session secret
+     * @param deviceId the id of the device
+     * @param highestId the id of the last message that was handled
+     * @return {@link Response} with the status and any errors
+     * @throws PushoverException if the API could not be reached or answered unreadably
+     */
+    public Response deleteMessages(String secret, String deviceId, long highestId) throws PushoverException {
+        final List<NameValuePair> nameValuePairs = new ArrayList<>();
+        nameValuePairs.add(new BasicNameValuePair("secret", secret));
+        nameValuePairs.add(new BasicNameValuePair("message", String.valueOf(highestId)));
+        try {
+            return PushoverResponseFactory.createResponse(
+                    execute(post("devices/" + deviceId + "/update_highest_message.json", nameValuePairs)));
+        } catch (IOException e) {
+            throw new PushoverException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Acknowledges an emergency message, which stops its retries on all devices of the user.
+     *
+     * @param secret the session secret
+     * @param receipt the receipt of the message, see {@link InboundMessage#getReceipt()}
+     * @return {@link Response} with the status and any errors
+     * @throws PushoverException if the API could not be reached or answered unreadably
+     */
+    public Response acknowledge(String secret, String receipt) throws PushoverException {
+        final List<NameValuePair> nameValuePairs = new ArrayList<>();
+        nameValuePairs.add(new BasicNameValuePair("secret", secret));
+        try {
+            return PushoverResponseFactory.createResponse(execute(post("receipts/" + receipt + "/acknowledge.json", nameValuePairs)));
+        } catch (IOException e) {
+            throw new PushoverException(e.getMessage(), e);
+        }
+    }
+
+    private HttpPost post(String path, List<NameValuePair> nameValuePairs) {
+        final HttpPost post = new HttpPost(apiBaseUrl + path);
+        post.setEntity(new UrlEncodedFormEntity(nameValuePairs, StandardCharsets.UTF_8));
+        return post;
+    }
+
+    private HttpResponse execute(HttpUriRequest request) throws IOException {
+        return httpClient.execute(request);
+    }
+
+    public void setHttpClient(HttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * @param apiBaseUrl base URL of the API, e.g. of a simulator, ending with a slash
+     */
+    public void setApiBaseUrl(String apiBaseUrl) {
+        this.apiBaseUrl = apiBaseUrl;
+    }
+}
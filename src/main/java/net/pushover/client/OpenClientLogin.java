@@ -0,0 +1,10 @@
+package net.pushover.client;
+
+/**
+ * Session of a user logged in through the Open Client API.
+ *
+ * @param userKey the key of the user
+ * @param secret the session secret, used instead of an application token by the device calls
+ */
+public record OpenClientLogin(String userKey, String secret) {
+}
@@ -0,0 +1,423 @@
+package net.pushover.client;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Receives the messages of an Open Client device as they arrive.
+ * <p>
+ * Holds one websocket to the push server, which sends a single character frame whenever
+ * new messages are waiting. The receiver then downloads the messages, hands the new ones to
+ * a bounded queue drained by the handler thread, and deletes them on the server up to the
+ * highest id, so they are not downloaded again. Messages are downloaded once more after every
+ * connect, to pick up those that arrived while disconnected. Lost connections, missing keep-alives
+ * and failed downloads reconnect with jittered exponential backoff.
+ * <p>
+ * A message is deleted on the server once it is queued, so messages still queued when the
+ * process dies are lost. When the handler falls behind, the full queue stops the downloads
+ * rather than dropping messages.
+ * <p>
+ * The receiver stops for good when the push server reports a session error, e.g. an expired
+ * secret, or that the device was logged in from another session; see {@link #getStopReason()}.
+ */
+public class OpenClientReceiver implements AutoCloseable {
+
+    public static final String DEFAULT_PUSH_URL = "wss://client.pushover.net/push";
+
+    private static final char KEEP_ALIVE = '#';
+    private static final char NEW_MESSAGE = '!';
+    private static final char RECONNECT = 'R';
+    private static final char SESSION_ERROR = 'E';
+    private static final char OTHER_SESSION = 'A';
+    private static final char DISCONNECTED = 0;  //not sent by the server, raised on close and errors
+
+    private final OpenClient client;
+    private final String secret;
+    private final String deviceId;
+    private final URI pushUrl;
+    private final Consumer<InboundMessage> handler;
+    private final BlockingQueue<InboundMessage> queue;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long keepAliveTimeoutNanos;
+    private final HttpClient webSocketClient = HttpClient.newHttpClient();
+    private final BlockingQueue<Signal> signals = new LinkedBlockingQueue<>();
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder failedSyncs = new LongAdder();
+    private final LongAdder failedHandlers = new LongAdder();
+    private final Thread connector;
+    private final Thread dispatcher;
+    private volatile boolean closed;
+    private volatile boolean connected;
+    private volatile String stopReason;
+    private volatile long lastFrameNanos;
+    private long highestQueued;  //connector thread only
+    private long highestDeleted; //connector thread only
+
+    private OpenClientReceiver(Builder builder) {
+        this.client = builder.client;
+        this.secret = Objects.requireNonNull(builder.secret, "secret is required");
+        this.deviceId = Objects.requireNonNull(builder.deviceId, "device id is required");
+        this.pushUrl = URI.create(builder.pushUrl);
+        this.handler = Objects.requireNonNull(builder.handler, "handler is required");
+        this.queue = new ArrayBlockingQueue<>(builder.queueCapacity);
+        this.initialBackoffMillis = builder.initialBackoff.toMillis();
+        this.maxBackoffMillis = builder.maxBackoff.toMillis();
+        this.keepAliveTimeoutNanos = builder.keepAliveTimeout.toNanos();
+        this.connector = new Thread(this::connect, "pushover-open-client-" + deviceId);
+        this.connector.setDaemon(true);
+        this.dispatcher = new Thread(this::dispatch, "pushover-open-client-handler-" + deviceId);
+        this.dispatcher.setDaemon(true);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Connects to the push server and starts handling messages.
+     *
+     * @return this receiver
+     */
+    public synchronized OpenClientReceiver start() {
+        if (!connector.isAlive() && !closed) {
+            dispatcher.start();
+            connector.start();
+        }
+        return this;
+    }
+
+    /**
+     * Disconnects. Queued messages that were not handled yet are dropped.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        connector.interrupt();
+        dispatcher.interrupt();
+        try {
+            connector.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void connect() {
+        long backoff = initialBackoffMillis;
+        while (!closed) {
+            WebSocket webSocket = null;
+            char reason = DISCONNECTED;
+            try {
+                lastFrameNanos = System.nanoTime();
+                webSocket = webSocketClient.newWebSocketBuilder()
+                        .connectTimeout(Duration.ofSeconds(10))
+                        .buildAsync(pushUrl, new Listener())
+                        .get(20, TimeUnit.SECONDS);
+                webSocket.sendText("login:" + deviceId + ":" + secret + "\n", true).get(10, TimeUnit.SECONDS);
+                connects.increment();
+                connected = true;
+                sync();
+                backoff = initialBackoffMillis;
+                reason = awaitSignals(webSocket);
+            } catch (InterruptedException e) {
+                abort(webSocket);
+                break;
+            } catch (Exception e) {
+                failedSyncs.increment();  //connect, login or download failed, back off
+            }
+            connected = false;
+            if (reason == DISCONNECTED) {
+                try {
+                    reason = awaitStop(webSocket, ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1));
+                } catch (InterruptedException e) {
+                    abort(webSocket);
+                    break;
+                }
+                backoff = Math.min(maxBackoffMillis, backoff * 2);
+            }
+            abort(webSocket);
+            if (reason == SESSION_ERROR || reason == OTHER_SESSION) {
+                stopReason = reason == SESSION_ERROR
+                        ? "session error, log in again and pass the new secret"
+                        : "device was logged in from another session";
+                closed = true;
+                dispatcher.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Waits before reconnecting. A failed connection may still tell why the session ended.
+     *
+     * @return the stop frame sent on the connection meanwhile, or {@link #DISCONNECTED}
+     */
+    private char awaitStop(WebSocket webSocket, long millis) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        for (long left = millis; left > 0; left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) {
+            final Signal signal = signals.poll(left, TimeUnit.MILLISECONDS);
+            if (signal != null && signal.source == webSocket
+                    && (signal.frame == SESSION_ERROR || signal.frame == OTHER_SESSION)) {
+                return signal.frame;
+            }
+        }
+        return DISCONNECTED;
+    }
+
+    private static void abort(WebSocket webSocket) {
+        if (webSocket != null) {
+            webSocket.abort();
+        }
+    }
+
+    /**
+     * Handles the frames of the connection until it needs to be replaced.
+     *
+     * @return the frame that ended the connection
+     */
+    private char awaitSignals(WebSocket webSocket) throws InterruptedException, PushoverException {
+        while (!closed) {
+            final Signal signal = signals.poll(keepAliveTimeoutNanos, TimeUnit.NANOSECONDS);
+            if (signal == null) {
+                if (System.nanoTime() - lastFrameNanos > keepAliveTimeoutNanos) {
+                    return DISCONNECTED;  //silently dropped connection
+                }
+                continue;
+            }
+            if (signal.source != webSocket) {
+                continue;  //left over from an earlier connection
+            }
+            if (signal.frame == NEW_MESSAGE) {
+                sync();
+            } else {
+                return signal.frame;
+            }
+        }
+        return DISCONNECTED;
+    }
+
+    /**
+     * Downloads the waiting messages, queues the new ones and deletes them on the server.
+     */
+    private void sync() throws InterruptedException, PushoverException {
+        final List<InboundMessage> messages = client.downloadMessages(secret, deviceId);
+        long highest = highestDeleted;
+        for (InboundMessage message : messages) {
+            //the delete of an earlier download may have failed
+            if (message.getId() > highestQueued) {
+                queue.put(message);
+                highestQueued = message.getId();
+                received.increment();
+            }
+            highest = Math.max(highest, message.getId());
+        }
+        if (highest > highestDeleted) {
+            final Response response = client.deleteMessages(secret, deviceId, highest);
+            if (response != null && response.getStatus() == 1) {
+                highestDeleted = highest;
+            }
+        }
+    }
+
+    private void dispatch() {
+        while (!closed) {
+            final InboundMessage message;
+            try {
+                message = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                handler.accept(message);
+            } catch (RuntimeException e) {
+                failedHandlers.increment();
+            }
+        }
+    }
+
+    /**
+     * @return true while the websocket is open and logged in
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return why the push server ended the session for good, null while running or after {@link #close()}
+     */
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * @return number of successful connects, including reconnects
+     */
+    public long getConnectCount() {
+        return connects.sum();
+    }
+
+    /**
+     * @return number of messages queued for the handler
+     */
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    /**
+     * @return number of connects and downloads that failed and were retried after a backoff
+     */
+    public long getFailedSyncCount() {
+        return failedSyncs.sum();
+    }
+
+    /**
+     * @return number of messages whose handler threw
+     */
+    public long getFailedHandlerCount() {
+        return failedHandlers.sum();
+    }
+
+    private record Signal(WebSocket source, char frame) {
+    }
+
+    private final class Listener implements WebSocket.Listener {
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            lastFrameNanos = System.nanoTime();
+            for (int i = 0; i < data.length(); i++) {
+                final char frame = data.charAt(i);
+                if (frame != KEEP_ALIVE) {
+                    signals.add(new Signal(webSocket, frame));
+                }
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            signals.add(new Signal(webSocket, DISCONNECTED));
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            signals.add(new Signal(webSocket, DISCONNECTED));
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private OpenClient client = new OpenClient();
+        private String secret;
+        private String deviceId;
+        private String pushUrl = DEFAULT_PUSH_URL;
+        private Consumer<InboundMessage> handler;
+        private int queueCapacity = 1000;
+        private Duration initialBackoff = Duration.ofSeconds(1);
+        private Duration maxBackoff = Duration.ofMinutes(5);
+        private Duration keepAliveTimeout = Duration.ofSeconds(90);
+
+        private Builder() {
+        }
+
+        public OpenClientReceiver build() {
+            return new OpenClientReceiver(this);
+        }
+
+        /**
+         * @param client (optional) - the client used to download and delete messages
+         * @return the current Builder instance
+         */
+        public Builder setClient(OpenClient client) {
+            this.client = Objects.requireNonNull(client);
+            return this;
+        }
+
+        /**
+         * @param secret (required) - the secret of the {@link OpenClientLogin}
+         * @return the current Builder instance
+         */
+        public Builder setSecret(String secret) {
+            this.secret = secret;
+            return this;
+        }
+
+        /**
+         * @param deviceId (required) - the id returned by {@link OpenClient#registerDevice(String, String)}
+         * @return the current Builder instance
+         */
+        public Builder setDeviceId(String deviceId) {
+            this.deviceId = deviceId;
+            return this;
+        }
+
+        /**
+         * @param pushUrl (optional) - websocket URL of the push server, e.g. of a simulator
+         * @return the current Builder instance
+         */
+        public Builder setPushUrl(String pushUrl) {
+            this.pushUrl = Objects.requireNonNull(pushUrl);
+            return this;
+        }
+
+        /**
+         * @param handler (required) - called with every new message on the receiver's handler thread, in id order
+         * @return the current Builder instance
+         */
+        public Builder setHandler(Consumer<InboundMessage> handler) {
+            this.handler = handler;
+            return this;
+        }
+
+        /**
+         * @param queueCapacity (optional) - messages downloaded ahead of the handler, defaults to 1000
+         * @return the current Builder instance
+         */
+        public Builder setQueueCapacity(int queueCapacity) {
+            if (queueCapacity < 1) {
+                throw new IllegalArgumentException("queue capacity must be positive");
+            }
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param initial (optional) - first wait before reconnecting, defaults to 1 second
+         * @param max (optional) - longest wait, defaults to 5 minutes
+         * @return the current Builder instance
+         */
+        public Builder setReconnectBackoff(Duration initial, Duration max) {
+            if (initial.toMillis() < 1 || max.compareTo(initial) < 0) {
+                throw new IllegalArgumentException("backoff must be positive and max at least initial");
+            }
+            this.initialBackoff = initial;
+            this.maxBackoff = max;
+            return this;
+        }
+
+        /**
+         * @param keepAliveTimeout (optional) - reconnect when the server sent nothing for this long,
+         *                         defaults to 90 seconds; the server sends keep-alives more often
+         * @return the current Builder instance
+         */
+        public Builder setKeepAliveTimeout(Duration keepAliveTimeout) {
+            this.keepAliveTimeout = Objects.requireNonNull(keepAliveTimeout);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package net.pushover.client;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Sends messages in parallel while keeping them in FIFO order per recipient
+ * (user key plus device).
+ * <p>
+ * Every recipient with pending messages gets a lane: a queue that is drained
+ * by at most one task of the shared executor at a time. Lanes do not own a
+ * thread and are removed as soon as they run empty, so memory only grows with
+ * the number of recipients that currently have messages in flight.
+ * <p>
+ * {@link #close()} shuts down the threads the dispatcher created itself; an
+ * executor passed in stays with its owner.
+ */
+public class OrderedDispatcher implements AutoCloseable {
+
+    private static final int MAX_BATCH = 16;  //messages sent before a lane yields its thread
+
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    private final PushoverClient client;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final ConcurrentHashMap<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * Sends to at most 4 recipients in parallel, on daemon threads owned by the dispatcher.
+     *
+     * @param client the client used to send the messages
+     */
+    public OrderedDispatcher(PushoverClient client) {
+        this(client, Executors.newFixedThreadPool(DEFAULT_PARALLELISM, DaemonThreads.factory("pushover-ordered-send")), true);
+    }
+
+    /**
+     * @param client the client used to send the messages
+     * @param executor runs the lanes, its size bounds the cross-recipient parallelism
+     */
+    public OrderedDispatcher(PushoverClient client, Executor executor) {
+        this(client, executor, false);
+    }
+
+    private OrderedDispatcher(PushoverClient client, Executor executor, boolean owned) {
+        this.client = Objects.requireNonNull(client);
+        this.executor = Objects.requireNonNull(executor);
+        this.ownedExecutor = owned ? (ExecutorService) executor : null;
+    }
+
+    /**
+     * Queues a message behind all earlier messages for the same recipient.
+     *
+     * @param msg the message to send
+     * @return completes with the {@link Status} of the send, or exceptionally with a {@link PushoverException},
+     * also when the executor refuses to run the lane
+     */
+    public CompletableFuture<Status> dispatch(PushoverMessage msg) {
+        final Task task = new Task(msg, new CompletableFuture<>());
+        final String key = keyOf(msg);
+        final boolean[] start = new boolean[1];
+        lanes.compute(key, (k, lane) -> {
+            if (lane == null) {
+                lane = new Lane();
+            }
+            lane.tasks.add(task);
+            if (!lane.running) {
+                lane.running = true;
+                start[0] = true;
+            }
+            return lane;
+        });
+        if (start[0]) {
+            submit(key);
+        }
+        return task.result;
+    }
+
+    /**
+     * @return number of recipients that currently have queued or running messages
+     */
+    public int getActiveRecipients() {
+        return lanes.size();
+    }
+
+    /**
+     * Stops accepting messages. Lanes already handed to the executor send their current batch,
+     * everything else fails with a {@link PushoverException}. Does nothing to an executor passed in.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private void drain(String key) {
+        Task task = next(key);
+        int sent = 0;
+        while (task != null) {
+            send(task);
+            if (++sent == MAX_BATCH) {
+                //give other recipients a chance on bounded executors, the lane stays marked running
+                submit(key);
+                return;
+            }
+            task = next(key);
+        }
+    }
+
+    private void submit(String key) {
+        try {
+            executor.execute(() -> drain(key));
+        } catch (RejectedExecutionException e) {
+            //e.g. the executor was shut down: nothing would ever clear the running mark
+            fail(key, e);
+        }
+    }
+
+    /**
+     * Removes the lane and fails everything still queued in it, so that later messages for the
+     * recipient start a new lane instead of waiting behind one that never runs.
+     */
+    private void fail(String key, RejectedExecutionException cause) {
+        final ArrayDeque<Task> orphaned = new ArrayDeque<>();
+        lanes.computeIfPresent(key, (k, lane) -> {
+            orphaned.addAll(lane.tasks);
+            return null;
+        });
+        for (Task task : orphaned) {
+            task.result.completeExceptionally(new PushoverException("executor rejected the send", cause));
+        }
+    }
+
+    /**
+     * Takes the next task of the lane, removing the lane once it is empty. All lane state is
+     * only touched inside compute, which serializes it with {@link #dispatch(PushoverMessage)}.
+     */
+    private Task next(String key) {
+        final Task[] next = new Task[1];
+        lanes.computeIfPresent(key, (k, lane) -> {
+            next[0] = lane.tasks.poll();
+            return next[0] == null ? null : lane;
+        });
+        return next[0];
+    }
+
+    private void send(Task task) {
+        try {
+            task.result.complete(client.pushMessage(task.msg));
+        } catch (Exception e) {
+            task.result.completeExceptionally(e);
+        }
+    }
+
+    private static String keyOf(PushoverMessage msg) {
+        return msg.getDevice() == null ? String.valueOf(msg.getUserId()) : msg.getUserId() + '\u0000' + msg.getDevice();
+    }
+
+    private record Task(PushoverMessage msg, CompletableFuture<Status> result) {
+    }
+
+    private static final class Lane {
+        private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+        private boolean running;
+    }
+}
@@ -0,0 +1,158 @@
+package net.pushover.client;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.List;
+
+/**
+ * Outcome of a message send that does not throw. Failures carry the HTTP
+ * status, the API errors, the request id and the quota headers, and are
+ * created without capturing a stack trace.
+ * <p>
+ * An HTTP status of 0 means the message never left the client, e.g. it was
+ * rejected by the {@link MessageValidator} or the concurrency limiter. -1
+ * means the status is unknown.
+ */
+public sealed interface PushResult permits PushResult.Success, PushResult.Rejected, PushResult.Throttled, PushResult.TransportFailure {
+
+    int httpStatus();
+
+    /**
+     * @return the request id assigned by the API, null if there was no parsable answer
+     */
+    String requestId();
+
+    /**
+     * @return the errors reported by the API or the local validation, empty on success
+     */
+    List<String> errors();
+
+    Quota quota();
+
+    default boolean isSuccess() {
+        return this instanceof Success;
+    }
+
+    /**
+     * The API accepted the message.
+     */
+    record Success(Response response, int httpStatus, Quota quota) implements PushResult {
+
+        @Override
+        public String requestId() {
+            return response.getRequest();
+        }
+
+        @Override
+        public List<String> errors() {
+            return List.of();
+        }
+    }
+
+    /**
+     * The API, or the local validation when {@link #httpStatus()} is 0, rejected the message.
+     * Sending it again will not help.
+     */
+    record Rejected(Response response, int httpStatus, Quota quota) implements PushResult {
+
+        @Override
+        public String requestId() {
+            return response.getRequest();
+        }
+
+        @Override
+        public List<String> errors() {
+            return response.getErrors();
+        }
+    }
+
+    /**
+     * The API answered 429, or the client turned the message away before sending, see
+     * {@link #reason()}. The response is null when throttled by the concurrency limiter.
+     */
+    record Throttled(Response response, int httpStatus, Quota quota, Reason reason) implements PushResult {
+
+        /**
+         * Why the message was throttled. Everything but {@link #API} has an HTTP status of 0.
+         */
+        public enum Reason {
+            /** the API answered 429 */
+            API,
+            /** the client's {@link AdaptiveConcurrencyLimiter} refused a request slot, worth trying again */
+            CONCURRENCY_LIMIT,
+            /** the message's deadline had passed before sending, sending it again will not help */
+            DEADLINE_EXPIRED,
+            /** the client's {@link QuotaStore} has no quota left until the API resets it */
+            QUOTA_EXHAUSTED
+        }
+
+        /**
+         * @return true if the message was dropped because its deadline had passed, sending it again will not help
+         */
+        public boolean isDeadlineExpired() {
+            return reason == Reason.DEADLINE_EXPIRED;
+        }
+
+        @Override
+        public String requestId() {
+            return response == null ? null : response.getRequest();
+        }
+
+        @Override
+        public List<String> errors() {
+            return response == null ? List.of("concurrency limit reached") : response.getErrors();
+        }
+    }
+
+    /**
+     * No usable answer: network failure, server error (5xx) or an unparsable body.
+     *
+     * @param cause the original failure, null for a plain server error
+     */
+    record TransportFailure(Exception cause, int httpStatus) implements PushResult {
+
+        @Override
+        public String requestId() {
+            return null;
+        }
+
+        @Override
+        public List<String> errors() {
+            return List.of(describe());
+        }
+
+        @Override
+        public Quota quota() {
+            return Quota.UNKNOWN;
+        }
+
+        /**
+         * @return true if the request certainly did not reach the API: the connection could not be
+         * opened or no pooled connection was leased in time. Only then is sending again safe, after a
+         * server error or a read timeout the message may have been delivered already.
+         */
+        public boolean isNotSent() {
+            return cause instanceof ConnectException || cause instanceof UnknownHostException
+                    || cause instanceof NoRouteToHostException || cause instanceof ConnectTimeoutException
+                    || cause instanceof ConnectionPoolTimeoutException;
+        }
+
+        String describe() {
+            if (cause != null) {
+                return String.valueOf(cause.getMessage());
+            }
+            return "server error, HTTP status " + httpStatus;
+        }
+
+        PushoverException toException() {
+            if (cause instanceof PushoverException pushoverException) {
+                return pushoverException;
+            }
+            return new PushoverException(describe(), cause);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package net.pushover.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one routed call of {@link PushoverRestClient}, from the first
+ * request until the answer of the last endpoint tried, so slow notifications can be matched
+ * with GC pauses and thread stalls of the same recording. The fields are only filled when
+ * the event is going to be committed.
+ */
+@Name("net.pushover.ApiCall")
+@Label("Pushover API Call")
+@Category("Pushover")
+@StackTrace(false)
+final class PushoverApiCallEvent extends jdk.jfr.Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Endpoint")
+    @Description("URL of the last request without the query string")
+    String endpoint;
+
+    @Label("Message Priority")
+    @Description("Priority of the message, null for calls other than messages.json")
+    String priority;
+
+    @Label("Payload")
+    @DataAmount
+    long payloadBytes;
+
+    @Label("Attachment")
+    @DataAmount
+    long attachmentBytes;
+
+    @Label("Pool Wait")
+    @Description("Time spent waiting for a request slot of the concurrency limiter")
+    @Timespan
+    long poolWait;
+
+    @Label("HTTP Status")
+    @Description("-1 if no answer was received")
+    int httpStatus;
+
+    @Label("API Status")
+    @Description("status field of the answer, -1 if it had none")
+    int apiStatus;
+
+    @Label("Request Id")
+    String requestId;
+
+    @Label("Retries")
+    @Description("Requests sent to other endpoints after the first one")
+    int retries;
+
+    @Label("Quota Remaining")
+    @Description("X-Limit-App-Remaining, -1 if not sent")
+    int quotaRemaining;
+}
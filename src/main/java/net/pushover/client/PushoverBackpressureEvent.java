@@ -0,0 +1,44 @@
+package net.pushover.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a message or request that was refused before it was sent:
+ * its deadline had expired, the shared quota was exhausted or the concurrency limiter
+ * rejected it. The duration is the time waited for the decision.
+ */
+@Name("net.pushover.Backpressure")
+@Label("Pushover Backpressure")
+@Category("Pushover")
+@StackTrace(false)
+final class PushoverBackpressureEvent extends jdk.jfr.Event {
+
+    static final String DEADLINE_EXPIRED = "deadline expired";
+    static final String QUOTA_EXHAUSTED = "quota exhausted";
+    static final String CONCURRENCY_LIMIT = "concurrency limit";
+
+    @Label("Decision")
+    String decision;
+
+    @Label("Limit")
+    @Description("Concurrency limit at the time of the decision, -1 if not applicable")
+    int limit;
+
+    @Label("In Flight")
+    @Description("Requests in flight at the time of the decision, -1 if not applicable")
+    int inFlight;
+
+    static void refused(String decision) {
+        final PushoverBackpressureEvent event = new PushoverBackpressureEvent();
+        if (event.shouldCommit()) {
+            event.decision = decision;
+            event.limit = -1;
+            event.inFlight = -1;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package net.pushover.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a lookup in one of the client side caches.
+ */
+@Name("net.pushover.CacheLookup")
+@Label("Pushover Cache Lookup")
+@Category("Pushover")
+@StackTrace(false)
+final class PushoverCacheEvent extends jdk.jfr.Event {
+
+    static final String SOUNDS = "sounds";
+    static final String VALIDATION = "validation";
+
+    @Label("Cache")
+    String cache;
+
+    @Label("Hit")
+    boolean hit;
+
+    static void lookup(String cache, boolean hit) {
+        final PushoverCacheEvent event = new PushoverCacheEvent();
+        if (event.shouldCommit()) {
+            event.cache = cache;
+            event.hit = hit;
+            event.commit();
+        }
+    }
+}
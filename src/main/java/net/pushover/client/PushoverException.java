@@ -10,4 +10,15 @@ public class PushoverException extends Exception {
     public PushoverException(String message, Throwable cause) {
         super(message, cause);
     }
+
+    /**
+     * For failures that are expected on hot paths and where a stack trace would only cost time.
+     * 
+     * @param message the detail message
+     * @param cause the cause, may be null
+     * @param writableStackTrace whether the stack trace should be filled in
+     */
+    protected PushoverException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, true, writableStackTrace);
+    }
 }
@@ -0,0 +1,217 @@
+package net.pushover.client;
+
+/**
+ * Immutable update of the glance data of a user's devices: the small widgets, watch
+ * complications and lock screen displays of the Pushover apps. Only the fields that
+ * are set are changed on the devices, the others keep their previous value.
+ * <p>
+ * Created with the {@link Builder}, sent with {@link PushoverRestClient#pushGlance(PushoverGlance)}
+ * or coalesced with a {@link GlanceUpdater}.
+ */
+public class PushoverGlance {
+
+    static final int MAX_TEXT_LENGTH = 100;
+
+    private final String apiToken;        //API key for your application
+
+    private final String userId;          //user key identifying the recipient, groups are not supported
+
+    private final String device;          //target a specific users device
+
+    private final String title;           //description of the data being shown, e.g. "Widgets Sold"
+
+    private final String text;            //main line of data
+
+    private final String subtext;         //second line of data
+
+    private final Integer count;          //shown as a number on smaller screens
+
+    private final Integer percent;        //0 to 100, shown as a progress bar or circle
+
+    private PushoverGlance(Builder builder) {
+        this.apiToken = builder.apiToken;
+        this.userId = builder.userId;
+        this.device = builder.device;
+        this.title = builder.title;
+        this.text = builder.text;
+        this.subtext = builder.subtext;
+        this.count = builder.count;
+        this.percent = builder.percent;
+    }
+
+    public static Builder builderWithApiToken(String token) {
+        return new Builder().setApiToken(token);
+    }
+
+    public String getApiToken() {
+        return apiToken;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getDevice() {
+        return device;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getSubtext() {
+        return subtext;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public Integer getPercent() {
+        return percent;
+    }
+
+    /**
+     * Combines this update with a later one to the same user and device: fields set on the
+     * later update win, the others are kept from this one.
+     *
+     * @param later the more recent update
+     * @return an update with the same effect as sending both in order
+     */
+    public PushoverGlance mergeWith(PushoverGlance later) {
+        return toBuilder()
+                .setApiToken(later.apiToken)
+                .setTitle(later.title != null ? later.title : title)
+                .setText(later.text != null ? later.text : text)
+                .setSubtext(later.subtext != null ? later.subtext : subtext)
+                .setCount(later.count != null ? later.count : count)
+                .setPercent(later.percent != null ? later.percent : percent)
+                .build();
+    }
+
+    /**
+     * @return a new Builder pre-filled with all fields of this update
+     */
+    public Builder toBuilder() {
+        return builderWithApiToken(apiToken)
+                .setUserId(userId)
+                .setDevice(device)
+                .setTitle(title)
+                .setText(text)
+                .setSubtext(subtext)
+                .setCount(count)
+                .setPercent(percent);
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private String apiToken;
+        private String userId;
+        private String device;
+        private String title;
+        private String text;
+        private String subtext;
+        private Integer count;
+        private Integer percent;
+
+        public Builder() {
+        }
+
+        /**
+         * @return a new immutable update
+         * @throws IllegalArgumentException if a text is longer than 100 characters or the percent is out of range
+         */
+        public PushoverGlance build() {
+            checkLength("title", title);
+            checkLength("text", text);
+            checkLength("subtext", subtext);
+            if (percent != null && (percent < 0 || percent > 100)) {
+                throw new IllegalArgumentException("percent must be between 0 and 100");
+            }
+            return new PushoverGlance(this);
+        }
+
+        private static void checkLength(String field, String value) {
+            if (value != null && value.length() > MAX_TEXT_LENGTH) {
+                throw new IllegalArgumentException(field + " must not be longer than " + MAX_TEXT_LENGTH + " characters");
+            }
+        }
+
+        /**
+         * @param apiToken (required) - your application's API token
+         * @return the current Builder instance
+         */
+        public Builder setApiToken(String apiToken) {
+            this.apiToken = apiToken;
+            return this;
+        }
+
+        /**
+         * @param userId (required) - the user key of your user, glances cannot be sent to groups
+         * @return the current Builder instance
+         */
+        public Builder setUserId(String userId) {
+            this.userId = userId;
+            return this;
+        }
+
+        /**
+         * @param device (optional) - update only this device of the user
+         * @return the current Builder instance
+         */
+        public Builder setDevice(String device) {
+            this.device = device;
+            return this;
+        }
+
+        /**
+         * @param title (optional) - a description of the data being shown, up to 100 characters
+         * @return the current Builder instance
+         */
+        public Builder setTitle(String title) {
+            this.title = title;
+            return this;
+        }
+
+        /**
+         * @param text (optional) - the main line of data, up to 100 characters
+         * @return the current Builder instance
+         */
+        public Builder setText(String text) {
+            this.text = text;
+            return this;
+        }
+
+        /**
+         * @param subtext (optional) - a second line of data, up to 100 characters
+         * @return the current Builder instance
+         */
+        public Builder setSubtext(String subtext) {
+            this.subtext = subtext;
+            return this;
+        }
+
+        /**
+         * @param count (optional) - a number, shown on the smallest screens
+         * @return the current Builder instance
+         */
+        public Builder setCount(Integer count) {
+            this.count = count;
+            return this;
+        }
+
+        /**
+         * @param percent (optional) - 0 to 100, shown as a progress bar or circle
+         * @return the current Builder instance
+         */
+        public Builder setPercent(Integer percent) {
+            this.percent = percent;
+            return this;
+        }
+    }
+}
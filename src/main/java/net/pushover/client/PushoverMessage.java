@@ -1,8 +1,11 @@
 package net.pushover.client;
 
 import java.io.File;
+import java.time.Instant;
 
 /**
+ * Immutable message, created with the {@link Builder}. Instances can be shared
+ * between threads and cached.
  * 
  * @author <a href="mailto:sean.scanlon@gmail.com">Sean Scanlon</a>
  * 
@@ -10,40 +13,65 @@ import java.io.File;
  */
 public class PushoverMessage {
 
-    private String apiToken;        //API key for your application
+    private final String apiToken;        //API key for your application
  
-    private String userId;          //user's/group key identifying the recipient(s)
+    private final String userId;          //user's/group key identifying the recipient(s)
 
-    private String message;         //Body of the message to send to the recipients
+    private final String message;         //Body of the message to send to the recipients
 
-    private String device;          //target a specific users device 
+    private final String device;          //target a specific users device 
 
-    private String title;           //Display title (similar to email subject)
+    private final String title;           //Display title (similar to email subject)
 
-    private String url;             //supplemental url to be appended to the message
+    private final String url;             //supplemental url to be appended to the message
 
-    private String titleForURL;     //name for the URL rather than display the http(s) link
+    private final String titleForURL;     //name for the URL rather than display the http(s) link
 
-    private MessagePriority priority = MessagePriority.NORMAL;    //priority of the message range from -2 to 2, see MessagePriority class
+    private final MessagePriority priority;    //priority of the message range from -2 to 2, see MessagePriority class
 
-    private Long timestamp;         //unix timestamp that will set a time in the message
+    private final Long timestamp;         //unix timestamp that will set a time in the message
     
-    private String sound;           //sound to play on the user's device. Overrides their default sound. List of sounds can be requested via api
+    private final String sound;           //sound to play on the user's device. Overrides their default sound. List of sounds can be requested via api
 
-    private int retry;              //required for emergency (2) priority messages only, specifies how frequently to retry the message.  No less than 30 seconds
+    private final int retry;              //required for emergency (2) priority messages only, specifies how frequently to retry the message.  No less than 30 seconds
     
-    private int expire;             //how long until the pushover system stops trying to send to the user(s). System uses smaller of specified or 86440 seconds (24 hours) 
+    private final int expire;             //how long until the pushover system stops trying to send to the user(s). System uses smaller of specified or 86440 seconds (24 hours) 
     
-    private String emergencyCallbackUrl; //a publicly accessible webpage on your server to handle the acknowledgements of the emergency priority message.
+    private final String emergencyCallbackUrl; //a publicly accessible webpage on your server to handle the acknowledgements of the emergency priority message.
 
-    private File image; // As of version 3.0 of our iOS, Android, and Desktop apps, Pushover messages can include an image.
+    private final File image; // As of version 3.0 of our iOS, Android, and Desktop apps, Pushover messages can include an image.
 
-    private boolean html = false; // As of version 2.3 of our device clients, messages can be formatted with HTML tags
+    private final boolean html; // As of version 2.3 of our device clients, messages can be formatted with HTML tags
 
-    private boolean monospace = false; // As of version 3.4, messages can be formatted with a monospace font.
+    private final boolean monospace; // As of version 3.4, messages can be formatted with a monospace font.
 
-    private PushoverMessage() {
+    private final int ttl;                //seconds until the message is deleted from the devices, 0 to keep it
+
+    private final Instant deadline;       //not sent to the API: the client drops the message instead of sending it later
+
+    private final MessageTemplate template; //set when the message was created from a template with pre-encoded parts
+
+    private PushoverMessage(Builder builder) {
         // use the builder
+        this.apiToken = builder.apiToken;
+        this.userId = builder.userId;
+        this.message = builder.message;
+        this.device = builder.device;
+        this.title = builder.title;
+        this.url = builder.url;
+        this.titleForURL = builder.titleForURL;
+        this.priority = builder.priority;
+        this.timestamp = builder.timestamp;
+        this.sound = builder.sound;
+        this.retry = builder.retry;
+        this.expire = builder.expire;
+        this.emergencyCallbackUrl = builder.emergencyCallbackUrl;
+        this.image = builder.image;
+        this.html = builder.html;
+        this.monospace = builder.monospace;
+        this.ttl = builder.ttl;
+        this.deadline = builder.deadline;
+        this.template = builder.template;
     }
 
     @SuppressWarnings("WeakerAccess")
@@ -51,18 +79,70 @@ public class PushoverMessage {
         return new Builder().setApiToken(token);
     }
 
+    /**
+     * @return a new Builder pre-filled with all fields of this message, e.g. to send the same
+     * message to another recipient
+     */
+    public Builder toBuilder() {
+        return builderWithApiToken(apiToken)
+                .setUserId(userId)
+                .setMessage(message)
+                .setDevice(device)
+                .setTitle(title)
+                .setUrl(url)
+                .setTitleForURL(titleForURL)
+                .setPriority(priority)
+                .setTimestamp(timestamp)
+                .setSound(sound)
+                .setRetry(retry)
+                .setExpire(expire)
+                .setCallbackUrl(emergencyCallbackUrl)
+                .setImage(image)
+                .setHTML(html)
+                .setMonospace(monospace)
+                .setTtl(ttl)
+                .setDeadline(deadline);
+    }
+
     @SuppressWarnings("WeakerAccess")
     public static class Builder {
 
-        private final PushoverMessage msg;
+        private String apiToken;
+        private String userId;
+        private String message;
+        private String device;
+        private String title;
+        private String url;
+        private String titleForURL;
+        private MessagePriority priority = MessagePriority.NORMAL;
+        private Long timestamp;
+        private String sound;
+        private int retry;
+        private int expire;
+        private String emergencyCallbackUrl;
+        private File image;
+        private boolean html = false;
+        private boolean monospace = false;
+        private int ttl;
+        private Instant deadline;
+        private MessageTemplate template;
 
         public Builder() {
-            msg = new PushoverMessage();
         }
 
+        /**
+         * The message is not validated here; a client with a {@link MessageValidator} checks it
+         * against the API limits before posting it.
+         *
+         * @return a new immutable message; the builder can be reused without affecting it
+         */
         public PushoverMessage build() {
-            // TODO: validate message!
-            return msg;
+            return new PushoverMessage(this);
+        }
+
+        Builder setTemplate(MessageTemplate template) {
+            this.template = template;
+            return this;
         }
 
         /**
@@ -70,7 +150,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setApiToken(String apiToken) {
-            msg.apiToken = apiToken;
+            this.apiToken = apiToken;
             return this;
         }
 
@@ -80,7 +160,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setUserId(String userId) {
-            msg.userId = userId;
+            this.userId = userId;
             return this;
         }
 
@@ -89,7 +169,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setMessage(String message) {
-            msg.message = message;
+            this.message = message;
             return this;
         }
 
@@ -99,7 +179,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setDevice(String device) {
-            msg.device = device;
+            this.device = device;
             return this;
         }
 
@@ -108,7 +188,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setTitle(String title) {
-            msg.title = title;
+            this.title = title;
             return this;
         }
 
@@ -117,7 +197,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setUrl(String url) {
-            msg.url = url;
+            this.url = url;
             return this;
         }
 
@@ -126,7 +206,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setTitleForURL(String titleForURL) {
-            msg.titleForURL = titleForURL;
+            this.titleForURL = titleForURL;
             return this;
         }
 
@@ -136,7 +216,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setPriority(MessagePriority priority) {
-            msg.priority = priority;
+            this.priority = priority;
             return this;
         }
 
@@ -146,7 +226,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setTimestamp(Long timestamp) {
-            msg.timestamp = timestamp;
+            this.timestamp = timestamp;
             return this;
         }
 
@@ -156,7 +236,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setSound(String sound) {
-            msg.sound = sound;
+            this.sound = sound;
             return this;
         }
         
@@ -166,7 +246,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setRetry(int seconds) {
-            msg.retry = seconds;
+            this.retry = seconds;
             return this;
         }
         
@@ -176,7 +256,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setExpire(int seconds) {
-            msg.expire = seconds;
+            this.expire = seconds;
             return this;
         }
         
@@ -186,7 +266,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setCallbackUrl(String url) {
-            msg.emergencyCallbackUrl = url;
+            this.emergencyCallbackUrl = url;
             return this;
         }
 
@@ -196,7 +276,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setImage(File image) {
-            msg.image = image;
+            this.image = image;
             return this;
         }
 
@@ -206,7 +286,7 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setHTML(boolean isHTML) {
-            msg.html = isHTML;
+            this.html = isHTML;
             return this;
         }
 
@@ -216,7 +296,28 @@ public class PushoverMessage {
          * @return the current Builder instance
          */
         public Builder setMonospace(boolean isMonospace) {
-            msg.monospace = isMonospace;
+            this.monospace = isMonospace;
+            return this;
+        }
+
+        /**
+         * @param seconds (optional) - time to live: the message is deleted from the devices after this many
+         *                seconds, 0 keeps it. Ignored by the API for emergency messages
+         * @return the current Builder instance
+         */
+        public Builder setTtl(int seconds) {
+            this.ttl = seconds;
+            return this;
+        }
+
+        /**
+         * @param deadline (optional) - latest instant to send the message at. Later, e.g. after a backlog
+         *                 built up, the client drops the message without sending it and aborts the request
+         *                 if it is still in flight at the deadline
+         * @return the current Builder instance
+         */
+        public Builder setDeadline(Instant deadline) {
+            this.deadline = deadline;
             return this;
         }
         
@@ -283,4 +384,14 @@ public class PushoverMessage {
     public boolean getHTML() {return html;}
 
     public boolean getMonospace() {return monospace;}
+
+    public int getTtl() {
+        return ttl;
+    }
+
+    public Instant getDeadline() {
+        return deadline;
+    }
+
+    MessageTemplate getTemplate() {return template;}
 }
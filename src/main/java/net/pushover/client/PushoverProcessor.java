@@ -0,0 +1,348 @@
+package net.pushover.client;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the messages of a {@link Flow.Publisher} and publishes one {@link PushResult} per message.
+ * <p>
+ * Demand is driven by capacity: the processor never has more messages requested, in flight or
+ * waiting for emission than the maximum in flight, which defaults to the connection pool size of
+ * the client ({@code http.maxConnections}, 5). With a {@link AdaptiveConcurrencyLimiter} the
+ * current limit caps demand as well, so a throttled API slows down the upstream publisher instead
+ * of filling a queue. A slow subscriber of the results does the same.
+ * <p>
+ * Results are published in completion order, or in message order if {@link Builder#setOrdered(boolean)}
+ * is set. A send that completes exceptionally, e.g. because it was cancelled, is published as a
+ * {@link PushResult.TransportFailure}. Cancelling the subscription of the results, or {@link #cancel()}, cancels the upstream
+ * subscription and aborts the HTTP requests still in flight. One subscriber of the results is
+ * supported; without a subscriber the processor is a plain sink and the results are dropped.
+ * <p>
+ * The messages are sent on the processor's own {@link DaemonThreads}, one per message in flight,
+ * never on the thread of the upstream publisher or on the client's executor. A slow subscriber
+ * therefore only holds up these threads, which then stop requesting more messages. The threads
+ * end when they were idle for a minute, so an abandoned processor does not keep them.
+ */
+public class PushoverProcessor implements Flow.Processor<PushoverMessage, PushResult> {
+
+    private final PushoverRestClient client;
+    private final int maxInFlight;
+    private final boolean ordered;
+    private final SubmissionPublisher<PushResult> publisher;
+    private final ThreadPoolExecutor sender;
+    private final Map<Long, CompletableFuture<PushResult>> inFlight = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+    //guarded by lock
+    private Flow.Subscription upstream;
+    private int requested;  //requested from upstream, not yet received
+    private int pending;    //received, result not yet published
+    private long nextSequence;
+    private long nextToEmit;
+    private final Map<Long, PushResult> completed = new HashMap<>();
+    private final ArrayDeque<PushResult> ready = new ArrayDeque<>();
+    private boolean emitting;
+    private boolean subscribed;
+    private boolean upstreamDone;
+    private Throwable upstreamError;
+    private boolean closed;
+
+    private PushoverProcessor(Builder builder) {
+        this.client = Objects.requireNonNull(builder.client, "client is required");
+        this.maxInFlight = builder.maxInFlight;
+        this.ordered = builder.ordered;
+        this.publisher = new SubmissionPublisher<>(builder.executor, builder.bufferSize);
+        //capacity never exceeds maxInFlight, so sends never wait in the queue for long
+        this.sender = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                DaemonThreads.factory("pushover-processor"));
+        this.sender.allowCoreThreadTimeOut(true);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super PushResult> subscriber) {
+        synchronized (lock) {
+            if (subscribed) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(new IllegalStateException("only one subscriber is supported"));
+                return;
+            }
+            subscribed = true;
+        }
+        publisher.subscribe(new Flow.Subscriber<PushResult>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                        subscription.request(n);
+                    }
+
+                    @Override
+                    public void cancel() {
+                        subscription.cancel();
+                        PushoverProcessor.this.cancel();
+                    }
+                });
+            }
+
+            @Override
+            public void onNext(PushResult item) {
+                subscriber.onNext(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                subscriber.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                subscriber.onComplete();
+            }
+        });
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (lock) {
+            if (upstream != null || closed) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+        }
+        requestMore();
+    }
+
+    @Override
+    public void onNext(PushoverMessage msg) {
+        final long sequence;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            requested = Math.max(0, requested - 1);
+            pending++;
+            sequence = nextSequence++;
+        }
+        final CompletableFuture<PushResult> result = client.sendAsync(msg, sender);
+        inFlight.put(sequence, result);
+        //async: a send that completed already would otherwise publish on the upstream's thread
+        result.whenCompleteAsync((pushResult, e) -> {
+            inFlight.remove(sequence);
+            //a failed or cancelled send still gets its result, otherwise pending never drops and the results never complete
+            completed(sequence, e == null ? pushResult : new PushResult.TransportFailure(
+                    e instanceof Exception exception ? exception : new PushoverException(String.valueOf(e), e), -1));
+        }, sender);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        synchronized (lock) {
+            upstreamDone = true;
+            upstreamError = throwable;
+        }
+        closeIfDone();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (lock) {
+            upstreamDone = true;
+        }
+        closeIfDone();
+    }
+
+    /**
+     * Cancels the upstream subscription, aborts all requests in flight and completes the results.
+     */
+    public void cancel() {
+        final Flow.Subscription subscription;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscription = upstream;
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        inFlight.values().forEach(result -> result.cancel(true));
+        publisher.close();
+    }
+
+    /**
+     * @return number of messages sent or being sent whose result has not been published yet
+     */
+    public int getPending() {
+        synchronized (lock) {
+            return pending;
+        }
+    }
+
+    private void completed(long sequence, PushResult result) {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            if (ordered) {
+                completed.put(sequence, result);
+                for (PushResult next = completed.remove(nextToEmit); next != null; next = completed.remove(nextToEmit)) {
+                    ready.add(next);
+                    nextToEmit++;
+                }
+            } else {
+                ready.add(result);
+            }
+            if (emitting) {
+                return;
+            }
+            emitting = true;
+        }
+        //a single thread publishes at a time so that the order of ready is kept
+        while (true) {
+            final PushResult next;
+            synchronized (lock) {
+                next = ready.poll();
+                if (next == null || closed) {
+                    emitting = false;
+                    break;
+                }
+            }
+            publisher.submit(next);  //blocks a sender thread while the subscriber's buffer is full
+            synchronized (lock) {
+                pending--;
+            }
+            requestMore();
+        }
+        closeIfDone();
+    }
+
+    private void requestMore() {
+        final Flow.Subscription subscription;
+        final int more;
+        synchronized (lock) {
+            if (upstream == null || upstreamDone || closed) {
+                return;
+            }
+            more = capacity() - requested - pending;
+            if (more <= 0) {
+                return;
+            }
+            requested += more;
+            subscription = upstream;
+        }
+        subscription.request(more);
+    }
+
+    private int capacity() {
+        final AdaptiveConcurrencyLimiter limiter = client.getConcurrencyLimiter();
+        return limiter == null ? maxInFlight : Math.max(1, Math.min(maxInFlight, limiter.getLimit()));
+    }
+
+    private void closeIfDone() {
+        final Throwable error;
+        synchronized (lock) {
+            if (closed || !upstreamDone || pending > 0) {
+                return;
+            }
+            closed = true;
+            error = upstreamError;
+        }
+        if (error == null) {
+            publisher.close();
+        } else {
+            publisher.closeExceptionally(error);
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private PushoverRestClient client;
+        private int maxInFlight = Integer.getInteger("http.maxConnections", 5);
+        private boolean ordered;
+        private Executor executor = ForkJoinPool.commonPool();
+        private int bufferSize = Flow.defaultBufferSize();
+
+        private Builder() {
+        }
+
+        public PushoverProcessor build() {
+            return new PushoverProcessor(this);
+        }
+
+        /**
+         * @param client the client used to send the messages
+         * @return the current Builder instance
+         */
+        public Builder setClient(PushoverRestClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * @param maxInFlight (optional) - messages requested but not yet published, defaults to the
+         *                    connection pool size. Larger values make calls wait for a pooled connection
+         * @return the current Builder instance
+         */
+        public Builder setMaxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("maxInFlight must be positive");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * @param ordered (optional) - publish results in message order instead of completion order
+         * @return the current Builder instance
+         */
+        public Builder setOrdered(boolean ordered) {
+            this.ordered = ordered;
+            return this;
+        }
+
+        /**
+         * @param executor (optional) - delivers the results to the subscriber, defaults to the common pool
+         * @return the current Builder instance
+         */
+        public Builder setExecutor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * @param bufferSize (optional) - results buffered for the subscriber, defaults to {@link Flow#defaultBufferSize()}
+         * @return the current Builder instance
+         */
+        public Builder setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package net.pushover.client;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.ReflectionAccessFilter;
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -16,9 +22,24 @@ import java.util.Set;
  */
 public class PushoverResponseFactory {
 
-    private static final Gson GSON = new Gson();
+    /**
+     * Parses with the {@link ResponseAdapters} only. Reflective binding is blocked, so a type
+     * without an adapter fails right away instead of breaking later in a native image.
+     */
+    private static final Gson GSON = new GsonBuilder()
+            .addReflectionAccessFilter(rawClass -> ReflectionAccessFilter.FilterResult.BLOCK_ALL)
+            .registerTypeAdapter(Status.class, ResponseAdapters.STATUS)
+            .registerTypeAdapter(Response.class, ResponseAdapters.RESPONSE)
+            .registerTypeAdapter(Receipt.class, ResponseAdapters.RECEIPT)
+            .registerTypeAdapter(InboundMessage.class, ResponseAdapters.INBOUND_MESSAGE)
+            .registerTypeAdapter(SoundResponse.class, ResponseAdapters.SOUND_RESPONSE)
+            .registerTypeAdapter(GroupResponse.class, ResponseAdapters.GROUP_RESPONSE)
+            .registerTypeAdapter(OpenClientResponse.class, ResponseAdapters.OPEN_CLIENT_RESPONSE)
+            .create();
 
     public static final String REQUEST_REMAINING_HEADER = "X-Limit-App-Remaining";
+    public static final String REQUEST_LIMIT_HEADER = "X-Limit-App-Limit";
+    public static final String REQUEST_RESET_HEADER = "X-Limit-App-Reset";
 
     /**
      * Parses the returned HttpResponse into a simplified Status 
@@ -85,6 +106,74 @@ public class PushoverResponseFactory {
         return toReturn;
     }
         
+    /**
+     * Classifies the returned HttpResponse of the message API without throwing.
+     * 
+     * @param response HttpResponse returned from the HttpPost to the message API
+     * @return {@link PushResult} Success, Rejected, Throttled (429) or TransportFailure (5xx, unreadable body)
+     */
+    public static PushResult createPushResult(HttpResponse response) {
+
+        final int httpStatus = response == null || response.getStatusLine() == null
+                ? -1 : response.getStatusLine().getStatusCode();
+
+        if (httpStatus >= 500) {
+            if (response.getEntity() != null) {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+            return new PushResult.TransportFailure(null, httpStatus);
+        }
+
+        final Response parsed;
+        try {
+            parsed = createResponse(response);
+        } catch (IOException e) {
+            return new PushResult.TransportFailure(e, httpStatus);
+        }
+        if (parsed == null) {
+            return new PushResult.TransportFailure(new IOException("empty response!"), httpStatus);
+        }
+
+        final Quota quota = createQuota(response);
+        if (httpStatus == 429) {
+            return new PushResult.Throttled(parsed, httpStatus, quota, PushResult.Throttled.Reason.API);
+        }
+        return parsed.getStatus() == 1
+                ? new PushResult.Success(parsed, httpStatus, quota)
+                : new PushResult.Rejected(parsed, httpStatus, quota);
+    }
+
+    /**
+     * Reads the application quota headers.
+     * 
+     * @param response HttpResponse returned from the API
+     * @return the {@link Quota}, with unknown values for missing or malformed headers
+     */
+    public static Quota createQuota(HttpResponse response) {
+        if (response == null) {
+            return Quota.UNKNOWN;
+        }
+        final long remaining = headerValue(response, REQUEST_REMAINING_HEADER, Integer.MIN_VALUE);
+        if (remaining == Integer.MIN_VALUE) {
+            return Quota.UNKNOWN;
+        }
+        return new Quota((int) headerValue(response, REQUEST_LIMIT_HEADER, Integer.MIN_VALUE),
+                (int) remaining,
+                headerValue(response, REQUEST_RESET_HEADER, 0L));
+    }
+
+    private static long headerValue(HttpResponse response, String name, long fallback) {
+        final Header header = response.getFirstHeader(name);
+        if (header == null) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(header.getValue().trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
     /**
      * Parses the returned HttpResponse from a Receipt request into a receipt object
      * 
@@ -141,9 +230,154 @@ public class PushoverResponseFactory {
         return sounds;
     }
 
+    /**
+     * Parses the returned HttpResponse from a group creation request into the new group key
+     * 
+     * @param response HttpResponse returned from the HttpPost to the groups API
+     * @return the key of the created delivery group
+     * @throws IOException on null response, parse failures and rejected requests
+     */
+    static String createGroupKey(HttpResponse response) throws IOException {
+        final GroupResponse r = parseGroup(response, "group not created");
+        if (r.group == null) {
+            throw new IOException("group not created: no key returned");
+        }
+        return r.group;
+    }
+
+    /**
+     * Parses the returned HttpResponse from a group list request
+     *
+     * @param response HttpResponse returned from the HttpGet to the groups API
+     * @return the keys of the application's delivery groups by name, the first group of a name wins
+     * @throws IOException on null response, parse failures and rejected requests
+     */
+    static Map<String, String> createGroupList(HttpResponse response) throws IOException {
+        final GroupResponse r = parseGroup(response, "groups not listed");
+        return r.groups == null ? Map.of() : r.groups;
+    }
+
+    /**
+     * Parses the returned HttpResponse from a group info request
+     *
+     * @param response HttpResponse returned from the HttpGet to the groups API
+     * @return the user keys of the group's members
+     * @throws IOException on null response, parse failures and rejected requests
+     */
+    static Set<String> createGroupMembers(HttpResponse response) throws IOException {
+        final GroupResponse r = parseGroup(response, "group not found");
+        return r.users == null ? Set.of() : new LinkedHashSet<>(r.users);
+    }
+
+    private static GroupResponse parseGroup(HttpResponse response, String failure) throws IOException {
+        if (response == null || response.getEntity() == null) {
+            throw new IOException("unreadable response!");
+        }
+
+        final String body = EntityUtils.toString(response.getEntity());
+
+        final GroupResponse r;
+        try {
+            r = GSON.fromJson(body, GroupResponse.class);
+        } catch (JsonSyntaxException e) {
+            throw new IOException(e.getCause());
+        }
+
+        if (r == null || r.status != 1) {
+            throw new IOException(failure + ": " + (r == null ? body : r.errors));
+        }
+        return r;
+    }
+
+    /**
+     * Parses the returned HttpResponse from an Open Client login into the session
+     *
+     * @param response HttpResponse returned from the HttpPost to the login API
+     * @return the {@link OpenClientLogin} with the user key and secret
+     * @throws IOException on null response, parse failures and rejected requests
+     */
+    static OpenClientLogin createLogin(HttpResponse response) throws IOException {
+        final OpenClientResponse r = parseOpenClient(response, "login failed");
+        if (r.id == null || r.secret == null) {
+            throw new IOException("login failed: no secret returned");
+        }
+        return new OpenClientLogin(r.id, r.secret);
+    }
+
+    /**
+     * Parses the returned HttpResponse from an Open Client device registration into the device id
+     *
+     * @param response HttpResponse returned from the HttpPost to the devices API
+     * @return the id of the registered device
+     * @throws IOException on null response, parse failures and rejected requests
+     */
+    static String createDeviceId(HttpResponse response) throws IOException {
+        final OpenClientResponse r = parseOpenClient(response, "device not registered");
+        if (r.id == null) {
+            throw new IOException("device not registered: no id returned");
+        }
+        return r.id;
+    }
+
+    /**
+     * Parses the returned HttpResponse from an Open Client message download
+     *
+     * @param response HttpResponse returned from the HttpGet to the messages API
+     * @return the messages waiting for the device, in ascending id order
+     * @throws IOException on null response, parse failures and rejected requests
+     */
+    static List<InboundMessage> createInboundMessages(HttpResponse response) throws IOException {
+        final OpenClientResponse r = parseOpenClient(response, "messages not downloaded");
+        if (r.messages == null) {
+            return List.of();
+        }
+        final List<InboundMessage> messages = new ArrayList<>(r.messages);
+        messages.sort(Comparator.comparingLong(InboundMessage::getId));
+        return messages;
+    }
+
+    private static OpenClientResponse parseOpenClient(HttpResponse response, String failure) throws IOException {
+        if (response == null || response.getEntity() == null) {
+            throw new IOException("unreadable response!");
+        }
+
+        final String body = EntityUtils.toString(response.getEntity());
+
+        final OpenClientResponse r;
+        try {
+            r = GSON.fromJson(body, OpenClientResponse.class);
+        } catch (JsonSyntaxException e) {
+            throw new IOException(e.getCause());
+        }
+
+        if (r == null || r.status != 1) {
+            throw new IOException(failure + ": " + (r == null ? body : r.errors));
+        }
+        return r;
+    }
+
     // {"sounds":{"id":"name",...},"status":1}
-    private static class SoundResponse {
+    static class SoundResponse {
         @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
         Map<String, String> sounds;
     }
+
+    // {"status":1,"group":"g123..."}, {"status":1,"groups":[{"group":"g123...","name":"..."}]}
+    // or {"status":1,"name":"...","users":[{"user":"u123...","device":null,...}]}
+    static class GroupResponse {
+        int status;
+        String group;
+        Map<String, String> groups;  //key by name
+        List<String> users;
+        List<String> errors;
+    }
+
+    // {"status":1,"id":"uQiRzpo4DXghDmr9QzzfQu27cmVRsG","secret":"..."} or {"status":1,"messages":[...]}
+    static class OpenClientResponse {
+        int status;
+        String id;
+        String secret;
+        List<InboundMessage> messages;
+        List<String> errors;
+    }
 }
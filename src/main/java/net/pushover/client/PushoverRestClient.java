@@ -1,5 +1,11 @@
 package net.pushover.client;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.HttpClient;
@@ -7,21 +13,57 @@ import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Implementation of {@link PushoverClient}
@@ -32,17 +74,76 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class PushoverRestClient implements PushoverClient {
 
-    public static final String PUSH_MESSAGE_URL = "https://api.pushover.net/1/messages.json";
-    public static final String SOUND_LIST_URL = "https://api.pushover.net/1/sounds.json";
-    public static final String VALIDATE_USER_GROUP_URL = "https://api.pushover.net/1/users/validate.json";
-    public static final String RECEIPT_CHECK_URL_FRAGMENT = "https://api.pushover.net/1/receipts/"; //needs receipt and then action attached to the end.
+    public static final String DEFAULT_API_BASE_URL = "https://api.pushover.net/1/";
+    public static final String PUSH_MESSAGE_URL = DEFAULT_API_BASE_URL + "messages.json";
+    public static final String SOUND_LIST_URL = DEFAULT_API_BASE_URL + "sounds.json";
+    public static final String VALIDATE_USER_GROUP_URL = DEFAULT_API_BASE_URL + "users/validate.json";
+    public static final String GROUPS_URL_FRAGMENT = DEFAULT_API_BASE_URL + "groups"; //needs ".json" or the group key and action attached to the end.
+    public static final String RECEIPT_CHECK_URL_FRAGMENT = DEFAULT_API_BASE_URL + "receipts/"; //needs receipt and then action attached to the end.
+    public static final String GLANCES_URL = DEFAULT_API_BASE_URL + "glances.json";
     
-    private static final HttpUriRequest SOUND_LIST_REQUEST = new HttpGet(SOUND_LIST_URL);
     private static final ContentType TEXT_PLAIN_UTF8 = ContentType.create("text/plain", StandardCharsets.UTF_8);
 
     private HttpClient httpClient = HttpClients.custom().useSystemProperties().build();
 
-    private static final AtomicReference<Set<PushOverSound>> SOUND_CACHE = new AtomicReference<>();
+    private EndpointSelector endpoints = EndpointSelector.of(DEFAULT_API_BASE_URL);
+
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    private HedgingPolicy hedgingPolicy;
+
+    private ValidationCache validationCache;
+
+    private MessageValidator messageValidator;
+
+    private int bulkParallelism = 8;
+
+    private int groupThreshold = 3;
+
+    private volatile DeliveryGroups deliveryGroups;  //created on first use, it needs the finished client
+
+    private static final int MAX_RECIPIENT_SETS = 10_000;
+
+    //least recently used recipient sets are forgotten first, recurring ones keep their count
+    private final Map<String, Integer> recipientSetCounts = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                    return size() > MAX_RECIPIENT_SETS;
+                }
+            });
+
+    private ExecutorService executorService = defaultExecutor();
+
+    private final LongAdder shed = new LongAdder();
+
+    private final LongAdder deadlineAborts = new LongAdder();
+
+    static final String DEADLINE_EXPIRED = "deadline expired before sending";
+
+    static final String QUOTA_EXHAUSTED = "application quota is exhausted";
+
+    private QuotaLeases quotaLeases;
+
+    private static final ScheduledThreadPoolExecutor DEADLINE_TIMER = new ScheduledThreadPoolExecutor(1,
+            DaemonThreads.factory("pushover-deadlines"));
+
+    static {
+        DEADLINE_TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * {@link DaemonThreads}, at most as many as the default client has connections per route.
+     * When all threads are busy the submitting thread runs the task itself, so nested submissions
+     * (a hedge inside a bulk validation) cannot starve each other.
+     */
+    private static ExecutorService defaultExecutor() {
+        final int threads = Integer.getInteger("http.maxConnections", 5);
+        return new ThreadPoolExecutor(0, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                DaemonThreads.factory("pushover-client"), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static final Map<String, Set<PushOverSound>> SOUND_CACHE = new ConcurrentHashMap<>();  //keyed by first API base URL
 
     /**
      * Takes a PushoverMessage and requests to the push message API. Upon response 
@@ -55,12 +156,10 @@ public class PushoverRestClient implements PushoverClient {
     @Override
     public Status pushMessage(PushoverMessage msg) throws PushoverException {
 
-        try {
-            HttpResponse response = postToMessageApi(msg);
-            return PushoverResponseFactory.createStatus(response);
-        } catch (Exception e) {
-            throw new PushoverException(e.getMessage(), e.getCause());
-        }
+        final Response response = pushMessageResponse(msg);
+        final Status status = new Status(response.getStatus());
+        status.setRequestId(response.getRequest());
+        return status;
     }
 
     /**
@@ -72,12 +171,146 @@ public class PushoverRestClient implements PushoverClient {
      * @throws PushoverException based on the results of the APIs
      */
     public Response pushMessageResponse(PushoverMessage msg) throws PushoverException {
+
+        return switch (send(msg)) {
+            case PushResult.Success success -> success.response();
+            case PushResult.Rejected rejected when rejected.httpStatus() == 0 ->
+                    throw new PushoverValidationException(rejected.errors());
+            case PushResult.Rejected rejected -> rejected.response();
+            case PushResult.Throttled throttled -> switch (throttled.reason()) {
+                case API -> throttled.response();
+                case CONCURRENCY_LIMIT -> throw new ConcurrencyLimitException(String.join(", ", throttled.errors()));
+                case DEADLINE_EXPIRED -> throw new DeadlineExpiredException(DEADLINE_EXPIRED);
+                case QUOTA_EXHAUSTED -> throw new QuotaExhaustedException(QUOTA_EXHAUSTED);
+            };
+            case PushResult.TransportFailure failure -> throw failure.toException();
+        };
+    }
+
+    /**
+     * Takes a PushoverMessage and requests to the push message API without throwing.
+     * Meant for hot paths: failures come back as values that carry the HTTP status,
+     * the API errors, the request id and the quota, and no stack trace is captured
+     * for them.
+     * 
+     * @param msg A builder constructed {@link PushoverMessage}. Must have at least API token, receiver, and message
+     * @return {@link PushResult} Success, Rejected, Throttled or TransportFailure
+     */
+    public PushResult send(PushoverMessage msg) {
+        return send(msg, new Attempt());
+    }
+
+    /**
+     * Asynchronous variant of {@link #send(PushoverMessage)}, executed on the client's executor.
+     * With the default executor the calling thread sends itself while all of its threads are busy.
+     * Cancelling the returned future aborts the HTTP request if it is still in flight.
+     * 
+     * @param msg A builder constructed {@link PushoverMessage}. Must have at least API token, receiver, and message
+     * @return completes with the {@link PushResult}, never exceptionally unless cancelled
+     */
+    public CompletableFuture<PushResult> sendAsync(PushoverMessage msg) {
+        return sendAsync(msg, executorService);
+    }
+
+    /**
+     * {@link #sendAsync(PushoverMessage)} on an executor of the caller's, e.g. the
+     * {@link PushoverProcessor}'s, which must not send on its upstream's thread.
+     */
+    CompletableFuture<PushResult> sendAsync(PushoverMessage msg, Executor executor) {
+        final Attempt attempt = new Attempt();
+        final CompletableFuture<PushResult> result = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                final boolean cancelled = super.cancel(mayInterruptIfRunning);
+                attempt.abort();  //after the cancel, so that the failing send cannot complete the future first
+                return cancelled;
+            }
+        };
         try {
-            HttpResponse response = postToMessageApi(msg);
-            return PushoverResponseFactory.createResponse(response);
+            executor.execute(() -> {
+                if (!result.isDone()) {
+                    try {
+                        result.complete(send(msg, attempt));
+                    } catch (RuntimeException e) {
+                        //e.g. a failing QuotaStore, the future must still complete
+                        result.complete(new PushResult.TransportFailure(e, -1));
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.complete(new PushResult.TransportFailure(e, -1));
+        }
+        return result;
+    }
+
+    private PushResult send(PushoverMessage msg, Attempt attempt) {
+
+        final Instant deadline = msg.getDeadline();
+        final long remainingMillis = deadline == null ? Long.MAX_VALUE : Duration.between(Instant.now(), deadline).toMillis();
+        if (remainingMillis <= 0) {
+            shed.increment();
+            PushoverBackpressureEvent.refused(PushoverBackpressureEvent.DEADLINE_EXPIRED);
+            return new PushResult.Throttled(new Response(0, null, List.of(DEADLINE_EXPIRED)), 0, Quota.UNKNOWN,
+                    PushResult.Throttled.Reason.DEADLINE_EXPIRED);
+        }
+
+        final PushoverMessage prepared;
+        final MessageValidator validator = messageValidator;
+        if (validator != null) {
+            prepared = validator.prepare(msg);
+            final List<String> errors = validator.validate(prepared);
+            if (!errors.isEmpty()) {
+                return new PushResult.Rejected(new Response(0, null, errors), 0, Quota.UNKNOWN);
+            }
+        } else {
+            prepared = msg;
+        }
+
+        final QuotaLeases leases = quotaLeases;
+        if (leases != null && !leases.tryAcquire(prepared.getApiToken())) {
+            PushoverBackpressureEvent.refused(PushoverBackpressureEvent.QUOTA_EXHAUSTED);
+            return new PushResult.Throttled(new Response(0, null, List.of(QUOTA_EXHAUSTED)), 0, Quota.UNKNOWN,
+                    PushResult.Throttled.Reason.QUOTA_EXHAUSTED);
+        }
+        final PushResult result = post(prepared, attempt, deadline, remainingMillis);
+        if (leases != null) {
+            if (!result.isSuccess()) {
+                leases.refund(prepared.getApiToken());
+            }
+            leases.observe(prepared.getApiToken(), result.quota());
+        }
+        return result;
+    }
+
+    private PushResult post(PushoverMessage prepared, Attempt attempt, Instant deadline, long remainingMillis) {
+        final HttpResponse response;
+        final AtomicBoolean deadlineExceeded = new AtomicBoolean();
+        final ScheduledFuture<?> deadlineTimer = deadline == null ? null : DEADLINE_TIMER.schedule(() -> {
+            deadlineExceeded.set(true);
+            attempt.abort();
+        }, remainingMillis, TimeUnit.MILLISECONDS);
+        attempt.message = prepared;
+        try {
+            response = route(null, baseUrl -> createMessagePost(prepared, baseUrl), false, attempt);
+        } catch (ConcurrencyLimitException e) {
+            return new PushResult.Throttled(null, 0, Quota.UNKNOWN, PushResult.Throttled.Reason.CONCURRENCY_LIMIT);
         } catch (Exception e) {
-            throw new PushoverException(e.getMessage(), e.getCause());
+            if (deadlineExceeded.get()) {
+                deadlineAborts.increment();
+                return new PushResult.TransportFailure(new PushoverException("deadline exceeded while sending", e), -1);
+            }
+            return new PushResult.TransportFailure(e, -1);
+        } finally {
+            if (deadlineTimer != null) {
+                deadlineTimer.cancel(false);
+            }
         }
+        final PushResult result = PushoverResponseFactory.createPushResult(response);
+        //only emergency messages get a receipt, all others answer with the empty default
+        if (result instanceof PushResult.Success success && hasText(success.response().getReceipt())) {
+            endpoints.bindReceipt(success.response().getReceipt(), attempt.endpoint);
+        }
+        return result;
     }
     
     /**
@@ -90,23 +323,94 @@ public class PushoverRestClient implements PushoverClient {
      */
     public Response requestVerification(PushoverMessage msg) throws PushoverException {
 
-        final HttpPost post = new HttpPost(VALIDATE_USER_GROUP_URL);
+        final ValidationCache cache = validationCache;
+        if (cache != null) {
+            final Response cached = cache.get(msg.getApiToken(), msg.getUserId(), msg.getDevice());
+            PushoverCacheEvent.lookup(PushoverCacheEvent.VALIDATION, cached != null);
+            if (cached != null) {
+                return cached;
+            }
+        }
 
-        final MultipartEntityBuilder entityBuilder = MultipartEntityBuilder.create();
+        final Verification verification;
+        try {
+            verification = executeIdempotent(null, baseUrl -> {
+                final HttpPost post = new HttpPost(baseUrl + "users/validate.json");
 
-        entityBuilder.addTextBody("token", msg.getApiToken(), TEXT_PLAIN_UTF8);
-        entityBuilder.addTextBody("user", msg.getUserId(), TEXT_PLAIN_UTF8);
-        
-        addPairIfNotNull(entityBuilder, "device", msg.getDevice());
-        
-        post.setEntity(entityBuilder.build());
+                final MultipartEntityBuilder entityBuilder = MultipartEntityBuilder.create();
 
-        try {
-            HttpResponse response = httpClient.execute(post);
-            return PushoverResponseFactory.createResponse(response);
+                entityBuilder.addTextBody("token", msg.getApiToken(), TEXT_PLAIN_UTF8);
+                entityBuilder.addTextBody("user", msg.getUserId(), TEXT_PLAIN_UTF8);
+
+                addPairIfNotNull(entityBuilder, "device", msg.getDevice());
+
+                post.setEntity(entityBuilder.build());
+                return post;
+            }, response -> new Verification(statusCodeOf(response), PushoverResponseFactory.createResponse(response)));
         } catch (Exception e) {
-            throw new PushoverException(e.getMessage(), e.getCause());
+            throw wrap(e);
         }
+        if (cache != null) {
+            cache.put(msg.getApiToken(), msg.getUserId(), msg.getDevice(), verification.httpStatus(), verification.response());
+        }
+        return verification.response();
+    }
+
+    /**
+     * Validates many user/group keys at once. Duplicate keys are validated once, cached
+     * results are served from the {@link ValidationCache} when one is configured and the
+     * remaining keys are validated in parallel, bounded by the bulk parallelism and by the
+     * concurrency limiter if present.
+     * 
+     * @param apiToken API key for the application
+     * @param userKeys the user/group keys to validate
+     * @return the {@link Response} for every distinct key, in the order of first appearance
+     * @throws PushoverException if any of the validations could not be completed
+     */
+    public Map<String, Response> validateUsers(String apiToken, Collection<String> userKeys) throws PushoverException {
+
+        final Map<String, Response> results = new LinkedHashMap<>();
+        final Map<String, Future<Response>> pending = new LinkedHashMap<>();
+        final Semaphore permits = new Semaphore(bulkParallelism);
+
+        for (String userKey : new LinkedHashSet<>(userKeys)) {
+            final Response cached = validationCache == null ? null : validationCache.get(apiToken, userKey, null);
+            results.put(userKey, cached);
+            if (cached != null) {
+                //misses are reported by requestVerification
+                PushoverCacheEvent.lookup(PushoverCacheEvent.VALIDATION, true);
+            } else {
+                final PushoverMessage msg = PushoverMessage.builderWithApiToken(apiToken)
+                        .setUserId(userKey)
+                        .build();
+                pending.put(userKey, executorService.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return requestVerification(msg);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+
+        PushoverException failure = null;
+        for (Map.Entry<String, Future<Response>> entry : pending.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = wrap(unwrap(e));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PushoverException("interrupted while validating users", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
     }
     
     /**
@@ -121,13 +425,12 @@ public class PushoverRestClient implements PushoverClient {
      */
     public Receipt requestEmergencyReceipt(String apiToken, String receipt) throws PushoverException{
           
-          final HttpGet get = new HttpGet(RECEIPT_CHECK_URL_FRAGMENT + receipt +".json?token="+apiToken);
-          
           try {
-            HttpResponse response = httpClient.execute(get);
-            return PushoverResponseFactory.createReceipt(response);
+            return executeIdempotent(endpoints.forReceipt(receipt),
+                    baseUrl -> new HttpGet(baseUrl + "receipts/" + receipt +".json?token="+apiToken),
+                    PushoverResponseFactory::createReceipt);
         } catch (Exception e) {
-            throw new PushoverException(e.getMessage(), e.getCause());
+            throw wrap(e);
         }                 
     }
     
@@ -143,23 +446,284 @@ public class PushoverRestClient implements PushoverClient {
      * @throws PushoverException based on the results of the APIs
      */
     public Response cancelEmergencyMessage(String apiToken, String receipt) throws PushoverException {
-         final HttpPost post = new HttpPost(RECEIPT_CHECK_URL_FRAGMENT + receipt +"/cancel.json");
-
         final List<NameValuePair> nameValuePairs = new ArrayList<>();
 
         nameValuePairs.add(new BasicNameValuePair("token", apiToken));
-        
-        post.setEntity(new UrlEncodedFormEntity(nameValuePairs, Charset.defaultCharset()));
 
         try {
-            HttpResponse response = httpClient.execute(post);
+            HttpResponse response = route(endpoints.forReceipt(receipt), baseUrl -> {
+                final HttpPost post = new HttpPost(baseUrl + "receipts/" + receipt +"/cancel.json");
+                post.setEntity(new UrlEncodedFormEntity(nameValuePairs, Charset.defaultCharset()));
+                return post;
+            }, true, new Attempt());
             return PushoverResponseFactory.createResponse(response);
         } catch (Exception e) {
-            throw new PushoverException(e.getMessage(), e.getCause());
+            throw wrap(e);
         }
     }
     
-    private HttpResponse postToMessageApi(PushoverMessage msg) throws PushoverException {
+    /**
+     * Updates the glance data of a user's devices. Unlike messages, glance updates set a state
+     * and are retried on another endpoint like the read-only calls. Use a {@link GlanceUpdater}
+     * for values that change faster than they should be sent.
+     *
+     * @param glance the fields to change
+     * @return {@link Response} with the status and any errors of the update
+     * @throws PushoverException if the API could not be reached or answered unreadably
+     */
+    public Response pushGlance(PushoverGlance glance) throws PushoverException {
+        final List<NameValuePair> nameValuePairs = new ArrayList<>();
+        nameValuePairs.add(new BasicNameValuePair("token", glance.getApiToken()));
+        nameValuePairs.add(new BasicNameValuePair("user", glance.getUserId()));
+        addPairIfNotNull(nameValuePairs, "device", glance.getDevice());
+        addPairIfNotNull(nameValuePairs, "title", glance.getTitle());
+        addPairIfNotNull(nameValuePairs, "text", glance.getText());
+        addPairIfNotNull(nameValuePairs, "subtext", glance.getSubtext());
+        addPairIfNotNull(nameValuePairs, "count", glance.getCount());
+        addPairIfNotNull(nameValuePairs, "percent", glance.getPercent());
+        try {
+            return PushoverResponseFactory.createResponse(route(null, baseUrl -> {
+                final HttpPost post = new HttpPost(baseUrl + "glances.json");
+                post.setEntity(new UrlEncodedFormEntity(nameValuePairs, StandardCharsets.UTF_8));
+                return post;
+            }, true, new Attempt()));
+        } catch (Exception e) {
+            throw wrap(e);
+        }
+    }
+
+    /**
+     * Sends the same message to many users. Recipient sets that were already seen
+     * {@link #setGroupThreshold(int) several times} are sent with a single request to a
+     * delivery group that is created and kept in sync automatically, other sets are sent
+     * to every user individually and in parallel. Such groups stay on the account, empty
+     * them with {@link DeliveryGroups#cleanup(String)}.
+     * 
+     * @param template the message to send, its user id and device are ignored
+     * @param userKeys the user keys to notify
+     * @return one {@link RecipientResult} per distinct user key
+     */
+    public List<RecipientResult> pushToRecipients(PushoverMessage template, Collection<String> userKeys) {
+        final Set<String> recipients = new LinkedHashSet<>(userKeys);
+        if (recipients.size() > 1) {
+            final String audience = recurringAudience(recipients);
+            if (audience != null) {
+                return pushToRecipients(template, audience, recipients);
+            }
+        }
+        return pushIndividually(template, recipients);
+    }
+
+    /**
+     * Sends the same message to a stable, named set of users through one delivery group.
+     * The group is created on first use and later changes of the set are applied as
+     * incremental add/remove calls. If the group cannot be maintained the users are sent
+     * to individually.
+     * 
+     * @param template the message to send, its user id and device are ignored
+     * @param audience stable name of the recipient set, also used as group name
+     * @param userKeys the user keys to notify
+     * @return one {@link RecipientResult} per distinct user key
+     */
+    public List<RecipientResult> pushToRecipients(PushoverMessage template, String audience, Collection<String> userKeys) {
+        final Set<String> recipients = new LinkedHashSet<>(userKeys);
+        final String groupKey;
+        try {
+            groupKey = getDeliveryGroups().sync(template.getApiToken(), audience, recipients);
+        } catch (PushoverException e) {
+            return pushIndividually(template, recipients);
+        }
+
+        Status status = null;
+        PushoverException error = null;
+        try {
+            status = pushMessage(template.toBuilder().setUserId(groupKey).setDevice(null).build());
+        } catch (PushoverException e) {
+            error = e;
+        }
+        final List<RecipientResult> results = new ArrayList<>(recipients.size());
+        for (String userKey : recipients) {
+            results.add(new RecipientResult(userKey, status, error, groupKey));
+        }
+        return results;
+    }
+
+    /**
+     * Creates a new delivery group.
+     * 
+     * @param apiToken API key for the application
+     * @param name display name of the group
+     * @return the key of the new group, usable as user id of a message
+     * @throws PushoverException based on the results of the APIs
+     */
+    public String createDeliveryGroup(String apiToken, String name) throws PushoverException {
+        final List<NameValuePair> nameValuePairs = new ArrayList<>();
+        nameValuePairs.add(new BasicNameValuePair("token", apiToken));
+        nameValuePairs.add(new BasicNameValuePair("name", name));
+        try {
+            return PushoverResponseFactory.createGroupKey(postForm("groups/create.json", nameValuePairs));
+        } catch (Exception e) {
+            throw wrap(e);
+        }
+    }
+
+    /**
+     * Lists the delivery groups of an application.
+     *
+     * @param apiToken API key for the application
+     * @return the group keys by group name
+     * @throws PushoverException based on the results of the APIs
+     */
+    public Map<String, String> listDeliveryGroups(String apiToken) throws PushoverException {
+        try {
+            return executeIdempotent(null, baseUrl -> new HttpGet(baseUrl + "groups.json?token=" + apiToken),
+                    PushoverResponseFactory::createGroupList);
+        } catch (Exception e) {
+            throw wrap(e);
+        }
+    }
+
+    /**
+     * Looks up the members of a delivery group.
+     *
+     * @param apiToken API key for the application
+     * @param groupKey key of the group
+     * @return the user keys in the group
+     * @throws PushoverException based on the results of the APIs
+     */
+    public Set<String> getDeliveryGroupMembers(String apiToken, String groupKey) throws PushoverException {
+        try {
+            return executeIdempotent(null, baseUrl -> new HttpGet(baseUrl + "groups/" + groupKey + ".json?token=" + apiToken),
+                    PushoverResponseFactory::createGroupMembers);
+        } catch (Exception e) {
+            throw wrap(e);
+        }
+    }
+
+    /**
+     * Adds a user to a delivery group.
+     * 
+     * @param apiToken API key for the application
+     * @param groupKey key of the group
+     * @param userKey the user to add
+     * @return {@link Response} of the groups API
+     * @throws PushoverException based on the results of the APIs
+     */
+    public Response addUserToGroup(String apiToken, String groupKey, String userKey) throws PushoverException {
+        return updateGroup(apiToken, groupKey, userKey, "/add_user.json");
+    }
+
+    /**
+     * Removes a user from a delivery group.
+     * 
+     * @param apiToken API key for the application
+     * @param groupKey key of the group
+     * @param userKey the user to remove
+     * @return {@link Response} of the groups API
+     * @throws PushoverException based on the results of the APIs
+     */
+    public Response removeUserFromGroup(String apiToken, String groupKey, String userKey) throws PushoverException {
+        return updateGroup(apiToken, groupKey, userKey, "/delete_user.json");
+    }
+
+    /**
+     * @return the delivery groups maintained by {@link #pushToRecipients(PushoverMessage, String, Collection)}
+     */
+    public DeliveryGroups getDeliveryGroups() {
+        DeliveryGroups groups = deliveryGroups;
+        if (groups == null) {
+            synchronized (this) {
+                groups = deliveryGroups;
+                if (groups == null) {
+                    groups = new DeliveryGroups(this);
+                    deliveryGroups = groups;
+                }
+            }
+        }
+        return groups;
+    }
+
+    private Response updateGroup(String apiToken, String groupKey, String userKey, String action) throws PushoverException {
+        final List<NameValuePair> nameValuePairs = new ArrayList<>();
+        nameValuePairs.add(new BasicNameValuePair("token", apiToken));
+        nameValuePairs.add(new BasicNameValuePair("user", userKey));
+        try {
+            return PushoverResponseFactory.createResponse(postForm("groups/" + groupKey + action, nameValuePairs));
+        } catch (Exception e) {
+            throw wrap(e);
+        }
+    }
+
+    private HttpResponse postForm(String path, List<NameValuePair> nameValuePairs) throws IOException, PushoverException {
+        return route(null, baseUrl -> {
+            final HttpPost post = new HttpPost(baseUrl + path);
+            post.setEntity(new UrlEncodedFormEntity(nameValuePairs, StandardCharsets.UTF_8));
+            return post;
+        }, false, new Attempt());
+    }
+
+    /**
+     * Counts how often an ad-hoc recipient set was used and names it once it recurred often enough.
+     */
+    private String recurringAudience(Set<String> recipients) {
+        final String audience = DeliveryGroups.AUTOMATIC_PREFIX + fingerprint(new TreeSet<>(recipients));
+        return recipientSetCounts.merge(audience, 1, Integer::sum) >= groupThreshold ? audience : null;
+    }
+
+    private static String fingerprint(Collection<String> sortedKeys) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String key : sortedKeys) {
+                digest.update(key.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<RecipientResult> pushIndividually(PushoverMessage template, Set<String> recipients) {
+        final Semaphore permits = new Semaphore(bulkParallelism);
+        final Map<String, Future<Status>> pending = new LinkedHashMap<>();
+        for (String userKey : recipients) {
+            final PushoverMessage msg = template.toBuilder().setUserId(userKey).build();
+            pending.put(userKey, executorService.submit(() -> {
+                permits.acquire();
+                try {
+                    return pushMessage(msg);
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+        final List<RecipientResult> results = new ArrayList<>(recipients.size());
+        for (Map.Entry<String, Future<Status>> entry : pending.entrySet()) {
+            try {
+                results.add(new RecipientResult(entry.getKey(), entry.getValue().get(), null, null));
+            } catch (ExecutionException e) {
+                final PushoverException error = wrap(unwrap(e));
+                results.add(new RecipientResult(entry.getKey(), null, error, null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(new RecipientResult(entry.getKey(), null, new PushoverException("interrupted", e), null));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Builds the request for the message API. Messages created from a {@link MessageTemplate}
+     * reuse the template's pre-encoded parts.
+     */
+    HttpPost createMessagePost(PushoverMessage msg, String baseUrl) throws PushoverException {
+
+        final HttpPost post = new HttpPost(baseUrl + "messages.json");
+
+        if (msg.getTemplate() != null) {
+            post.setEntity(msg.getTemplate().createEntity(msg));
+            return post;
+        }
 
         final MultipartEntityBuilder entityBuilder = MultipartEntityBuilder.create();
 
@@ -189,18 +753,6 @@ public class PushoverRestClient implements PushoverClient {
               }
         }
 
-        if (msg.getImage() != null) {
-            File image = msg.getImage();
-            try {
-                ContentType ct = Optional.ofNullable(Files.probeContentType(image.toPath()))
-                        .map(ContentType::create)
-                        .orElse(ContentType.APPLICATION_OCTET_STREAM);
-                entityBuilder.addBinaryBody("attachment", image, ct, image.getName());
-            } catch (IOException e) {
-                throw new PushoverException("Cannot probe content type of " + image.getAbsolutePath(), e);
-            }
-        }
-
         if (msg.getHTML()) {
             entityBuilder.addTextBody("html", "1");
         }
@@ -209,17 +761,42 @@ public class PushoverRestClient implements PushoverClient {
             entityBuilder.addTextBody("monospace", "1");
         }
 
-        final HttpPost post = new HttpPost(PUSH_MESSAGE_URL);
-        HttpResponse response;
+        if (msg.getTtl() > 0) {
+            entityBuilder.addTextBody("ttl", String.valueOf(msg.getTtl()));
+        }
 
-        post.setEntity(entityBuilder.build());
+        if (msg.getImage() != null) {
+            post.setEntity(createAttachmentEntity(entityBuilder, msg.getImage()));
+        } else {
+            post.setEntity(entityBuilder.build());
+        }
+        return post;
+    }
 
+    /**
+     * Encodes the (small) text fields once and streams the attachment from disk on every
+     * write, so the heap use of a send does not grow with the size of the image.
+     */
+    private static HttpEntity createAttachmentEntity(MultipartEntityBuilder entityBuilder, File image)
+            throws PushoverException {
+        final String boundary = MultipartFormEntity.newBoundary();
         try {
-            response = httpClient.execute(post);
-        } catch (Exception e) {
-            throw new PushoverException(e.getMessage(), e.getCause());
+            final String ct = Optional.ofNullable(Files.probeContentType(image.toPath()))
+                    .orElse(ContentType.APPLICATION_OCTET_STREAM.getMimeType());
+
+            final ByteArrayOutputStream fields = new ByteArrayOutputStream();
+            entityBuilder.setBoundary(boundary).build().writeTo(fields);
+            final byte[] encoded = fields.toByteArray();
+            //drop the closing boundary, the entity appends its own after the attachment
+            final int closingLength = ("--" + boundary + "--\r\n").length();
+            final byte[] parts = Arrays.copyOf(encoded, encoded.length - closingLength);
+
+            return new MultipartFormEntity(boundary, List.of(parts),
+                    MultipartFormEntity.filePartHeader(boundary, "attachment", image.getName(), ct),
+                    image.toPath());
+        } catch (IOException e) {
+            throw new PushoverException("Cannot read attachment " + image.getAbsolutePath(), e);
         }
-        return response;
     }
     
     /**
@@ -234,18 +811,282 @@ public class PushoverRestClient implements PushoverClient {
     @Override
     public Set<PushOverSound> getSounds() throws PushoverException {
 
-        Set<PushOverSound> cachedSounds = SOUND_CACHE.get();
+        final String cacheKey = endpoints.getEndpoints().get(0).getBaseUrl();
+        Set<PushOverSound> cachedSounds = SOUND_CACHE.get(cacheKey);
+        PushoverCacheEvent.lookup(PushoverCacheEvent.SOUNDS, cachedSounds != null);
         if (cachedSounds == null) {
             try {
-                cachedSounds = PushoverResponseFactory.createSoundSet(httpClient.execute(SOUND_LIST_REQUEST));
+                cachedSounds = executeIdempotent(null, baseUrl -> new HttpGet(baseUrl + "sounds.json"),
+                        PushoverResponseFactory::createSoundSet);
             } catch (Exception e) {
-                throw new PushoverException(e.getMessage(), e.getCause());
+                throw wrap(e);
             }
-            SOUND_CACHE.set(cachedSounds);
+            SOUND_CACHE.put(cacheKey, cachedSounds);
         }
         return cachedSounds;
     }
 
+    /**
+     * Executes a read-only request, firing a hedge copy when a {@link HedgingPolicy} is configured
+     * and the primary request is slower than the policy's delay. The first parsed response wins
+     * and the other request is aborted. Failed attempts move on to the next endpoint.
+     * Must never be used for message posts.
+     */
+    private <T> T executeIdempotent(EndpointSelector.Endpoint pinned, RequestFactory requestFactory,
+                                    ResponseParser<T> parser) throws Exception {
+        final HedgingPolicy policy = hedgingPolicy;
+        if (policy == null) {
+            return parser.parse(route(pinned, requestFactory, true, new Attempt()));
+        }
+        policy.onPrimary();
+
+        final CompletionService<T> completionService = new ExecutorCompletionService<>(executorService);
+        final Attempt primary = new Attempt();
+        final Future<T> primaryFuture = completionService.submit(
+                () -> timedAttempt(policy, pinned, requestFactory, primary, parser));
+
+        Future<T> done = completionService.poll(policy.getHedgeDelayNanos(), TimeUnit.NANOSECONDS);
+        Attempt hedge = null;
+        Future<T> hedgeFuture = null;
+        if (done == null && policy.tryAcquireHedge()) {
+            final Attempt hedgeAttempt = new Attempt();
+            hedge = hedgeAttempt;
+            hedgeFuture = completionService.submit(
+                    () -> timedAttempt(policy, pinned, requestFactory, hedgeAttempt, parser));
+        }
+        if (done == null) {
+            done = completionService.take();
+        }
+
+        try {
+            return done.get();
+        } catch (ExecutionException e) {
+            if (hedgeFuture == null) {
+                throw unwrap(e);
+            }
+            //one attempt failed, the other one may still succeed
+            try {
+                return completionService.take().get();
+            } catch (ExecutionException other) {
+                throw unwrap(other);
+            }
+        } finally {
+            if (hedge != null) {
+                final boolean primaryWon = done == primaryFuture;
+                (primaryWon ? hedge : primary).abort();
+            }
+        }
+    }
+
+    private <T> T timedAttempt(HedgingPolicy policy, EndpointSelector.Endpoint pinned, RequestFactory requestFactory,
+                               Attempt attempt, ResponseParser<T> parser) throws Exception {
+        final long start = System.nanoTime();
+        final T result = parser.parse(route(pinned, requestFactory, true, attempt));
+        policy.recordLatency(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Keeps the original failure as cause instead of dropping it.
+     */
+    private static PushoverException wrap(Exception e) {
+        return e instanceof PushoverException pushoverException ? pushoverException : new PushoverException(e.getMessage(), e);
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        return e.getCause() instanceof Exception cause ? cause : e;
+    }
+
+    /**
+     * Routes a request like {@link #routeToEndpoint} and reports the call as a
+     * {@link PushoverApiCallEvent} when Flight Recorder is recording it.
+     */
+    private HttpResponse route(EndpointSelector.Endpoint pinned, RequestFactory requestFactory, boolean idempotent,
+                               Attempt attempt) throws IOException, PushoverException {
+        final PushoverApiCallEvent event = new PushoverApiCallEvent();
+        event.begin();
+        HttpResponse response = null;
+        try {
+            response = routeToEndpoint(pinned, requestFactory, idempotent, attempt);
+            return response;
+        } finally {
+            if (event.shouldCommit()) {
+                describe(event, attempt, response);
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Fills the event of a finished call. The answer is buffered so that its status and
+     * request id can be read without taking it away from the caller's parser.
+     */
+    private static void describe(PushoverApiCallEvent event, Attempt attempt, HttpResponse response) {
+        final HttpUriRequest request = attempt.current;
+        if (request != null) {
+            final URI uri = request.getURI();
+            event.method = request.getMethod();
+            event.endpoint = uri.getScheme() + "://" + uri.getRawAuthority() + uri.getRawPath();
+            event.payloadBytes = request instanceof HttpEntityEnclosingRequest enclosing && enclosing.getEntity() != null
+                    ? enclosing.getEntity().getContentLength() : 0;
+        }
+        final PushoverMessage msg = attempt.message;
+        if (msg != null) {
+            event.priority = msg.getPriority() != null ? msg.getPriority().name() : null;
+            event.attachmentBytes = msg.getImage() != null ? msg.getImage().length() : 0;
+        }
+        event.poolWait = attempt.poolWaitNanos;
+        event.retries = Math.max(0, attempt.requests - 1);
+        event.httpStatus = statusCodeOf(response);
+        event.apiStatus = -1;
+        event.quotaRemaining = -1;
+        if (response == null) {
+            return;
+        }
+        final Quota quota = PushoverResponseFactory.createQuota(response);
+        if (quota.isKnown()) {
+            event.quotaRemaining = quota.remaining();
+        }
+        final HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            return;
+        }
+        try {
+            final HttpEntity buffered = new BufferedHttpEntity(entity);
+            response.setEntity(buffered);
+            final JsonElement body = JsonParser.parseString(EntityUtils.toString(buffered, StandardCharsets.UTF_8));
+            if (body.isJsonObject()) {
+                final JsonObject answer = body.getAsJsonObject();
+                if (answer.get("status") instanceof JsonPrimitive status && status.isNumber()) {
+                    event.apiStatus = status.getAsInt();
+                }
+                if (answer.get("request") instanceof JsonPrimitive requestId) {
+                    event.requestId = requestId.getAsString();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            //not JSON or unreadable, the caller's parser reports it
+        }
+    }
+
+    /**
+     * Sends a request to the pinned endpoint or to one picked by the {@link EndpointSelector},
+     * reporting the outcome to the selector. A call moves on to the next endpoint when the
+     * connection could not be established, and, for idempotent calls, also after any I/O
+     * failure or a 5xx answer. Message posts are not repeated once they may have reached
+     * the API, because that would notify the users twice.
+     */
+    private HttpResponse routeToEndpoint(EndpointSelector.Endpoint pinned, RequestFactory requestFactory,
+                                         boolean idempotent, Attempt attempt) throws IOException, PushoverException {
+        final EndpointSelector selector = endpoints;
+        final List<EndpointSelector.Endpoint> tried = new ArrayList<>(2);
+        EndpointSelector.Endpoint endpoint = pinned != null ? pinned : selector.select(tried);
+        while (true) {
+            tried.add(endpoint);
+            final HttpUriRequest request = requestFactory.create(endpoint.getBaseUrl());
+            attempt.start(request);
+            final HttpResponse response;
+            try {
+                response = execute(request, attempt);
+            } catch (IOException e) {
+                if (request.isAborted()) {
+                    throw e;
+                }
+                selector.onFailure(endpoint);
+                final EndpointSelector.Endpoint next = pinned != null || !(idempotent || isNotSent(e)) ? null : selector.select(tried);
+                if (next == null) {
+                    throw e;
+                }
+                endpoint = next;
+                continue;
+            }
+            attempt.endpoint = endpoint;
+            if (statusCodeOf(response) < 500) {
+                //from the moment the limiter let the request go, its wait says nothing about the endpoint
+                selector.onSuccess(endpoint, System.nanoTime() - attempt.sentNanos);
+                return response;
+            }
+            selector.onFailure(endpoint);
+            final EndpointSelector.Endpoint next = pinned != null || !idempotent ? null : selector.select(tried);
+            if (next == null) {
+                return response;
+            }
+            EntityUtils.consumeQuietly(response.getEntity());
+            endpoint = next;
+        }
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isEmpty();
+    }
+
+    private static boolean isNotSent(IOException e) {
+        return e instanceof ConnectException || e instanceof UnknownHostException
+                || e instanceof NoRouteToHostException || e instanceof ConnectTimeoutException;
+    }
+
+    /**
+     * Executes a request, going through the concurrency limiter when one is configured.
+     * Throttled (429) and server side (5xx) answers count as drops for the limiter.
+     */
+    private HttpResponse execute(HttpUriRequest request, Attempt attempt) throws IOException, PushoverException {
+        final AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
+        if (limiter == null) {
+            attempt.sentNanos = System.nanoTime();
+            return httpClient.execute(request);
+        }
+        final PushoverBackpressureEvent event = new PushoverBackpressureEvent();
+        event.begin();
+        final long waitStart = System.nanoTime();
+        final AdaptiveConcurrencyLimiter.Permit permit;
+        try {
+            permit = limiter.acquire();
+        } catch (ConcurrencyLimitException e) {
+            if (event.shouldCommit()) {
+                event.decision = PushoverBackpressureEvent.CONCURRENCY_LIMIT;
+                event.limit = limiter.getLimit();
+                event.inFlight = limiter.getInFlight();
+                event.commit();
+            }
+            throw e;
+        } finally {
+            attempt.poolWaitNanos += System.nanoTime() - waitStart;
+        }
+        final HttpResponse response;
+        try {
+            attempt.sentNanos = System.nanoTime();
+            response = httpClient.execute(request);
+        } catch (IOException | RuntimeException e) {
+            if (request.isAborted()) {
+                //cancelled hedge losers say nothing about the API
+                permit.onIgnore();
+            } else {
+                permit.onDropped();
+            }
+            throw e;
+        }
+        final int statusCode = statusCodeOf(response);
+        if (statusCode == 429 || statusCode >= 500) {
+            permit.onDropped();
+        } else {
+            permit.onSuccess();
+        }
+        return response;
+    }
+
+    private static int statusCodeOf(HttpResponse response) {
+        if (response == null || response.getStatusLine() == null) {
+            return -1;
+        }
+        return response.getStatusLine().getStatusCode();
+    }
+
+    private static void addPairIfNotNull(List<NameValuePair> nameValuePairs, String key, Object value) {
+        if (value != null) {
+            nameValuePairs.add(new BasicNameValuePair(key, value.toString()));
+        }
+    }
+
     private void addPairIfNotNull(MultipartEntityBuilder entityBuilder, String key, Object value) {
         if (value != null) {
             entityBuilder.addTextBody(key, value.toString(), TEXT_PLAIN_UTF8);
@@ -261,4 +1102,177 @@ public class PushoverRestClient implements PushoverClient {
         this.httpClient = httpClient;
     }
 
+    /**
+     * Optionally send all API calls to another server, e.g. a local simulator in load tests.
+     * 
+     * @param apiBaseUrl the URL the API paths are appended to, defaults to {@link #DEFAULT_API_BASE_URL}
+     */
+    public void setApiBaseUrl(String apiBaseUrl) {
+        this.endpoints = EndpointSelector.of(apiBaseUrl);
+    }
+
+    /**
+     * Optionally spread the API calls over several endpoints, e.g. regional relays, with
+     * health-aware selection and failover.
+     * 
+     * @param endpoints the selector, defaults to {@link #DEFAULT_API_BASE_URL} only
+     */
+    public void setEndpoints(EndpointSelector endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    /**
+     * Optionally hedge the idempotent calls ({@link #requestEmergencyReceipt(String, String)},
+     * {@link #getSounds()} and {@link #requestVerification(PushoverMessage)}). Pass null to disable.
+     * Message posts are never hedged.
+     * 
+     * @param hedgingPolicy the policy deciding hedge delay and budget
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Optionally cache the results of {@link #requestVerification(PushoverMessage)}. Pass null to disable.
+     * 
+     * @param validationCache the cache, may be shared between clients using the same tokens
+     */
+    public void setValidationCache(ValidationCache validationCache) {
+        this.validationCache = validationCache;
+    }
+
+    /**
+     * Optionally check messages locally before they are sent. Invalid messages are rejected
+     * with a {@link PushoverValidationException} without calling the API. Pass null to disable.
+     * 
+     * @param messageValidator the validator applied to every message
+     */
+    public void setMessageValidator(MessageValidator messageValidator) {
+        this.messageValidator = messageValidator;
+    }
+
+    /**
+     * @param bulkParallelism maximum number of concurrent calls issued by bulk operations, defaults to 8
+     */
+    public void setBulkParallelism(int bulkParallelism) {
+        this.bulkParallelism = bulkParallelism;
+    }
+
+    /**
+     * @param groupThreshold how many times an ad-hoc recipient set must be used before it is
+     * sent through a delivery group, defaults to 3
+     */
+    public void setGroupThreshold(int groupThreshold) {
+        this.groupThreshold = groupThreshold;
+    }
+
+    /**
+     * Optionally provide the executor used for hedged and asynchronous calls. Defaults to
+     * a small pool of platform threads, as many as the default HTTP client has connections
+     * per route, that runs tasks on the submitting thread while it is busy.
+     * 
+     * @param executorService the alternative executor
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Optionally put an adaptive limit in front of all API calls. Pass null to remove it.
+     * 
+     * @param concurrencyLimiter the limiter shared by all calls of this client
+     */
+    public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Shares the monthly quota with other clients using the same API token. Sends are leased from
+     * the store in chunks; once the store has no sends left, messages are throttled locally with
+     * HTTP status 0 instead of being sent.
+     * 
+     * @param quotaStore the shared store, null to stop coordinating
+     * @param leaseSize sends leased at a time, larger chunks coordinate less often but may overshoot more
+     */
+    public void setQuotaStore(QuotaStore quotaStore, int leaseSize) {
+        if (leaseSize < 1) {
+            throw new IllegalArgumentException("leaseSize must be positive");
+        }
+        releaseQuotaLeases();
+        this.quotaLeases = quotaStore == null ? null : new QuotaLeases(quotaStore, leaseSize);
+    }
+
+    /**
+     * Gives sends leased from the {@link QuotaStore} but not used back to the store, e.g. before shutdown.
+     */
+    public void releaseQuotaLeases() {
+        final QuotaLeases leases = quotaLeases;
+        if (leases != null) {
+            leases.releaseAll();
+        }
+    }
+
+    /**
+     * @return number of messages dropped without sending because their deadline had passed
+     */
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    /**
+     * @return number of message requests aborted in flight because their deadline passed
+     */
+    public long getDeadlineAbortCount() {
+        return deadlineAborts.sum();
+    }
+
+    AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    private interface ResponseParser<T> {
+        T parse(HttpResponse response) throws IOException;
+    }
+
+    private interface RequestFactory {
+        HttpUriRequest create(String baseUrl) throws PushoverException;
+    }
+
+    /**
+     * A validation answer with its HTTP status, which tells a rejected key from throttling.
+     */
+    private record Verification(int httpStatus, Response response) {
+    }
+
+    /**
+     * The requests of one routed call, so that a hedge loser can be aborted while it fails over.
+     */
+    private static final class Attempt {
+
+        private volatile HttpUriRequest current;
+        private volatile boolean aborted;
+        private volatile EndpointSelector.Endpoint endpoint;
+        //only touched by the thread routing the call, for the PushoverApiCallEvent
+        private PushoverMessage message;
+        private int requests;
+        private long poolWaitNanos;
+        private long sentNanos;
+
+        void start(HttpUriRequest request) {
+            current = request;
+            requests++;
+            if (aborted) {
+                request.abort();
+            }
+        }
+
+        void abort() {
+            aborted = true;
+            final HttpUriRequest request = current;
+            if (request != null) {
+                request.abort();
+            }
+        }
+    }
+
 }
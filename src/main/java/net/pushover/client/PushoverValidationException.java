@@ -0,0 +1,27 @@
+package net.pushover.client;
+
+import java.io.Serial;
+import java.util.List;
+
+/**
+ * Thrown when a message is rejected locally by a {@link MessageValidator}
+ * before it is sent. The errors have the same shape as {@link Response#getErrors()}.
+ * No stack trace is captured, rejections are cheap.
+ */
+public class PushoverValidationException extends PushoverException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    //an array rather than a List, so that the exception stays serializable
+    private final String[] errors;
+
+    public PushoverValidationException(List<String> errors) {
+        super(String.join(", ", errors), null, false);
+        this.errors = errors.toArray(new String[0]);
+    }
+
+    public List<String> getErrors() {
+        return List.of(errors);
+    }
+}
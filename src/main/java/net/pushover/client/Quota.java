@@ -0,0 +1,17 @@
+package net.pushover.client;
+
+/**
+ * Application quota as reported by the X-Limit-App-* response headers.
+ *
+ * @param limit number of messages allowed per month, {@link Integer#MIN_VALUE} if unknown
+ * @param remaining number of messages left this month, {@link Integer#MIN_VALUE} if unknown
+ * @param resetEpochSecond unix time at which the quota resets, 0 if unknown
+ */
+public record Quota(int limit, int remaining, long resetEpochSecond) {
+
+    public static final Quota UNKNOWN = new Quota(Integer.MIN_VALUE, Integer.MIN_VALUE, 0L);
+
+    public boolean isKnown() {
+        return remaining != Integer.MIN_VALUE;
+    }
+}
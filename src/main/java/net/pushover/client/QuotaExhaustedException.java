@@ -0,0 +1,18 @@
+package net.pushover.client;
+
+import java.io.Serial;
+
+/**
+ * Thrown when a message is not sent because the {@link QuotaStore} shared by
+ * the clients has no quota left for the application until the API resets it.
+ * Expected once the month's messages are used up, so no stack trace is captured.
+ */
+public class QuotaExhaustedException extends PushoverException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public QuotaExhaustedException(String message) {
+        super(message, null, false);
+    }
+}
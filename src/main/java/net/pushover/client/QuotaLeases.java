@@ -0,0 +1,75 @@
+package net.pushover.client;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The sends a client leased from a {@link QuotaStore}, one bucket per API token.
+ * An empty bucket leases the next chunk.
+ */
+final class QuotaLeases {
+
+    private final QuotaStore store;
+    private final int chunk;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    QuotaLeases(QuotaStore store, int chunk) {
+        this.store = store;
+        this.chunk = chunk;
+    }
+
+    /**
+     * @return false if the quota of the token is exhausted
+     */
+    boolean tryAcquire(String apiToken) {
+        final Bucket bucket = buckets.computeIfAbsent(String.valueOf(apiToken), token -> new Bucket());
+        synchronized (bucket) {
+            if (bucket.left == 0) {
+                bucket.lease = store.lease(String.valueOf(apiToken), chunk);
+                bucket.left = bucket.lease.granted();
+            }
+            if (bucket.left == 0) {
+                return false;
+            }
+            bucket.left--;
+            return true;
+        }
+    }
+
+    /**
+     * Puts back a send that did not count against the quota.
+     */
+    void refund(String apiToken) {
+        final Bucket bucket = buckets.get(String.valueOf(apiToken));
+        if (bucket != null) {
+            synchronized (bucket) {
+                bucket.left++;
+            }
+        }
+    }
+
+    void observe(String apiToken, Quota quota) {
+        if (quota.isKnown()) {
+            store.observe(String.valueOf(apiToken), quota);
+        }
+    }
+
+    /**
+     * Gives all unused sends back to the store.
+     */
+    void releaseAll() {
+        buckets.forEach((token, bucket) -> {
+            synchronized (bucket) {
+                if (bucket.lease != null && bucket.left > 0) {
+                    store.release(token, bucket.lease, bucket.left);
+                }
+                bucket.left = 0;
+            }
+        });
+    }
+
+    private static final class Bucket {
+        private QuotaStore.Lease lease;
+        private int left;
+    }
+}
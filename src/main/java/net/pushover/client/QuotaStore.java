@@ -0,0 +1,52 @@
+package net.pushover.client;
+
+/**
+ * Monthly application quota shared by all clients, possibly in several JVMs, that send with
+ * the same API token.
+ * <p>
+ * Clients do not ask the store for every message: they lease sends in chunks, spend them
+ * locally and give back what is left. Every answer of the API reports the authoritative
+ * remaining quota, which clients pass on with {@link #observe(String, Quota)}; a new reset
+ * time starts a new period with the reported quota. Until the first observation the quota is
+ * unknown and leases are granted in full. The overshoot is bounded by one chunk per client.
+ *
+ * @see PushoverRestClient#setQuotaStore(QuotaStore, int)
+ */
+public interface QuotaStore {
+
+    /**
+     * @param apiToken the application token
+     * @param sends number of sends wanted
+     * @return the lease, with fewer sends granted than wanted or none once the quota runs out
+     */
+    Lease lease(String apiToken, int sends);
+
+    /**
+     * Gives back sends of a lease that were not used. Sends of an earlier period are dropped.
+     *
+     * @param apiToken the application token
+     * @param lease the lease the sends were taken from
+     * @param unused number of sends not used
+     */
+    void release(String apiToken, Lease lease, int unused);
+
+    /**
+     * @param apiToken the application token
+     * @param quota the quota reported by the API, ignored if unknown
+     */
+    void observe(String apiToken, Quota quota);
+
+    /**
+     * @param granted number of sends granted
+     * @param period the quota period the sends belong to, 0 while the quota is unknown
+     */
+    record Lease(int granted, long period) {
+    }
+
+    /**
+     * @return the period of an observed quota: its reset time, or 1 if the API did not report one
+     */
+    static long periodOf(Quota quota) {
+        return Math.max(1L, quota.resetEpochSecond());
+    }
+}
@@ -55,6 +55,25 @@ public class Receipt {
             called_back_at = 0;
       }
       
+      /**
+       * For receipts read by the {@link ResponseAdapters}.
+       */
+      Receipt(int status, int acknowledged, long acknowledgedAt, String acknowledgedBy, long lastDeliveredAt,
+              int expired, long expiresAt, int calledBack, long calledBackAt, String request, List<String> errors)
+      {
+            this.status = status;
+            this.acknowledged = acknowledged;
+            this.acknowledged_at = acknowledgedAt;
+            this.acknowledged_by = acknowledgedBy;
+            this.last_delivered_at = lastDeliveredAt;
+            this.expired = expired;
+            this.expires_at = expiresAt;
+            this.called_back = calledBack;
+            this.called_back_at = calledBackAt;
+            this.request = request;
+            this.errors = errors;
+      }
+      
       public int getStatus() {
             return status;
       }
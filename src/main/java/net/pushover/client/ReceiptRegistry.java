@@ -0,0 +1,51 @@
+package net.pushover.client;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Shared state of the {@link ReceiptTracker}s of a cluster: the emergency receipts still
+ * waiting for acknowledgement and the heartbeats of the nodes tracking them.
+ */
+public interface ReceiptRegistry {
+
+    /**
+     * @param receipt the receipt to track until it is acknowledged, expires or is cancelled
+     */
+    void register(TrackedReceipt receipt);
+
+    /**
+     * @param receipt the receipt key to stop tracking
+     */
+    void remove(String receipt);
+
+    /**
+     * @return all tracked receipts
+     */
+    Collection<TrackedReceipt> getReceipts();
+
+    /**
+     * @param nodeId the node that is alive
+     * @param epochMillis the time of the heartbeat
+     */
+    void heartbeat(String nodeId, long epochMillis);
+
+    /**
+     * @param nodeId the node that stops tracking receipts
+     */
+    void leave(String nodeId);
+
+    /**
+     * @return the last heartbeat in epoch milliseconds of every node that has not left
+     */
+    Map<String, Long> getNodes();
+
+    /**
+     * @param receipt the receipt key returned for an emergency message
+     * @param apiToken the application token the message was sent with
+     * @param node the node that registered the receipt
+     * @param registeredAt epoch milliseconds of the registration
+     */
+    record TrackedReceipt(String receipt, String apiToken, String node, long registeredAt) {
+    }
+}
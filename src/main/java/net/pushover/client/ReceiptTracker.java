@@ -0,0 +1,264 @@
+package net.pushover.client;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Polls emergency receipts until they are acknowledged or expire, spread over all nodes of
+ * a cluster that share a {@link ReceiptRegistry}.
+ * <p>
+ * Every node heartbeats into the registry and places the nodes with a recent heartbeat on a
+ * consistent-hash ring; a receipt is polled by the node that owns its key on the ring, no
+ * matter which node registered it. When a node stops or dies its receipts move to the
+ * remaining nodes, and a joining node only takes over its share. While the nodes' views of
+ * the membership differ, for at most one heartbeat timeout, a receipt can be polled by two
+ * nodes or skipped for a round; it is never dropped.
+ * <p>
+ * Receipts whose registering node is gone can optionally be cancelled instead, so the
+ * recipients are not alerted on behalf of a node that can no longer act on the acknowledgement.
+ */
+public class ReceiptTracker implements AutoCloseable {
+
+    private static final int VIRTUAL_NODES = 128;
+
+    private final PushoverRestClient client;
+    private final ReceiptRegistry registry;
+    private final String nodeId;
+    private final Duration pollInterval;
+    private final long nodeTimeoutMillis;
+    private final boolean cancelOrphans;
+    private final BiConsumer<ReceiptRegistry.TrackedReceipt, Receipt> listener;
+    private final LongAdder polls = new LongAdder();
+    private final LongAdder failedPolls = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private volatile ConsistentHashRing ring = new ConsistentHashRing(Set.of(), VIRTUAL_NODES);
+    private ScheduledExecutorService scheduler;
+
+    private ReceiptTracker(Builder builder) {
+        this.client = Objects.requireNonNull(builder.client, "client is required");
+        this.registry = builder.registry;
+        this.nodeId = builder.nodeId;
+        this.pollInterval = builder.pollInterval;
+        this.nodeTimeoutMillis = (builder.nodeTimeout != null ? builder.nodeTimeout : pollInterval.multipliedBy(3)).toMillis();
+        this.cancelOrphans = builder.cancelOrphans;
+        this.listener = builder.listener;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Joins the cluster and polls the owned receipts every poll interval.
+     *
+     * @return this tracker
+     */
+    public synchronized ReceiptTracker start() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(DaemonThreads.factory("pushover-receipts-" + nodeId));
+            scheduler.scheduleWithFixedDelay(this::pollQuietly, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * Leaves the cluster; the receipts of this node move to the others.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        registry.leave(nodeId);
+    }
+
+    /**
+     * Tracks the receipt of an emergency message.
+     *
+     * @param apiToken the application token the message was sent with
+     * @param receipt the receipt key returned by the API
+     */
+    public void track(String apiToken, String receipt) {
+        registry.register(new ReceiptRegistry.TrackedReceipt(receipt, apiToken, nodeId, System.currentTimeMillis()));
+    }
+
+    /**
+     * Runs one round: heartbeats, rebalances on membership change and polls the owned receipts.
+     * Called by the scheduler after {@link #start()}; can be called directly instead.
+     */
+    public void poll() {
+        final long now = System.currentTimeMillis();
+        registry.heartbeat(nodeId, now);
+        final Set<String> live = new HashSet<>();
+        for (Map.Entry<String, Long> node : registry.getNodes().entrySet()) {
+            if (now - node.getValue() <= nodeTimeoutMillis) {
+                live.add(node.getKey());
+            }
+        }
+        live.add(nodeId);
+        ConsistentHashRing current = ring;
+        if (!current.getNodes().equals(live)) {
+            current = new ConsistentHashRing(live, VIRTUAL_NODES);
+            ring = current;
+        }
+
+        for (ReceiptRegistry.TrackedReceipt tracked : registry.getReceipts()) {
+            if (!nodeId.equals(current.ownerOf(tracked.receipt()))) {
+                continue;
+            }
+            try {
+                if (cancelOrphans && !live.contains(tracked.node())) {
+                    client.cancelEmergencyMessage(tracked.apiToken(), tracked.receipt());
+                    registry.remove(tracked.receipt());
+                    cancelled.increment();
+                    continue;
+                }
+                polls.increment();
+                final Receipt receipt = client.requestEmergencyReceipt(tracked.apiToken(), tracked.receipt());
+                if (receipt.getStatus() != 1 || receipt.getAcknowledged() == 1 || receipt.getExpired() == 1) {
+                    registry.remove(tracked.receipt());
+                    if (listener != null) {
+                        listener.accept(tracked, receipt);
+                    }
+                }
+            } catch (PushoverException | RuntimeException e) {
+                failedPolls.increment();  //retried next round
+            }
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            failedPolls.increment();  //e.g. the registry is unavailable, keep the schedule alive
+        }
+    }
+
+    /**
+     * @return true if this node currently polls the receipt
+     */
+    public boolean isOwner(String receipt) {
+        return nodeId.equals(ring.ownerOf(receipt));
+    }
+
+    /**
+     * @return the nodes this node saw alive in the last round
+     */
+    public Set<String> getLiveNodes() {
+        return ring.getNodes();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public long getPollCount() {
+        return polls.sum();
+    }
+
+    public long getFailedPollCount() {
+        return failedPolls.sum();
+    }
+
+    /**
+     * @return number of orphaned receipts this node cancelled
+     */
+    public long getCancelledCount() {
+        return cancelled.sum();
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private PushoverRestClient client;
+        private ReceiptRegistry registry = new InMemoryReceiptRegistry();
+        private String nodeId = UUID.randomUUID().toString();
+        private Duration pollInterval = Duration.ofSeconds(10);
+        private Duration nodeTimeout;
+        private boolean cancelOrphans;
+        private BiConsumer<ReceiptRegistry.TrackedReceipt, Receipt> listener;
+
+        private Builder() {
+        }
+
+        public ReceiptTracker build() {
+            return new ReceiptTracker(this);
+        }
+
+        /**
+         * @param client the client used to poll and cancel receipts
+         * @return the current Builder instance
+         */
+        public Builder setClient(PushoverRestClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * @param registry (optional) - the registry shared by the cluster, defaults to one private to this tracker
+         * @return the current Builder instance
+         */
+        public Builder setRegistry(ReceiptRegistry registry) {
+            this.registry = Objects.requireNonNull(registry);
+            return this;
+        }
+
+        /**
+         * @param nodeId (optional) - stable id of this node, defaults to a random id
+         * @return the current Builder instance
+         */
+        public Builder setNodeId(String nodeId) {
+            this.nodeId = Objects.requireNonNull(nodeId);
+            return this;
+        }
+
+        /**
+         * @param pollInterval (optional) - time between rounds, defaults to 10 seconds. The API asks
+         *                     not to poll a receipt more often than every 5 seconds
+         * @return the current Builder instance
+         */
+        public Builder setPollInterval(Duration pollInterval) {
+            this.pollInterval = Objects.requireNonNull(pollInterval);
+            return this;
+        }
+
+        /**
+         * @param nodeTimeout (optional) - nodes without heartbeat for this long are considered dead,
+         *                    defaults to three poll intervals
+         * @return the current Builder instance
+         */
+        public Builder setNodeTimeout(Duration nodeTimeout) {
+            this.nodeTimeout = nodeTimeout;
+            return this;
+        }
+
+        /**
+         * @param cancelOrphans (optional) - cancel receipts whose registering node is dead instead of polling them
+         * @return the current Builder instance
+         */
+        public Builder setCancelOrphans(boolean cancelOrphans) {
+            this.cancelOrphans = cancelOrphans;
+            return this;
+        }
+
+        /**
+         * @param listener (optional) - called once a receipt was acknowledged, expired or is unknown to the API
+         * @return the current Builder instance
+         */
+        public Builder setListener(BiConsumer<ReceiptRegistry.TrackedReceipt, Receipt> listener) {
+            this.listener = listener;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package net.pushover.client;
+
+/**
+ * Outcome of a multi-recipient send for one user key.
+ *
+ * @param userKey the recipient
+ * @param status the API status, null when the send failed
+ * @param error the failure, null when the send succeeded
+ * @param groupKey the delivery group the message was sent through, null for a direct send
+ */
+public record RecipientResult(String userKey, Status status, PushoverException error, String groupKey) {
+
+    public boolean isSuccess() {
+        return error == null && status != null && status.getStatus() == 1;
+    }
+
+    public boolean isViaGroup() {
+        return groupKey != null;
+    }
+}
@@ -39,6 +39,32 @@ public class Response {
             devices = new ArrayList<>();
       }
       
+      /**
+       * For responses created locally, e.g. by the message validation.
+       */
+      Response(int status, String request, List<String> errors)
+      {
+            this.status = status;
+            this.request = request;
+            this.errors = new ArrayList<>(errors);
+            receipt = "";
+            remaining = Integer.MIN_VALUE;
+            devices = new ArrayList<>();
+      }
+      
+      /**
+       * For responses read by the {@link ResponseAdapters}.
+       */
+      Response(int status, String request, List<String> errors, String receipt, List<String> devices)
+      {
+            this.status = status;
+            this.request = request;
+            this.errors = errors;
+            this.receipt = receipt;
+            remaining = Integer.MIN_VALUE;
+            this.devices = devices;
+      }
+      
       public int getStatus() {
             return status;
       }
@@ -73,4 +99,15 @@ public class Response {
       {
             this.remaining = remains;
       }
+      
+      /**
+       * @return an independent copy, so that callers sharing a cached answer cannot change it for each other
+       */
+      Response copy()
+      {
+            final Response copy = new Response(status, request, errors == null ? null : new ArrayList<>(errors),
+                  receipt, devices == null ? null : new ArrayList<>(devices));
+            copy.setRemaining(remaining);
+            return copy;
+      }
 }
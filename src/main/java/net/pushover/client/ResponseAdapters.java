@@ -0,0 +1,354 @@
+package net.pushover.client;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written Gson adapters for the API answers, so that parsing needs no reflection, e.g.
+ * in a GraalVM native image. They behave like Gson's reflective binding did: fields missing
+ * from the answer keep the values of the no-argument constructors, JSON nulls leave
+ * primitives untouched and unknown fields are skipped.
+ * <p>
+ * The adapters only read, the library never writes these types.
+ */
+final class ResponseAdapters {
+
+    private static final String NO_INFORMATION = "Default constructor. No information available";
+
+    private ResponseAdapters() {
+    }
+
+    static final TypeAdapter<Status> STATUS = new ReadOnlyAdapter<>() {
+        @Override
+        Status readObject(JsonReader in) throws IOException {
+            Integer status = null;
+            String request = null;
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "status" -> status = nextInteger(in);
+                    case "request" -> request = nextString(in);
+                    default -> in.skipValue();
+                }
+            }
+            final Status toReturn = new Status(status);
+            toReturn.setRequestId(request);
+            return toReturn;
+        }
+    };
+
+    static final TypeAdapter<Response> RESPONSE = new ReadOnlyAdapter<>() {
+        @Override
+        Response readObject(JsonReader in) throws IOException {
+            int status = 0;
+            String request = "";
+            List<String> errors = noInformation();
+            String receipt = "";
+            List<String> devices = new ArrayList<>();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "status" -> status = nextInt(in, status);
+                    case "request" -> request = nextString(in);
+                    case "errors" -> errors = nextStringList(in);
+                    case "receipt" -> receipt = nextString(in);
+                    case "devices" -> devices = nextStringList(in);
+                    default -> in.skipValue();
+                }
+            }
+            return new Response(status, request, errors, receipt, devices);
+        }
+    };
+
+    static final TypeAdapter<Receipt> RECEIPT = new ReadOnlyAdapter<>() {
+        @Override
+        Receipt readObject(JsonReader in) throws IOException {
+            int status = 0;
+            int acknowledged = 0;
+            long acknowledgedAt = 0;
+            String acknowledgedBy = "";
+            long lastDeliveredAt = 0;
+            int expired = 1;
+            long expiresAt = 0;
+            int calledBack = 0;
+            long calledBackAt = 0;
+            String request = "";
+            List<String> errors = noInformation();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "status" -> status = nextInt(in, status);
+                    case "acknowledged" -> acknowledged = nextInt(in, acknowledged);
+                    case "acknowledged_at" -> acknowledgedAt = nextLong(in, acknowledgedAt);
+                    case "acknowledged_by" -> acknowledgedBy = nextString(in);
+                    case "last_delivered_at" -> lastDeliveredAt = nextLong(in, lastDeliveredAt);
+                    case "expired" -> expired = nextInt(in, expired);
+                    case "expires_at" -> expiresAt = nextLong(in, expiresAt);
+                    case "called_back" -> calledBack = nextInt(in, calledBack);
+                    case "called_back_at" -> calledBackAt = nextLong(in, calledBackAt);
+                    case "request" -> request = nextString(in);
+                    case "errors" -> errors = nextStringList(in);
+                    default -> in.skipValue();
+                }
+            }
+            return new Receipt(status, acknowledged, acknowledgedAt, acknowledgedBy, lastDeliveredAt,
+                    expired, expiresAt, calledBack, calledBackAt, request, errors);
+        }
+    };
+
+    static final TypeAdapter<InboundMessage> INBOUND_MESSAGE = new ReadOnlyAdapter<>() {
+        @Override
+        InboundMessage readObject(JsonReader in) throws IOException {
+            long id = 0;
+            String umid = null;
+            String title = null;
+            String message = null;
+            String app = null;
+            long aid = 0;
+            String icon = null;
+            long date = 0;
+            int priority = 0;
+            String sound = null;
+            String url = null;
+            String urlTitle = null;
+            int acked = 0;
+            String receipt = null;
+            int html = 0;
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id" -> id = nextLong(in, id);
+                    case "umid" -> umid = nextString(in);
+                    case "title" -> title = nextString(in);
+                    case "message" -> message = nextString(in);
+                    case "app" -> app = nextString(in);
+                    case "aid" -> aid = nextLong(in, aid);
+                    case "icon" -> icon = nextString(in);
+                    case "date" -> date = nextLong(in, date);
+                    case "priority" -> priority = nextInt(in, priority);
+                    case "sound" -> sound = nextString(in);
+                    case "url" -> url = nextString(in);
+                    case "url_title" -> urlTitle = nextString(in);
+                    case "acked" -> acked = nextInt(in, acked);
+                    case "receipt" -> receipt = nextString(in);
+                    case "html" -> html = nextInt(in, html);
+                    default -> in.skipValue();
+                }
+            }
+            return new InboundMessage(id, umid, title, message, app, aid, icon, date, priority, sound, url,
+                    urlTitle, acked, receipt, html);
+        }
+    };
+
+    static final TypeAdapter<PushoverResponseFactory.SoundResponse> SOUND_RESPONSE = new ReadOnlyAdapter<>() {
+        @Override
+        PushoverResponseFactory.SoundResponse readObject(JsonReader in) throws IOException {
+            final PushoverResponseFactory.SoundResponse r = new PushoverResponseFactory.SoundResponse();
+            while (in.hasNext()) {
+                if (in.nextName().equals("sounds")) {
+                    r.sounds = nextStringMap(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            return r;
+        }
+    };
+
+    static final TypeAdapter<PushoverResponseFactory.GroupResponse> GROUP_RESPONSE = new ReadOnlyAdapter<>() {
+        @Override
+        PushoverResponseFactory.GroupResponse readObject(JsonReader in) throws IOException {
+            final PushoverResponseFactory.GroupResponse r = new PushoverResponseFactory.GroupResponse();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "status" -> r.status = nextInt(in, r.status);
+                    case "group" -> r.group = nextString(in);
+                    case "groups" -> r.groups = nextGroups(in);
+                    case "users" -> r.users = nextGroupUsers(in);
+                    case "errors" -> r.errors = nextStringList(in);
+                    default -> in.skipValue();
+                }
+            }
+            return r;
+        }
+    };
+
+    static final TypeAdapter<PushoverResponseFactory.OpenClientResponse> OPEN_CLIENT_RESPONSE = new ReadOnlyAdapter<>() {
+        @Override
+        PushoverResponseFactory.OpenClientResponse readObject(JsonReader in) throws IOException {
+            final PushoverResponseFactory.OpenClientResponse r = new PushoverResponseFactory.OpenClientResponse();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "status" -> r.status = nextInt(in, r.status);
+                    case "id" -> r.id = nextString(in);
+                    case "secret" -> r.secret = nextString(in);
+                    case "messages" -> r.messages = nextMessages(in);
+                    case "errors" -> r.errors = nextStringList(in);
+                    default -> in.skipValue();
+                }
+            }
+            return r;
+        }
+    };
+
+    /**
+     * Reads JSON objects only; null reads as null and writing is not supported.
+     */
+    private abstract static class ReadOnlyAdapter<T> extends TypeAdapter<T> {
+
+        @Override
+        public final T read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            in.beginObject();
+            final T value = readObject(in);
+            in.endObject();
+            return value;
+        }
+
+        /**
+         * Reads the fields of an object whose opening brace was consumed.
+         */
+        abstract T readObject(JsonReader in) throws IOException;
+
+        @Override
+        public final void write(JsonWriter out, T value) {
+            throw new UnsupportedOperationException("API answers are only read");
+        }
+    }
+
+    private static List<String> noInformation() {
+        final List<String> errors = new ArrayList<>();
+        errors.add(NO_INFORMATION);
+        return errors;
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        return switch (in.peek()) {
+            case NULL -> {
+                in.nextNull();
+                yield null;
+            }
+            case BOOLEAN -> Boolean.toString(in.nextBoolean());
+            default -> in.nextString();
+        };
+    }
+
+    private static Integer nextInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static int nextInt(JsonReader in, int unchanged) throws IOException {
+        final Integer value = nextInteger(in);
+        return value == null ? unchanged : value;
+    }
+
+    private static long nextLong(JsonReader in, long unchanged) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return unchanged;
+        }
+        try {
+            return in.nextLong();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static List<String> nextStringList(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(nextString(in));
+        }
+        in.endArray();
+        return values;
+    }
+
+    private static Map<String, String> nextStringMap(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final Map<String, String> values = new LinkedHashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            values.put(in.nextName(), nextString(in));
+        }
+        in.endObject();
+        return values;
+    }
+
+    /**
+     * Reads {@code [{"group":"g123...","name":"..."}]} into the keys by name.
+     */
+    private static Map<String, String> nextGroups(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final Map<String, String> groups = new LinkedHashMap<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            final Map<String, String> group = nextStringMap(in);
+            if (group != null && group.get("name") != null && group.get("group") != null) {
+                groups.putIfAbsent(group.get("name"), group.get("group"));
+            }
+        }
+        in.endArray();
+        return groups;
+    }
+
+    /**
+     * Reads {@code [{"user":"u123...","device":null,"memo":"","disabled":false}]} into the user keys.
+     */
+    private static List<String> nextGroupUsers(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final List<String> users = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            final Map<String, String> user = nextStringMap(in);
+            if (user != null && user.get("user") != null) {
+                users.add(user.get("user"));
+            }
+        }
+        in.endArray();
+        return users;
+    }
+
+    private static List<InboundMessage> nextMessages(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final List<InboundMessage> messages = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            messages.add(INBOUND_MESSAGE.read(in));
+        }
+        in.endArray();
+        return messages;
+    }
+}
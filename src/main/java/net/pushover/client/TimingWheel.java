@@ -0,0 +1,219 @@
+package net.pushover.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel with O(1) insert and cancel, in the style of the classic
+ * kernel timers: six levels of 64 slots, every level covering 64 times the range of
+ * the level below, for 2^36 ticks in total. Entries of a higher level are cascaded to
+ * the lower levels when their slot comes up. Deadlines beyond the range expire at the
+ * end of the range and are expected to be re-inserted by the caller.
+ * <p>
+ * Not thread safe.
+ *
+ * @param <T> the payload of the entries
+ */
+class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 6;
+    static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final Entry<T>[][] wheel;
+    private final int[] counts = new int[LEVELS];  //entries per level, to skip empty levels
+    private final List<Entry<T>> overdue = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long startTick) {
+        this.currentTick = startTick;
+        this.wheel = (Entry<T>[][]) new Entry<?>[LEVELS][SLOTS];
+        for (Entry<T>[] level : wheel) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                level[slot] = new Entry<>(0, null);  //sentinel of the slot's circular list
+                level[slot].prev = level[slot];
+                level[slot].next = level[slot];
+            }
+        }
+    }
+
+    /**
+     * @param deadlineTick the tick at which the entry expires, past ticks expire on the next advance
+     * @param payload the payload
+     * @return the entry, for {@link #cancel(Entry)}
+     */
+    Entry<T> insert(long deadlineTick, T payload) {
+        final Entry<T> entry = new Entry<>(Math.min(deadlineTick, currentTick + MAX_DELAY), payload);
+        place(entry, false);
+        size++;
+        return entry;
+    }
+
+    /**
+     * @return false if the entry already expired or was cancelled
+     */
+    boolean cancel(Entry<T> entry) {
+        if (entry.next == null) {
+            return false;
+        }
+        if (entry.next == entry) {  //overdue, not linked into a slot
+            overdue.remove(entry);
+            entry.next = null;
+        } else {
+            unlink(entry);
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves the wheel to the given tick.
+     *
+     * @return the payloads of all entries expired up to and including the tick, in deadline order per tick
+     */
+    List<T> advance(long toTick) {
+        final List<T> expired = new ArrayList<>();
+        for (Entry<T> entry : overdue) {
+            entry.next = null;
+            expired.add(entry.payload);
+        }
+        size -= overdue.size();
+        overdue.clear();
+        while (currentTick < toTick) {
+            if (size == 0) {
+                currentTick = toTick;
+                break;
+            }
+            int lowest = 0;
+            while (counts[lowest] == 0) {
+                lowest++;
+            }
+            if (lowest > 0) {
+                //nothing below this level, jump right before its next slot
+                final long next = ((currentTick >>> (SLOT_BITS * lowest)) + 1) << (SLOT_BITS * lowest);
+                if (next > toTick) {
+                    currentTick = toTick;
+                    break;
+                }
+                currentTick = next - 1;
+            }
+            currentTick++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1)));
+                }
+            }
+            final Entry<T> head = wheel[0][(int) (currentTick & (SLOTS - 1))];
+            for (Entry<T> entry = head.next; entry != head; ) {
+                final Entry<T> next = entry.next;
+                entry.next = null;
+                entry.prev = null;
+                expired.add(entry.payload);
+                size--;
+                counts[0]--;
+                entry = next;
+            }
+            head.next = head;
+            head.prev = head;
+        }
+        return expired;
+    }
+
+    /**
+     * Removes all entries without advancing the wheel.
+     *
+     * @return the payloads of all entries
+     */
+    List<T> clear() {
+        final List<T> removed = new ArrayList<>();
+        for (Entry<T> entry : overdue) {
+            entry.next = null;
+            removed.add(entry.payload);
+        }
+        overdue.clear();
+        for (Entry<T>[] level : wheel) {
+            for (Entry<T> head : level) {
+                for (Entry<T> entry = head.next; entry != head; ) {
+                    final Entry<T> next = entry.next;
+                    entry.next = null;
+                    entry.prev = null;
+                    removed.add(entry.payload);
+                    entry = next;
+                }
+                head.next = head;
+                head.prev = head;
+            }
+        }
+        size = 0;
+        Arrays.fill(counts, 0);
+        return removed;
+    }
+
+    long getCurrentTick() {
+        return currentTick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void cascade(int level, int slot) {
+        final Entry<T> head = wheel[level][slot];
+        Entry<T> entry = head.next;
+        head.next = head;
+        head.prev = head;
+        while (entry != head) {
+            final Entry<T> next = entry.next;
+            counts[level]--;
+            place(entry, true);
+            entry = next;
+        }
+    }
+
+    private void place(Entry<T> entry, boolean cascading) {
+        final long delay = entry.deadlineTick - currentTick;
+        if (delay < 0 || delay == 0 && !cascading) {  //cascaded entries due now go to the slot being expired
+            entry.next = entry;
+            entry.prev = entry;
+            overdue.add(entry);
+            return;
+        }
+        final long deadline = entry.deadlineTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        entry.level = level;
+        counts[level]++;
+        final Entry<T> head = wheel[level][(int) ((deadline >>> (SLOT_BITS * level)) & (SLOTS - 1))];
+        entry.prev = head.prev;
+        entry.next = head;
+        head.prev.next = entry;
+        head.prev = entry;
+    }
+
+    private void unlink(Entry<T> entry) {
+        counts[entry.level]--;
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.next = null;
+        entry.prev = null;
+    }
+
+    static final class Entry<T> {
+        private final long deadlineTick;
+        private final T payload;
+        private Entry<T> prev;
+        private Entry<T> next;
+        private int level;
+
+        private Entry(long deadlineTick, T payload) {
+            this.deadlineTick = deadlineTick;
+            this.payload = payload;
+        }
+    }
+}
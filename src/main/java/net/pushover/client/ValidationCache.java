@@ -0,0 +1,178 @@
+package net.pushover.client;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the results of the user/group validation API keyed by application
+ * token, user key and device.
+ * <p>
+ * Valid keys (status 1) are kept for the positive TTL together with the
+ * returned device list, keys the API rejected as invalid (a 4xx answer) for
+ * the usually much shorter negative TTL so that a freshly registered user is
+ * picked up quickly. Throttling (429), server errors and transport failures
+ * say nothing about the key and are never cached.
+ * <p>
+ * Every lookup returns its own copy of the cached {@link Response}.
+ */
+public class ValidationCache {
+
+    private final long positiveTtlNanos;
+    private final long negativeTtlNanos;
+    private final int maximumSize;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private ValidationCache(Builder builder) {
+        this.positiveTtlNanos = builder.positiveTtl.toNanos();
+        this.negativeTtlNanos = builder.negativeTtl.toNanos();
+        this.maximumSize = builder.maximumSize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param apiToken API key for the application
+     * @param userId the user/group key
+     * @param device the device, may be null
+     * @return the cached {@link Response} or null when absent or expired
+     */
+    public Response get(String apiToken, String userId, String device) {
+        final Key key = new Key(apiToken, userId, device);
+        final Entry entry = entries.get(key);
+        if (entry == null || entry.expiresAtNanos - System.nanoTime() <= 0L) {
+            if (entry != null) {
+                entries.remove(key, entry);
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.response.copy();
+    }
+
+    /**
+     * Stores a validation result. Status 1 is cached with the positive TTL, a rejection with a
+     * 4xx HTTP status other than 429 with the negative TTL, anything else not at all.
+     *
+     * @param apiToken API key for the application
+     * @param userId the user/group key
+     * @param device the device, may be null
+     * @param httpStatus the HTTP status of the answer
+     * @param response the response of the validation API, copied into the cache
+     */
+    public void put(String apiToken, String userId, String device, int httpStatus, Response response) {
+        if (response == null) {
+            return;
+        }
+        final long ttl;
+        if (response.getStatus() == 1) {
+            ttl = positiveTtlNanos;
+        } else if (httpStatus >= 400 && httpStatus < 500 && httpStatus != 429) {
+            ttl = negativeTtlNanos;
+        } else {
+            return;
+        }
+        if (ttl <= 0L) {
+            return;
+        }
+        if (entries.size() >= maximumSize) {
+            evict();
+        }
+        entries.put(new Key(apiToken, userId, device), new Entry(response.copy(), System.nanoTime() + ttl));
+    }
+
+    /**
+     * Drops a single cached result, e.g. after the user was removed from a group.
+     *
+     * @param apiToken API key for the application
+     * @param userId the user/group key
+     * @param device the device, may be null
+     */
+    public void invalidate(String apiToken, String userId, String device) {
+        entries.remove(new Key(apiToken, userId, device));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private void evict() {
+        final long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.expiresAtNanos - now <= 0L);
+        //still full with live entries: make room for a tenth of the cache
+        final Iterator<Key> keys = entries.keySet().iterator();
+        int toRemove = entries.size() - maximumSize + Math.max(1, maximumSize / 10);
+        while (toRemove-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private record Key(String apiToken, String userId, String device) {
+    }
+
+    private record Entry(Response response, long expiresAtNanos) {
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private Duration positiveTtl = Duration.ofHours(1);
+        private Duration negativeTtl = Duration.ofMinutes(5);
+        private int maximumSize = 100_000;
+
+        private Builder() {
+        }
+
+        public ValidationCache build() {
+            return new ValidationCache(this);
+        }
+
+        /**
+         * @param positiveTtl (optional) - how long valid keys are cached, defaults to 1 hour
+         * @return the current Builder instance
+         */
+        public Builder setPositiveTtl(Duration positiveTtl) {
+            this.positiveTtl = positiveTtl;
+            return this;
+        }
+
+        /**
+         * @param negativeTtl (optional) - how long invalid keys are cached, defaults to 5 minutes
+         * @return the current Builder instance
+         */
+        public Builder setNegativeTtl(Duration negativeTtl) {
+            this.negativeTtl = negativeTtl;
+            return this;
+        }
+
+        /**
+         * @param maximumSize (optional) - number of cached results, defaults to 100000
+         * @return the current Builder instance
+         */
+        public Builder setMaximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,666 @@
+package net.pushover.client.cli;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.pushover.client.LatencyHistogram;
+import net.pushover.client.MessageFields;
+import net.pushover.client.PushResult;
+import net.pushover.client.PushoverMessage;
+import net.pushover.client.PushoverRestClient;
+import org.apache.http.impl.client.HttpClients;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends one message per line of an NDJSON or CSV file.
+ * <p>
+ * Every line is a message spec with the field names of the message API
+ * ({@code user}, {@code message}, {@code title}, {@code priority}, ...), CSV
+ * files name the fields in a header row. An {@code attachment} field is read
+ * as a file path. The file is streamed, at most twice the concurrency of
+ * specs are held in memory. Throttled sends and sends that certainly never
+ * reached the API (connection refused, no pooled connection) are retried with
+ * backoff. Server errors and read timeouts are not: the message may have been
+ * delivered, and sending it again would notify the user twice.
+ * <p>
+ * Every line gets one JSON result line in the output file, handed to the
+ * operating system as soon as the send completed. A checkpoint file records
+ * the line up to which all lines have a result, and the results are synced to
+ * disk before it is written; an interrupted run started again with the same
+ * output and checkpoint skips those lines and the ones already written beyond
+ * it. {@link #stop()}, called by the command line's shutdown hook on Ctrl-C or
+ * kill, stops reading lines and lets the sends in flight record their results
+ * first, so that no delivered message is sent again on resume. Progress with
+ * throughput and latency percentiles is reported periodically.
+ * <p>
+ * CSV fields may be quoted but must not contain line breaks.
+ */
+public class BulkSender {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final Gson GSON = new Gson();
+
+    //how long an aborted run waits for the sends in flight, they are bounded by the client's socket timeouts
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final PushoverRestClient client;
+    private final Path input;
+    private final Format format;
+    private final Path output;
+    private final Path checkpoint;
+    private final int concurrency;
+    private final String defaultToken;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+    private final Duration reportInterval;
+    private final PrintStream report;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LatencyHistogram intervalLatencies = new LatencyHistogram();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    private final Object progressLock = new Object();
+    private final Set<Long> doneAboveWatermark = new HashSet<>();
+    private long watermark;
+    private BufferedWriter results;
+    private FileChannel resultsChannel;
+    private volatile boolean stopping;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private BulkSender(Builder builder) {
+        this.client = builder.client;
+        this.input = builder.input;
+        this.format = builder.format != null ? builder.format
+                : builder.input.toString().toLowerCase().endsWith(".csv") ? Format.CSV : Format.NDJSON;
+        this.output = builder.output;
+        this.checkpoint = builder.checkpoint != null ? builder.checkpoint
+                : builder.output.resolveSibling(builder.output.getFileName() + ".checkpoint");
+        this.concurrency = builder.concurrency;
+        this.defaultToken = builder.defaultToken;
+        this.maxRetries = builder.maxRetries;
+        this.retryBackoffMillis = builder.retryBackoff.toMillis();
+        this.reportInterval = builder.reportInterval;
+        this.report = builder.report;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Summary of a run.
+     *
+     * @param succeeded lines sent successfully
+     * @param failed lines that were rejected, invalid or could not be sent
+     * @param skipped lines that already had a result from an earlier run
+     * @param elapsed duration of the run
+     */
+    public record Summary(long succeeded, long failed, long skipped, Duration elapsed) {
+    }
+
+    /**
+     * Sends all lines that do not have a result yet.
+     *
+     * @return the counts of this run
+     * @throws IOException if the input cannot be read or the output not written
+     */
+    public Summary run() throws IOException {
+        try {
+            return sendAll();
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Stops a running {@link #run()}: no further lines are read, queued sends and retries are
+     * dropped, and the sends in flight record their results before the checkpoint is written.
+     * Waits for the run to end, at most a little longer than the 30 seconds the sends in flight are given.
+     */
+    public void stop() {
+        stopping = true;
+        try {
+            finished.await(DRAIN_TIMEOUT.toSeconds() + 5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Summary sendAll() throws IOException {
+        final Set<Long> alreadyDone = resumeState();
+        final long start = System.nanoTime();
+        final ExecutorService senders = Executors.newFixedThreadPool(concurrency);
+        final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        final Semaphore inFlight = new Semaphore(concurrency * 2);
+        final long[] lastReport = {System.nanoTime(), 0L};
+        reporter.scheduleAtFixedRate(() -> report(start, lastReport),
+                reportInterval.toMillis(), reportInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.APPEND);
+             BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+            synchronized (progressLock) {
+                results = writer;
+                resultsChannel = channel;
+            }
+            try {
+                submitAll(reader, alreadyDone, senders, inFlight);
+                senders.shutdown();
+                senders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted, resume from " + checkpoint, e);
+            } finally {
+                drain(senders);
+                reporter.shutdownNow();
+                synchronized (progressLock) {
+                    writeCheckpoint();
+                    results = null;
+                    resultsChannel = null;
+                }
+            }
+        }
+        final Summary summary = new Summary(succeeded.sum(), failed.sum(), skipped.sum(),
+                Duration.ofNanos(System.nanoTime() - start));
+        report.printf("done: %d sent, %d failed, %d skipped in %.1f s, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms%n",
+                summary.succeeded(), summary.failed(), summary.skipped(), summary.elapsed().toMillis() / 1000.0,
+                millis(latencies.getPercentile(50)), millis(latencies.getPercentile(95)), millis(latencies.getPercentile(99)));
+        return summary;
+    }
+
+    private void submitAll(BufferedReader reader, Set<Long> alreadyDone, ExecutorService senders,
+                           Semaphore inFlight) throws IOException {
+        List<String> header = null;
+        long lineNumber = 0;
+        String line;
+        while (!stopping && (line = reader.readLine()) != null) {
+            final long current = ++lineNumber;
+            if (format == Format.CSV && header == null) {
+                header = CsvLine.parse(line);
+                markDone(current);
+                continue;
+            }
+            if (current <= watermark || alreadyDone.contains(current)) {
+                if (!line.isBlank()) {
+                    skipped.increment();
+                }
+                markDone(current);
+                continue;
+            }
+            if (line.isBlank()) {
+                markDone(current);
+                continue;
+            }
+            final PushoverMessage msg;
+            try {
+                msg = toMessage(line, header);
+            } catch (RuntimeException e) {
+                complete(current, "invalid", -1, null, null, List.of(String.valueOf(e.getMessage())), 0, 0L);
+                continue;
+            }
+            inFlight.acquireUninterruptibly();
+            senders.execute(() -> {
+                try {
+                    if (!stopping) {
+                        send(current, msg);
+                    }
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Lets the sends in flight finish, even when the run was interrupted, because their
+     * messages may be delivered already and need their result line.
+     */
+    private void drain(ExecutorService senders) {
+        stopping = true;
+        senders.shutdown();
+        final boolean interrupted = Thread.interrupted();
+        try {
+            if (!senders.awaitTermination(DRAIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                report.println("sends still in flight after " + DRAIN_TIMEOUT.toSeconds() + " s, they may be sent again on resume");
+            }
+        } catch (InterruptedException e) {
+            //interrupted once more, stop waiting
+        } finally {
+            senders.shutdownNow();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void send(long line, PushoverMessage msg) {
+        PushResult result = null;
+        int attempts = 0;
+        long latency = 0L;
+        while (attempts <= maxRetries) {
+            if (attempts > 0) {
+                if (stopping) {
+                    //the last attempt was not delivered, leave the line without result so that resume sends it
+                    return;
+                }
+                try {
+                    Thread.sleep(retryBackoffMillis << Math.min(attempts - 1, 10));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            attempts++;
+            final long start = System.nanoTime();
+            result = client.send(msg);
+            latency = System.nanoTime() - start;
+            latencies.record(latency);
+            intervalLatencies.record(latency);
+            if (!isRetryable(result)) {
+                break;
+            }
+        }
+        if (result == null) {
+            complete(line, "failed", -1, null, null, List.of("interrupted"), attempts, latency);
+            return;
+        }
+        final String outcome = switch (result) {
+            case PushResult.Success success -> "success";
+            case PushResult.Rejected rejected -> "rejected";
+            case PushResult.Throttled throttled -> "throttled";
+            case PushResult.TransportFailure failure -> "failed";
+        };
+        final String receipt = result instanceof PushResult.Success success ? success.response().getReceipt() : null;
+        complete(line, outcome, result.httpStatus(), result.requestId(), receipt,
+                result instanceof PushResult.Success ? List.of() : result.errors(), attempts, latency);
+    }
+
+    private static boolean isRetryable(PushResult result) {
+        return switch (result) {
+            case PushResult.TransportFailure failure -> failure.isNotSent();
+            //an exhausted quota stays exhausted, an expired deadline stays expired
+            case PushResult.Throttled throttled -> throttled.reason() == PushResult.Throttled.Reason.API
+                    || throttled.reason() == PushResult.Throttled.Reason.CONCURRENCY_LIMIT;
+            default -> false;
+        };
+    }
+
+    private PushoverMessage toMessage(String line, List<String> header) {
+        final Map<String, String> fields = new LinkedHashMap<>();
+        if (format == Format.CSV) {
+            final List<String> values = CsvLine.parse(line);
+            for (int i = 0; i < header.size() && i < values.size(); i++) {
+                if (!values.get(i).isEmpty()) {
+                    fields.put(header.get(i).trim(), values.get(i));
+                }
+            }
+        } else {
+            final JsonObject object = JsonParser.parseString(line).getAsJsonObject();
+            for (Map.Entry<String, JsonElement> field : object.entrySet()) {
+                if (!field.getValue().isJsonNull()) {
+                    fields.put(field.getKey(), field.getValue().getAsString());
+                }
+            }
+        }
+        if (!fields.containsKey("token") && defaultToken != null) {
+            fields.put("token", defaultToken);
+        }
+        final PushoverMessage.Builder builder = MessageFields.toBuilder(fields);
+        if (fields.get("attachment") != null) {
+            builder.setImage(new File(fields.get("attachment")));
+        }
+        return builder.build();
+    }
+
+    private void complete(long line, String outcome, int httpStatus, String requestId, String receipt,
+                          List<String> errors, int attempts, long latencyNanos) {
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("line", line);
+        result.put("result", outcome);
+        if (httpStatus >= 0) {
+            result.put("http", httpStatus);
+        }
+        if (requestId != null) {
+            result.put("request", requestId);
+        }
+        if (receipt != null) {
+            result.put("receipt", receipt);
+        }
+        if (!errors.isEmpty()) {
+            result.put("errors", errors);
+        }
+        if (attempts > 0) {
+            result.put("attempts", attempts);
+            result.put("latency_ms", Math.round(millis(latencyNanos) * 10) / 10.0);
+        }
+        ("success".equals(outcome) ? succeeded : failed).increment();
+        final String json = GSON.toJson(result);
+        synchronized (progressLock) {
+            try {
+                if (results == null) {
+                    //a send that outlived the drain of an aborted run, its message may have been delivered
+                    Files.writeString(output, json + System.lineSeparator(), StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    return;
+                }
+                results.write(json);
+                results.newLine();
+                //handed to the operating system right away, a killed process keeps it
+                results.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot write results to " + output, e);
+            }
+            markDone(line);
+        }
+    }
+
+    private void markDone(long line) {
+        synchronized (progressLock) {
+            if (line == watermark + 1) {
+                watermark++;
+                while (doneAboveWatermark.remove(watermark + 1)) {
+                    watermark++;
+                }
+            } else if (line > watermark) {
+                doneAboveWatermark.add(line);
+            }
+        }
+    }
+
+    /**
+     * Reads the checkpoint and collects the lines beyond it that already have a result.
+     */
+    private Set<Long> resumeState() throws IOException {
+        final Set<Long> done = new HashSet<>();
+        if (!Files.exists(output)) {
+            return done;
+        }
+        if (!Files.exists(checkpoint)) {
+            throw new IOException(output + " exists but " + checkpoint + " does not, refusing to append to it");
+        }
+        watermark = Long.parseLong(Files.readString(checkpoint, StandardCharsets.UTF_8).trim());
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer last = ByteBuffer.allocate(1);
+            if (channel.size() > 0 && channel.read(last, channel.size() - 1) == 1 && last.get(0) != '\n') {
+                //keep a line torn by the interruption apart from the results appended now
+                channel.write(ByteBuffer.wrap(new byte[]{'\n'}), channel.size());
+            }
+        }
+        try (BufferedReader reader = Files.newBufferedReader(output, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    final long doneLine = JsonParser.parseString(line).getAsJsonObject().get("line").getAsLong();
+                    if (doneLine > watermark) {
+                        done.add(doneLine);
+                    }
+                } catch (RuntimeException e) {
+                    //a line torn by the interruption, it is sent again
+                }
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Called with the progress lock held, after the results up to the watermark were written.
+     * The results are synced first, so the checkpoint never gets ahead of them on disk.
+     */
+    private void writeCheckpoint() {
+        try {
+            if (results != null) {
+                results.flush();
+                resultsChannel.force(false);
+            }
+            final Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+            Files.writeString(temp, watermark + "\n", StandardCharsets.UTF_8);
+            Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            report.println("cannot write checkpoint " + checkpoint + ": " + e.getMessage());
+        }
+    }
+
+    private void report(long start, long[] last) {
+        final long now = System.nanoTime();
+        final long total = succeeded.sum() + failed.sum();
+        final double rate = (total - last[1]) / ((now - last[0]) / 1e9);
+        last[0] = now;
+        last[1] = total;
+        report.printf("[%4ds] %d sent, %d failed, %.1f msg/s, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms%n",
+                (now - start) / 1_000_000_000L, succeeded.sum(), failed.sum(), rate,
+                millis(intervalLatencies.getPercentile(50)), millis(intervalLatencies.getPercentile(95)),
+                millis(intervalLatencies.getPercentile(99)));
+        intervalLatencies.reset();
+        synchronized (progressLock) {
+            if (results != null) {
+                writeCheckpoint();
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Command line entry point, see {@link #usage()}.
+     *
+     * @param args the command line
+     */
+    public static void main(String[] args) {
+        final Builder builder = builder();
+        String baseUrl = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                final String value = i + 1 < args.length ? args[i + 1] : null;
+                switch (args[i]) {
+                    case "--input" -> builder.setInput(Path.of(value));
+                    case "--output" -> builder.setOutput(Path.of(value));
+                    case "--checkpoint" -> builder.setCheckpoint(Path.of(value));
+                    case "--format" -> builder.setFormat(Format.valueOf(value.toUpperCase()));
+                    case "--concurrency" -> builder.setConcurrency(Integer.parseInt(value));
+                    case "--token" -> builder.setDefaultToken(value);
+                    case "--retries" -> builder.setMaxRetries(Integer.parseInt(value));
+                    case "--report-interval" -> builder.setReportInterval(Duration.ofSeconds(Long.parseLong(value)));
+                    case "--base-url" -> baseUrl = value;
+                    default -> throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+                i++;
+            }
+            final PushoverRestClient client = new PushoverRestClient();
+            //one pooled connection per sender, the default pool has only 5 per route
+            client.setHttpClient(HttpClients.custom().useSystemProperties()
+                    .setMaxConnPerRoute(builder.concurrency)
+                    .setMaxConnTotal(builder.concurrency * 2)
+                    .build());
+            if (baseUrl != null) {
+                client.setApiBaseUrl(baseUrl);
+            }
+            builder.setClient(client);
+            final BulkSender sender = builder.build();
+            //Ctrl-C or kill: record the results of the sends in flight, so that resume does not send them again
+            Runtime.getRuntime().addShutdownHook(new Thread(sender::stop, "pushover-bulk-stop"));
+            final Summary summary = sender.run();
+            System.exit(summary.failed() == 0 ? 0 : 1);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(3);
+        }
+    }
+
+    static String usage() {
+        return """
+                usage: BulkSender --input <file.ndjson|file.csv> --output <results.ndjson> [options]
+                  --format ndjson|csv        input format, defaults to the file extension
+                  --checkpoint <file>        defaults to <output>.checkpoint
+                  --concurrency <n>          parallel sends, defaults to 16
+                  --token <token>            application token for lines without one
+                  --retries <n>              retries of throttled or unsent messages, defaults to 3
+                  --report-interval <s>      seconds between progress reports, defaults to 5
+                  --base-url <url>           API base URL, e.g. a relay""";
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private PushoverRestClient client;
+        private Path input;
+        private Format format;
+        private Path output;
+        private Path checkpoint;
+        private int concurrency = 16;
+        private String defaultToken;
+        private int maxRetries = 3;
+        private Duration retryBackoff = Duration.ofMillis(500);
+        private Duration reportInterval = Duration.ofSeconds(5);
+        private PrintStream report = System.err;
+
+        private Builder() {
+        }
+
+        public BulkSender build() {
+            if (client == null || input == null || output == null) {
+                throw new IllegalArgumentException("client, input and output are required");
+            }
+            return new BulkSender(this);
+        }
+
+        /**
+         * @param client the client used for all sends, size its connection pool to the concurrency
+         * @return the current Builder instance
+         */
+        public Builder setClient(PushoverRestClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * @param input the NDJSON or CSV file with one message spec per line
+         * @return the current Builder instance
+         */
+        public Builder setInput(Path input) {
+            this.input = input;
+            return this;
+        }
+
+        /**
+         * @param format (optional) - format of the input, defaults to CSV for .csv files and NDJSON otherwise
+         * @return the current Builder instance
+         */
+        public Builder setFormat(Format format) {
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * @param output the file the per-line results are appended to
+         * @return the current Builder instance
+         */
+        public Builder setOutput(Path output) {
+            this.output = output;
+            return this;
+        }
+
+        /**
+         * @param checkpoint (optional) - the checkpoint file, defaults to the output file name plus ".checkpoint"
+         * @return the current Builder instance
+         */
+        public Builder setCheckpoint(Path checkpoint) {
+            this.checkpoint = checkpoint;
+            return this;
+        }
+
+        /**
+         * @param concurrency (optional) - messages sent in parallel, defaults to 16
+         * @return the current Builder instance
+         */
+        public Builder setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * @param defaultToken (optional) - application token for lines without a token field
+         * @return the current Builder instance
+         */
+        public Builder setDefaultToken(String defaultToken) {
+            this.defaultToken = defaultToken;
+            return this;
+        }
+
+        /**
+         * @param maxRetries (optional) - retries of throttled sends and of sends that never reached the API, defaults to 3
+         * @return the current Builder instance
+         */
+        public Builder setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * @param retryBackoff (optional) - wait before the first retry, doubled for every further one,
+         * defaults to 500ms
+         * @return the current Builder instance
+         */
+        public Builder setRetryBackoff(Duration retryBackoff) {
+            this.retryBackoff = retryBackoff;
+            return this;
+        }
+
+        /**
+         * @param reportInterval (optional) - time between progress reports and checkpoints, defaults to 5 seconds
+         * @return the current Builder instance
+         */
+        public Builder setReportInterval(Duration reportInterval) {
+            this.reportInterval = reportInterval;
+            return this;
+        }
+
+        /**
+         * @param report (optional) - where progress is reported, defaults to System.err
+         * @return the current Builder instance
+         */
+        public Builder setReport(PrintStream report) {
+            this.report = report;
+            return this;
+        }
+    }
+}
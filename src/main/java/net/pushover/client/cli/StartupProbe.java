@@ -0,0 +1,91 @@
+package net.pushover.client.cli;
+
+import net.pushover.client.PushoverException;
+import net.pushover.client.PushoverMessage;
+import net.pushover.client.PushoverRestClient;
+import net.pushover.client.Status;
+import net.pushover.client.simulator.PushoverSimulator;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Smoke test for short-lived jobs: sends one message and prints the time from process start
+ * to the answer of that first send. Run by the {@code native} build profile both as a GraalVM
+ * native image and on the JVM, so the startup cost of the two can be compared.
+ * <p>
+ * Without {@code --base-url} the message goes to an in-process {@link PushoverSimulator}.
+ */
+public final class StartupProbe {
+
+    private StartupProbe() {
+    }
+
+    /**
+     * Command line entry point, see {@link #usage()}.
+     *
+     * @param args the command line
+     */
+    public static void main(String[] args) {
+        String baseUrl = null;
+        String token = "probe-token";
+        String user = "probe-user";
+        try {
+            for (int i = 0; i < args.length; i++) {
+                final String value = i + 1 < args.length ? args[i + 1] : null;
+                switch (args[i]) {
+                    case "--base-url" -> baseUrl = value;
+                    case "--token" -> token = value;
+                    case "--user" -> user = value;
+                    default -> throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+                i++;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            System.exit(2);
+        }
+
+        if (baseUrl == null) {
+            //the JDK HTTP server delays small answers without it, which would dominate the measurement
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        try (PushoverSimulator simulator = baseUrl == null ? PushoverSimulator.builder().addUser(user).build().start() : null) {
+            final PushoverRestClient client = new PushoverRestClient();
+            client.setApiBaseUrl(baseUrl != null ? baseUrl : simulator.getBaseUrl());
+            final Status status = client.pushMessage(PushoverMessage.builderWithApiToken(token)
+                    .setUserId(user)
+                    .setMessage("startup probe")
+                    .build());
+            System.out.println(report(status));
+            System.exit(status.getStatus() == 1 ? 0 : 1);
+        } catch (IOException | PushoverException e) {
+            System.err.println(e.getMessage());
+            System.exit(3);
+        }
+    }
+
+    static String report(Status status) {
+        final Duration sinceStart = ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()))
+                .orElse(null);
+        return String.format("runtime: %s, status: %d, startup-to-first-send: %s",
+                isNativeImage() ? "native-image" : "jvm " + Runtime.version(),
+                status.getStatus(),
+                sinceStart == null ? "unknown" : sinceStart.toMillis() + " ms");
+    }
+
+    private static boolean isNativeImage() {
+        return "runtime".equals(System.getProperty("org.graalvm.nativeimage.imagecode"));
+    }
+
+    static String usage() {
+        return """
+                usage: StartupProbe [options]
+                  --base-url <url>           API base URL, defaults to an in-process simulator
+                  --token <token>            application token, defaults to probe-token
+                  --user <key>               user key, defaults to probe-user""";
+    }
+}
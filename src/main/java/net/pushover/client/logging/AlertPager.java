@@ -0,0 +1,291 @@
+package net.pushover.client.logging;
+
+import net.pushover.client.MessagePriority;
+import net.pushover.client.MessageValidator;
+import net.pushover.client.PushoverClient;
+import net.pushover.client.PushoverException;
+import net.pushover.client.PushoverMessage;
+import net.pushover.client.Status;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pages log events via Pushover without ever blocking the logging thread, the core of the
+ * logging framework adapters {@link PushoverLogHandler}, {@link PushoverLog4jAppender} and
+ * {@link PushoverLogbackAppender}.
+ * <p>
+ * {@link #page(LogAlert)} only puts the event into a lock-free ring buffer; when the buffer is
+ * full the event is dropped and counted. A single daemon thread drains the buffer and sends.
+ * Events with the same {@link LogAlert#fingerprint() fingerprint} are sent at most once per
+ * window: the first one right away, the repeats within the window as one summary with their
+ * count when the window ends, which starts the next window. A fingerprint that stays quiet
+ * for a whole window is forgotten.
+ */
+public class AlertPager implements AutoCloseable {
+
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final PushoverClient client;
+    private final String apiToken;
+    private final String userId;
+    private final String device;
+    private final long windowNanos;
+    private final RingBuffer<LogAlert> buffer;
+    private final Map<String, Window> windows = new HashMap<>();  //pager thread only
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private AlertPager(Builder builder) {
+        this.client = Objects.requireNonNull(builder.client, "client is required");
+        this.apiToken = Objects.requireNonNull(builder.apiToken, "api token is required");
+        this.userId = Objects.requireNonNull(builder.userId, "user id is required");
+        this.device = builder.device;
+        this.windowNanos = builder.window.toNanos();
+        this.buffer = new RingBuffer<>(builder.capacity);
+        this.thread = new Thread(this::run, "pushover-alert-pager");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Queues the event for paging. Never blocks.
+     *
+     * @param alert the log event
+     * @return false if the event was dropped because the buffer is full or the pager is closed
+     */
+    public boolean page(LogAlert alert) {
+        if (closed || !buffer.offer(alert)) {
+            dropped.increment();
+            return false;
+        }
+        accepted.increment();
+        return true;
+    }
+
+    /**
+     * Stops the pager after sending the queued events and the summaries of open windows.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            final boolean last = closed;
+            for (LogAlert alert = buffer.poll(); alert != null; alert = buffer.poll()) {
+                onAlert(alert, System.nanoTime());
+            }
+            expire(System.nanoTime(), last);
+            if (last) {
+                return;
+            }
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+    }
+
+    private void onAlert(LogAlert alert, long now) {
+        final Window window = windows.get(alert.fingerprint());
+        if (window == null) {
+            windows.put(alert.fingerprint(), new Window(now));
+            send(alert, 0);
+        } else {
+            window.repeats++;
+            window.latest = alert;
+            suppressed.increment();
+        }
+    }
+
+    private void expire(long now, boolean all) {
+        for (Iterator<Window> iterator = windows.values().iterator(); iterator.hasNext(); ) {
+            final Window window = iterator.next();
+            if (!all && now - window.opened < windowNanos) {
+                continue;
+            }
+            if (window.repeats > 0) {
+                send(window.latest, window.repeats);
+                if (!all) {
+                    window.opened = now;
+                    window.repeats = 0;
+                    window.latest = null;
+                    continue;
+                }
+            }
+            iterator.remove();
+        }
+    }
+
+    private void send(LogAlert alert, int repeats) {
+        final StringBuilder message = new StringBuilder(alert.message() == null ? "" : alert.message());
+        if (alert.exceptionType() != null) {
+            message.append('\n').append(alert.exceptionType());
+        }
+        if (repeats > 0) {
+            message.append("\n(").append(repeats).append(repeats == 1 ? " time" : " times").append(" since the last page)");
+        }
+        final PushoverMessage.Builder builder = PushoverMessage.builderWithApiToken(apiToken)
+                .setUserId(userId)
+                .setDevice(device)
+                .setTitle(truncate(alert.source(), MessageValidator.MAX_TITLE_LENGTH))
+                .setMessage(truncate(message.toString(), MessageValidator.MAX_MESSAGE_LENGTH))
+                .setPriority(alert.priority())
+                .setTimestamp(alert.timestamp() / 1000);
+        if (alert.priority() == MessagePriority.EMERGENCY) {
+            builder.setRetry(60).setExpire(3600);
+        }
+        try {
+            final Status status = client.pushMessage(builder.build());
+            if (status != null && status.getStatus() == 1) {
+                sent.increment();
+            } else {
+                failed.increment();
+            }
+        } catch (PushoverException | RuntimeException e) {
+            failed.increment();  //no logging from here, it could page again
+        }
+    }
+
+    private static String truncate(String value, int max) {
+        return value == null || value.length() <= max ? value : value.substring(0, max - 1) + "…";
+    }
+
+    /**
+     * @return number of events queued for paging
+     */
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    /**
+     * @return number of events dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return number of repeats folded into summaries instead of being sent on their own
+     */
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    private static final class Window {
+        private long opened;
+        private int repeats;
+        private LogAlert latest;
+
+        private Window(long opened) {
+            this.opened = opened;
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private PushoverClient client;
+        private String apiToken;
+        private String userId;
+        private String device;
+        private Duration window = Duration.ofMinutes(5);
+        private int capacity = 1024;
+
+        private Builder() {
+        }
+
+        public AlertPager build() {
+            return new AlertPager(this);
+        }
+
+        /**
+         * @param client the client used to send the pages
+         * @return the current Builder instance
+         */
+        public Builder setClient(PushoverClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * @param apiToken (required) - your application's API token
+         * @return the current Builder instance
+         */
+        public Builder setApiToken(String apiToken) {
+            this.apiToken = apiToken;
+            return this;
+        }
+
+        /**
+         * @param userId (required) - the user or group key to page
+         * @return the current Builder instance
+         */
+        public Builder setUserId(String userId) {
+            this.userId = userId;
+            return this;
+        }
+
+        /**
+         * @param device (optional) - page only this device of the user
+         * @return the current Builder instance
+         */
+        public Builder setDevice(String device) {
+            this.device = device;
+            return this;
+        }
+
+        /**
+         * @param window (optional) - minimum time between two pages of the same fingerprint, defaults to 5 minutes
+         * @return the current Builder instance
+         */
+        public Builder setWindow(Duration window) {
+            if (window.isNegative()) {
+                throw new IllegalArgumentException("window must not be negative");
+            }
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * @param capacity (optional) - events buffered ahead of the pager thread, rounded up to a power
+         *                 of two, defaults to 1024
+         * @return the current Builder instance
+         */
+        public Builder setCapacity(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("capacity must be positive");
+            }
+            this.capacity = capacity;
+            return this;
+        }
+    }
+}
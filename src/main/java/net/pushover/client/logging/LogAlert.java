@@ -0,0 +1,25 @@
+package net.pushover.client.logging;
+
+import net.pushover.client.MessagePriority;
+
+/**
+ * Log event to be paged, as handed over by a logging framework adapter.
+ *
+ * @param source the logger name
+ * @param priority the priority of the page, mapped from the log level
+ * @param template the message before its parameters were filled in
+ * @param message the formatted message
+ * @param exceptionType the class name of the logged exception, null if none
+ * @param timestamp unix time of the event in milliseconds
+ */
+public record LogAlert(String source, MessagePriority priority, String template, String message,
+                       String exceptionType, long timestamp) {
+
+    /**
+     * @return the key under which repeats of this event are counted: the same logger, exception
+     * type and message template, whatever the parameters
+     */
+    public String fingerprint() {
+        return source + '\u0000' + exceptionType + '\u0000' + template;
+    }
+}
@@ -0,0 +1,146 @@
+package net.pushover.client.logging;
+
+import net.pushover.client.MessagePriority;
+import net.pushover.client.PushoverRestClient;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.Core;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginElement;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+import org.apache.logging.log4j.core.config.plugins.validation.constraints.Required;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.logging.log4j.message.ReusableParameterizedMessage;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log4j2 appender that pages ERROR and FATAL events through an {@link AlertPager}, the
+ * counterpart of {@link PushoverLogHandler}. Appending never blocks: the event is copied into a
+ * {@link LogAlert} on the logging thread and sent by the pager's thread. FATAL and ERROR map to
+ * {@link MessagePriority#HIGH}, WARN to {@link MessagePriority#NORMAL} and lower levels to
+ * {@link MessagePriority#LOW}, for appenders whose level is lowered.
+ * <p>
+ * Needs log4j-core on the classpath, which this library does not bring. The plugin is found
+ * through the descriptor compiled into the jar:
+ * <pre>
+ * &lt;Configuration&gt;
+ *   &lt;Appenders&gt;
+ *     &lt;Pushover name="pager" token="your application token" user="your user or group key"
+ *               device="(optional)" window="(optional) seconds, 300" capacity="(optional) 1024"
+ *               level="(optional) ERROR"/&gt;
+ *   &lt;/Appenders&gt;
+ * &lt;/Configuration&gt;
+ * </pre>
+ */
+@Plugin(name = "Pushover", category = Core.CATEGORY_NAME, elementType = Appender.ELEMENT_TYPE, printObject = true)
+public class PushoverLog4jAppender extends AbstractAppender {
+
+    private final AlertPager pager;
+    private final boolean ownsPager;
+    private final Level level;
+
+    /**
+     * @param name the appender name
+     * @param filter (optional) - filter applied before the level
+     * @param pager the pager to queue the events to, not closed with this appender
+     * @param level the least severe level paged
+     */
+    public PushoverLog4jAppender(String name, Filter filter, AlertPager pager, Level level) {
+        this(name, filter, pager, false, level);
+    }
+
+    private PushoverLog4jAppender(String name, Filter filter, AlertPager pager, boolean ownsPager, Level level) {
+        super(name, filter, null, true, Property.EMPTY_ARRAY);
+        this.pager = pager;
+        this.ownsPager = ownsPager;
+        this.level = level;
+    }
+
+    /**
+     * Creates the appender and its pager from the configuration.
+     */
+    @PluginFactory
+    public static PushoverLog4jAppender createAppender(@PluginAttribute("name") @Required String name,
+                                                       @PluginAttribute("token") @Required String token,
+                                                       @PluginAttribute("user") @Required String user,
+                                                       @PluginAttribute("device") String device,
+                                                       @PluginAttribute(value = "window", defaultLong = 300) long window,
+                                                       @PluginAttribute(value = "capacity", defaultInt = 1024) int capacity,
+                                                       @PluginAttribute("level") String level,
+                                                       @PluginElement("Filter") Filter filter) {
+        final AlertPager pager = AlertPager.builder()
+                .setClient(new PushoverRestClient())
+                .setApiToken(token)
+                .setUserId(user)
+                .setDevice(device)
+                .setWindow(Duration.ofSeconds(window))
+                .setCapacity(capacity)
+                .build();
+        return new PushoverLog4jAppender(name, filter, pager, true, Level.toLevel(level, Level.ERROR));
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        if (!event.getLevel().isMoreSpecificThan(level)) {
+            return;
+        }
+        final Message message = event.getMessage();
+        final Throwable thrown = event.getThrown();
+        final String formatted = message == null ? null : message.getFormattedMessage();
+        pager.page(new LogAlert(event.getLoggerName(), priorityOf(event.getLevel()), templateOf(message, formatted), formatted,
+                thrown == null ? null : thrown.getClass().getName(), event.getTimeMillis()));
+    }
+
+    /**
+     * The fingerprint of the event: the template of the parameterized messages the loggers create
+     * by default, so that {@code "order {} failed"} pages once per window whatever the order,
+     * and the formatted text of any other message.
+     */
+    private static String templateOf(Message message, String formatted) {
+        final String template;
+        if (message instanceof ParameterizedMessage parameterized) {
+            template = parameterized.getFormat();
+        } else if (message instanceof ReusableParameterizedMessage reusable) {
+            template = reusable.getFormat();
+        } else {
+            template = null;
+        }
+        return template == null ? formatted : template;
+    }
+
+    /**
+     * @return the page priority for the log level
+     */
+    public static MessagePriority priorityOf(Level level) {
+        if (level.isMoreSpecificThan(Level.ERROR)) {
+            return MessagePriority.HIGH;
+        }
+        return level.isMoreSpecificThan(Level.WARN) ? MessagePriority.NORMAL : MessagePriority.LOW;
+    }
+
+    @Override
+    public boolean stop(long timeout, TimeUnit timeUnit) {
+        setStopping();
+        final boolean stopped = super.stop(timeout, timeUnit, false);
+        if (ownsPager) {
+            pager.close();
+        }
+        setStopped();
+        return stopped;
+    }
+
+    /**
+     * @return the pager, e.g. for its counters
+     */
+    public AlertPager getPager() {
+        return pager;
+    }
+}
@@ -0,0 +1,127 @@
+package net.pushover.client.logging;
+
+import net.pushover.client.MessagePriority;
+import net.pushover.client.PushoverRestClient;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+/**
+ * {@code java.util.logging} handler that pages SEVERE records through an {@link AlertPager}.
+ * Publishing never blocks: records are formatted and queued on the logging thread, and sent
+ * by the pager's thread. SEVERE maps to {@link MessagePriority#HIGH}, WARNING to
+ * {@link MessagePriority#NORMAL} and lower levels to {@link MessagePriority#LOW}, for handlers
+ * whose level is lowered.
+ * <p>
+ * Created by the {@link LogManager} from {@code logging.properties}:
+ * <pre>
+ * handlers = net.pushover.client.logging.PushoverLogHandler
+ * net.pushover.client.logging.PushoverLogHandler.token = your application token
+ * net.pushover.client.logging.PushoverLogHandler.user = your user or group key
+ * net.pushover.client.logging.PushoverLogHandler.device = (optional) device name
+ * net.pushover.client.logging.PushoverLogHandler.window = (optional) seconds between pages of one event, 300
+ * net.pushover.client.logging.PushoverLogHandler.capacity = (optional) buffered records, 1024
+ * net.pushover.client.logging.PushoverLogHandler.level = (optional) SEVERE
+ * </pre>
+ */
+public final class PushoverLogHandler extends Handler {
+
+    private final AlertPager pager;
+    private final boolean ownsPager;
+
+    /**
+     * Configures the handler and its pager from the {@link LogManager} properties.
+     */
+    public PushoverLogHandler() {
+        final String prefix = PushoverLogHandler.class.getName() + '.';
+        final LogManager manager = LogManager.getLogManager();
+        this.pager = AlertPager.builder()
+                .setClient(new PushoverRestClient())
+                .setApiToken(manager.getProperty(prefix + "token"))
+                .setUserId(manager.getProperty(prefix + "user"))
+                .setDevice(manager.getProperty(prefix + "device"))
+                .setWindow(Duration.ofSeconds(parseLong(manager.getProperty(prefix + "window"), 300)))
+                .setCapacity((int) parseLong(manager.getProperty(prefix + "capacity"), 1024))
+                .build();
+        this.ownsPager = true;
+        final String level = manager.getProperty(prefix + "level");
+        setLevel(level == null ? Level.SEVERE : Level.parse(level.trim()));
+    }
+
+    /**
+     * @param pager the pager to queue the records to, not closed with this handler
+     */
+    public PushoverLogHandler(AlertPager pager) {
+        this.pager = pager;
+        this.ownsPager = false;
+        setLevel(Level.SEVERE);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        final Throwable thrown = record.getThrown();
+        pager.page(new LogAlert(record.getLoggerName(), priorityOf(record.getLevel()), record.getMessage(),
+                format(record), thrown == null ? null : thrown.getClass().getName(), record.getMillis()));
+    }
+
+    /**
+     * @return the page priority for the log level
+     */
+    public static MessagePriority priorityOf(Level level) {
+        if (level.intValue() >= Level.SEVERE.intValue()) {
+            return MessagePriority.HIGH;
+        }
+        return level.intValue() >= Level.WARNING.intValue() ? MessagePriority.NORMAL : MessagePriority.LOW;
+    }
+
+    /**
+     * Fills in the parameters like {@link java.util.logging.Formatter#formatMessage(LogRecord)},
+     * without its lock and resource bundle lookup.
+     */
+    private static String format(LogRecord record) {
+        final String template = record.getMessage();
+        final Object[] parameters = record.getParameters();
+        if (template == null || parameters == null || parameters.length == 0 || !template.contains("{")) {
+            return template;
+        }
+        try {
+            return MessageFormat.format(template, parameters);
+        } catch (IllegalArgumentException e) {
+            return template;
+        }
+    }
+
+    private static long parseLong(String value, long fallback) {
+        try {
+            return value == null ? fallback : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    @Override
+    public void flush() {
+        //pages are sent as soon as the pager thread picks them up
+    }
+
+    @Override
+    public void close() {
+        if (ownsPager) {
+            pager.close();
+        }
+    }
+
+    /**
+     * @return the pager, e.g. for its counters
+     */
+    public AlertPager getPager() {
+        return pager;
+    }
+}
@@ -0,0 +1,154 @@
+package net.pushover.client.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import net.pushover.client.MessagePriority;
+import net.pushover.client.PushoverRestClient;
+
+import java.time.Duration;
+
+/**
+ * Logback appender that pages ERROR events through an {@link AlertPager}, the counterpart of
+ * {@link PushoverLogHandler}. Appending never blocks: it takes no appender lock, the event is
+ * copied into a {@link LogAlert} on the logging thread and sent by the pager's thread. ERROR maps
+ * to {@link MessagePriority#HIGH}, WARN to {@link MessagePriority#NORMAL} and lower levels to
+ * {@link MessagePriority#LOW}, for appenders whose level is lowered.
+ * <p>
+ * Needs logback-classic on the classpath, which this library does not bring:
+ * <pre>
+ * &lt;appender name="pager" class="net.pushover.client.logging.PushoverLogbackAppender"&gt;
+ *   &lt;token&gt;your application token&lt;/token&gt;
+ *   &lt;user&gt;your user or group key&lt;/user&gt;
+ *   &lt;device&gt;(optional) device name&lt;/device&gt;
+ *   &lt;window&gt;(optional) seconds between pages of one event, 300&lt;/window&gt;
+ *   &lt;capacity&gt;(optional) buffered events, 1024&lt;/capacity&gt;
+ *   &lt;level&gt;(optional) ERROR&lt;/level&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ */
+public class PushoverLogbackAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    private AlertPager pager;
+    private boolean ownsPager;
+    private String token;
+    private String user;
+    private String device;
+    private long window = 300;
+    private int capacity = 1024;
+    private Level level = Level.ERROR;
+
+    /**
+     * Configured through the setters by Logback, the pager is created on {@link #start()}.
+     */
+    public PushoverLogbackAppender() {
+    }
+
+    /**
+     * @param pager the pager to queue the events to, not closed with this appender
+     */
+    public PushoverLogbackAppender(AlertPager pager) {
+        this.pager = pager;
+    }
+
+    @Override
+    public void start() {
+        if (pager == null) {
+            try {
+                pager = AlertPager.builder()
+                        .setClient(new PushoverRestClient())
+                        .setApiToken(token)
+                        .setUserId(user)
+                        .setDevice(device)
+                        .setWindow(Duration.ofSeconds(window))
+                        .setCapacity(capacity)
+                        .build();
+            } catch (RuntimeException e) {
+                addError("Cannot start the Pushover appender " + getName(), e);
+                return;
+            }
+            ownsPager = true;
+        }
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        if (ownsPager) {
+            pager.close();
+            pager = null;
+            ownsPager = false;
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (!event.getLevel().isGreaterOrEqual(level)) {
+            return;
+        }
+        final IThrowableProxy thrown = event.getThrowableProxy();
+        pager.page(new LogAlert(event.getLoggerName(), priorityOf(event.getLevel()), event.getMessage(),
+                event.getFormattedMessage(), thrown == null ? null : thrown.getClassName(), event.getTimeStamp()));
+    }
+
+    /**
+     * @return the page priority for the log level
+     */
+    public static MessagePriority priorityOf(Level level) {
+        if (level.isGreaterOrEqual(Level.ERROR)) {
+            return MessagePriority.HIGH;
+        }
+        return level.isGreaterOrEqual(Level.WARN) ? MessagePriority.NORMAL : MessagePriority.LOW;
+    }
+
+    /**
+     * @param token (required) - your application's API token
+     */
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    /**
+     * @param user (required) - the user or group key to page
+     */
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    /**
+     * @param device (optional) - page only this device of the user
+     */
+    public void setDevice(String device) {
+        this.device = device;
+    }
+
+    /**
+     * @param window (optional) - seconds between two pages of the same event, defaults to 300
+     */
+    public void setWindow(long window) {
+        this.window = window;
+    }
+
+    /**
+     * @param capacity (optional) - events buffered ahead of the pager thread, defaults to 1024
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param level (optional) - the least severe level paged, defaults to ERROR
+     */
+    public void setLevel(String level) {
+        this.level = Level.toLevel(level, Level.ERROR);
+    }
+
+    /**
+     * @return the pager, e.g. for its counters, null while a configured appender is stopped
+     */
+    public AlertPager getPager() {
+        return pager;
+    }
+}
@@ -0,0 +1,82 @@
+package net.pushover.client.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and one consumer, after Dmitry Vyukov's bounded
+ * MPMC queue: every slot carries a sequence number that tells producers whether the slot is
+ * free for their turn and the consumer whether it was filled. A producer claims a turn with one
+ * compare-and-set and never waits; when the buffer is full {@link #offer(Object)} fails at once.
+ *
+ * @param <T> the elements
+ */
+final class RingBuffer<T> {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLong tail = new AtomicLong();  //next turn to produce
+    private long head;                                 //next turn to consume, consumer thread only
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    RingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        final int size = Integer.highestOneBit((capacity - 1) << 1 | 1);
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.elements = new AtomicReferenceArray<>(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    boolean offer(T element) {
+        long turn = tail.get();
+        while (true) {
+            final int slot = (int) (turn & mask);
+            final long difference = sequences.get(slot) - turn;
+            if (difference == 0) {
+                if (tail.compareAndSet(turn, turn + 1)) {
+                    elements.lazySet(slot, element);
+                    sequences.set(slot, turn + 1);  //publishes the element
+                    return true;
+                }
+                turn = tail.get();
+            } else if (difference < 0) {
+                return false;  //the slot still holds an element of the previous round
+            } else {
+                turn = tail.get();  //another producer took this turn
+            }
+        }
+    }
+
+    /**
+     * Must only be called by the consumer thread.
+     *
+     * @return the oldest element, null if the buffer is empty
+     */
+    T poll() {
+        final int slot = (int) (head & mask);
+        if (sequences.get(slot) != head + 1) {
+            return null;
+        }
+        final T element = elements.get(slot);
+        elements.lazySet(slot, null);
+        sequences.set(slot, head + mask + 1);  //frees the slot for the next round
+        head++;
+        return element;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
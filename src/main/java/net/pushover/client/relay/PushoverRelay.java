@@ -0,0 +1,574 @@
+package net.pushover.client.relay;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.pushover.client.DaemonThreads;
+import net.pushover.client.FormParser;
+import net.pushover.client.MessageFields;
+import net.pushover.client.MessagePriority;
+import net.pushover.client.PushResult;
+import net.pushover.client.PushoverMessage;
+import net.pushover.client.PushoverRestClient;
+import net.pushover.client.Quota;
+import net.pushover.client.Response;
+import org.apache.http.impl.client.HttpClients;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP gateway that lets many internal services share one tuned
+ * {@link PushoverRestClient}: one connection pool, one view of the quota, one
+ * place for retries and rate limiting.
+ * <p>
+ * {@code POST /1/messages.json} accepts the form fields of the Pushover
+ * message API and answers with the API's JSON once the message was sent.
+ * Messages are queued per recipient (user key plus device), up to a bounded
+ * total, and a fixed number of worker threads drains the queues; size the
+ * client's connection pool to match. A recipient's queue is served by one
+ * worker at a time, so its messages leave one after another in the order they
+ * arrived. Identical messages, or messages with the same
+ * {@code X-Idempotency-Key} header, that arrive within the dedup window are
+ * sent once and share the answer. Once the application quota drops to the
+ * reserve, everything but emergency messages is refused until the quota
+ * resets. While a backlog builds up the most recently active recipients are
+ * served first, and messages whose {@code X-Deadline} header (epoch seconds)
+ * has passed are dropped. {@code GET /relay/status} reports queue and quota state.
+ * <p>
+ * Only messages are relayed. Every other API endpoint (receipts, cancel,
+ * user validation, sounds, glances, groups) is answered with HTTP 501;
+ * services call those on the API directly.
+ */
+public class PushoverRelay implements AutoCloseable {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "X-Idempotency-Key";
+    public static final String DEADLINE_HEADER = "X-Deadline";
+
+    private static final Gson GSON = new Gson();
+    private static final int MAX_DEDUP_ENTRIES = 100_000;
+
+    private final PushoverRestClient client;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService workerPool;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    //recipients with queued messages and no worker, each at most once
+    private final BlockingDeque<String> ready = new LinkedBlockingDeque<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int queueCapacity;
+    private final int workers;
+    private final long dedupWindowNanos;
+    private final long replyTimeoutNanos;
+    private final int quotaReserve;
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private volatile Quota quota = Quota.UNKNOWN;
+    private volatile boolean running;
+
+    private PushoverRelay(Builder builder) throws IOException {
+        this.client = builder.client;
+        this.queueCapacity = builder.queueCapacity;
+        this.workers = builder.workers;
+        this.workerPool = Executors.newFixedThreadPool(builder.workers, DaemonThreads.factory("pushover-relay-worker"));
+        this.dedupWindowNanos = builder.dedupWindow.toNanos();
+        this.replyTimeoutNanos = builder.replyTimeout.toNanos();
+        this.quotaReserve = builder.quotaReserve;
+
+        server = HttpServer.create(new InetSocketAddress(builder.host, builder.port), builder.backlog);
+        server.setExecutor(executor);
+        server.createContext("/1/messages.json", this::handleMessage);
+        server.createContext("/relay/status", this::handleStatus);
+        server.createContext("/1/", this::handleUnsupported);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Runs a relay until the process is stopped.
+     *
+     * @param args port to listen on, optionally followed by the upstream API base URL
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        final Builder builder = builder();
+        final PushoverRestClient client = new PushoverRestClient();
+        //one pooled connection per worker, the default pool has only 5 per route
+        client.setHttpClient(HttpClients.custom().useSystemProperties()
+                .setMaxConnPerRoute(builder.workers)
+                .setMaxConnTotal(builder.workers * 2)
+                .build());
+        if (args.length > 1) {
+            client.setApiBaseUrl(args[1]);
+        }
+        final PushoverRelay relay = builder
+                .setClient(client)
+                .setAddress("0.0.0.0", args.length > 0 ? Integer.parseInt(args[0]) : 8080)
+                .build()
+                .start();
+        Runtime.getRuntime().addShutdownHook(new Thread(relay::close));
+        System.out.println("relaying on " + relay.getBaseUrl());
+    }
+
+    public PushoverRelay start() {
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::work);
+        }
+        server.start();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        server.stop(0);
+        workerPool.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the base URL services configure with {@link PushoverRestClient#setApiBaseUrl(String)}
+     */
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/1/";
+    }
+
+    /**
+     * @return the quota reported by the most recent API answer
+     */
+    public Quota getQuota() {
+        return quota;
+    }
+
+    public int getQueueSize() {
+        return queued.get();
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public long getDeduplicatedCount() {
+        return deduplicated.sum();
+    }
+
+    public long getRefusedCount() {
+        return refused.sum();
+    }
+
+    private void handleMessage(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, new Reply(405, error("only POST is supported")));
+                return;
+            }
+            final Map<String, String> form = FormParser.parse(exchange.getRequestHeaders().getFirst("Content-Type"),
+                    exchange.getRequestBody().readAllBytes());
+            final PushoverMessage msg;
+            try {
+                msg = withDeadline(toMessage(form), exchange.getRequestHeaders().getFirst(DEADLINE_HEADER));
+            } catch (IllegalArgumentException e) {
+                respond(exchange, new Reply(400, error(e.getMessage())));
+                return;
+            }
+            respond(exchange, submit(msg, dedupKey(exchange.getRequestHeaders().getFirst(IDEMPOTENCY_KEY_HEADER), form)));
+        }
+    }
+
+    private void handleUnsupported(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            respond(exchange, new Reply(501, error(exchange.getRequestURI().getPath()
+                    + " is not relayed, only messages.json is; call the API directly")));
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            final Quota current = quota;
+            final Map<String, Object> status = new LinkedHashMap<>();
+            status.put("queued", queued.get());
+            status.put("in_flight", inFlight.get());
+            status.put("sent", sent.sum());
+            status.put("deduplicated", deduplicated.sum());
+            status.put("refused", refused.sum());
+            status.put("shed", client.getShedCount());
+            if (current.isKnown()) {
+                status.put("limit", current.limit());
+                status.put("remaining", current.remaining());
+                status.put("reset", current.resetEpochSecond());
+            }
+            respond(exchange, new Reply(200, GSON.toJson(status)));
+        }
+    }
+
+    private Reply submit(PushoverMessage msg, String key) {
+        if (isOverQuota(msg)) {
+            refused.increment();
+            return new Reply(429, error("application quota is exhausted, only emergency messages are relayed"));
+        }
+        final long now = System.nanoTime();
+        final Pending fresh = new Pending(new CompletableFuture<>(), now + dedupWindowNanos);
+        final Pending existing = pending.compute(key, (k, old) ->
+                old != null && old.expiresAtNanos - now > 0L ? old : fresh);
+        if (existing != fresh) {
+            deduplicated.increment();
+            return await(existing.reply);
+        }
+        if (pending.size() > MAX_DEDUP_ENTRIES) {
+            pending.values().removeIf(entry -> entry.expiresAtNanos - now <= 0L);
+        }
+        if (!enqueue(new Job(msg, key, fresh))) {
+            pending.remove(key, fresh);
+            refused.increment();
+            fresh.reply.complete(new Reply(429, error("relay queue is full")));
+        }
+        return await(fresh.reply);
+    }
+
+    /**
+     * Appends the job to its recipient's lane and makes the lane ready unless a worker
+     * already has it or it is waiting already.
+     *
+     * @return false if the relay queue is full
+     */
+    private boolean enqueue(Job job) {
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            return false;
+        }
+        final String recipient = recipientOf(job.msg);
+        final boolean[] schedule = new boolean[1];
+        lanes.compute(recipient, (k, lane) -> {
+            if (lane == null) {
+                lane = new Lane();
+            }
+            lane.jobs.add(job);
+            if (!lane.scheduled) {
+                lane.scheduled = true;
+                schedule[0] = true;
+            }
+            return lane;
+        });
+        if (schedule[0]) {
+            ready.offerLast(recipient);
+        }
+        return true;
+    }
+
+    private Reply await(CompletableFuture<Reply> reply) {
+        try {
+            return reply.get(replyTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return new Reply(504, error("timed out waiting for the API, the message may still be sent"));
+        } catch (ExecutionException e) {
+            return new Reply(502, error(String.valueOf(e.getCause())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Reply(503, error("relay is shutting down"));
+        }
+    }
+
+    private void work() {
+        while (running) {
+            final String recipient;
+            try {
+                //with a backlog the most recently active recipients go first, the oldest are most likely stale already
+                final String newest = queued.get() > workers ? ready.pollLast() : null;
+                recipient = newest != null ? newest : ready.takeFirst();
+            } catch (InterruptedException e) {
+                return;
+            }
+            final Job job = next(recipient);
+            inFlight.incrementAndGet();
+            try {
+                final PushResult result = client.send(job.msg);
+                if (result.quota().isKnown()) {
+                    quota = result.quota();
+                }
+                if (result instanceof PushResult.Success) {
+                    sent.increment();
+                } else {
+                    //only successful sends are deduplicated, a retry of a failure must reach the API
+                    pending.remove(job.key, job.pending);
+                }
+                job.pending.reply.complete(toReply(result));
+            } catch (RuntimeException e) {
+                pending.remove(job.key, job.pending);
+                job.pending.reply.completeExceptionally(e);
+            } finally {
+                inFlight.decrementAndGet();
+                release(recipient);
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest job of a ready lane; a ready lane is never empty and only the worker
+     * that took it from {@link #ready} polls it.
+     */
+    private Job next(String recipient) {
+        final Job[] next = new Job[1];
+        lanes.computeIfPresent(recipient, (k, lane) -> {
+            next[0] = lane.jobs.poll();
+            return lane;
+        });
+        queued.decrementAndGet();
+        return next[0];
+    }
+
+    /**
+     * Hands the lane back after a send: removed once empty, otherwise ready again for any worker.
+     */
+    private void release(String recipient) {
+        final boolean[] schedule = new boolean[1];
+        lanes.computeIfPresent(recipient, (k, lane) -> {
+            if (lane.jobs.isEmpty()) {
+                return null;
+            }
+            schedule[0] = true;
+            return lane;
+        });
+        if (schedule[0]) {
+            ready.offerLast(recipient);
+        }
+    }
+
+    private static String recipientOf(PushoverMessage msg) {
+        return msg.getDevice() == null ? String.valueOf(msg.getUserId()) : msg.getUserId() + '\u0000' + msg.getDevice();
+    }
+
+    private boolean isOverQuota(PushoverMessage msg) {
+        final Quota current = quota;
+        return current.isKnown()
+                && current.remaining() <= quotaReserve
+                && (current.resetEpochSecond() == 0L || current.resetEpochSecond() > System.currentTimeMillis() / 1000)
+                && !MessagePriority.EMERGENCY.equals(msg.getPriority());
+    }
+
+    private static Reply toReply(PushResult result) {
+        final Map<String, Object> body = new LinkedHashMap<>();
+        final Response response = switch (result) {
+            case PushResult.Success success -> success.response();
+            case PushResult.Rejected rejected -> rejected.response();
+            case PushResult.Throttled throttled -> throttled.response();
+            case PushResult.TransportFailure failure -> null;
+        };
+        body.put("status", result instanceof PushResult.Success ? 1 : 0);
+        body.put("request", result.requestId() != null ? result.requestId() : UUID.randomUUID().toString());
+        if (response != null && response.getReceipt() != null && !response.getReceipt().isEmpty()) {
+            body.put("receipt", response.getReceipt());
+        }
+        if (!result.errors().isEmpty()) {
+            body.put("errors", result.errors());
+        }
+        final int httpStatus = switch (result) {
+            case PushResult.Success success -> 200;
+            //the caller's X-Deadline had passed, waiting and retrying will not help
+            case PushResult.Throttled throttled when throttled.isDeadlineExpired() -> 400;
+            case PushResult.Throttled throttled -> 429;
+            case PushResult.TransportFailure failure -> 502;
+            case PushResult.Rejected rejected -> rejected.httpStatus() > 0 ? rejected.httpStatus() : 400;
+        };
+        return new Reply(httpStatus, GSON.toJson(body));
+    }
+
+    static PushoverMessage toMessage(Map<String, String> form) {
+        if (form.keySet().stream().anyMatch(name -> name.endsWith(".size"))) {
+            throw new IllegalArgumentException("attachments are not supported by the relay");
+        }
+        return MessageFields.toBuilder(form).build();
+    }
+
+    private static PushoverMessage withDeadline(PushoverMessage msg, String deadline) {
+        if (deadline == null) {
+            return msg;
+        }
+        try {
+            return msg.toBuilder().setDeadline(Instant.ofEpochSecond(Long.parseLong(deadline.trim()))).build();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(DEADLINE_HEADER + " must be epoch seconds");
+        }
+    }
+
+    private static String dedupKey(String idempotencyKey, Map<String, String> form) {
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            return "key:" + form.get("token") + ':' + idempotencyKey;
+        }
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, String> field : new TreeMap<>(form).entrySet()) {
+                digest.update(field.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(field.getValue().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return "hash:" + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String error(String message) {
+        final Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", 0);
+        body.put("request", UUID.randomUUID().toString());
+        body.put("errors", List.of(message));
+        return GSON.toJson(body);
+    }
+
+    private static void respond(HttpExchange exchange, Reply reply) throws IOException {
+        final byte[] bytes = reply.json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(reply.httpStatus, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private record Reply(int httpStatus, String json) {
+    }
+
+    private record Pending(CompletableFuture<Reply> reply, long expiresAtNanos) {
+    }
+
+    private record Job(PushoverMessage msg, String key, Pending pending) {
+    }
+
+    /**
+     * The queued messages of one recipient; all state is only touched inside compute.
+     */
+    private static final class Lane {
+        private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+        private boolean scheduled;  //waiting in ready or taken by a worker
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private PushoverRestClient client;
+        private String host = "127.0.0.1";
+        private int port = 0;
+        private int backlog = 0;
+        private int queueCapacity = 10_000;
+        private int workers = 16;
+        private Duration dedupWindow = Duration.ofMinutes(1);
+        private Duration replyTimeout = Duration.ofSeconds(30);
+        private int quotaReserve = 0;
+
+        private Builder() {
+        }
+
+        public PushoverRelay build() throws IOException {
+            if (client == null) {
+                throw new IllegalArgumentException("a client is required");
+            }
+            return new PushoverRelay(this);
+        }
+
+        /**
+         * @param client the shared client all messages are sent with, configure limiter, endpoints etc. on it
+         * @return the current Builder instance
+         */
+        public Builder setClient(PushoverRestClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * @param host (optional) - address to bind, defaults to 127.0.0.1
+         * @param port (optional) - port to bind, defaults to 0 for a free port
+         * @return the current Builder instance
+         */
+        public Builder setAddress(String host, int port) {
+            this.host = host;
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param backlog (optional) - TCP accept backlog, defaults to the system default
+         * @return the current Builder instance
+         */
+        public Builder setBacklog(int backlog) {
+            this.backlog = backlog;
+            return this;
+        }
+
+        /**
+         * @param queueCapacity (optional) - messages waiting to be sent before new ones are refused
+         * with HTTP 429, defaults to 10000
+         * @return the current Builder instance
+         */
+        public Builder setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param workers (optional) - messages sent concurrently, defaults to 16
+         * @return the current Builder instance
+         */
+        public Builder setWorkers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * @param dedupWindow (optional) - how long a message is remembered for deduplication, defaults to 1 minute
+         * @return the current Builder instance
+         */
+        public Builder setDedupWindow(Duration dedupWindow) {
+            this.dedupWindow = dedupWindow;
+            return this;
+        }
+
+        /**
+         * @param replyTimeout (optional) - how long a caller waits for its message to be sent, defaults to 30 seconds
+         * @return the current Builder instance
+         */
+        public Builder setReplyTimeout(Duration replyTimeout) {
+            this.replyTimeout = replyTimeout;
+            return this;
+        }
+
+        /**
+         * @param quotaReserve (optional) - remaining quota kept for emergency messages, defaults to 0
+         * @return the current Builder instance
+         */
+        public Builder setQuotaReserve(int quotaReserve) {
+            this.quotaReserve = quotaReserve;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package net.pushover.client.replay;
+
+import java.time.Duration;
+
+/**
+ * Result of a {@link TraceReplayer} run, meant to be compared across builds of the library.
+ * Latencies are measured from the time a send was due according to the trace, so sends that
+ * queued behind slow ones are not hidden.
+ *
+ * @param sent number of sends started
+ * @param succeeded sends the API accepted
+ * @param failed sends that were rejected, throttled or failed
+ * @param elapsed wall time of the replay
+ * @param throughput completed sends per second
+ * @param p50 median latency
+ * @param p90 90th percentile latency
+ * @param p99 99th percentile latency
+ * @param p999 99.9th percentile latency
+ * @param max highest latency
+ * @param allocatedBytes heap allocated during the replay by the threads that did client work: the
+ *                       replaying thread, which builds the messages, and the threads the sends ran
+ *                       on. Threads of an in-process stub and other background threads are not
+ *                       counted. -1 if the JVM cannot measure it
+ * @param allocationRate allocated bytes per second, -1 if unknown
+ */
+public record ReplayReport(long sent, long succeeded, long failed, Duration elapsed, double throughput,
+                           Duration p50, Duration p90, Duration p99, Duration p999, Duration max,
+                           long allocatedBytes, double allocationRate) {
+
+    @Override
+    public String toString() {
+        return String.format("sent=%d succeeded=%d failed=%d elapsed=%dms throughput=%.1f/s "
+                        + "p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms allocated=%s rate=%s",
+                sent, succeeded, failed, elapsed.toMillis(), throughput,
+                millis(p50), millis(p90), millis(p99), millis(p999), millis(max),
+                allocatedBytes < 0 ? "unknown" : allocatedBytes / 1024 + "KiB",
+                allocationRate < 0 ? "unknown" : String.format("%.1fMiB/s", allocationRate / (1024 * 1024)));
+    }
+
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1_000_000.0;
+    }
+}
@@ -0,0 +1,81 @@
+package net.pushover.client.replay;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Binary layout of a trace file: a header with {@link #MAGIC} and {@link #VERSION}, then one
+ * entry per send, all numbers as unsigned LEB128 varints:
+ * <pre>
+ * delta nanos since the previous send, token index, user index,
+ * priority ordinal (one byte), flags (one byte), message length,
+ * [title length] [url length] [url title length] [attachment bytes],
+ * ttl, [retry, expire for emergency messages]
+ * </pre>
+ * Bracketed values are only present when their flag is set.
+ */
+final class TraceFormat {
+
+    static final int MAGIC = 0x504f5452;  //"POTR"
+    static final int VERSION = 1;
+
+    static final int TITLE = 1;
+    static final int URL = 1 << 1;
+    static final int URL_TITLE = 1 << 2;
+    static final int DEVICE = 1 << 3;
+    static final int SOUND = 1 << 4;
+    static final int HTML = 1 << 5;
+    static final int MONOSPACE = 1 << 6;
+    static final int ATTACHMENT = 1 << 7;
+
+    private TraceFormat() {
+    }
+
+    static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * @return the value, or -1 at the end of the stream before the first byte
+     * @throws EOFException if the stream ends within the value
+     */
+    static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("truncated trace entry");
+            }
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint in trace");
+    }
+
+    static long readRequiredVarLong(InputStream in) throws IOException {
+        final long value = readVarLong(in);
+        if (value < 0) {
+            throw new EOFException("truncated trace entry");
+        }
+        return value;
+    }
+
+    static int readRequiredByte(InputStream in) throws IOException {
+        final int b = in.read();
+        if (b < 0) {
+            throw new EOFException("truncated trace entry");
+        }
+        return b;
+    }
+}
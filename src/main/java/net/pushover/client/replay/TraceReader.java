@@ -0,0 +1,96 @@
+package net.pushover.client.replay;
+
+import net.pushover.client.MessagePriority;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads a trace written by the {@link TraceRecorder} one entry at a time, so traces of a
+ * whole day do not have to fit in memory.
+ */
+public final class TraceReader implements Closeable {
+
+    private static final MessagePriority[] PRIORITIES = MessagePriority.values();
+
+    private final DataInputStream in;
+    private long offsetNanos;
+
+    private TraceReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        try {
+            if (this.in.readInt() != TraceFormat.MAGIC) {
+                throw new IOException("not a pushover trace");
+            }
+            final int version = this.in.readUnsignedByte();
+            if (version != TraceFormat.VERSION) {
+                throw new IOException("unsupported trace version " + version);
+            }
+        } catch (EOFException e) {
+            throw new IOException("not a pushover trace", e);
+        }
+    }
+
+    /**
+     * @param file a trace file
+     * @return a reader positioned at the first entry
+     * @throws IOException if the file cannot be read or is not a trace
+     */
+    public static TraceReader open(Path file) throws IOException {
+        final InputStream in = Files.newInputStream(file);
+        try {
+            return new TraceReader(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the next entry, null at the end of the trace
+     * @throws IOException if the trace cannot be read or ends within an entry
+     */
+    public TraceRecord next() throws IOException {
+        final long delta = TraceFormat.readVarLong(in);
+        if (delta < 0) {
+            return null;
+        }
+        offsetNanos += delta;
+        final int token = (int) TraceFormat.readRequiredVarLong(in);
+        final int user = (int) TraceFormat.readRequiredVarLong(in);
+        final int priority = TraceFormat.readRequiredByte(in);
+        if (priority >= PRIORITIES.length) {
+            throw new IOException("unknown priority " + priority + " in trace");
+        }
+        final int flags = TraceFormat.readRequiredByte(in);
+        final int messageLength = (int) TraceFormat.readRequiredVarLong(in);
+        final int titleLength = optional(flags, TraceFormat.TITLE);
+        final int urlLength = optional(flags, TraceFormat.URL);
+        final int urlTitleLength = optional(flags, TraceFormat.URL_TITLE);
+        final long attachmentBytes = (flags & TraceFormat.ATTACHMENT) != 0 ? TraceFormat.readRequiredVarLong(in) : -1;
+        final int ttl = (int) TraceFormat.readRequiredVarLong(in);
+        final boolean emergency = PRIORITIES[priority] == MessagePriority.EMERGENCY;
+        final int retry = emergency ? (int) TraceFormat.readRequiredVarLong(in) : 0;
+        final int expire = emergency ? (int) TraceFormat.readRequiredVarLong(in) : 0;
+        return new TraceRecord(offsetNanos, token, user, PRIORITIES[priority], messageLength,
+                titleLength, urlLength, urlTitleLength,
+                (flags & TraceFormat.DEVICE) != 0, (flags & TraceFormat.SOUND) != 0,
+                (flags & TraceFormat.HTML) != 0, (flags & TraceFormat.MONOSPACE) != 0,
+                attachmentBytes, ttl, retry, expire);
+    }
+
+    private int optional(int flags, int flag) throws IOException {
+        return (flags & flag) != 0 ? (int) TraceFormat.readRequiredVarLong(in) : -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,49 @@
+package net.pushover.client.replay;
+
+import net.pushover.client.MessagePriority;
+import net.pushover.client.PushoverMessage;
+
+/**
+ * Shape of one recorded send: when it happened, who it went to and how large its parts were,
+ * but none of its content. Tokens and users are replaced by the order in which the recorder
+ * first saw them, so fan-out and per-user bursts survive the anonymization.
+ *
+ * @param offsetNanos time since the start of the recording
+ * @param token index of the application token
+ * @param user index of the user or group key
+ * @param priority the priority of the message
+ * @param messageLength characters of the message body
+ * @param titleLength characters of the title, -1 without title
+ * @param urlLength characters of the supplementary url, -1 without url
+ * @param urlTitleLength characters of the url title, -1 without url title
+ * @param device whether a device was targeted
+ * @param sound whether a sound was set
+ * @param html whether the message is formatted with HTML
+ * @param monospace whether the message is formatted with a monospace font
+ * @param attachmentBytes size of the image, -1 without image
+ * @param ttl seconds until the message is deleted, 0 to keep it
+ * @param retry retry interval of an emergency message, 0 otherwise
+ * @param expire expiry of an emergency message, 0 otherwise
+ */
+public record TraceRecord(long offsetNanos, int token, int user, MessagePriority priority, int messageLength,
+                          int titleLength, int urlLength, int urlTitleLength, boolean device, boolean sound,
+                          boolean html, boolean monospace, long attachmentBytes, int ttl, int retry, int expire) {
+
+    /**
+     * @return the shape of the message, with the given offset and anonymized token and user
+     */
+    static TraceRecord of(PushoverMessage msg, long offsetNanos, int token, int user) {
+        final MessagePriority priority = msg.getPriority() != null ? msg.getPriority() : MessagePriority.NORMAL;
+        final boolean emergency = priority == MessagePriority.EMERGENCY;
+        return new TraceRecord(offsetNanos, token, user, priority,
+                Math.max(0, lengthOf(msg.getMessage())),
+                lengthOf(msg.getTitle()), lengthOf(msg.getUrl()), lengthOf(msg.getTitleForURL()),
+                msg.getDevice() != null, msg.getSound() != null, msg.getHTML(), msg.getMonospace(),
+                msg.getImage() != null ? msg.getImage().length() : -1,
+                msg.getTtl(), emergency ? msg.getRetry() : 0, emergency ? msg.getExpire() : 0);
+    }
+
+    private static int lengthOf(String value) {
+        return value == null ? -1 : value.length();
+    }
+}
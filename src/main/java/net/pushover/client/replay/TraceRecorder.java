@@ -0,0 +1,180 @@
+package net.pushover.client.replay;
+
+import net.pushover.client.MessagePriority;
+import net.pushover.client.PushOverSound;
+import net.pushover.client.PushoverClient;
+import net.pushover.client.PushoverException;
+import net.pushover.client.PushoverMessage;
+import net.pushover.client.Status;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the shape of every message send into a compact binary trace file (see
+ * {@link TraceFormat}) for the {@link TraceReplayer}. Only timing, sizes and flags are
+ * written: no text, and tokens and user keys are replaced by the order in which they
+ * were first seen. The mapping only lives in memory.
+ * <p>
+ * Thread-safe. Wrap the production client with {@link #recording(PushoverClient)} or call
+ * {@link #record(PushoverMessage)} next to the send. A failed write stops the recording
+ * and is counted instead of failing the send.
+ */
+public final class TraceRecorder implements Closeable {
+
+    private final DataOutputStream out;
+    private final long startNanos;
+    private final Map<String, Integer> tokens = new HashMap<>();
+    private final Map<String, Integer> users = new HashMap<>();
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private long lastNanos;
+    private boolean closed;
+
+    private TraceRecorder(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(TraceFormat.MAGIC);
+        this.out.writeByte(TraceFormat.VERSION);
+        this.startNanos = System.nanoTime();
+        this.lastNanos = startNanos;
+    }
+
+    /**
+     * @param file the trace file, replaced if it exists
+     * @return a recorder writing to the file
+     * @throws IOException if the file cannot be created
+     */
+    public static TraceRecorder create(Path file) throws IOException {
+        return new TraceRecorder(Files.newOutputStream(file));
+    }
+
+    /**
+     * @param delegate the client that sends the messages
+     * @return a client that records every {@link PushoverClient#pushMessage(PushoverMessage)} before passing it on
+     */
+    public PushoverClient recording(PushoverClient delegate) {
+        return new PushoverClient() {
+            @Override
+            public Status pushMessage(PushoverMessage msg) throws PushoverException {
+                record(msg);
+                return delegate.pushMessage(msg);
+            }
+
+            @Override
+            public Set<PushOverSound> getSounds() throws PushoverException {
+                return delegate.getSounds();
+            }
+        };
+    }
+
+    /**
+     * Appends the shape of the message, stamped with the current time.
+     *
+     * @param msg the message about to be sent
+     */
+    public void record(PushoverMessage msg) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            final long now = System.nanoTime();
+            final TraceRecord record = TraceRecord.of(msg, now - startNanos,
+                    indexOf(tokens, msg.getApiToken()), indexOf(users, msg.getUserId()));
+            try {
+                write(record, now - lastNanos);
+                lastNanos = now;
+                recorded.increment();
+            } catch (IOException e) {
+                failed.increment();
+                closeQuietly();
+            }
+        }
+    }
+
+    private static int indexOf(Map<String, Integer> indexes, String key) {
+        return indexes.computeIfAbsent(String.valueOf(key), k -> indexes.size());
+    }
+
+    private void write(TraceRecord record, long deltaNanos) throws IOException {
+        int flags = 0;
+        flags |= record.titleLength() >= 0 ? TraceFormat.TITLE : 0;
+        flags |= record.urlLength() >= 0 ? TraceFormat.URL : 0;
+        flags |= record.urlTitleLength() >= 0 ? TraceFormat.URL_TITLE : 0;
+        flags |= record.device() ? TraceFormat.DEVICE : 0;
+        flags |= record.sound() ? TraceFormat.SOUND : 0;
+        flags |= record.html() ? TraceFormat.HTML : 0;
+        flags |= record.monospace() ? TraceFormat.MONOSPACE : 0;
+        flags |= record.attachmentBytes() >= 0 ? TraceFormat.ATTACHMENT : 0;
+
+        TraceFormat.writeVarLong(out, deltaNanos);
+        TraceFormat.writeVarLong(out, record.token());
+        TraceFormat.writeVarLong(out, record.user());
+        out.writeByte(record.priority().ordinal());
+        out.writeByte(flags);
+        TraceFormat.writeVarLong(out, record.messageLength());
+        if (record.titleLength() >= 0) {
+            TraceFormat.writeVarLong(out, record.titleLength());
+        }
+        if (record.urlLength() >= 0) {
+            TraceFormat.writeVarLong(out, record.urlLength());
+        }
+        if (record.urlTitleLength() >= 0) {
+            TraceFormat.writeVarLong(out, record.urlTitleLength());
+        }
+        if (record.attachmentBytes() >= 0) {
+            TraceFormat.writeVarLong(out, record.attachmentBytes());
+        }
+        TraceFormat.writeVarLong(out, record.ttl());
+        if (record.priority() == MessagePriority.EMERGENCY) {
+            TraceFormat.writeVarLong(out, record.retry());
+            TraceFormat.writeVarLong(out, record.expire());
+        }
+    }
+
+    /**
+     * @return number of sends written to the trace
+     */
+    public long getRecordedCount() {
+        return recorded.sum();
+    }
+
+    /**
+     * @return number of write failures, the recording stops at the first one
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Flushes and closes the trace file. Later sends are not recorded.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            out.close();
+        }
+    }
+
+    private void closeQuietly() {
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            //already failing
+        }
+    }
+}
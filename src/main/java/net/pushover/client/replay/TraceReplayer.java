@@ -0,0 +1,394 @@
+package net.pushover.client.replay;
+
+import net.pushover.client.DaemonThreads;
+import net.pushover.client.MessagePriority;
+import net.pushover.client.PushResult;
+import net.pushover.client.PushoverMessage;
+import net.pushover.client.PushoverRestClient;
+import net.pushover.client.simulator.PushoverSimulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a trace recorded by the {@link TraceRecorder} through a {@link PushoverRestClient},
+ * normally pointed at a local stub such as the {@link PushoverSimulator}, and reports
+ * throughput, latency percentiles and the allocation rate of the client's threads
+ * (see {@link ReplayReport}).
+ * <p>
+ * The sends keep the recorded timing, optionally sped up or slowed down, and the recorded
+ * shapes: texts of the recorded lengths, attachments of the recorded sizes, priorities and
+ * flags. Token number {@code i} is sent as {@code replay-token-i} and user number {@code i}
+ * as {@code replay-user-i}. The simulator accepts every key when it has no registered users.
+ * <p>
+ * At most {@link Builder#setConcurrency(int) concurrency} sends are outstanding. In
+ * {@link Mode#SYNC} they run on a pool of platform threads calling
+ * {@link PushoverRestClient#send(PushoverMessage)}, in {@link Mode#ASYNC} they go through
+ * {@link PushoverRestClient#sendAsync(PushoverMessage)}.
+ */
+public final class TraceReplayer {
+
+    public enum Mode { SYNC, ASYNC }
+
+    private static final String URL_PREFIX = "https://example.com/";
+
+    private final PushoverRestClient client;
+    private final Mode mode;
+    private final double speed;
+    private final int concurrency;
+
+    private TraceReplayer(Builder builder) {
+        this.client = builder.client;
+        this.mode = builder.mode;
+        this.speed = builder.speed;
+        this.concurrency = builder.concurrency;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Replays the trace and waits for the last send to complete.
+     *
+     * @param trace a trace file
+     * @return the measurements of the run
+     * @throws IOException if the trace cannot be read, or the thread was interrupted
+     */
+    public ReplayReport replay(Path trace) throws IOException {
+        final Path attachmentDir = Files.createTempDirectory("pushover-replay");
+        final Map<Long, File> attachments = new HashMap<>();
+        final ExecutorService senders = mode == Mode.SYNC
+                ? Executors.newFixedThreadPool(concurrency, DaemonThreads.factory("pushover-replay")) : null;
+        final Semaphore permits = new Semaphore(concurrency);
+        final Latencies latencies = new Latencies();
+        final LongAdder succeeded = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        long sent = 0;
+
+        final AllocationMeter allocations = new AllocationMeter();
+        allocations.track();
+        final long start = System.nanoTime();
+        final long elapsedNanos;
+        final long allocated;
+        try (TraceReader reader = TraceReader.open(trace)) {
+            long firstOffset = -1;
+            for (TraceRecord record = reader.next(); record != null; record = reader.next()) {
+                if (firstOffset < 0) {
+                    firstOffset = record.offsetNanos();
+                }
+                final PushoverMessage msg = toMessage(record, attachments, attachmentDir);
+                long due = -1;
+                if (speed > 0) {
+                    due = start + (long) ((record.offsetNanos() - firstOffset) / speed);
+                    for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                permits.acquire();
+                final long sentAt = due < 0 ? System.nanoTime() : due;
+                sent++;
+                if (senders != null) {
+                    senders.execute(() -> {
+                        PushResult result = null;
+                        allocations.track();
+                        try {
+                            result = client.send(msg);
+                        } finally {
+                            complete(result, sentAt, latencies, succeeded, failed, permits);
+                        }
+                    });
+                } else {
+                    client.sendAsync(msg).whenComplete((result, error) -> {
+                        allocations.track();  //runs on the thread that sent, unless the send completed at once
+                        complete(result, sentAt, latencies, succeeded, failed, permits);
+                    });
+                }
+            }
+            permits.acquire(concurrency);
+            elapsedNanos = System.nanoTime() - start;
+            allocated = allocations.allocatedBytes();  //while the senders are still alive
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while replaying " + trace);
+        } finally {
+            if (senders != null) {
+                senders.shutdownNow();
+            }
+            for (File attachment : attachments.values()) {
+                Files.deleteIfExists(attachment.toPath());
+            }
+            Files.deleteIfExists(attachmentDir);
+        }
+        final long[] sorted = latencies.sorted();
+        final double seconds = elapsedNanos / 1e9;
+        return new ReplayReport(sent, succeeded.sum(), failed.sum(), Duration.ofNanos(elapsedNanos),
+                seconds > 0 ? sorted.length / seconds : 0,
+                percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), percentile(sorted, 1.0),
+                allocated, allocated < 0 || seconds <= 0 ? -1 : allocated / seconds);
+    }
+
+    private static void complete(PushResult result, long sentAt, Latencies latencies, LongAdder succeeded,
+                                 LongAdder failed, Semaphore permits) {
+        latencies.add(System.nanoTime() - sentAt);
+        (result != null && result.isSuccess() ? succeeded : failed).increment();
+        permits.release();
+    }
+
+    private static PushoverMessage toMessage(TraceRecord record, Map<Long, File> attachments, Path attachmentDir)
+            throws IOException {
+        final PushoverMessage.Builder builder = PushoverMessage.builderWithApiToken("replay-token-" + record.token())
+                .setUserId("replay-user-" + record.user())
+                .setMessage("m".repeat(record.messageLength()))
+                .setPriority(record.priority())
+                .setHTML(record.html())
+                .setMonospace(record.monospace())
+                .setTtl(record.ttl());
+        if (record.titleLength() >= 0) {
+            builder.setTitle("t".repeat(record.titleLength()));
+        }
+        if (record.urlLength() >= 0) {
+            builder.setUrl(URL_PREFIX + "u".repeat(Math.max(0, record.urlLength() - URL_PREFIX.length())));
+        }
+        if (record.urlTitleLength() >= 0) {
+            builder.setTitleForURL("l".repeat(record.urlTitleLength()));
+        }
+        if (record.device()) {
+            builder.setDevice("phone");
+        }
+        if (record.sound()) {
+            builder.setSound("pushover");
+        }
+        if (record.priority() == MessagePriority.EMERGENCY) {
+            builder.setRetry(record.retry()).setExpire(record.expire());
+        }
+        if (record.attachmentBytes() >= 0) {
+            builder.setImage(attachmentOf(record.attachmentBytes(), attachments, attachmentDir));
+        }
+        return builder.build();
+    }
+
+    private static File attachmentOf(long size, Map<Long, File> attachments, Path attachmentDir) throws IOException {
+        File attachment = attachments.get(size);
+        if (attachment == null) {
+            attachment = attachmentDir.resolve("attachment-" + size + ".jpg").toFile();
+            try (RandomAccessFile file = new RandomAccessFile(attachment, "rw")) {
+                file.setLength(size);
+            }
+            attachments.put(size, attachment);
+        }
+        return attachment;
+    }
+
+    private static Duration percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Duration.ZERO;
+        }
+        final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return Duration.ofNanos(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+    }
+
+    /**
+     * Heap allocated by the threads that did client work: the replaying thread and the threads
+     * the sends ran on. Other threads, e.g. those of an in-process stub, are not counted.
+     */
+    private static final class AllocationMeter {
+
+        private final com.sun.management.ThreadMXBean threads;
+        private final Map<Long, Long> before = new HashMap<>();
+        private final Set<Long> clientThreads = ConcurrentHashMap.newKeySet();
+
+        AllocationMeter() {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                    && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                threads = bean;
+                final long[] ids = bean.getAllThreadIds();
+                final long[] bytes = bean.getThreadAllocatedBytes(ids);
+                for (int i = 0; i < ids.length; i++) {
+                    before.put(ids[i], bytes[i]);
+                }
+            } else {
+                threads = null;
+            }
+        }
+
+        void track() {
+            clientThreads.add(Thread.currentThread().threadId());
+        }
+
+        /**
+         * @return bytes allocated since creation by the tracked threads that are still alive, -1 if unknown
+         */
+        long allocatedBytes() {
+            if (threads == null) {
+                return -1;
+            }
+            final long[] ids = clientThreads.stream().mapToLong(Long::longValue).toArray();
+            final long[] bytes = threads.getThreadAllocatedBytes(ids);
+            long total = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (bytes[i] >= 0) {
+                    total += bytes[i] - before.getOrDefault(ids[i], 0L);
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Latencies of the completed sends, growing as needed.
+     */
+    private static final class Latencies {
+
+        private long[] values = new long[1024];
+        private int size;
+
+        synchronized void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        synchronized long[] sorted() {
+            final long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * Command line entry point, see {@link #usage()}. Prints the {@link ReplayReport}.
+     *
+     * @param args the command line
+     */
+    public static void main(String[] args) {
+        Path trace = null;
+        String baseUrl = null;
+        final Builder builder = builder();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                final String value = i + 1 < args.length ? args[i + 1] : null;
+                switch (args[i]) {
+                    case "--trace" -> trace = Path.of(value);
+                    case "--base-url" -> baseUrl = value;
+                    case "--speed" -> builder.setSpeed(Double.parseDouble(value));
+                    case "--mode" -> builder.setMode(Mode.valueOf(value.toUpperCase()));
+                    case "--concurrency" -> builder.setConcurrency(Integer.parseInt(value));
+                    default -> throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+                i++;
+            }
+            if (trace == null) {
+                throw new IllegalArgumentException("--trace is required");
+            }
+        } catch (IllegalArgumentException | NullPointerException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            System.exit(2);
+        }
+
+        if (baseUrl == null) {
+            //the JDK HTTP server delays small answers without it, which would dominate the measurement
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        //the stub keeps no history and no quota, a long replay must neither fill its heap nor run into 429s
+        try (PushoverSimulator simulator = baseUrl == null
+                ? PushoverSimulator.builder().setHistoryLimit(0).setMonthlyLimit(Integer.MAX_VALUE).build().start()
+                : null) {
+            final PushoverRestClient client = new PushoverRestClient();
+            client.setApiBaseUrl(baseUrl != null ? baseUrl : simulator.getBaseUrl());
+            System.out.println(builder.setClient(client).build().replay(trace));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(3);
+        }
+    }
+
+    static String usage() {
+        return """
+                usage: TraceReplayer --trace <file> [options]
+                  --base-url <url>           API base URL, defaults to an in-process simulator
+                  --speed <factor>           2 replays twice as fast, 0 as fast as possible, defaults to 1
+                  --mode sync|async          send or sendAsync, defaults to sync
+                  --concurrency <n>          outstanding sends, defaults to 4""";
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private PushoverRestClient client;
+        private Mode mode = Mode.SYNC;
+        private double speed = 1.0;
+        private int concurrency = 4;
+
+        private Builder() {
+        }
+
+        public TraceReplayer build() {
+            if (client == null) {
+                throw new IllegalStateException("a client is required");
+            }
+            return new TraceReplayer(this);
+        }
+
+        /**
+         * @param client the client to measure, pointed at a local stub
+         * @return the current Builder instance
+         */
+        public Builder setClient(PushoverRestClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * @param mode (optional) - whether to drive the synchronous or the asynchronous API, defaults to SYNC
+         * @return the current Builder instance
+         */
+        public Builder setMode(Mode mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        /**
+         * @param speed (optional) - factor applied to the recorded pace, 0 to send as fast as possible, defaults to 1
+         * @return the current Builder instance
+         */
+        public Builder setSpeed(double speed) {
+            if (speed < 0 || Double.isNaN(speed)) {
+                throw new IllegalArgumentException("invalid speed " + speed);
+            }
+            this.speed = speed;
+            return this;
+        }
+
+        /**
+         * @param concurrency (optional) - maximum outstanding sends, defaults to 4
+         * @return the current Builder instance
+         */
+        public Builder setConcurrency(int concurrency) {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("invalid concurrency " + concurrency);
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package net.pushover.client.simulator;
+
+import java.util.Random;
+
+/**
+ * Distribution of the artificial latency the {@link PushoverSimulator} adds to every request.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /**
+     * @param random source of randomness owned by the simulator
+     * @return the latency of the next request in milliseconds
+     */
+    long nextMillis(Random random);
+
+    static LatencyDistribution none() {
+        return random -> 0L;
+    }
+
+    static LatencyDistribution constant(long millis) {
+        return random -> millis;
+    }
+
+    static LatencyDistribution uniform(long minMillis, long maxMillis) {
+        return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+    }
+
+    /**
+     * Log-normal latency, a good model for the long tail of real API latencies.
+     *
+     * @param medianMillis the median latency
+     * @param sigma spread of the tail, 0.5 is moderate and 1.0 heavy
+     * @return the distribution
+     */
+    static LatencyDistribution logNormal(double medianMillis, double sigma) {
+        return random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+    }
+}
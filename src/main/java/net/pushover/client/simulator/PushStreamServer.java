@@ -0,0 +1,233 @@
+package net.pushover.client.simulator;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiPredicate;
+
+/**
+ * Minimal websocket server standing in for the Open Client push server. Devices log in with
+ * a {@code login:<device id>:<secret>} text frame and are then sent single character frames:
+ * {@code !} when new messages are waiting, {@code E} after a failed login. Only unfragmented
+ * frames are understood, which is all the push protocol uses.
+ */
+final class PushStreamServer implements Closeable {
+
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int TEXT = 0x1;
+    private static final int CLOSE = 0x8;
+    private static final int PING = 0x9;
+    private static final int PONG = 0xA;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final BiPredicate<String, String> authenticator;
+    private final Map<Connection, String> connections = new ConcurrentHashMap<>();  //to device id, once logged in
+
+    /**
+     * @param authenticator tests a device id and secret
+     */
+    PushStreamServer(InetAddress address, BiPredicate<String, String> authenticator) throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, address);
+        this.authenticator = authenticator;
+        executor.execute(this::accept);
+    }
+
+    String getUrl() {
+        return "ws://" + serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort() + "/push";
+    }
+
+    /**
+     * Sends a frame to every connection logged in as the device.
+     */
+    void send(String deviceId, char frame) {
+        connections.forEach((connection, device) -> {
+            if (device.equals(deviceId)) {
+                connection.sendQuietly(frame);
+            }
+        });
+    }
+
+    /**
+     * Sends a frame to every logged in connection.
+     */
+    void sendAll(char frame) {
+        connections.keySet().forEach(connection -> connection.sendQuietly(frame));
+    }
+
+    int getConnectionCount() {
+        return connections.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Connection connection : connections.keySet()) {
+            connection.socket.close();
+        }
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;  //closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        final Connection connection = new Connection(socket);
+        try (socket) {
+            final InputStream in = new BufferedInputStream(socket.getInputStream());
+            final OutputStream out = socket.getOutputStream();
+            String key = null;
+            for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+                if (line.toLowerCase(Locale.ROOT).startsWith("sec-websocket-key:")) {
+                    key = line.substring("sec-websocket-key:".length()).trim();
+                }
+            }
+            if (key == null) {
+                out.write("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + acceptOf(key) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            while (true) {
+                final int header = in.read();
+                if (header < 0) {
+                    return;
+                }
+                final byte[] payload = readPayload(in);
+                switch (header & 0x0F) {
+                    case TEXT -> {
+                        final String[] login = new String(payload, StandardCharsets.UTF_8).trim().split(":", 3);
+                        if (login.length == 3 && login[0].equals("login") && authenticator.test(login[1], login[2])) {
+                            connections.put(connection, login[1]);
+                        } else {
+                            connection.send(TEXT, new byte[]{'E'});
+                        }
+                    }
+                    case PING -> connection.send(PONG, payload);
+                    case CLOSE -> {
+                        connection.send(CLOSE, payload);
+                        return;
+                    }
+                    default -> {
+                        //pongs and binary frames are ignored
+                    }
+                }
+            }
+        } catch (IOException e) {
+            //connection dropped
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    private static byte[] readPayload(InputStream in) throws IOException {
+        final int second = read(in);
+        long length = second & 0x7F;
+        if (length == 126) {
+            length = (long) read(in) << 8 | read(in);
+        } else if (length == 127) {
+            length = 0;
+            for (int i = 0; i < 8; i++) {
+                length = length << 8 | read(in);
+            }
+        }
+        if (length > 65536) {
+            throw new IOException("frame too large");
+        }
+        final byte[] mask = (second & 0x80) != 0 ? in.readNBytes(4) : null;
+        final byte[] payload = in.readNBytes((int) length);
+        if (payload.length != length) {
+            throw new IOException("truncated frame");
+        }
+        if (mask != null) {
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] ^= mask[i & 3];
+            }
+        }
+        return payload;
+    }
+
+    private static int read(InputStream in) throws IOException {
+        final int b = in.read();
+        if (b < 0) {
+            throw new IOException("truncated frame");
+        }
+        return b;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                throw new IOException("connection closed during handshake");
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static String acceptOf(String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest((key + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Connection {
+
+        private final Socket socket;
+
+        private Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Writes an unmasked frame, servers never mask.
+         */
+        synchronized void send(int opcode, byte[] payload) throws IOException {
+            final OutputStream out = socket.getOutputStream();
+            out.write(0x80 | opcode);
+            out.write(payload.length);  //control and push frames are always shorter than 126 bytes
+            out.write(payload);
+            out.flush();
+        }
+
+        void sendQuietly(char frame) {
+            try {
+                send(TEXT, new byte[]{(byte) frame});
+            } catch (IOException e) {
+                //the reading side notices the dropped connection
+            }
+        }
+    }
+}
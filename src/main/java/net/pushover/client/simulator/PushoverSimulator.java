@@ -0,0 +1,825 @@
+package net.pushover.client.simulator;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.pushover.client.FormParser;
+import net.pushover.client.MessageValidator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embeddable local stand-in for the Pushover API, for load and regression
+ * tests that must not spend real quota.
+ * <p>
+ * Implements {@code messages.json}, {@code users/validate.json},
+ * {@code receipts/*.json}, {@code receipts/*&#47;cancel.json} and
+ * {@code sounds.json} with configurable latency, injected server errors and
+ * 429s, the X-Limit-App-* headers and simulated acknowledgement of emergency
+ * receipts. Point a client at it with
+ * {@code PushoverRestClient.setApiBaseUrl(simulator.getBaseUrl())}.
+ * <p>
+ * The delivery group calls {@code groups.json}, {@code groups/create.json}, {@code groups/*.json},
+ * {@code groups/*&#47;add_user.json} and {@code groups/*&#47;delete_user.json} are simulated as well;
+ * a group key is accepted as the user of a message and delivers to the group's members.
+ * <p>
+ * The Open Client calls {@code users/login.json}, {@code devices.json}, {@code messages.json},
+ * {@code devices/*&#47;update_highest_message.json} and {@code receipts/*&#47;acknowledge.json}
+ * are simulated for the logins added with {@link Builder#addLogin(String, String, String)},
+ * along with a websocket push server at {@link #getPushStreamUrl()}. Accepted messages are
+ * delivered to the registered devices of their user.
+ * <p>
+ * Accepted messages, glance updates and emergency receipts are kept for
+ * inspection up to the {@link Builder#setHistoryLimit(int) history limit}; beyond
+ * it the oldest are forgotten, so long load runs do not fill the heap.
+ */
+public class PushoverSimulator implements AutoCloseable {
+
+    /** sounds listed by sounds.json and accepted by messages.json */
+    public static final Set<String> SOUNDS = MessageValidator.BUILT_IN_SOUNDS;
+
+    private static final Gson GSON = new Gson();
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Random random;
+
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final double throttleRate;
+    private final int monthlyLimit;
+    private final long resetEpochSecond;
+    private final Duration acknowledgeAfter;
+    private final Map<String, List<String>> users;
+
+    private final AtomicInteger remaining;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final History<Map<String, String>> messages;
+    private final History<Map<String, String>> glances;
+    private final Map<String, SimulatedReceipt> receipts;
+    private final Map<String, List<String>> logins;  //e-mail to password and user key
+    private final Map<String, String> sessions = new ConcurrentHashMap<>();  //secret to user key
+    private final Map<String, SimulatedDevice> devices = new ConcurrentHashMap<>();
+    private final Map<String, SimulatedGroup> groups = new ConcurrentHashMap<>();
+    private final AtomicLong messageIds = new AtomicLong();
+    private final PushStreamServer pushStream;
+
+    private PushoverSimulator(Builder builder) throws IOException {
+        this.latency = builder.latency;
+        this.errorRate = builder.errorRate;
+        this.throttleRate = builder.throttleRate;
+        this.monthlyLimit = builder.monthlyLimit;
+        this.resetEpochSecond = builder.resetEpochSecond;
+        this.acknowledgeAfter = builder.acknowledgeAfter;
+        this.users = Map.copyOf(builder.users);
+        this.logins = Map.copyOf(builder.logins);
+        this.remaining = new AtomicInteger(builder.monthlyLimit);
+        this.random = builder.seed == null ? new Random() : new Random(builder.seed);
+        this.messages = new History<>(builder.historyLimit);
+        this.glances = new History<>(builder.historyLimit);
+        final int receiptLimit = builder.historyLimit;
+        this.receipts = Collections.synchronizedMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SimulatedReceipt> eldest) {
+                return size() > receiptLimit;
+            }
+        });
+
+        server = HttpServer.create(new InetSocketAddress(builder.host, builder.port), 0);
+        server.setExecutor(executor);
+        server.createContext("/1/", this::handle);
+        pushStream = new PushStreamServer(InetAddress.getByName(builder.host), (deviceId, secret) -> {
+            final SimulatedDevice device = devices.get(deviceId);
+            return device != null && device.userKey.equals(sessions.get(secret));
+        });
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public PushoverSimulator start() {
+        server.start();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        try {
+            pushStream.close();
+        } catch (IOException e) {
+            //nothing left to release
+        }
+    }
+
+    /**
+     * @return the base URL to configure on the client, e.g. {@code http://127.0.0.1:12345/1/}
+     */
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/1/";
+    }
+
+    /**
+     * @return the form fields of the accepted messages within the history limit, in arrival order
+     */
+    public List<Map<String, String>> getReceivedMessages() {
+        return messages.snapshot();
+    }
+
+    /**
+     * @return the websocket URL of the Open Client push server, for {@code OpenClientReceiver.Builder.setPushUrl}
+     */
+    public String getPushStreamUrl() {
+        return pushStream.getUrl();
+    }
+
+    /**
+     * Sends a frame of the push protocol to every logged in device, e.g. {@code 'R'} to make them
+     * reconnect or {@code 'A'} to end their session.
+     *
+     * @param frame the frame character
+     */
+    public void sendPushFrame(char frame) {
+        pushStream.sendAll(frame);
+    }
+
+    /**
+     * @return number of devices logged in to the push server
+     */
+    public int getPushConnectionCount() {
+        return pushStream.getConnectionCount();
+    }
+
+    /**
+     * @return the form fields of the accepted glance updates within the history limit, in arrival order
+     */
+    public List<Map<String, String>> getReceivedGlances() {
+        return glances.snapshot();
+    }
+
+    /**
+     * @return the number of requests answered so far, including injected failures
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return messages left of the simulated monthly quota
+     */
+    public int getRemaining() {
+        return remaining.get();
+    }
+
+    /**
+     * @param groupKey key of a delivery group
+     * @return the user keys in the group, empty if the group is unknown
+     */
+    public Set<String> getGroupMembers(String groupKey) {
+        final SimulatedGroup group = groups.get(groupKey);
+        return group == null ? Set.of() : group.members();
+    }
+
+    /**
+     * Simulates a user acknowledging an emergency message.
+     *
+     * @param receipt the receipt returned for the message
+     * @param userKey the user that acknowledged
+     * @return false if the receipt is unknown
+     */
+    public boolean acknowledge(String receipt, String userKey) {
+        final SimulatedReceipt simulated = receipts.get(receipt);
+        if (simulated == null) {
+            return false;
+        }
+        simulated.acknowledge(userKey, System.currentTimeMillis() / 1000);
+        return true;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requestCount.incrementAndGet();
+            final byte[] body = exchange.getRequestBody().readAllBytes();
+            sleep(nextLatency());
+
+            final double roll;
+            synchronized (random) {
+                roll = random.nextDouble();
+            }
+            if (roll < errorRate) {
+                respond(exchange, 500, "{\"status\":0,\"errors\":[\"simulated server error\"]}");
+                return;
+            }
+            if (roll < errorRate + throttleRate) {
+                respond(exchange, 429, error("simulated throttling"));
+                return;
+            }
+
+            final String path = exchange.getRequestURI().getPath().substring("/1/".length());
+            final Map<String, String> form = new LinkedHashMap<>(FormParser.parseQuery(exchange.getRequestURI().getRawQuery()));
+            form.putAll(FormParser.parse(exchange.getRequestHeaders().getFirst("Content-Type"), body));
+            final String method = exchange.getRequestMethod();
+
+            //Open Client calls authenticate with a session secret instead of a token
+            if (isOpenClientCall(method, path)) {
+                handleOpenClient(exchange, path, form);
+            } else if (!path.equals("sounds.json") && (form.get("token") == null || form.get("token").isBlank())) {
+                respond(exchange, 400, error("application token is invalid"));
+            } else if ("POST".equals(method) && path.equals("messages.json")) {
+                handleMessage(exchange, form);
+            } else if ("POST".equals(method) && path.equals("glances.json")) {
+                handleGlance(exchange, form);
+            } else if ("POST".equals(method) && path.equals("users/validate.json")) {
+                handleValidate(exchange, form);
+            } else if ("GET".equals(method) && path.equals("sounds.json")) {
+                final Map<String, Object> answer = ok();
+                final Map<String, String> sounds = new LinkedHashMap<>();
+                for (String sound : SOUNDS) {
+                    sounds.put(sound, Character.toUpperCase(sound.charAt(0)) + sound.substring(1));
+                }
+                answer.put("sounds", sounds);
+                respond(exchange, 200, GSON.toJson(answer));
+            } else if ("POST".equals(method) && path.startsWith("receipts/") && path.endsWith("/cancel.json")) {
+                final SimulatedReceipt receipt = receipts.get(path.substring("receipts/".length(), path.length() - "/cancel.json".length()));
+                if (receipt == null) {
+                    respond(exchange, 404, error("receipt not found"));
+                } else {
+                    receipt.cancel();
+                    respond(exchange, 200, GSON.toJson(ok()));
+                }
+            } else if ("GET".equals(method) && path.startsWith("receipts/") && path.endsWith(".json")) {
+                final SimulatedReceipt receipt = receipts.get(path.substring("receipts/".length(), path.length() - ".json".length()));
+                if (receipt == null) {
+                    respond(exchange, 404, error("receipt not found"));
+                } else {
+                    final Map<String, Object> answer = ok();
+                    answer.putAll(receipt.snapshot(System.currentTimeMillis() / 1000));
+                    respond(exchange, 200, GSON.toJson(answer));
+                }
+            } else if (path.equals("groups.json") || path.startsWith("groups/")) {
+                handleGroup(exchange, method, path, form);
+            } else {
+                respond(exchange, 404, error("not found"));
+            }
+        }
+    }
+
+    private void handleGroup(HttpExchange exchange, String method, String path, Map<String, String> form) throws IOException {
+        final Map<String, Object> answer = ok();
+        if ("GET".equals(method) && path.equals("groups.json")) {
+            final List<Map<String, String>> list = new ArrayList<>();
+            groups.forEach((key, group) -> list.add(Map.of("group", key, "name", group.name)));
+            answer.put("groups", list);
+            respond(exchange, 200, GSON.toJson(answer));
+            return;
+        }
+        if ("POST".equals(method) && path.equals("groups/create.json")) {
+            if (form.get("name") == null || form.get("name").isBlank()) {
+                respond(exchange, 400, error("name cannot be blank"));
+                return;
+            }
+            final String key = "g" + UUID.randomUUID().toString().replace("-", "").substring(0, 29);
+            groups.put(key, new SimulatedGroup(form.get("name")));
+            answer.put("group", key);
+            respond(exchange, 200, GSON.toJson(answer));
+            return;
+        }
+        final String action = path.endsWith("/add_user.json") ? "/add_user.json"
+                : path.endsWith("/delete_user.json") ? "/delete_user.json" : ".json";
+        final SimulatedGroup group = groups.get(path.substring("groups/".length(), path.length() - action.length()));
+        if (group == null) {
+            respond(exchange, 404, error("group not found"));
+            return;
+        }
+        if ("GET".equals(method) && action.equals(".json")) {
+            final List<Map<String, Object>> users = new ArrayList<>();
+            for (String member : group.members()) {
+                final Map<String, Object> user = new LinkedHashMap<>();
+                user.put("user", member);
+                user.put("device", null);
+                user.put("memo", "");
+                user.put("disabled", false);
+                users.add(user);
+            }
+            answer.put("name", group.name);
+            answer.put("users", users);
+        } else if ("POST".equals(method) && action.equals("/add_user.json")) {
+            if (!isKnownUser(form.get("user"))) {
+                respond(exchange, 400, error("user key is invalid"));
+                return;
+            }
+            if (!group.add(form.get("user"))) {
+                respond(exchange, 400, error("user is already a member of this group"));
+                return;
+            }
+        } else if ("POST".equals(method) && action.equals("/delete_user.json")) {
+            if (!group.remove(form.get("user"))) {
+                respond(exchange, 400, error("user is not a member of this group"));
+                return;
+            }
+        } else {
+            respond(exchange, 404, error("not found"));
+            return;
+        }
+        respond(exchange, 200, GSON.toJson(answer));
+    }
+
+    private void handleMessage(HttpExchange exchange, Map<String, String> form) throws IOException {
+        final List<String> errors = new ArrayList<>();
+        if (!isKnownUser(form.get("user"))) {
+            errors.add("user identifier is invalid");
+        }
+        if (form.get("message") == null || form.get("message").isBlank()) {
+            errors.add("message cannot be blank");
+        }
+        if (form.get("sound") != null && !SOUNDS.contains(form.get("sound"))) {
+            errors.add("sound is invalid");
+        }
+        final boolean emergency = "2".equals(form.get("priority"));
+        if (emergency && parseInt(form.get("retry")) < 30) {
+            errors.add("retry is invalid");
+        }
+        if (!errors.isEmpty()) {
+            respond(exchange, 400, error(errors.toArray(new String[0])));
+            return;
+        }
+        if (remaining.getAndUpdate(left -> Math.max(0, left - 1)) <= 0) {
+            respond(exchange, 429, error("application is over its message quota"));
+            return;
+        }
+        messages.add(Collections.unmodifiableMap(form));
+
+        final Map<String, Object> answer = ok();
+        if (emergency) {
+            final String receipt = UUID.randomUUID().toString().replace("-", "").substring(0, 30);
+            final long now = System.currentTimeMillis() / 1000;
+            receipts.put(receipt, new SimulatedReceipt(now, now + parseInt(form.get("expire")),
+                    acknowledgeAfter == null ? -1 : now + acknowledgeAfter.toSeconds(), form.get("user")));
+            answer.put("receipt", receipt);
+        }
+        deliver(form, (String) answer.get("receipt"));
+        respond(exchange, 200, GSON.toJson(answer));
+    }
+
+    private void deliver(Map<String, String> form, String receipt) {
+        final String target = form.get("device");
+        final SimulatedGroup group = groups.get(String.valueOf(form.get("user")));
+        final Set<String> recipients = group == null ? Set.of(form.get("user")) : group.members();
+        devices.forEach((deviceId, device) -> {
+            if (!recipients.contains(device.userKey)
+                    || target != null && !List.of(target.split(",")).contains(device.name)) {
+                return;
+            }
+            final long id = messageIds.incrementAndGet();
+            final Map<String, Object> message = new LinkedHashMap<>();
+            message.put("id", id);
+            message.put("umid", id);
+            message.put("title", form.getOrDefault("title", "Pushover Simulator"));
+            message.put("message", form.get("message"));
+            message.put("app", "Pushover Simulator");
+            message.put("aid", 1);
+            message.put("icon", "pushover");
+            message.put("date", System.currentTimeMillis() / 1000);
+            message.put("priority", parseInt(form.get("priority")));
+            message.put("sound", form.get("sound"));
+            message.put("url", form.get("url"));
+            message.put("url_title", form.get("url_title"));
+            message.put("acked", 0);
+            message.put("receipt", receipt);
+            message.put("html", parseInt(form.get("html")));
+            device.inbox.put(id, message);
+            pushStream.send(deviceId, '!');
+        });
+    }
+
+    private static boolean isOpenClientCall(String method, String path) {
+        if ("GET".equals(method)) {
+            return path.equals("messages.json");
+        }
+        return "POST".equals(method) && (path.equals("users/login.json") || path.equals("devices.json")
+                || path.startsWith("devices/") && path.endsWith("/update_highest_message.json")
+                || path.startsWith("receipts/") && path.endsWith("/acknowledge.json"));
+    }
+
+    private void handleOpenClient(HttpExchange exchange, String path, Map<String, String> form) throws IOException {
+        final Map<String, Object> answer = ok();
+        if (path.equals("users/login.json")) {
+            final List<String> login = logins.get(form.get("email"));
+            if (login == null || !login.get(0).equals(form.get("password"))) {
+                respond(exchange, 400, error("invalid email and/or password"));
+                return;
+            }
+            final String secret = UUID.randomUUID().toString().replace("-", "");
+            sessions.put(secret, login.get(1));
+            answer.put("id", login.get(1));
+            answer.put("secret", secret);
+            respond(exchange, 200, GSON.toJson(answer));
+            return;
+        }
+
+        final String user = form.get("secret") == null ? null : sessions.get(form.get("secret"));
+        if (user == null) {
+            respond(exchange, 400, error("secret is invalid"));
+            return;
+        }
+        if (path.equals("devices.json")) {
+            if (form.get("name") == null || !form.get("name").matches("[A-Za-z0-9_-]{1,25}")) {
+                respond(exchange, 400, error("name is invalid"));
+                return;
+            }
+            final String deviceId = UUID.randomUUID().toString().replace("-", "").substring(0, 25);
+            devices.put(deviceId, new SimulatedDevice(user, form.get("name")));
+            answer.put("id", deviceId);
+        } else if (path.startsWith("receipts/")) {
+            final SimulatedReceipt receipt = receipts.get(path.substring("receipts/".length(), path.length() - "/acknowledge.json".length()));
+            if (receipt == null) {
+                respond(exchange, 404, error("receipt not found"));
+                return;
+            }
+            receipt.acknowledge(user, System.currentTimeMillis() / 1000);
+        } else {
+            final String deviceId = path.equals("messages.json")
+                    ? form.get("device_id")
+                    : path.substring("devices/".length(), path.length() - "/update_highest_message.json".length());
+            final SimulatedDevice device = deviceId == null ? null : devices.get(deviceId);
+            if (device == null || !device.userKey.equals(user)) {
+                respond(exchange, 400, error("device_id is invalid"));
+                return;
+            }
+            if (path.equals("messages.json")) {
+                answer.put("messages", new ArrayList<>(device.inbox.values()));
+            } else {
+                device.inbox.headMap((long) parseInt(form.get("message")), true).clear();
+            }
+        }
+        respond(exchange, 200, GSON.toJson(answer));
+    }
+
+    private void handleGlance(HttpExchange exchange, Map<String, String> form) throws IOException {
+        final List<String> errors = new ArrayList<>();
+        if (!isKnownUser(form.get("user"))) {
+            errors.add("user identifier is invalid");
+        }
+        for (String field : List.of("title", "text", "subtext")) {
+            if (form.get(field) != null && form.get(field).length() > 100) {
+                errors.add(field + " is too long");
+            }
+        }
+        if (form.get("percent") != null && (parseInt(form.get("percent")) < 0 || parseInt(form.get("percent")) > 100)) {
+            errors.add("percent is invalid");
+        }
+        if (!errors.isEmpty()) {
+            respond(exchange, 400, error(errors.toArray(new String[0])));
+            return;
+        }
+        glances.add(Collections.unmodifiableMap(form));
+        respond(exchange, 200, GSON.toJson(ok()));
+    }
+
+    private void handleValidate(HttpExchange exchange, Map<String, String> form) throws IOException {
+        final String user = form.get("user");
+        if (!isKnownUser(user)) {
+            respond(exchange, 400, error("user key is invalid"));
+            return;
+        }
+        final List<String> devices = users.isEmpty() ? List.of("phone") : users.getOrDefault(user, List.of());
+        final String device = form.get("device");
+        if (device != null && !devices.contains(device)) {
+            respond(exchange, 400, error("device name is not valid for user"));
+            return;
+        }
+        final Map<String, Object> answer = ok();
+        answer.put("devices", devices);
+        respond(exchange, 200, GSON.toJson(answer));
+    }
+
+    private boolean isKnownUser(String user) {
+        if (user == null || user.isBlank()) {
+            return false;
+        }
+        return users.isEmpty() || users.containsKey(user) || groups.containsKey(user);
+    }
+
+    private void respond(HttpExchange exchange, int status, String json) throws IOException {
+        final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("X-Limit-App-Limit", String.valueOf(monthlyLimit));
+        exchange.getResponseHeaders().set("X-Limit-App-Remaining", String.valueOf(remaining.get()));
+        exchange.getResponseHeaders().set("X-Limit-App-Reset", String.valueOf(resetEpochSecond));
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, Object> ok() {
+        final Map<String, Object> answer = new LinkedHashMap<>();
+        answer.put("status", 1);
+        answer.put("request", UUID.randomUUID().toString());
+        return answer;
+    }
+
+    private static String error(String... errors) {
+        final Map<String, Object> answer = new LinkedHashMap<>();
+        answer.put("status", 0);
+        answer.put("request", UUID.randomUUID().toString());
+        answer.put("errors", List.of(errors));
+        return GSON.toJson(answer);
+    }
+
+    private long nextLatency() {
+        synchronized (random) {
+            return latency.nextMillis(random);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value == null ? 0 : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static final class SimulatedDevice {
+
+        private final String userKey;
+        private final String name;
+        private final ConcurrentSkipListMap<Long, Map<String, Object>> inbox = new ConcurrentSkipListMap<>();
+
+        SimulatedDevice(String userKey, String name) {
+            this.userKey = userKey;
+            this.name = name;
+        }
+    }
+
+    private static final class SimulatedGroup {
+
+        private final String name;
+        private final Set<String> members = new LinkedHashSet<>();
+
+        SimulatedGroup(String name) {
+            this.name = name;
+        }
+
+        synchronized boolean add(String userKey) {
+            return members.add(userKey);
+        }
+
+        synchronized boolean remove(String userKey) {
+            return members.remove(userKey);
+        }
+
+        synchronized Set<String> members() {
+            return Set.copyOf(members);
+        }
+    }
+
+    private static final class SimulatedReceipt {
+
+        private final long expiresAt;
+        private final long autoAcknowledgeAt;
+        private final String userKey;
+        private long lastDeliveredAt;
+        private long acknowledgedAt;
+        private String acknowledgedBy;
+        private boolean cancelled;
+
+        private SimulatedReceipt(long createdAt, long expiresAt, long autoAcknowledgeAt, String userKey) {
+            this.lastDeliveredAt = createdAt;
+            this.expiresAt = expiresAt;
+            this.autoAcknowledgeAt = autoAcknowledgeAt;
+            this.userKey = userKey;
+        }
+
+        synchronized void acknowledge(String by, long at) {
+            if (acknowledgedAt == 0 && !cancelled) {
+                acknowledgedAt = at;
+                acknowledgedBy = by;
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+        }
+
+        synchronized Map<String, Object> snapshot(long now) {
+            if (autoAcknowledgeAt >= 0 && now >= autoAcknowledgeAt && now < expiresAt) {
+                acknowledge(userKey, autoAcknowledgeAt);
+            }
+            final boolean expired = cancelled || now >= expiresAt;
+            if (!expired && acknowledgedAt == 0) {
+                lastDeliveredAt = now;
+            }
+            final Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("acknowledged", acknowledgedAt == 0 ? 0 : 1);
+            fields.put("acknowledged_at", acknowledgedAt);
+            fields.put("acknowledged_by", acknowledgedBy == null ? "" : acknowledgedBy);
+            fields.put("last_delivered_at", lastDeliveredAt);
+            fields.put("expired", expired ? 1 : 0);
+            fields.put("expires_at", expiresAt);
+            fields.put("called_back", 0);
+            fields.put("called_back_at", 0);
+            return fields;
+        }
+    }
+
+    /**
+     * The most recent entries, up to a limit.
+     */
+    private static final class History<T> {
+
+        private final int limit;
+        private final ArrayDeque<T> entries = new ArrayDeque<>();
+
+        private History(int limit) {
+            this.limit = limit;
+        }
+
+        synchronized void add(T entry) {
+            if (limit == 0) {
+                return;
+            }
+            if (entries.size() == limit) {
+                entries.pollFirst();
+            }
+            entries.addLast(entry);
+        }
+
+        synchronized List<T> snapshot() {
+            return List.copyOf(entries);
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private String host = "127.0.0.1";
+        private int port = 0;
+        private LatencyDistribution latency = LatencyDistribution.none();
+        private double errorRate;
+        private double throttleRate;
+        private int monthlyLimit = 10_000;
+        private long resetEpochSecond = 0L;
+        private Duration acknowledgeAfter;
+        private final Map<String, List<String>> users = new LinkedHashMap<>();
+        private final Map<String, List<String>> logins = new LinkedHashMap<>();
+        private Long seed;
+        private int historyLimit = 10_000;
+
+        private Builder() {
+        }
+
+        public PushoverSimulator build() throws IOException {
+            return new PushoverSimulator(this);
+        }
+
+        /**
+         * @param host (optional) - address to bind, defaults to 127.0.0.1
+         * @param port (optional) - port to bind, defaults to 0 for a free port
+         * @return the current Builder instance
+         */
+        public Builder setAddress(String host, int port) {
+            this.host = host;
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param latency (optional) - latency added to every request, defaults to none
+         * @return the current Builder instance
+         */
+        public Builder setLatency(LatencyDistribution latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * @param errorRate (optional) - share of requests answered with HTTP 500, between 0 and 1
+         * @return the current Builder instance
+         */
+        public Builder setErrorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * @param throttleRate (optional) - share of requests answered with HTTP 429, between 0 and 1
+         * @return the current Builder instance
+         */
+        public Builder setThrottleRate(double throttleRate) {
+            this.throttleRate = throttleRate;
+            return this;
+        }
+
+        /**
+         * @param monthlyLimit (optional) - simulated monthly message quota, defaults to 10000
+         * @return the current Builder instance
+         */
+        public Builder setMonthlyLimit(int monthlyLimit) {
+            this.monthlyLimit = monthlyLimit;
+            return this;
+        }
+
+        /**
+         * @param resetEpochSecond (optional) - value of the X-Limit-App-Reset header
+         * @return the current Builder instance
+         */
+        public Builder setResetEpochSecond(long resetEpochSecond) {
+            this.resetEpochSecond = resetEpochSecond;
+            return this;
+        }
+
+        /**
+         * @param acknowledgeAfter (optional) - emergency messages are acknowledged by their
+         * recipient after this time, never by default
+         * @return the current Builder instance
+         */
+        public Builder setAcknowledgeAfter(Duration acknowledgeAfter) {
+            this.acknowledgeAfter = acknowledgeAfter;
+            return this;
+        }
+
+        /**
+         * Registers a user. Once any user is registered, unknown user keys are rejected;
+         * without registered users every key is valid and has the device "phone".
+         *
+         * @param userKey the user key
+         * @param devices the user's device names
+         * @return the current Builder instance
+         */
+        public Builder addUser(String userKey, String... devices) {
+            this.users.put(userKey, List.of(devices));
+            return this;
+        }
+
+        /**
+         * Adds an Open Client account.
+         *
+         * @param email the e-mail address to log in with
+         * @param password the password
+         * @param userKey the user key the account logs in as, messages to it are delivered to its devices
+         * @return the current Builder instance
+         */
+        public Builder addLogin(String email, String password, String userKey) {
+            this.logins.put(email, List.of(password, userKey));
+            return this;
+        }
+
+        /**
+         * @param historyLimit (optional) - accepted messages, glance updates and emergency receipts kept,
+         * the oldest are forgotten first and their receipts answer as not found, defaults to 10000
+         * @return the current Builder instance
+         */
+        public Builder setHistoryLimit(int historyLimit) {
+            if (historyLimit < 0) {
+                throw new IllegalArgumentException("history limit must not be negative");
+            }
+            this.historyLimit = historyLimit;
+            return this;
+        }
+
+        /**
+         * @param seed (optional) - seed for reproducible latencies and failure injection
+         * @return the current Builder instance
+         */
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+    }
+}
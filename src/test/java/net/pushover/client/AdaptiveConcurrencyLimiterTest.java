@@ -0,0 +1,157 @@
+package net.pushover.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    static {
+        //the JDK server otherwise adds delayed-ack stalls that dwarf the simulated latency
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private ExecutorService callers;
+    private final AtomicLong latencyMillis = new AtomicLong(10);
+    private final AtomicBoolean throttle = new AtomicBoolean();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(latencyMillis.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            final byte[] body = "{\"status\":1}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(throttle.get() ? 429 : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        httpClient = HttpClients.custom().setMaxConnPerRoute(256).setMaxConnTotal(256).build();
+        callers = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        callers.shutdownNow();
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testGrowsWhileLatencyIsFlat() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .setAlgorithm(AdaptiveConcurrencyLimiter.Algorithm.AIMD)
+                .setInitialLimit(2)
+                .build();
+
+        drive(limiter, 32, 400);
+
+        assertTrue(limiter.getLimit() > 2, "limit should grow, was " + limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testShrinksWhenLatencyRises() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .setInitialLimit(40)
+                .setRttWindow(1000)
+                .build();
+
+        drive(limiter, 40, 200);
+        final int flatLimit = limiter.getLimit();
+
+        latencyMillis.set(250);
+        drive(limiter, 40, 200);
+
+        assertTrue(limiter.getLimit() < flatLimit, "limit should shrink from " + flatLimit + ", was " + limiter.getLimit());
+    }
+
+    @Test
+    public void testShrinksOnThrottling() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .setInitialLimit(20)
+                .build();
+
+        throttle.set(true);
+        drive(limiter, 20, 40);
+
+        assertTrue(limiter.getLimit() < 20, "limit should shrink, was " + limiter.getLimit());
+    }
+
+    @Test
+    public void testRejectPolicy() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .setOverflowPolicy(AdaptiveConcurrencyLimiter.OverflowPolicy.REJECT)
+                .setInitialLimit(1)
+                .build();
+
+        final AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+        assertThrows(PushoverException.class, limiter::acquire);
+        permit.onIgnore();
+        limiter.acquire().onIgnore();
+    }
+
+    @Test
+    public void testBlockPolicyTimesOut() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .setInitialLimit(1)
+                .setMaxWait(20, TimeUnit.MILLISECONDS)
+                .build();
+
+        limiter.acquire();
+        assertThrows(PushoverException.class, limiter::acquire);
+    }
+
+    private void drive(AdaptiveConcurrencyLimiter limiter, int callerCount, int requests) throws Exception {
+        final AtomicLong remaining = new AtomicLong(requests);
+        final String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/1/messages.json";
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < callerCount; i++) {
+            futures.add(callers.submit(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    final AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+                    final HttpResponse response = httpClient.execute(new HttpGet(url));
+                    EntityUtils.consume(response.getEntity());
+                    if (response.getStatusLine().getStatusCode() == 429) {
+                        permit.onDropped();
+                    } else {
+                        permit.onSuccess();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package net.pushover.client;
+
+import net.pushover.client.simulator.PushoverSimulator;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class DeliveryGroupsTest {
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private PushoverRestClient client;
+    private final Queue<String> calls = new ConcurrentLinkedQueue<>();
+    private volatile String existingGroups = "[]";
+    private volatile String existingMembers = "[]";
+    private final PushoverMessage template = PushoverMessage.builderWithApiToken("token")
+            .setMessage("maintenance tonight")
+            .build();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        final HttpClient httpClient = mock(HttpClient.class);
+        client = new PushoverRestClient();
+        client.setHttpClient(httpClient);
+
+        when(httpClient.execute(any(HttpUriRequest.class))).thenAnswer(invocation -> {
+            final HttpUriRequest request = invocation.getArgument(0);
+            final String path = request.getURI().getPath();
+            calls.add(path);
+            final HttpResponse response = mock(HttpResponse.class);
+            final boolean get = "GET".equals(request.getMethod());
+            final String body;
+            if (get && path.endsWith("/groups.json")) {
+                body = "{\"status\":1,\"groups\":" + existingGroups + ",\"request\":\"r\"}";
+            } else if (get) {
+                body = "{\"status\":1,\"name\":\"n\",\"users\":" + existingMembers + ",\"request\":\"r\"}";
+            } else if (path.endsWith("/groups/create.json")) {
+                body = "{\"status\":1,\"group\":\"gKEY\",\"request\":\"r\"}";
+            } else {
+                body = "{\"status\":1,\"request\":\"r\"}";
+            }
+            when(response.getEntity()).thenReturn(new StringEntity(body, "UTF-8"));
+            return response;
+        });
+    }
+
+    @Test
+    public void testAdHocSetsAreSentIndividually() {
+        final List<RecipientResult> results = client.pushToRecipients(template, List.of("u1", "u2", "u3", "u2"));
+
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(RecipientResult::isSuccess));
+        assertTrue(results.stream().noneMatch(RecipientResult::isViaGroup));
+        assertEquals(3, calls.size());
+        assertTrue(calls.stream().allMatch(path -> path.equals("/1/messages.json")));
+    }
+
+    @Test
+    public void testRecurringSetSwitchesToGroup() {
+        client.setGroupThreshold(2);
+        client.pushToRecipients(template, List.of("u1", "u2", "u3"));
+        calls.clear();
+
+        final List<RecipientResult> results = client.pushToRecipients(template, List.of("u3", "u1", "u2"));
+
+        assertTrue(results.stream().allMatch(RecipientResult::isViaGroup));
+        assertTrue(results.stream().allMatch(RecipientResult::isSuccess));
+        //looked up by name first, then created
+        assertEquals(List.of("/1/groups.json",
+                "/1/groups/create.json",
+                "/1/groups/gKEY/add_user.json",
+                "/1/groups/gKEY/add_user.json",
+                "/1/groups/gKEY/add_user.json",
+                "/1/messages.json"), List.copyOf(calls));
+
+        calls.clear();
+        client.pushToRecipients(template, List.of("u1", "u2", "u3"));
+        assertEquals(List.of("/1/messages.json"), List.copyOf(calls));
+    }
+
+    @Test
+    public void testNamedAudienceIsSyncedIncrementally() {
+        client.pushToRecipients(template, "on-call", List.of("u1", "u2"));
+        calls.clear();
+
+        client.pushToRecipients(template, "on-call", List.of("u2", "u3"));
+
+        assertEquals(List.of("/1/groups/gKEY/add_user.json",
+                "/1/groups/gKEY/delete_user.json",
+                "/1/messages.json"), List.copyOf(calls));
+        assertEquals(Set.of("u2", "u3"), client.getDeliveryGroups().getMembers("token", "on-call"));
+    }
+
+    @Test
+    public void testAdoptsExistingGroupOfTheSameName() {
+        existingGroups = "[{\"group\":\"gOLD\",\"name\":\"on-call\"}]";
+        existingMembers = "[{\"user\":\"u1\",\"device\":null,\"memo\":\"\",\"disabled\":false}]";
+
+        final List<RecipientResult> results = client.pushToRecipients(template, "on-call", List.of("u1", "u2"));
+
+        assertTrue(results.stream().allMatch(result -> "gOLD".equals(result.groupKey())));
+        assertEquals(List.of("/1/groups.json",
+                "/1/groups/gOLD.json",
+                "/1/groups/gOLD/add_user.json",
+                "/1/messages.json"), List.copyOf(calls));
+    }
+
+    @Test
+    public void testCleanupEmptiesOnlyAutomaticGroups() throws Exception {
+        existingGroups = "[{\"group\":\"gAUTO\",\"name\":\"pushover4j-0123456789abcdef\"},"
+                + "{\"group\":\"gMINE\",\"name\":\"on-call\"}]";
+        existingMembers = "[{\"user\":\"u1\"},{\"user\":\"u2\"}]";
+
+        assertEquals(1, client.getDeliveryGroups().cleanup("token"));
+
+        assertEquals(List.of("/1/groups.json",
+                "/1/groups/gAUTO.json",
+                "/1/groups/gAUTO/delete_user.json",
+                "/1/groups/gAUTO/delete_user.json"), List.copyOf(calls));
+    }
+
+    @Test
+    public void testGroupsWorkAgainstTheSimulator() throws Exception {
+        try (PushoverSimulator simulator = PushoverSimulator.builder().build().start()) {
+            final PushoverRestClient live = new PushoverRestClient();
+            live.setApiBaseUrl(simulator.getBaseUrl());
+
+            final List<RecipientResult> results = live.pushToRecipients(template, "on-call", List.of("u1", "u2"));
+            assertTrue(results.stream().allMatch(RecipientResult::isSuccess));
+            final String groupKey = results.get(0).groupKey();
+            assertEquals(groupKey, simulator.getReceivedMessages().get(0).get("user"));
+
+            live.pushToRecipients(template, "on-call", List.of("u2", "u3"));
+            assertEquals(Set.of("u2", "u3"), simulator.getGroupMembers(groupKey));
+
+            //a second client adopts the group instead of creating another one
+            final PushoverRestClient restarted = new PushoverRestClient();
+            restarted.setApiBaseUrl(simulator.getBaseUrl());
+            restarted.pushToRecipients(template, "on-call", List.of("u3"));
+            assertEquals(Set.of("u3"), simulator.getGroupMembers(groupKey));
+            assertEquals(Map.of("on-call", groupKey), restarted.listDeliveryGroups("token"));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package net.pushover.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DeliverySchedulerTest {
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private DeliveryScheduler scheduler;
+
+    @AfterEach
+    public void tearDown() {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    private DeliveryScheduler scheduler() throws Exception {
+        final PushoverClient client = mock(PushoverClient.class);
+        when(client.pushMessage(any())).thenAnswer(invocation -> {
+            sent.add(invocation.<PushoverMessage>getArgument(0).getMessage());
+            return new Status(1);
+        });
+        scheduler = DeliveryScheduler.builder().setClient(client).setTick(Duration.ofMillis(10)).build();
+        return scheduler;
+    }
+
+    private static PushoverMessage message(String text) {
+        return PushoverMessage.builderWithApiToken("token").setUserId("user").setMessage(text).build();
+    }
+
+    @Test
+    public void testSendsAtInstant() throws Exception {
+        final DeliveryScheduler scheduler = scheduler();
+        final Instant start = Instant.now();
+
+        final DeliveryScheduler.ScheduledSend later = scheduler.schedule(message("later"), start.plusMillis(300));
+        final DeliveryScheduler.ScheduledSend sooner = scheduler.schedule(message("sooner"), start.plusMillis(100));
+        assertEquals(2, scheduler.getPendingCount());
+
+        assertEquals(1, later.getResult().get(5, TimeUnit.SECONDS).getStatus());
+        assertTrue(sooner.getResult().isDone());
+        assertEquals(List.of("sooner", "later"), sent);
+        assertFalse(Instant.now().isBefore(start.plusMillis(300)));
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void testPastInstantSendsImmediately() throws Exception {
+        final DeliveryScheduler.ScheduledSend send = scheduler().schedule(message("now"), Instant.EPOCH);
+
+        send.getResult().get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("now"), sent);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final DeliveryScheduler scheduler = scheduler();
+        final DeliveryScheduler.ScheduledSend cancelled = scheduler.schedule(message("cancelled"), Instant.now().plusMillis(100));
+        final DeliveryScheduler.ScheduledSend kept = scheduler.schedule(message("kept"), Instant.now().plusMillis(150));
+
+        assertTrue(cancelled.cancel());
+        kept.getResult().get(5, TimeUnit.SECONDS);
+
+        assertTrue(cancelled.getResult().isCancelled());
+        assertFalse(cancelled.cancel());
+        assertEquals(List.of("kept"), sent);
+    }
+
+    @Test
+    public void testCloseCancelsPendingSends() throws Exception {
+        final DeliveryScheduler.ScheduledSend send = scheduler().schedule(message("never"), Instant.now().plus(Duration.ofDays(400)));
+
+        scheduler.close();
+
+        assertThrows(CancellationException.class, () -> send.getResult().join());
+        assertThrows(IllegalStateException.class, () -> scheduler.schedule(message("closed")));
+    }
+
+    @Test
+    public void testDeliveryWindowDefersSend() throws Exception {
+        final DeliveryScheduler scheduler = scheduler();
+        final Instant noon = LocalDate.now(ZoneOffset.UTC).plusDays(10).atTime(LocalTime.NOON).toInstant(ZoneOffset.UTC);
+        scheduler.setDeliveryWindow("user", new DeliveryWindow(LocalTime.of(8, 0), LocalTime.of(11, 0), ZoneOffset.UTC));
+
+        final DeliveryScheduler.ScheduledSend deferred = scheduler.schedule(message("tomorrow"), noon);
+        final DeliveryScheduler.ScheduledSend emergency = scheduler.schedule(PushoverMessage.builderWithApiToken("token")
+                .setUserId("user").setMessage("fire").setPriority(MessagePriority.EMERGENCY).build(), noon);
+
+        assertEquals(noon.plus(Duration.ofHours(20)), deferred.getSendAt());
+        assertEquals(noon, emergency.getSendAt());
+        assertTrue(deferred.cancel());
+    }
+
+    @Test
+    public void testDeliveryWindow() {
+        final ZoneId zone = ZoneId.of("Europe/Berlin");
+        final DeliveryWindow day = new DeliveryWindow(LocalTime.of(8, 0), LocalTime.of(22, 0), zone);
+        final DeliveryWindow night = new DeliveryWindow(LocalTime.of(22, 0), LocalTime.of(6, 0), zone);
+        final Instant morning = Instant.parse("2026-07-01T05:00:00Z");  //07:00 local
+        final Instant evening = Instant.parse("2026-07-01T21:30:00Z");  //23:30 local
+
+        assertEquals(Instant.parse("2026-07-01T06:00:00Z"), day.nextOpen(morning));
+        assertEquals(Instant.parse("2026-07-02T06:00:00Z"), day.nextOpen(evening));
+        assertTrue(night.isOpen(evening));
+        assertEquals(evening, night.nextOpen(evening));
+        assertEquals(Instant.parse("2026-07-01T20:00:00Z"), night.nextOpen(morning));
+        assertThrows(IllegalArgumentException.class, () -> new DeliveryWindow(LocalTime.NOON, LocalTime.NOON, zone));
+    }
+}
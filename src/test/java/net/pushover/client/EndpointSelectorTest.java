@@ -0,0 +1,202 @@
+package net.pushover.client;
+
+import net.pushover.client.simulator.LatencyDistribution;
+import net.pushover.client.simulator.PushoverSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EndpointSelectorTest {
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final List<PushoverSimulator> simulators = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        simulators.forEach(PushoverSimulator::close);
+    }
+
+    private PushoverSimulator simulator(PushoverSimulator.Builder builder) throws IOException {
+        final PushoverSimulator simulator = builder.build().start();
+        simulators.add(simulator);
+        return simulator;
+    }
+
+    private static String deadEndpoint() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return "http://127.0.0.1:" + socket.getLocalPort() + "/1/";
+        }
+    }
+
+    private static PushoverMessage.Builder message() {
+        return PushoverMessage.builderWithApiToken("token").setUserId("user").setMessage("hello");
+    }
+
+    @Test
+    public void testFailsOverWhenConnectionIsRefused() throws Exception {
+        final PushoverSimulator live = simulator(PushoverSimulator.builder());
+        final EndpointSelector endpoints = EndpointSelector.builder()
+                .addEndpoint(deadEndpoint())
+                .addEndpoint(live.getBaseUrl())
+                .setFailureThreshold(1)
+                .build();
+        final PushoverRestClient client = new PushoverRestClient();
+        client.setEndpoints(endpoints);
+
+        //endpoints are picked at random, so send until the dead one was tried
+        int sent = 0;
+        while (endpoints.getEndpoints().get(0).isHealthy() && sent < 100) {
+            assertEquals(1, client.pushMessage(message().build()).getStatus());
+            sent++;
+        }
+
+        assertEquals(sent, live.getReceivedMessages().size());
+        assertFalse(endpoints.getEndpoints().get(0).isHealthy());
+        assertTrue(endpoints.getEndpoints().get(1).isHealthy());
+    }
+
+    @Test
+    public void testPrefersFasterEndpoint() throws Exception {
+        final PushoverSimulator fast = simulator(PushoverSimulator.builder());
+        final PushoverSimulator slow = simulator(PushoverSimulator.builder().setLatency(LatencyDistribution.constant(30)));
+        //warm up first, a cold first call would make the fast endpoint look slow
+        final PushoverRestClient warmup = new PushoverRestClient();
+        warmup.setApiBaseUrl(fast.getBaseUrl());
+        for (int i = 0; i < 20; i++) {
+            warmup.requestVerification(message().build());
+        }
+        final long warmupRequests = fast.getRequestCount();
+        final PushoverRestClient client = new PushoverRestClient();
+        client.setEndpoints(EndpointSelector.of(fast.getBaseUrl(), slow.getBaseUrl()));
+
+        for (int i = 0; i < 60; i++) {
+            client.requestVerification(message().build());
+        }
+
+        final long fastRequests = fast.getRequestCount() - warmupRequests;
+        assertTrue(fastRequests > 2 * slow.getRequestCount(),
+                "fast " + fastRequests + ", slow " + slow.getRequestCount());
+    }
+
+    @Test
+    public void testLimiterWaitIsNotEndpointLatency() throws Exception {
+        final PushoverSimulator live = simulator(PushoverSimulator.builder());
+        final EndpointSelector endpoints = EndpointSelector.of(live.getBaseUrl());
+        final AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .setInitialLimit(1)
+                .setMaxLimit(1)
+                .setMaxWait(5, TimeUnit.SECONDS)
+                .build();
+        final PushoverRestClient client = new PushoverRestClient();
+        client.setEndpoints(endpoints);
+        client.setConcurrencyLimiter(limiter);
+        final AdaptiveConcurrencyLimiter.Permit held = limiter.acquire();
+        final Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            held.onIgnore();
+        });
+        releaser.start();
+
+        assertEquals(1, client.pushMessage(message().build()).getStatus());
+
+        releaser.join();
+        final long latencyMillis = TimeUnit.NANOSECONDS.toMillis(endpoints.getEndpoints().get(0).getLatencyNanos());
+        assertTrue(latencyMillis < 250, "latency " + latencyMillis + " ms");
+    }
+
+    @Test
+    public void testEjectionAndReadmission() throws Exception {
+        final EndpointSelector endpoints = EndpointSelector.builder()
+                .addEndpoint("http://a/1/")
+                .addEndpoint("http://b/1")
+                .setFailureThreshold(2)
+                .setEjectionTime(Duration.ofMillis(50))
+                .build();
+        final EndpointSelector.Endpoint a = endpoints.getEndpoints().get(0);
+        final EndpointSelector.Endpoint b = endpoints.getEndpoints().get(1);
+        assertEquals("http://b/1/", b.getBaseUrl());
+
+        endpoints.onFailure(a);
+        assertTrue(a.isHealthy());
+        endpoints.onFailure(a);
+        assertFalse(a.isHealthy());
+        for (int i = 0; i < 20; i++) {
+            assertSame(b, endpoints.select(List.of()));
+        }
+
+        Thread.sleep(60);
+        assertTrue(a.isHealthy());
+        //on probation: a single failure ejects again, for twice as long
+        endpoints.onFailure(a);
+        assertFalse(a.isHealthy());
+        Thread.sleep(60);
+        assertFalse(a.isHealthy());
+        Thread.sleep(60);
+        assertTrue(a.isHealthy());
+
+        endpoints.onSuccess(a, 1_000_000L);
+        endpoints.onFailure(a);
+        assertTrue(a.isHealthy());
+    }
+
+    @Test
+    public void testAllEjectedStillSelects() {
+        final EndpointSelector endpoints = EndpointSelector.builder()
+                .addEndpoint("http://a/1/")
+                .setFailureThreshold(1)
+                .build();
+        final EndpointSelector.Endpoint a = endpoints.getEndpoints().get(0);
+
+        endpoints.onFailure(a);
+
+        assertSame(a, endpoints.select(List.of()));
+        assertNull(endpoints.select(List.of(a)));
+    }
+
+    @Test
+    public void testReceiptsStickToTheirEndpoint() throws Exception {
+        final PushoverSimulator first = simulator(PushoverSimulator.builder());
+        final PushoverSimulator second = simulator(PushoverSimulator.builder());
+        final PushoverRestClient client = new PushoverRestClient();
+        client.setEndpoints(EndpointSelector.of(first.getBaseUrl(), second.getBaseUrl()));
+
+        final String receipt = client.pushMessageResponse(message()
+                .setPriority(MessagePriority.EMERGENCY)
+                .setRetry(30)
+                .setExpire(600)
+                .build()).getReceipt();
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(1, client.requestEmergencyReceipt("token", receipt).getStatus());
+        }
+        assertEquals(1, client.cancelEmergencyMessage("token", receipt).getStatus());
+    }
+
+    @Test
+    public void testOnlyEmergencyReceiptsAreBound() throws Exception {
+        final PushoverSimulator first = simulator(PushoverSimulator.builder());
+        final PushoverSimulator second = simulator(PushoverSimulator.builder());
+        final EndpointSelector endpoints = EndpointSelector.of(first.getBaseUrl(), second.getBaseUrl());
+        final PushoverRestClient client = new PushoverRestClient();
+        client.setEndpoints(endpoints);
+
+        assertEquals("", client.pushMessageResponse(message().build()).getReceipt());
+
+        assertNull(endpoints.forReceipt(""));
+    }
+}
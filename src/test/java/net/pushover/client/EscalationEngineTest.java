@@ -0,0 +1,179 @@
+package net.pushover.client;
+
+import net.pushover.client.simulator.PushoverSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EscalationEngineTest {
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private PushoverSimulator simulator;
+    private PushoverRestClient client;
+    private EscalationEngine engine;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        simulator = PushoverSimulator.builder().addUser("primary").addUser("secondary").addUser("lead").build().start();
+        client = new PushoverRestClient();
+        client.setApiBaseUrl(simulator.getBaseUrl());
+        engine = EscalationEngine.builder().setClient(client).setPollInterval(Duration.ofMillis(50)).build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        engine.close();
+        simulator.close();
+    }
+
+    private static PushoverMessage alert() {
+        return PushoverMessage.builderWithApiToken("token").setMessage("database down").build();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private boolean isCancelledOrExpired(String receipt) {
+        try {
+            return client.requestEmergencyReceipt("token", receipt).getExpired() == 1;
+        } catch (PushoverException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testPrimaryAcknowledges() throws Exception {
+        final EscalationEngine.Escalation escalation = engine.escalate(alert(), EscalationPolicy.builder()
+                .addStep("primary", Duration.ofSeconds(30))
+                .addStep("secondary", Duration.ofSeconds(30))
+                .build());
+        await(() -> escalation.getReceipts().size() == 1);
+        simulator.acknowledge(escalation.getReceipts().get(0), "primary");
+
+        final EscalationResult result = escalation.getResult().get(5, TimeUnit.SECONDS);
+        assertEquals(EscalationResult.Outcome.ACKNOWLEDGED, result.outcome());
+        assertEquals("primary", result.acknowledgedBy());
+        assertEquals(1, result.notified());
+        assertEquals(1, simulator.getReceivedMessages().size());
+        assertEquals("2", simulator.getReceivedMessages().get(0).get("priority"));
+    }
+
+    @Test
+    public void testEscalatesOnTimeoutAndCancelsTheOthers() throws Exception {
+        final EscalationEngine.Escalation escalation = engine.escalate(alert(), EscalationPolicy.builder()
+                .addStep("primary", Duration.ofMillis(200))
+                .addStep("secondary", Duration.ofSeconds(30))
+                .build());
+        await(() -> escalation.getReceipts().size() == 2);
+        assertEquals("secondary", simulator.getReceivedMessages().get(1).get("user"));
+        simulator.acknowledge(escalation.getReceipts().get(1), "secondary");
+
+        final EscalationResult result = escalation.getResult().get(5, TimeUnit.SECONDS);
+        assertEquals(EscalationResult.Outcome.ACKNOWLEDGED, result.outcome());
+        assertEquals("secondary", result.acknowledgedBy());
+        assertEquals(2, result.notified());
+        await(() -> isCancelledOrExpired(escalation.getReceipts().get(0)));
+        assertEquals(1, engine.getCancelledReceiptCount());
+    }
+
+    @Test
+    public void testExhaustedWhenNobodyAcknowledges() throws Exception {
+        final PushoverMessage shortLived = alert().toBuilder().setRetry(30).setExpire(1).build();
+        final EscalationEngine.Escalation escalation = engine.escalate(shortLived, EscalationPolicy.builder()
+                .addStep("primary", Duration.ofMillis(100))
+                .addStep("lead", Duration.ofMillis(100))
+                .build());
+
+        final EscalationResult result = escalation.getResult().get(10, TimeUnit.SECONDS);
+        assertEquals(EscalationResult.Outcome.EXHAUSTED, result.outcome());
+        assertEquals(2, result.notified());
+        assertNull(result.acknowledgedBy());
+    }
+
+    @Test
+    public void testSkipsStepsThatCannotBeSentTo() throws Exception {
+        final EscalationEngine.Escalation escalation = engine.escalate(alert(), EscalationPolicy.builder()
+                .addStep("unknown", Duration.ofSeconds(30))
+                .addStep("secondary", Duration.ofSeconds(30))
+                .build());
+        await(() -> escalation.getReceipts().size() == 1);
+        engine.acknowledged(escalation.getReceipts().get(0), "secondary");
+
+        final EscalationResult result = escalation.getResult().get(5, TimeUnit.SECONDS);
+        assertEquals(EscalationResult.Outcome.ACKNOWLEDGED, result.outcome());
+        assertEquals(2, result.notified());
+        assertEquals(1, engine.getFailedSendCount());
+    }
+
+    @Test
+    public void testCancelCancelsAllReceipts() throws Exception {
+        final EscalationEngine.Escalation escalation = engine.escalate(alert(), EscalationPolicy.builder()
+                .addStep("primary", Duration.ofSeconds(30))
+                .build());
+        await(() -> escalation.getReceipts().size() == 1);
+        escalation.cancel();
+
+        assertEquals(EscalationResult.Outcome.CANCELLED, escalation.getResult().get(5, TimeUnit.SECONDS).outcome());
+        await(() -> isCancelledOrExpired(escalation.getReceipts().get(0)));
+    }
+
+    @Test
+    public void testManyConcurrentEscalationsOnOneSchedulerThread() throws Exception {
+        final List<EscalationEngine.Escalation> escalations = new ArrayList<>();
+        final EscalationPolicy policy = EscalationPolicy.builder()
+                .addStep("primary", Duration.ofSeconds(30))
+                .addStep("secondary", Duration.ofSeconds(30))
+                .build();
+        for (int i = 0; i < 500; i++) {
+            escalations.add(engine.escalate(alert(), policy));
+        }
+        await(() -> escalations.stream().allMatch(escalation -> escalation.getReceipts().size() == 1));
+        for (EscalationEngine.Escalation escalation : escalations) {
+            engine.acknowledged(escalation.getReceipts().get(0), "primary");
+        }
+        CompletableFuture.allOf(escalations.stream().map(EscalationEngine.Escalation::getResult)
+                .toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertTrue(escalations.stream().allMatch(escalation ->
+                escalation.getResult().join().outcome() == EscalationResult.Outcome.ACKNOWLEDGED));
+        assertEquals(1, Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("pushover-escalation")).count());
+    }
+
+    @Test
+    public void testCloseDoesNotWaitForStepTimeouts() throws Exception {
+        final EscalationEngine.Escalation escalation = engine.escalate(alert(), EscalationPolicy.builder()
+                .addStep("primary", Duration.ofMinutes(5))
+                .addStep("secondary", Duration.ofMinutes(5))
+                .build());
+        await(() -> escalation.getReceipts().size() == 1);
+
+        final long start = System.nanoTime();
+        engine.close();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2), "close waited for the step timeout");
+        assertThrows(CancellationException.class, () -> escalation.getResult().join());
+        final long polls = engine.getPollCount();
+        Thread.sleep(200);
+        assertEquals(polls, engine.getPollCount());
+        assertEquals(1, simulator.getReceivedMessages().size());
+    }
+}
@@ -0,0 +1,116 @@
+package net.pushover.client;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.pushover.client.simulator.PushoverSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightRecorderEventsTest {
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @TempDir
+    Path dir;
+
+    private PushoverSimulator simulator;
+    private PushoverRestClient client;
+    private Recording recording;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        simulator = PushoverSimulator.builder().addUser("user").build().start();
+        client = new PushoverRestClient();
+        client.setApiBaseUrl(simulator.getBaseUrl());
+        recording = new Recording();
+        recording.enable("net.pushover.ApiCall").withoutThreshold();
+        recording.enable("net.pushover.CacheLookup");
+        recording.enable("net.pushover.Backpressure").withoutThreshold();
+        recording.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        recording.close();
+        simulator.close();
+    }
+
+    private List<RecordedEvent> stopRecording() throws Exception {
+        recording.stop();
+        final Path file = dir.resolve("recording.jfr");
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+    }
+
+    @Test
+    public void testMessageCallIsRecorded() throws Exception {
+        final File image = new File("src/test/java/net/pushover/client/image/test_image.jpg");
+        final Status status = client.pushMessage(PushoverMessage.builderWithApiToken("token")
+                .setUserId("user")
+                .setMessage("disk full")
+                .setPriority(MessagePriority.HIGH)
+                .setImage(image)
+                .build());
+
+        final List<RecordedEvent> calls = named(stopRecording(), "net.pushover.ApiCall");
+        assertEquals(1, calls.size());
+        final RecordedEvent call = calls.get(0);
+        assertEquals("POST", call.getString("method"));
+        assertEquals(simulator.getBaseUrl() + "messages.json", call.getString("endpoint"));
+        assertEquals("HIGH", call.getString("priority"));
+        assertEquals(image.length(), call.getLong("attachmentBytes"));
+        assertTrue(call.getLong("payloadBytes") > image.length());
+        assertEquals(200, call.getInt("httpStatus"));
+        assertEquals(1, call.getInt("apiStatus"));
+        assertEquals(status.getRequestId(), call.getString("requestId"));
+        assertEquals(0, call.getInt("retries"));
+        assertTrue(call.getInt("quotaRemaining") >= 0);
+    }
+
+    @Test
+    public void testCacheLookupsAreRecorded() throws Exception {
+        client.setValidationCache(ValidationCache.builder().build());
+        final PushoverMessage user = PushoverMessage.builderWithApiToken("token").setUserId("user").build();
+        client.requestVerification(user);
+        client.requestVerification(user);
+        client.getSounds();
+        client.getSounds();
+
+        final List<RecordedEvent> lookups = named(stopRecording(), "net.pushover.CacheLookup");
+        assertEquals(List.of("validation:false", "validation:true", "sounds:false", "sounds:true"), lookups.stream()
+                .map(event -> event.getString("cache") + ":" + event.getBoolean("hit"))
+                .toList());
+    }
+
+    @Test
+    public void testRefusedSendIsRecorded() throws Exception {
+        final PushResult result = client.send(PushoverMessage.builderWithApiToken("token")
+                .setUserId("user")
+                .setMessage("too late")
+                .setDeadline(Instant.now().minusSeconds(1))
+                .build());
+        assertFalse(result.isSuccess());
+
+        final List<RecordedEvent> events = stopRecording();
+        final List<RecordedEvent> refused = named(events, "net.pushover.Backpressure");
+        assertEquals(1, refused.size());
+        assertEquals("deadline expired", refused.get(0).getString("decision"));
+        assertTrue(named(events, "net.pushover.ApiCall").isEmpty());
+    }
+}
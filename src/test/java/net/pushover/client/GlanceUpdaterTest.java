@@ -0,0 +1,121 @@
+package net.pushover.client;
+
+import net.pushover.client.simulator.PushoverSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GlanceUpdaterTest {
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private PushoverSimulator simulator;
+    private PushoverRestClient client;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        simulator = PushoverSimulator.builder().addUser("user").build().start();
+        client = new PushoverRestClient();
+        client.setApiBaseUrl(simulator.getBaseUrl());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        simulator.close();
+    }
+
+    private static PushoverGlance.Builder glance() {
+        return PushoverGlance.builderWithApiToken("token").setUserId("user");
+    }
+
+    private void awaitGlances(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (simulator.getReceivedGlances().size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testPushGlanceSendsOnlySetFields() throws Exception {
+        final Response response = client.pushGlance(glance().setDevice("phone").setCount(3).build());
+
+        assertEquals(1, response.getStatus());
+        final Map<String, String> received = simulator.getReceivedGlances().get(0);
+        assertEquals("3", received.get("count"));
+        assertEquals("phone", received.get("device"));
+        assertFalse(received.containsKey("title"));
+        assertFalse(received.containsKey("percent"));
+    }
+
+    @Test
+    public void testBurstIsCoalescedToLatestValues() throws Exception {
+        try (GlanceUpdater updater = GlanceUpdater.builder().setClient(client).setInterval(Duration.ofMillis(500)).build()) {
+            updater.update(glance().setTitle("Queue").setCount(0).build());
+            awaitGlances(1);
+            for (int i = 1; i <= 100; i++) {
+                updater.update(glance().setCount(i).setPercent(i).build());
+            }
+            updater.update(glance().setText("done").build());
+            awaitGlances(2);
+            Thread.sleep(600);
+
+            final List<Map<String, String>> received = simulator.getReceivedGlances();
+            assertEquals(2, received.size());
+            assertEquals("0", received.get(0).get("count"));
+            assertEquals("100", received.get(1).get("count"));
+            assertEquals("100", received.get(1).get("percent"));
+            assertEquals("done", received.get(1).get("text"));
+            assertFalse(received.get(1).containsKey("title"));  //unchanged since the first send
+            assertEquals(102, updater.getUpdateCount());
+            assertEquals(100, updater.getCoalescedCount());
+            assertEquals(2, updater.getSentCount());
+            assertEquals(0, updater.getPendingCount());
+        }
+    }
+
+    @Test
+    public void testDevicesAreUpdatedIndependently() throws Exception {
+        try (GlanceUpdater updater = GlanceUpdater.builder().setClient(client).setInterval(Duration.ofSeconds(10)).build()) {
+            updater.update(glance().setDevice("phone").setCount(1).build());
+            updater.update(glance().setDevice("watch").setCount(2).build());
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (updater.getSentCount() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(2, simulator.getReceivedGlances().size());
+            assertEquals(2, updater.getSentCount());
+            assertEquals(0, updater.getCoalescedCount());
+        }
+    }
+
+    @Test
+    public void testRejectedUpdatesAreNotRetried() throws Exception {
+        try (GlanceUpdater updater = GlanceUpdater.builder().setClient(client).setInterval(Duration.ZERO).build()) {
+            updater.update(PushoverGlance.builderWithApiToken("token").setUserId("unknown").setCount(1).build());
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (updater.getRejectedCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+
+            assertEquals(1, updater.getRejectedCount());
+            assertEquals(1, simulator.getRequestCount());
+            assertEquals(0, updater.getPendingCount());
+        }
+    }
+
+    @Test
+    public void testInvalidGlanceIsRefused() {
+        assertThrows(IllegalArgumentException.class, () -> glance().setPercent(101).build());
+        assertThrows(IllegalArgumentException.class, () -> glance().setTitle("x".repeat(101)).build());
+    }
+}
@@ -0,0 +1,112 @@
+package net.pushover.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HedgingPolicyTest {
+
+    @Test
+    public void testBudgetLimitsHedges() {
+        final HedgingPolicy policy = HedgingPolicy.builder()
+                .setBudgetPercent(10)
+                .build();
+
+        int granted = 0;
+        for (int i = 0; i < 100; i++) {
+            policy.onPrimary();
+            if (policy.tryAcquireHedge()) {
+                granted++;
+            }
+        }
+        assertTrue(granted <= 10, "granted " + granted);
+        assertTrue(granted >= 9, "granted " + granted);
+        assertEquals(granted, policy.getHedgesSent());
+    }
+
+    @Test
+    public void testZeroBudgetNeverHedges() {
+        final HedgingPolicy policy = HedgingPolicy.builder()
+                .setBudgetPercent(0)
+                .build();
+        for (int i = 0; i < 1000; i++) {
+            policy.onPrimary();
+            assertFalse(policy.tryAcquireHedge());
+        }
+    }
+
+    @Test
+    public void testDelayFollowsPercentile() {
+        final HedgingPolicy policy = HedgingPolicy.builder()
+                .setPercentile(90)
+                .setMinSamples(10)
+                .setMinDelay(Duration.ofMillis(1))
+                .setMaxDelay(Duration.ofSeconds(5))
+                .build();
+
+        assertEquals(TimeUnit.SECONDS.toNanos(5), policy.getHedgeDelayNanos());
+
+        for (int i = 1; i <= 100; i++) {
+            policy.recordLatency(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        final long delayMillis = TimeUnit.NANOSECONDS.toMillis(policy.getHedgeDelayNanos());
+        assertTrue(delayMillis >= 85 && delayMillis <= 96, "delay " + delayMillis);
+    }
+
+    @Test
+    public void testDelayIsBounded() {
+        final HedgingPolicy policy = HedgingPolicy.builder()
+                .setMinSamples(1)
+                .setMinDelay(Duration.ofMillis(50))
+                .setMaxDelay(Duration.ofMillis(200))
+                .build();
+
+        policy.recordLatency(TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(50), policy.getHedgeDelayNanos());
+
+        for (int i = 0; i < 10; i++) {
+            policy.recordLatency(TimeUnit.SECONDS.toNanos(3));
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), policy.getHedgeDelayNanos());
+    }
+
+    @Test
+    public void testOldLatenciesAreForgotten() throws Exception {
+        final HedgingPolicy policy = HedgingPolicy.builder()
+                .setPercentile(90)
+                .setMinSamples(10)
+                .setMinDelay(Duration.ofMillis(1))
+                .setMaxDelay(Duration.ofSeconds(5))
+                .setWindow(Duration.ofMillis(100))
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            policy.recordLatency(TimeUnit.SECONDS.toNanos(2));
+        }
+        assertTrue(policy.getHedgeDelayNanos() >= TimeUnit.SECONDS.toNanos(2));
+
+        Thread.sleep(250);
+        for (int i = 0; i < 100; i++) {
+            policy.recordLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        final long delayMillis = TimeUnit.NANOSECONDS.toMillis(policy.getHedgeDelayNanos());
+        assertTrue(delayMillis >= 9 && delayMillis <= 11, "delay " + delayMillis);
+    }
+
+    @Test
+    public void testPercentileCoversBothHistograms() {
+        final LatencyHistogram first = new LatencyHistogram();
+        final LatencyHistogram second = new LatencyHistogram();
+        for (int i = 1; i <= 50; i++) {
+            first.record(TimeUnit.MILLISECONDS.toNanos(i));
+            second.record(TimeUnit.MILLISECONDS.toNanos(50 + i));
+        }
+        final long median = TimeUnit.NANOSECONDS.toMillis(LatencyHistogram.getPercentile(50, first, second));
+        assertTrue(median >= 47 && median <= 53, "median " + median);
+        assertEquals(first.getPercentile(50), LatencyHistogram.getPercentile(50, first, null));
+        assertEquals(0L, LatencyHistogram.getPercentile(50, new LatencyHistogram(), null));
+    }
+}
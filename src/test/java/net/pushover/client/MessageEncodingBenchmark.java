@@ -0,0 +1,70 @@
+package net.pushover.client;
+
+import org.apache.http.HttpEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding a high-rate alert from scratch with encoding it from a
+ * {@link MessageTemplate}. Not a unit test; run it with the GC profiler to see
+ * the allocations per send:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main MessageEncodingBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageEncodingBenchmark {
+
+    private final PushoverRestClient client = new PushoverRestClient();
+
+    private final MessageTemplate template = MessageTemplate.builderWithApiToken("azGDORePK8gMaC0QOYAMyEEuzJnyUi")
+            .setUserId("uQiRzpo4DXghDmr9QzzfQu27cmVRsG")
+            .setDevice("pager")
+            .setSound("siren")
+            .setPriority(MessagePriority.HIGH)
+            .setUrl("https://status.example.com/incidents")
+            .build();
+
+    private final OutputStream sink = OutputStream.nullOutputStream();
+
+    @Benchmark
+    public void builderMessage() throws PushoverException, IOException {
+        final PushoverMessage msg = PushoverMessage.builderWithApiToken("azGDORePK8gMaC0QOYAMyEEuzJnyUi")
+                .setUserId("uQiRzpo4DXghDmr9QzzfQu27cmVRsG")
+                .setDevice("pager")
+                .setSound("siren")
+                .setPriority(MessagePriority.HIGH)
+                .setUrl("https://status.example.com/incidents")
+                .setTitle("Firing: disk usage")
+                .setMessage("/var is 97% full on db-7")
+                .build();
+        encode(msg);
+    }
+
+    @Benchmark
+    public void templateMessage() throws PushoverException, IOException {
+        encode(template.message("Firing: disk usage", "/var is 97% full on db-7"));
+    }
+
+    private void encode(PushoverMessage msg) throws PushoverException, IOException {
+        final HttpEntity entity = client.createMessagePost(msg, PushoverRestClient.DEFAULT_API_BASE_URL).getEntity();
+        entity.writeTo(sink);
+    }
+}
@@ -0,0 +1,85 @@
+package net.pushover.client;
+
+import org.apache.http.HttpEntity;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageTemplateTest {
+
+    private final MessageTemplate template = MessageTemplate.builderWithApiToken("TOKEN")
+            .setUserId("USER")
+            .setDevice("pager")
+            .setSound("siren")
+            .setPriority(MessagePriority.EMERGENCY)
+            .setRetry(60)
+            .setExpire(3600)
+            .setUrl("https://status.example.com")
+            .build();
+
+    @Test
+    public void testMessageCarriesTemplateFields() {
+        final PushoverMessage msg = template.message("Firing", "disk full");
+
+        assertEquals("TOKEN", msg.getApiToken());
+        assertEquals("USER", msg.getUserId());
+        assertEquals("pager", msg.getDevice());
+        assertEquals("siren", msg.getSound());
+        assertEquals(MessagePriority.EMERGENCY, msg.getPriority());
+        assertEquals(60, msg.getRetry());
+        assertEquals("Firing", msg.getTitle());
+        assertEquals("disk full", msg.getMessage());
+        assertSame(template, msg.getTemplate());
+    }
+
+    @Test
+    public void testEncodedBody() throws Exception {
+        final HttpEntity entity = new PushoverRestClient()
+                .createMessagePost(template.message("Firing", "UTF-8 MSG (ue=ü)"), PushoverRestClient.DEFAULT_API_BASE_URL)
+                .getEntity();
+
+        final String body = bodyOf(entity);
+        final String boundary = entity.getContentType().getValue().substring("multipart/form-data; boundary=".length());
+
+        assertEquals(entity.getContentLength(), bodyBytesOf(entity).length);
+        assertTrue(body.startsWith("--" + boundary + "\r\n"), body);
+        assertTrue(body.endsWith("--" + boundary + "--\r\n"), body);
+        for (String[] field : new String[][]{{"token", "TOKEN"}, {"user", "USER"}, {"device", "pager"},
+                {"sound", "siren"}, {"priority", "2"}, {"retry", "60"}, {"expire", "3600"},
+                {"url", "https://status.example.com"}, {"title", "Firing"}, {"message", "UTF-8 MSG (ue=ü)"}}) {
+            assertTrue(body.contains("Content-Disposition: form-data; name=\"" + field[0] + "\"\r\n" +
+                    "Content-Type: text/plain; charset=UTF-8\r\n" +
+                    "Content-Transfer-Encoding: 8bit\r\n\r\n" + field[1] + "\r\n"), field[0]);
+        }
+    }
+
+    @Test
+    public void testMessagesAreIndependent() throws Exception {
+        final PushoverMessage firing = template.message("Firing", "disk full");
+        final PushoverMessage resolved = template.message("Resolved", "disk ok");
+
+        final PushoverRestClient client = new PushoverRestClient();
+        final String firingBody = bodyOf(client.createMessagePost(firing, PushoverRestClient.DEFAULT_API_BASE_URL).getEntity());
+        final String resolvedBody = bodyOf(client.createMessagePost(resolved, PushoverRestClient.DEFAULT_API_BASE_URL).getEntity());
+
+        assertTrue(firingBody.contains("disk full"));
+        assertFalse(firingBody.contains("disk ok"));
+        assertTrue(resolvedBody.contains("Resolved"));
+        assertFalse(resolvedBody.contains("Firing"));
+        //the entity is repeatable, e.g. for retries
+        assertEquals(firingBody, bodyOf(client.createMessagePost(firing, PushoverRestClient.DEFAULT_API_BASE_URL).getEntity()));
+    }
+
+    private static byte[] bodyBytesOf(HttpEntity entity) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static String bodyOf(HttpEntity entity) throws IOException {
+        return new String(bodyBytesOf(entity), java.nio.charset.StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,112 @@
+package net.pushover.client;
+
+import org.apache.http.client.HttpClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+public class MessageValidatorTest {
+
+    private final MessageValidator validator = MessageValidator.builder().build();
+
+    private PushoverMessage.Builder valid() {
+        return PushoverMessage.builderWithApiToken("token")
+                .setUserId("user")
+                .setMessage("message");
+    }
+
+    @Test
+    public void testValidMessage() {
+        assertTrue(validator.validate(valid().setSound("siren").setTitle("title").build()).isEmpty());
+    }
+
+    @Test
+    public void testLimits() {
+        assertEquals(List.of("message cannot be blank"), validator.validate(valid().setMessage(" ").build()));
+        assertEquals(List.of("message is too long, must be 1024 characters or less"),
+                validator.validate(valid().setMessage("x".repeat(1025)).build()));
+        assertEquals(List.of("title is too long, must be 250 characters or less"),
+                validator.validate(valid().setTitle("x".repeat(251)).build()));
+        assertEquals(List.of("url is too long, must be 512 characters or less"),
+                validator.validate(valid().setUrl("x".repeat(513)).build()));
+        assertEquals(List.of("sound is invalid"), validator.validate(valid().setSound("kazoo").build()));
+        assertEquals(List.of("user identifier is invalid"), validator.validate(valid().setUserId(null).build()));
+    }
+
+    @Test
+    public void testLengthCountsCharactersNotBytes() {
+        assertTrue(validator.validate(valid().setMessage("ü".repeat(1024)).build()).isEmpty());
+    }
+
+    @Test
+    public void testEmergencyLimits() {
+        final List<String> errors = validator.validate(valid()
+                .setPriority(MessagePriority.EMERGENCY)
+                .setRetry(10)
+                .setExpire(10801)
+                .build());
+        assertEquals(List.of("retry is invalid, must be at least 30 seconds",
+                "expire is invalid, must be 10800 seconds or less"), errors);
+
+        assertTrue(validator.validate(valid()
+                .setPriority(MessagePriority.EMERGENCY)
+                .setRetry(30)
+                .setExpire(10800)
+                .build()).isEmpty());
+    }
+
+    @Test
+    public void testCustomSounds() {
+        final MessageValidator custom = MessageValidator.builder().setKnownSounds(List.of("kazoo")).build();
+        assertTrue(custom.validate(valid().setSound("kazoo").build()).isEmpty());
+    }
+
+    @Test
+    public void testTruncate() {
+        final MessageValidator truncating = MessageValidator.builder()
+                .setOversizePolicy(MessageValidator.OversizePolicy.TRUNCATE)
+                .build();
+
+        final PushoverMessage prepared = truncating.prepare(valid().setMessage("x".repeat(2000)).setTitle("t".repeat(300)).build());
+
+        assertEquals(1024, prepared.getMessage().length());
+        assertTrue(prepared.getMessage().endsWith("…"));
+        assertEquals(250, prepared.getTitle().length());
+        assertTrue(truncating.validate(prepared).isEmpty());
+    }
+
+    @Test
+    public void testSplit() {
+        final String body = "word ".repeat(500);
+        final List<PushoverMessage> parts = validator.split(valid().setMessage(body).setTitle("Report").build());
+
+        assertEquals(3, parts.size());
+        assertEquals("Report (1/3)", parts.get(0).getTitle());
+        assertEquals("Report (3/3)", parts.get(2).getTitle());
+        final StringBuilder joined = new StringBuilder();
+        for (PushoverMessage part : parts) {
+            assertTrue(validator.validate(part).isEmpty());
+            joined.append(part.getMessage());
+        }
+        assertEquals(body, joined.toString());
+    }
+
+    @Test
+    public void testClientRejectsWithoutCallingTheApi() {
+        final HttpClient httpClient = mock(HttpClient.class);
+        final PushoverRestClient client = new PushoverRestClient();
+        client.setHttpClient(httpClient);
+        client.setMessageValidator(validator);
+
+        final PushoverValidationException e = assertThrows(PushoverValidationException.class,
+                () -> client.pushMessage(valid().setMessage("").build()));
+
+        assertEquals(List.of("message cannot be blank"), e.getErrors());
+        assertEquals(0, e.getStackTrace().length);
+        verifyNoInteractions(httpClient);
+    }
+}
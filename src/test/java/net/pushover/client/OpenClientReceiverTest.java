@@ -0,0 +1,147 @@
+package net.pushover.client;
+
+import net.pushover.client.simulator.PushoverSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpenClientReceiverTest {
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private PushoverSimulator simulator;
+    private PushoverRestClient sender;
+    private OpenClient openClient;
+    private OpenClientLogin login;
+    private String deviceId;
+    private final List<InboundMessage> handled = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        simulator = PushoverSimulator.builder()
+                .addUser("user", "phone")
+                .addLogin("bot@example.com", "secret-password", "user")
+                .build().start();
+        sender = new PushoverRestClient();
+        sender.setApiBaseUrl(simulator.getBaseUrl());
+        openClient = new OpenClient();
+        openClient.setApiBaseUrl(simulator.getBaseUrl());
+        login = openClient.login("bot@example.com", "secret-password", null);
+        deviceId = openClient.registerDevice(login.secret(), "oncall-bot");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        simulator.close();
+    }
+
+    private OpenClientReceiver.Builder receiver() {
+        return OpenClientReceiver.builder()
+                .setClient(openClient)
+                .setSecret(login.secret())
+                .setDeviceId(deviceId)
+                .setPushUrl(simulator.getPushStreamUrl())
+                .setReconnectBackoff(Duration.ofMillis(20), Duration.ofMillis(200))
+                .setHandler(handled::add);
+    }
+
+    private void send(String text) throws PushoverException {
+        sender.pushMessage(PushoverMessage.builderWithApiToken("token").setUserId("user").setMessage(text).build());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void testLoginIsRefusedWithWrongPassword() {
+        assertThrows(PushoverException.class, () -> openClient.login("bot@example.com", "wrong", null));
+    }
+
+    @Test
+    public void testMessagesArePushedAndDeleted() throws Exception {
+        try (OpenClientReceiver receiver = receiver().build().start()) {
+            await(() -> simulator.getPushConnectionCount() == 1);
+            send("disk full");
+            send("disk still full");
+            await(() -> handled.size() == 2);
+
+            assertEquals("disk full", handled.get(0).getMessage());
+            assertEquals("disk still full", handled.get(1).getMessage());
+            assertTrue(handled.get(0).getId() < handled.get(1).getId());
+            assertTrue(receiver.isConnected());
+            await(() -> {
+                try {
+                    return openClient.downloadMessages(login.secret(), deviceId).isEmpty();
+                } catch (PushoverException e) {
+                    return false;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testMessagesSentWhileOfflineAreDownloadedOnConnect() throws Exception {
+        send("while offline");
+        try (OpenClientReceiver receiver = receiver().build().start()) {
+            await(() -> handled.size() == 1);
+            assertEquals("while offline", handled.get(0).getMessage());
+            assertEquals(1, receiver.getReceivedCount());
+        }
+    }
+
+    @Test
+    public void testReconnectsWhenAsked() throws Exception {
+        try (OpenClientReceiver receiver = receiver().build().start()) {
+            await(() -> simulator.getPushConnectionCount() == 1);
+            simulator.sendPushFrame('R');
+            await(() -> receiver.getConnectCount() == 2 && simulator.getPushConnectionCount() == 1);
+            send("after reconnect");
+            await(() -> handled.size() == 1);
+            assertNull(receiver.getStopReason());
+        }
+    }
+
+    @Test
+    public void testStopsOnSessionError() throws Exception {
+        try (OpenClientReceiver receiver = receiver().setSecret("expired").build().start()) {
+            await(() -> receiver.getStopReason() != null);
+            assertFalse(receiver.isConnected());
+            assertEquals(0, simulator.getPushConnectionCount());
+        }
+    }
+
+    @Test
+    public void testSlowHandlerGetsEveryMessageInOrder() throws Exception {
+        try (OpenClientReceiver receiver = receiver().setQueueCapacity(1).setHandler(message -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add(message);
+        }).build().start()) {
+            for (int i = 0; i < 5; i++) {
+                send("alert " + i);
+            }
+            await(() -> handled.size() == 5);
+            for (int i = 0; i < 5; i++) {
+                assertEquals("alert " + i, handled.get(i).getMessage());
+            }
+            assertEquals(5, receiver.getReceivedCount());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package net.pushover.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderedDispatcherTest {
+
+    private final Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    private final PushoverClient recordingClient = new PushoverClient() {
+        @Override
+        public Status pushMessage(PushoverMessage msg) throws PushoverException {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if ("fail".equals(msg.getMessage())) {
+                concurrent.decrementAndGet();
+                throw new PushoverException("nope!", null);
+            }
+            received.computeIfAbsent(msg.getUserId() + "/" + msg.getDevice(), k -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(Integer.parseInt(msg.getMessage()));
+            concurrent.decrementAndGet();
+            return new Status(1);
+        }
+
+        @Override
+        public Set<PushOverSound> getSounds() {
+            return Set.of();
+        }
+    };
+
+    @Test
+    public void testFifoPerRecipientAndParallelAcrossRecipients() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final OrderedDispatcher dispatcher = new OrderedDispatcher(recordingClient, executor);
+
+        final List<CompletableFuture<Status>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            for (int user = 0; user < 20; user++) {
+                futures.add(dispatcher.dispatch(PushoverMessage.builderWithApiToken("token")
+                        .setUserId("user" + user)
+                        .setDevice(user % 2 == 0 ? "phone" : null)
+                        .setMessage(String.valueOf(i))
+                        .build()));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+
+        assertEquals(20, received.size());
+        for (List<Integer> sequence : received.values()) {
+            assertEquals(50, sequence.size());
+            for (int i = 0; i < sequence.size(); i++) {
+                assertEquals(i, sequence.get(i));
+            }
+        }
+        assertTrue(maxConcurrent.get() > 1, "recipients should be served in parallel");
+        assertEquals(0, awaitNoActiveRecipients(dispatcher));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testFailureDoesNotBlockTheLane() throws Exception {
+        final OrderedDispatcher dispatcher = new OrderedDispatcher(recordingClient);
+
+        final CompletableFuture<Status> failed = dispatcher.dispatch(PushoverMessage.builderWithApiToken("token")
+                .setUserId("user").setMessage("fail").build());
+        final CompletableFuture<Status> next = dispatcher.dispatch(PushoverMessage.builderWithApiToken("token")
+                .setUserId("user").setMessage("1").build());
+
+        assertEquals(1, next.get(5, TimeUnit.SECONDS).getStatus());
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(List.of(1), received.get("user/null"));
+    }
+
+    @Test
+    public void testRejectingExecutorFailsTheLane() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        final OrderedDispatcher dispatcher = new OrderedDispatcher(recordingClient, executor);
+
+        final CompletableFuture<Status> first = dispatcher.dispatch(PushoverMessage.builderWithApiToken("token")
+                .setUserId("user").setMessage("1").build());
+        final CompletableFuture<Status> second = dispatcher.dispatch(PushoverMessage.builderWithApiToken("token")
+                .setUserId("user").setMessage("2").build());
+
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> second.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(PushoverException.class, e.getCause());
+        assertEquals(0, dispatcher.getActiveRecipients());
+    }
+
+    @Test
+    public void testShutdownMidBatchFailsTheRest() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final OrderedDispatcher dispatcher = new OrderedDispatcher(recordingClient, executor);
+
+        final List<CompletableFuture<Status>> futures = new ArrayList<>();
+        //more than one batch, the shutdown lands before the lane re-submits itself
+        executor.execute(() -> {
+            for (int i = 0; i < 40; i++) {
+                futures.add(dispatcher.dispatch(PushoverMessage.builderWithApiToken("token")
+                        .setUserId("user").setMessage(String.valueOf(i)).build()));
+            }
+            executor.shutdown();
+        });
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        for (CompletableFuture<Status> future : futures) {
+            assertTrue(future.isDone());
+        }
+        assertEquals(16, futures.stream().filter(f -> !f.isCompletedExceptionally()).count());
+        assertEquals(0, dispatcher.getActiveRecipients());
+    }
+
+    @Test
+    public void testCloseShutsDownOnlyOwnThreads() throws Exception {
+        final OrderedDispatcher owning = new OrderedDispatcher(recordingClient);
+        assertEquals(1, owning.dispatch(PushoverMessage.builderWithApiToken("token")
+                .setUserId("user").setMessage("1").build()).get(5, TimeUnit.SECONDS).getStatus());
+        owning.close();
+        //another recipient, a lane that is still draining would take the message along
+        final CompletableFuture<Status> afterClose = owning.dispatch(PushoverMessage.builderWithApiToken("token")
+                .setUserId("other").setMessage("2").build());
+        final ExecutionException e = assertThrows(ExecutionException.class, () -> afterClose.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(PushoverException.class, e.getCause());
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (OrderedDispatcher borrowing = new OrderedDispatcher(recordingClient, executor)) {
+            borrowing.dispatch(PushoverMessage.builderWithApiToken("token")
+                    .setUserId("user").setMessage("3").build()).get(5, TimeUnit.SECONDS);
+        }
+        assertFalse(executor.isShutdown());
+        executor.shutdown();
+    }
+
+    /**
+     * Results complete just before their lane is cleaned up.
+     */
+    private static int awaitNoActiveRecipients(OrderedDispatcher dispatcher) throws InterruptedException {
+        for (int i = 0; i < 500 && dispatcher.getActiveRecipients() > 0; i++) {
+            Thread.sleep(10);
+        }
+        return dispatcher.getActiveRecipients();
+    }
+}
@@ -0,0 +1,129 @@
+package net.pushover.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class PushResultTest {
+
+    private HttpClient httpClient;
+    private PushoverRestClient client;
+    private final PushoverMessage msg = PushoverMessage.builderWithApiToken("token")
+            .setUserId("user")
+            .setMessage("message")
+            .build();
+
+    @BeforeEach
+    public void setUp() {
+        httpClient = mock(HttpClient.class);
+        client = new PushoverRestClient();
+        client.setHttpClient(httpClient);
+    }
+
+    private void answer(int httpStatus, String body) throws IOException {
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, httpStatus, "");
+        response.setEntity(new StringEntity(body, "UTF-8"));
+        response.addHeader(PushoverResponseFactory.REQUEST_LIMIT_HEADER, "10000");
+        response.addHeader(PushoverResponseFactory.REQUEST_REMAINING_HEADER, "7496");
+        response.addHeader(PushoverResponseFactory.REQUEST_RESET_HEADER, "1393653600");
+        when(httpClient.execute(any(HttpUriRequest.class))).thenReturn(response);
+    }
+
+    @Test
+    public void testSuccess() throws Exception {
+        answer(200, "{\"status\":1,\"request\":\"req-1\"}");
+
+        final PushResult result = client.send(msg);
+
+        final PushResult.Success success = assertInstanceOf(PushResult.Success.class, result);
+        assertEquals(200, success.httpStatus());
+        assertEquals("req-1", success.requestId());
+        assertEquals(List.of(), success.errors());
+        assertEquals(new Quota(10000, 7496, 1393653600L), success.quota());
+        assertEquals(7496, success.response().getRemaining());
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        answer(400, "{\"status\":0,\"request\":\"req-2\",\"errors\":[\"user identifier is invalid\"]}");
+
+        final PushResult.Rejected rejected = assertInstanceOf(PushResult.Rejected.class, client.send(msg));
+
+        assertEquals(400, rejected.httpStatus());
+        assertEquals("req-2", rejected.requestId());
+        assertEquals(List.of("user identifier is invalid"), rejected.errors());
+        assertEquals(7496, rejected.quota().remaining());
+        //the throwing API keeps returning the API's answer for rejections
+        assertEquals(0, client.pushMessage(msg).getStatus());
+    }
+
+    @Test
+    public void testThrottled() throws Exception {
+        answer(429, "{\"status\":0,\"request\":\"req-3\",\"errors\":[\"application is over its quota\"]}");
+
+        final PushResult.Throttled throttled = assertInstanceOf(PushResult.Throttled.class, client.send(msg));
+
+        assertEquals(429, throttled.httpStatus());
+        assertEquals(PushResult.Throttled.Reason.API, throttled.reason());
+        assertEquals("req-3", throttled.requestId());
+        assertEquals(List.of("application is over its quota"), throttled.errors());
+    }
+
+    @Test
+    public void testServerError() throws Exception {
+        answer(503, "<html>unavailable</html>");
+
+        final PushResult.TransportFailure failure = assertInstanceOf(PushResult.TransportFailure.class, client.send(msg));
+
+        assertEquals(503, failure.httpStatus());
+        assertNull(failure.cause());
+        assertEquals(Quota.UNKNOWN, failure.quota());
+        assertThrows(PushoverException.class, () -> client.pushMessage(msg));
+    }
+
+    @Test
+    public void testTransportFailureKeepsCause() throws Exception {
+        final IOException cause = new IOException("connection reset");
+        when(httpClient.execute(any(HttpUriRequest.class))).thenThrow(cause);
+
+        final PushResult.TransportFailure failure = assertInstanceOf(PushResult.TransportFailure.class, client.send(msg));
+        assertSame(cause, failure.cause());
+        assertEquals(List.of("connection reset"), failure.errors());
+
+        final PushoverException thrown = assertThrows(PushoverException.class, () -> client.pushMessage(msg));
+        assertSame(cause, thrown.getCause());
+    }
+
+    @Test
+    public void testLocalRejectionAndThrottling() throws Exception {
+        client.setMessageValidator(MessageValidator.builder().build());
+        final PushResult.Rejected rejected = assertInstanceOf(PushResult.Rejected.class,
+                client.send(msg.toBuilder().setMessage("").build()));
+        assertEquals(0, rejected.httpStatus());
+        assertEquals(List.of("message cannot be blank"), rejected.errors());
+
+        final AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .setOverflowPolicy(AdaptiveConcurrencyLimiter.OverflowPolicy.REJECT)
+                .setInitialLimit(1)
+                .build();
+        client.setConcurrencyLimiter(limiter);
+        limiter.acquire();
+
+        final PushResult.Throttled throttled = assertInstanceOf(PushResult.Throttled.class, client.send(msg));
+        assertEquals(0, throttled.httpStatus());
+        assertEquals(PushResult.Throttled.Reason.CONCURRENCY_LIMIT, throttled.reason());
+        assertNull(throttled.requestId());
+        verifyNoInteractions(httpClient);
+    }
+}
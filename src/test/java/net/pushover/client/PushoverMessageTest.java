@@ -3,7 +3,7 @@ package net.pushover.client;
 
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class PushoverMessageTest {
 
@@ -32,4 +32,42 @@ public class PushoverMessageTest {
         assertNull(message.getUserId());
     }
 
+    @Test
+    public void testBuiltMessageIsNotChangedByBuilder() {
+        final PushoverMessage.Builder builder = PushoverMessage.builderWithApiToken("token")
+                .setUserId("user")
+                .setMessage("first");
+        final PushoverMessage first = builder.build();
+
+        final PushoverMessage second = builder.setMessage("second").setPriority(MessagePriority.HIGH).build();
+
+        assertNotSame(first, second);
+        assertEquals("first", first.getMessage());
+        assertEquals(MessagePriority.NORMAL, first.getPriority());
+        assertEquals("second", second.getMessage());
+        assertEquals(MessagePriority.HIGH, second.getPriority());
+    }
+
+    @Test
+    public void testToBuilderCopiesAllFields() {
+        final PushoverMessage original = PushoverMessage.builderWithApiToken("token")
+                .setUserId("user")
+                .setMessage("message")
+                .setTitle("title")
+                .setPriority(MessagePriority.EMERGENCY)
+                .setRetry(60)
+                .setExpire(3600)
+                .setMonospace(true)
+                .build();
+
+        final PushoverMessage copy = original.toBuilder().setUserId("other").build();
+
+        assertEquals("other", copy.getUserId());
+        assertEquals("user", original.getUserId());
+        assertEquals(original.getTitle(), copy.getTitle());
+        assertEquals(original.getPriority(), copy.getPriority());
+        assertEquals(original.getRetry(), copy.getRetry());
+        assertEquals(original.getExpire(), copy.getExpire());
+        assertEquals(original.getMonospace(), copy.getMonospace());
+    }
 }
@@ -0,0 +1,297 @@
+package net.pushover.client;
+
+import net.pushover.client.simulator.LatencyDistribution;
+import net.pushover.client.simulator.PushoverSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PushoverProcessorTest {
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private PushoverSimulator simulator;
+
+    @AfterEach
+    public void tearDown() {
+        if (simulator != null) {
+            simulator.close();
+        }
+    }
+
+    private PushoverRestClient client(LatencyDistribution latency) throws Exception {
+        simulator = PushoverSimulator.builder().setLatency(latency).build().start();
+        final PushoverRestClient client = new PushoverRestClient();
+        client.setApiBaseUrl(simulator.getBaseUrl());
+        return client;
+    }
+
+    private static List<PushoverMessage> messages(int count) {
+        final List<PushoverMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(PushoverMessage.builderWithApiToken("token").setUserId("user").setMessage("message " + i).build());
+        }
+        return messages;
+    }
+
+    @Test
+    public void testSendsWithBoundedDemand() throws Exception {
+        final PushoverRestClient client = client(LatencyDistribution.uniform(1, 20));
+        final PushoverProcessor processor = PushoverProcessor.builder().setClient(client).setMaxInFlight(4).build();
+        final ListPublisher upstream = new ListPublisher(messages(40));
+        final Collector results = new Collector();
+
+        processor.subscribe(results);
+        upstream.subscribe(processor);
+
+        assertTrue(results.done.await(10, TimeUnit.SECONDS));
+        assertNull(results.error);
+        assertEquals(40, results.items.size());
+        assertTrue(results.items.stream().allMatch(PushResult::isSuccess));
+        assertEquals(40, simulator.getReceivedMessages().size());
+        assertTrue(upstream.maxOutstanding <= 4, "outstanding demand " + upstream.maxOutstanding);
+    }
+
+    @Test
+    public void testPublishesInMessageOrder() throws Exception {
+        final PushoverRestClient client = mock(PushoverRestClient.class);
+        final List<CompletableFuture<PushResult>> sends = Collections.synchronizedList(new ArrayList<>());
+        when(client.sendAsync(any(), any())).thenAnswer(invocation -> {
+            final CompletableFuture<PushResult> send = new CompletableFuture<>();
+            sends.add(send);
+            return send;
+        });
+        final PushoverProcessor processor = PushoverProcessor.builder()
+                .setClient(client).setMaxInFlight(3).setOrdered(true).build();
+        final Collector results = new Collector();
+        processor.subscribe(results);
+        new ListPublisher(messages(6)).subscribe(processor);
+
+        for (int batch = 0; batch < 2; batch++) {
+            //results are published on the processor's threads, which then request the next batch
+            for (int i = 0; i < 500 && sends.size() < 3 * (batch + 1); i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(3 * (batch + 1), sends.size());
+            //complete the batch in reverse order, nothing is published before its predecessors
+            for (int i = 3 * batch + 2; i >= 3 * batch; i--) {
+                sends.get(i).complete(new PushResult.Success(new Response(1, "request " + i), 200, Quota.UNKNOWN));
+            }
+        }
+
+        assertTrue(results.done.await(5, TimeUnit.SECONDS));
+        final List<String> requests = new ArrayList<>();
+        results.items.forEach(result -> requests.add(result.requestId()));
+        assertEquals(List.of("request 0", "request 1", "request 2", "request 3", "request 4", "request 5"), requests);
+    }
+
+    @Test
+    public void testFailedSendsArePublished() throws Exception {
+        final PushoverRestClient client = mock(PushoverRestClient.class);
+        final List<CompletableFuture<PushResult>> sends = Collections.synchronizedList(new ArrayList<>());
+        when(client.sendAsync(any(), any())).thenAnswer(invocation -> {
+            final CompletableFuture<PushResult> send = new CompletableFuture<>();
+            sends.add(send);
+            return send;
+        });
+        final PushoverProcessor processor = PushoverProcessor.builder().setClient(client).setMaxInFlight(2).build();
+        final Collector results = new Collector();
+        processor.subscribe(results);
+        new ListPublisher(messages(2)).subscribe(processor);
+
+        sends.get(0).completeExceptionally(new IllegalStateException("broken"));
+        sends.get(1).cancel(true);
+
+        assertTrue(results.done.await(5, TimeUnit.SECONDS));
+        assertNull(results.error);
+        assertEquals(2, results.items.size());
+        assertTrue(results.items.stream().allMatch(PushResult.TransportFailure.class::isInstance));
+        assertEquals(0, processor.getPending());
+    }
+
+    @Test
+    public void testSendsOffTheUpstreamThread() throws Exception {
+        final PushoverRestClient client = client(LatencyDistribution.constant(200));
+        //a busy default executor runs the tasks on the caller
+        final ThreadPoolExecutor busy = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        final CountDownLatch release = new CountDownLatch(1);
+        busy.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        client.setExecutorService(busy);
+        final PushoverProcessor processor = PushoverProcessor.builder().setClient(client).setMaxInFlight(4).build();
+        final ListPublisher upstream = new ListPublisher(messages(8));
+        final Collector results = new Collector();
+        processor.subscribe(results);
+
+        final long start = System.nanoTime();
+        //the publisher delivers the first messages inside subscribe
+        upstream.subscribe(processor);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 150, "sent on the upstream thread");
+
+        assertTrue(results.done.await(10, TimeUnit.SECONDS));
+        assertEquals(8, results.items.size());
+        assertTrue(results.items.stream().allMatch(PushResult::isSuccess));
+        release.countDown();
+        busy.shutdown();
+    }
+
+    @Test
+    public void testSendAsyncCompletesWhenSendThrows() throws Exception {
+        final PushoverRestClient client = client(LatencyDistribution.none());
+        final QuotaStore store = mock(QuotaStore.class);
+        when(store.lease(any(), anyInt())).thenThrow(new IllegalStateException("store is gone"));
+        client.setQuotaStore(store, 10);
+
+        final PushResult result = client.sendAsync(messages(1).get(0)).get(5, TimeUnit.SECONDS);
+
+        assertInstanceOf(PushResult.TransportFailure.class, result);
+        assertEquals(List.of("store is gone"), result.errors());
+    }
+
+    @Test
+    public void testCancelAbortsRequestsInFlight() throws Exception {
+        final PushoverRestClient client = client(LatencyDistribution.constant(5000));
+        final PushoverProcessor processor = PushoverProcessor.builder().setClient(client).setMaxInFlight(3).build();
+        final ListPublisher upstream = new ListPublisher(messages(10));
+        final Collector results = new Collector();
+
+        processor.subscribe(results);
+        upstream.subscribe(processor);
+        while (simulator.getRequestCount() < 3) {
+            Thread.sleep(5);
+        }
+        final long start = System.nanoTime();
+        results.subscription.cancel();
+
+        assertTrue(upstream.cancelled);
+        assertEquals(3, upstream.delivered);
+        assertTrue(results.items.isEmpty());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+
+    @Test
+    public void testCancelledSendAsyncIsAborted() throws Exception {
+        final PushoverRestClient client = client(LatencyDistribution.constant(5000));
+
+        final CompletableFuture<PushResult> result = client.sendAsync(messages(1).get(0));
+        while (simulator.getRequestCount() < 1) {
+            Thread.sleep(5);
+        }
+
+        assertTrue(result.cancel(true), () -> String.valueOf(result.join()));
+        assertTrue(result.isCancelled());
+    }
+
+    /**
+     * Delivers a list on demand and records the largest demand outstanding at once.
+     */
+    private static class ListPublisher implements Flow.Publisher<PushoverMessage> {
+
+        private final List<PushoverMessage> items;
+        private long demand;
+        private boolean delivering;
+        volatile int delivered;
+        volatile long maxOutstanding;
+        volatile boolean cancelled;
+        private boolean completed;
+
+        ListPublisher(List<PushoverMessage> items) {
+            this.items = items;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super PushoverMessage> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    synchronized (ListPublisher.this) {
+                        demand += n;
+                        maxOutstanding = Math.max(maxOutstanding, demand);
+                        if (delivering) {
+                            return;
+                        }
+                        delivering = true;
+                    }
+                    while (true) {
+                        final PushoverMessage next;
+                        synchronized (ListPublisher.this) {
+                            if (cancelled || completed || demand == 0 || delivered == items.size()) {
+                                delivering = false;
+                                break;
+                            }
+                            demand--;
+                            next = items.get(delivered++);
+                        }
+                        subscriber.onNext(next);
+                    }
+                    synchronized (ListPublisher.this) {
+                        if (delivered == items.size() && !cancelled && !completed) {
+                            completed = true;
+                        } else {
+                            return;
+                        }
+                    }
+                    subscriber.onComplete();
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static class Collector implements Flow.Subscriber<PushResult> {
+
+        final List<PushResult> items = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(PushResult item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
@@ -217,4 +217,48 @@ public class PushoverResponseFactoryTest {
     public void testNullEntityCreateSoundResponse() {
         assertThrows(IOException.class, () -> PushoverResponseFactory.createSoundSet(response));
     }
+
+    @Test
+    public void testNullAndUnknownFieldsBehaveLikeReflectiveBinding() throws IOException {
+        when(response.getEntity()).thenReturn(new StringEntity(
+                "{\"status\":1,\"expired\":null,\"request\":null,\"extra\":{\"nested\":[1,2]},\"acknowledged\":\"1\"}"));
+
+        final Receipt rcpt = PushoverResponseFactory.createReceipt(response);
+        assertEquals(1, rcpt.getStatus());
+        assertEquals(1, rcpt.getExpired());     //the default of the no-argument constructor
+        assertNull(rcpt.getRequest());
+        assertEquals(1, rcpt.getAcknowledged());
+        assertEquals(List.of("Default constructor. No information available"), rcpt.getErrors());
+    }
+
+    @Test
+    public void testMalformedNumberResponse() throws IOException {
+        when(response.getEntity()).thenReturn(new StringEntity("{\"status\":\"one\"}"));
+        assertThrows(IOException.class, () -> PushoverResponseFactory.createResponse(response));
+    }
+
+    @Test
+    public void testInboundMessages() throws IOException {
+        when(response.getEntity()).thenReturn(new StringEntity(
+                "{\"status\":1,\"messages\":[" +
+                        "{\"id\":7,\"umid\":\"u7\",\"message\":\"second\",\"priority\":2,\"acked\":1,\"receipt\":\"r7\",\"url_title\":\"more\"}," +
+                        "{\"id\":3,\"title\":\"backup\",\"message\":\"first\",\"aid\":42,\"date\":1700000000,\"html\":1}]}",
+                "UTF-8"));
+
+        final List<InboundMessage> messages = PushoverResponseFactory.createInboundMessages(response);
+        assertEquals(2, messages.size());
+        final InboundMessage first = messages.get(0);
+        assertEquals(3, first.getId());
+        assertEquals("backup", first.getTitle());
+        assertEquals(42, first.getAid());
+        assertEquals(1700000000, first.getDate());
+        assertTrue(first.isHtml());
+        assertNull(first.getReceipt());
+        final InboundMessage second = messages.get(1);
+        assertEquals("u7", second.getUmid());
+        assertEquals(2, second.getPriority());
+        assertTrue(second.isAcknowledged());
+        assertEquals("r7", second.getReceipt());
+        assertEquals("more", second.getUrlTitle());
+    }
 }
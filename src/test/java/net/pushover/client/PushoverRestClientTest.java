@@ -2,20 +2,29 @@ package net.pushover.client;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicStatusLine;
 import org.apache.http.util.EntityUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -177,6 +186,48 @@ public class PushoverRestClientTest {
         );
     }
     
+    @Test
+    public void testAttachmentIsStreamedWithKnownLength(@TempDir Path dir) throws Exception {
+
+        //larger than one mapped window, so the file is mapped more than once
+        final byte[] image = new byte[(int) MultipartFormEntity.MAPPED_WINDOW + 12345];
+        new java.util.Random(7).nextBytes(image);
+        final Path file = dir.resolve("large.jpg");
+        Files.write(file, image);
+
+        final HttpEntity entity = client.createMessagePost(PushoverMessage.builderWithApiToken("token")
+                .setUserId("user")
+                .setMessage("see attachment")
+                .setImage(file.toFile())
+                .build(), "https://api.pushover.net/1/").getEntity();
+
+        assertTrue(entity.isRepeatable());
+        assertFalse(entity.isChunked());
+
+        final ByteArrayOutputStream mapped = new ByteArrayOutputStream();
+        entity.writeTo(mapped);
+        final byte[] body = mapped.toByteArray();
+        assertEquals(entity.getContentLength(), body.length);
+        assertArrayEquals(body, EntityUtils.toByteArray(entity));
+
+        final Path transferred = dir.resolve("body");
+        try (FileOutputStream out = new FileOutputStream(transferred.toFile())) {
+            entity.writeTo(out);
+        }
+        assertArrayEquals(body, Files.readAllBytes(transferred));
+
+        final String header = "Content-Disposition: form-data; name=\"attachment\"; filename=\"large.jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n"
+                + "Content-Transfer-Encoding: binary\r\n\r\n";
+        final String text = new String(body, java.nio.charset.StandardCharsets.ISO_8859_1);
+        final int start = text.indexOf(header) + header.length();
+        assertArrayEquals(image, java.util.Arrays.copyOfRange(body, start, start + image.length));
+        final String boundary = entity.getContentType().getValue().substring("multipart/form-data; boundary=".length());
+        assertTrue(text.startsWith("--" + boundary + "\r\n"));
+        assertTrue(text.contains("name=\"message\"\r\n"));
+        assertTrue(text.endsWith("\r\n--" + boundary + "--\r\n"));
+    }
+
     @Test
     public void testRequestVerification() throws Exception {
 
@@ -342,4 +393,144 @@ public class PushoverRestClientTest {
                 1"""));
 
     }
+
+    @Test
+    public void testThrottledResponseShrinksConcurrencyLimit() throws Exception {
+
+        final AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .setInitialLimit(10)
+                .build();
+        client.setConcurrencyLimiter(limiter);
+
+        when(httpClient.execute(any(HttpUriRequest.class))).thenReturn(mockHttpResponse);
+        when(mockHttpResponse.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 429, "Too Many Requests"));
+        when(mockHttpResponse.getEntity()).thenReturn(new StringEntity("{\"status\":0}", "UTF-8"));
+
+        client.pushMessage(PushoverMessage.builderWithApiToken("")
+                .setUserId("")
+                .setMessage("")
+                .build());
+
+        assertTrue(limiter.getLimit() < 10);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testSlowReceiptCheckIsHedged() throws Exception {
+
+        client.setHedgingPolicy(HedgingPolicy.builder()
+                .setBudgetPercent(100)
+                .setMinSamples(Integer.MAX_VALUE)
+                .setMaxDelay(Duration.ofMillis(50))
+                .build());
+
+        final AtomicInteger calls = new AtomicInteger();
+        when(httpClient.execute(any(HttpUriRequest.class))).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                final HttpUriRequest slow = invocation.getArgument(0);
+                while (!slow.isAborted()) {
+                    Thread.sleep(5);
+                }
+                throw new IOException("aborted");
+            }
+            return mockHttpResponse;
+        });
+        when(mockHttpResponse.getEntity()).thenReturn(new StringEntity("{\"status\":1, \"acknowledged\":1}", "UTF-8"));
+
+        final Receipt receipt = client.requestEmergencyReceipt("token", "receipt");
+
+        assertEquals(1, receipt.getAcknowledged());
+        final ArgumentCaptor<HttpGet> captor = ArgumentCaptor.forClass(HttpGet.class);
+        verify(httpClient, timeout(1000).times(2)).execute(captor.capture());
+        assertTrue(captor.getAllValues().get(0).isAborted());
+    }
+
+    @Test
+    public void testPushMessageIsNeverHedged() throws Exception {
+
+        client.setHedgingPolicy(HedgingPolicy.builder()
+                .setBudgetPercent(100)
+                .setMinSamples(Integer.MAX_VALUE)
+                .setMaxDelay(Duration.ofMillis(1))
+                .build());
+
+        when(httpClient.execute(any(HttpUriRequest.class))).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            return mockHttpResponse;
+        });
+        when(mockHttpResponse.getEntity()).thenReturn(new StringEntity("{\"status\":1}", "UTF-8"));
+
+        client.pushMessage(PushoverMessage.builderWithApiToken("")
+                .setUserId("")
+                .setMessage("")
+                .build());
+
+        verify(httpClient, times(1)).execute(any(HttpUriRequest.class));
+    }
+
+    @Test
+    public void testExpiredMessageIsShed() throws Exception {
+
+        final PushResult result = client.send(PushoverMessage.builderWithApiToken("token")
+                .setUserId("user")
+                .setMessage("stale")
+                .setDeadline(Instant.now().minusSeconds(1))
+                .build());
+
+        assertInstanceOf(PushResult.Throttled.class, result);
+        assertTrue(((PushResult.Throttled) result).isDeadlineExpired());
+        assertEquals(PushResult.Throttled.Reason.DEADLINE_EXPIRED, ((PushResult.Throttled) result).reason());
+        assertEquals(0, result.httpStatus());
+        assertEquals(1, client.getShedCount());
+        assertThrows(DeadlineExpiredException.class, () -> client.pushMessage(PushoverMessage.builderWithApiToken("token")
+                .setUserId("user")
+                .setMessage("stale")
+                .setDeadline(Instant.now().minusSeconds(1))
+                .build()));
+        verify(httpClient, never()).execute(any(HttpUriRequest.class));
+    }
+
+    @Test
+    public void testDeadlineAbortsRequestInFlight() throws Exception {
+
+        when(httpClient.execute(any(HttpUriRequest.class))).thenAnswer(invocation -> {
+            final HttpPost post = invocation.getArgument(0);
+            final long giveUp = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (!post.isAborted() && System.nanoTime() < giveUp) {
+                Thread.sleep(5);
+            }
+            throw new IOException("aborted");
+        });
+
+        final PushResult result = client.send(PushoverMessage.builderWithApiToken("token")
+                .setUserId("user")
+                .setMessage("slow")
+                .setDeadline(Instant.now().plusMillis(100))
+                .build());
+
+        assertInstanceOf(PushResult.TransportFailure.class, result);
+        assertEquals(1, client.getDeadlineAbortCount());
+        assertEquals(0, client.getShedCount());
+    }
+
+    @Test
+    public void testTtlIsSent() throws Exception {
+
+        when(httpClient.execute(any(HttpUriRequest.class))).thenReturn(mockHttpResponse);
+        when(mockHttpResponse.getEntity()).thenReturn(new StringEntity("{\"status\":1}", "UTF-8"));
+
+        client.pushMessage(PushoverMessage.builderWithApiToken("token")
+                .setUserId("user")
+                .setMessage("expires")
+                .setTtl(3600)
+                .setDeadline(Instant.now().plusSeconds(60))
+                .build());
+
+        final ArgumentCaptor<HttpPost> captor = ArgumentCaptor.forClass(HttpPost.class);
+        verify(httpClient).execute(captor.capture());
+        final String body = EntityUtils.toString(captor.getValue().getEntity());
+        assertTrue(body.contains("name=\"ttl\""));
+        assertTrue(body.contains("3600"));
+        assertFalse(body.contains("deadline"));
+    }
 }
@@ -0,0 +1,145 @@
+package net.pushover.client;
+
+import net.pushover.client.simulator.PushoverSimulator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuotaStoreTest {
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private static final long RESET = 1_900_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private void assertLeasesInChunks(QuotaStore store) {
+        assertEquals(new QuotaStore.Lease(10, 0), store.lease("token", 10));
+
+        store.observe("token", new Quota(100, 25, RESET));
+        assertEquals(new QuotaStore.Lease(10, RESET), store.lease("token", 10));
+        final QuotaStore.Lease last = store.lease("token", 10);
+        assertEquals(new QuotaStore.Lease(10, RESET), last);
+        assertEquals(5, store.lease("token", 10).granted());
+        assertEquals(0, store.lease("token", 10).granted());
+
+        store.release("token", last, 3);
+        assertEquals(3, store.lease("token", 10).granted());
+
+        //an observation of the same period only lowers the count, a new period resets it
+        store.observe("token", new Quota(100, 50, RESET));
+        assertEquals(0, store.lease("token", 1).granted());
+        store.observe("token", new Quota(100, 100, RESET + 3600));
+        assertEquals(new QuotaStore.Lease(10, RESET + 3600), store.lease("token", 10));
+
+        //sends of the old period are not given back to the new one
+        store.release("token", last, 5);
+        assertEquals(90, store.lease("token", 1000).granted());
+        assertEquals(new QuotaStore.Lease(7, 0), store.lease("other", 7));
+    }
+
+    @Test
+    public void testInMemoryStore() {
+        final InMemoryQuotaStore store = new InMemoryQuotaStore();
+        assertLeasesInChunks(store);
+        assertEquals(0, store.getAvailable("token"));
+        assertEquals(-1, store.getAvailable("other"));
+    }
+
+    @Test
+    public void testMappedStore() throws Exception {
+        try (MappedQuotaStore store = MappedQuotaStore.open(dir.resolve("quota"))) {
+            assertLeasesInChunks(store);
+            assertEquals(0, store.getAvailable("token"));
+        }
+    }
+
+    @Test
+    public void testMappedStoreIsSharedBetweenInstances() throws Exception {
+        final Path file = dir.resolve("quota");
+        try (MappedQuotaStore first = MappedQuotaStore.open(file); MappedQuotaStore second = MappedQuotaStore.open(file)) {
+            first.observe("token", new Quota(1000, 1000, RESET));
+
+            final ExecutorService pool = Executors.newFixedThreadPool(4);
+            final List<Future<Integer>> granted = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                final MappedQuotaStore store = i % 2 == 0 ? first : second;
+                granted.add(pool.submit(() -> {
+                    int sum = 0;
+                    for (int lease = 0; lease < 100; lease++) {
+                        sum += store.lease("token", 7).granted();
+                    }
+                    return sum;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> sum : granted) {
+                total += sum.get();
+            }
+            pool.shutdown();
+
+            assertEquals(1000, total);
+            assertEquals(0, second.getAvailable("token"));
+        }
+        try (MappedQuotaStore reopened = MappedQuotaStore.open(file)) {
+            assertEquals(0, reopened.getAvailable("token"));
+        }
+    }
+
+    @Test
+    public void testRefusesForeignFile() throws Exception {
+        final Path file = dir.resolve("foreign");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+
+        assertThrows(java.io.IOException.class, () -> MappedQuotaStore.open(file));
+    }
+
+    @Test
+    public void testClientsShareQuota() throws Exception {
+        try (PushoverSimulator simulator = PushoverSimulator.builder().setMonthlyLimit(20).build().start()) {
+            final InMemoryQuotaStore store = new InMemoryQuotaStore();
+            final List<PushoverRestClient> clients = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                final PushoverRestClient client = new PushoverRestClient();
+                client.setApiBaseUrl(simulator.getBaseUrl());
+                client.setQuotaStore(store, 5);
+                clients.add(client);
+            }
+
+            int throttledLocally = 0;
+            int throttledByApi = 0;
+            for (int i = 0; i < 40; i++) {
+                final PushResult result = clients.get(i % 2).send(PushoverMessage.builderWithApiToken("token")
+                        .setUserId("user").setMessage("message " + i).build());
+                if (result instanceof PushResult.Throttled) {
+                    if (result.httpStatus() == 0) {
+                        throttledLocally++;
+                    } else {
+                        throttledByApi++;
+                    }
+                }
+            }
+
+            assertEquals(20, simulator.getReceivedMessages().size());
+            assertTrue(throttledLocally >= 15, "throttled locally " + throttledLocally);
+            assertTrue(throttledByApi <= 5, "throttled by the API " + throttledByApi);
+            //the throwing API does not pass a refusal off as an answer of the API
+            assertThrows(QuotaExhaustedException.class, () -> clients.get(0).pushMessageResponse(
+                    PushoverMessage.builderWithApiToken("token").setUserId("user").setMessage("one more").build()));
+            clients.forEach(PushoverRestClient::releaseQuotaLeases);
+            assertEquals(0, store.getAvailable("token"));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package net.pushover.client;
+
+import net.pushover.client.simulator.PushoverSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReceiptTrackerTest {
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @TempDir
+    Path dir;
+
+    private PushoverSimulator simulator;
+    private PushoverRestClient client;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        simulator = PushoverSimulator.builder().addUser("user").build().start();
+        client = new PushoverRestClient();
+        client.setApiBaseUrl(simulator.getBaseUrl());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        simulator.close();
+    }
+
+    private List<String> sendEmergencies(int count) throws Exception {
+        final List<String> receipts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            receipts.add(client.pushMessageResponse(PushoverMessage.builderWithApiToken("token")
+                    .setUserId("user").setMessage("alert " + i)
+                    .setPriority(MessagePriority.EMERGENCY).setRetry(30).setExpire(3600)
+                    .build()).getReceipt());
+        }
+        return receipts;
+    }
+
+    private ReceiptTracker.Builder tracker(ReceiptRegistry registry, String nodeId) {
+        return ReceiptTracker.builder().setClient(client).setRegistry(registry).setNodeId(nodeId)
+                .setNodeTimeout(Duration.ofMillis(300));
+    }
+
+    @Test
+    public void testRingSpreadsKeysAndMovesFewOnJoin() {
+        final ConsistentHashRing three = new ConsistentHashRing(List.of("a", "b", "c"), 128);
+        final ConsistentHashRing four = new ConsistentHashRing(List.of("a", "b", "c", "d"), 128);
+        final Map<String, Integer> shares = new HashMap<>();
+        int moved = 0;
+        for (int i = 0; i < 30000; i++) {
+            final String key = "receipt" + i;
+            shares.merge(three.ownerOf(key), 1, Integer::sum);
+            final String before = three.ownerOf(key);
+            final String after = four.ownerOf(key);
+            if (!before.equals(after)) {
+                assertEquals("d", after, "keys only move to the joining node");
+                moved++;
+            }
+        }
+        for (int share : shares.values()) {
+            assertTrue(share > 7000 && share < 13000, "share " + share);
+        }
+        assertTrue(moved > 4000 && moved < 11000, "moved " + moved);
+    }
+
+    @Test
+    public void testNodesSplitReceiptsWithoutOverlap() throws Exception {
+        final InMemoryReceiptRegistry registry = new InMemoryReceiptRegistry();
+        final List<String> completed = new CopyOnWriteArrayList<>();
+        final ReceiptTracker a = tracker(registry, "a").setNodeTimeout(Duration.ofMinutes(1)).setListener((tracked, receipt) -> completed.add(tracked.receipt())).build();
+        final ReceiptTracker b = tracker(registry, "b").setNodeTimeout(Duration.ofMinutes(1)).setListener((tracked, receipt) -> completed.add(tracked.receipt())).build();
+        a.poll();
+        b.poll();
+        a.poll();
+
+        final List<String> receipts = sendEmergencies(20);
+        receipts.forEach(receipt -> a.track("token", receipt));
+        for (String receipt : receipts) {
+            assertTrue(a.isOwner(receipt) ^ b.isOwner(receipt), "exactly one owner of " + receipt);
+        }
+        a.poll();
+        b.poll();
+        assertEquals(20, a.getPollCount() + b.getPollCount());
+        assertTrue(a.getPollCount() > 0 && b.getPollCount() > 0);
+        assertTrue(completed.isEmpty());
+
+        receipts.forEach(receipt -> simulator.acknowledge(receipt, "user"));
+        a.poll();
+        b.poll();
+
+        assertEquals(Set.copyOf(receipts), Set.copyOf(completed));
+        assertEquals(20, completed.size());
+        assertTrue(registry.getReceipts().isEmpty());
+    }
+
+    @Test
+    public void testSurvivorTakesOverReceiptsOfDeadNode() throws Exception {
+        final InMemoryReceiptRegistry registry = new InMemoryReceiptRegistry();
+        final ReceiptTracker dying = tracker(registry, "dying").build();
+        final ReceiptTracker survivor = tracker(registry, "survivor").build();
+        final List<String> receipts = sendEmergencies(10);
+        dying.poll();
+        survivor.poll();
+        receipts.forEach(receipt -> dying.track("token", receipt));
+        survivor.poll();
+        final long ownShare = survivor.getPollCount();
+        assertTrue(ownShare < 10);
+
+        Thread.sleep(400);  //the dying node stops heartbeating
+        survivor.poll();
+
+        assertEquals(Set.of("survivor"), survivor.getLiveNodes());
+        assertEquals(ownShare + 10, survivor.getPollCount());
+        assertEquals(10, registry.getReceipts().size());
+    }
+
+    @Test
+    public void testCancelsOrphans() throws Exception {
+        final FileReceiptRegistry registry = new FileReceiptRegistry(dir);
+        final ReceiptTracker dying = tracker(registry, "dying").build();
+        final ReceiptTracker survivor = tracker(registry, "survivor").setCancelOrphans(true).build();
+        dying.poll();
+        final List<String> receipts = sendEmergencies(5);
+        receipts.forEach(receipt -> dying.track("token", receipt));
+        dying.close();
+
+        survivor.poll();
+
+        assertEquals(5, survivor.getCancelledCount());
+        assertTrue(registry.getReceipts().isEmpty());
+        for (String receipt : receipts) {
+            assertEquals(1, client.requestEmergencyReceipt("token", receipt).getExpired());
+        }
+    }
+
+    @Test
+    public void testFileRegistry() throws Exception {
+        final FileReceiptRegistry registry = new FileReceiptRegistry(dir);
+        registry.register(new ReceiptRegistry.TrackedReceipt("r1", "token", "a", 42));
+        registry.heartbeat("a", 1000);
+        registry.heartbeat("b", 2000);
+
+        final FileReceiptRegistry other = new FileReceiptRegistry(dir);
+        assertEquals(List.of(new ReceiptRegistry.TrackedReceipt("r1", "token", "a", 42)), List.copyOf(other.getReceipts()));
+        assertEquals(Map.of("a", 1000L, "b", 2000L), other.getNodes());
+
+        other.remove("r1");
+        other.leave("a");
+        assertTrue(registry.getReceipts().isEmpty());
+        assertEquals(Map.of("b", 2000L), registry.getNodes());
+        assertThrows(IllegalArgumentException.class, () -> registry.remove("../escape"));
+    }
+}
@@ -0,0 +1,78 @@
+package net.pushover.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+
+    @Test
+    public void testExpiresEveryEntryAtItsTick() {
+        final TimingWheel<Long> wheel = new TimingWheel<>(1000);
+        final Random random = new Random(7);
+        final List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            //spread over the first three levels and beyond
+            final long deadline = 1000 + 1 + (long) Math.pow(2, random.nextDouble() * 20);
+            deadlines.add(deadline);
+            wheel.insert(deadline, deadline);
+        }
+        int expired = 0;
+        for (long tick = 1001; expired < deadlines.size(); tick++) {
+            for (long deadline : wheel.advance(tick)) {
+                assertEquals(tick, deadline);
+                expired++;
+            }
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testAdvancesOverManyTicksAtOnce() {
+        final TimingWheel<String> wheel = new TimingWheel<>(0);
+        wheel.insert(70, "a");
+        wheel.insert(5000, "b");
+        wheel.insert(300000, "c");
+
+        assertEquals(List.of("a"), wheel.advance(4999));
+        assertEquals(List.of("b"), wheel.advance(5000));
+        assertEquals(List.of(), wheel.advance(299999));
+        assertEquals(List.of("c"), wheel.advance(300000));
+    }
+
+    @Test
+    public void testCancel() {
+        final TimingWheel<String> wheel = new TimingWheel<>(0);
+        final TimingWheel.Entry<String> a = wheel.insert(10, "a");
+        wheel.insert(10, "b");
+        final TimingWheel.Entry<String> overdue = wheel.insert(-1, "overdue");
+
+        assertTrue(wheel.cancel(a));
+        assertFalse(wheel.cancel(a));
+        assertTrue(wheel.cancel(overdue));
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("b"), wheel.advance(10));
+    }
+
+    @Test
+    public void testPastDeadlinesExpireOnNextAdvance() {
+        final TimingWheel<String> wheel = new TimingWheel<>(100);
+        wheel.insert(50, "late");
+        wheel.insert(101, "next");
+
+        assertEquals(List.of("late", "next"), wheel.advance(101));
+    }
+
+    @Test
+    public void testDeadlinesBeyondRangeExpireAtEndOfRange() {
+        final TimingWheel<String> wheel = new TimingWheel<>(0);
+        wheel.insert(TimingWheel.MAX_DELAY * 2, "far");
+
+        assertEquals(List.of(), wheel.advance(TimingWheel.MAX_DELAY - 1));
+        assertEquals(List.of("far"), wheel.advance(TimingWheel.MAX_DELAY));
+    }
+}
@@ -0,0 +1,144 @@
+package net.pushover.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ValidationCacheTest {
+
+    private HttpClient httpClient;
+    private PushoverRestClient client;
+    private ValidationCache cache;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        httpClient = mock(HttpClient.class);
+        client = new PushoverRestClient();
+        client.setHttpClient(httpClient);
+        cache = ValidationCache.builder()
+                .setPositiveTtl(Duration.ofMinutes(1))
+                .setNegativeTtl(Duration.ofMillis(50))
+                .build();
+        client.setValidationCache(cache);
+
+        //users starting with "bad" are unknown to the API, "busy" ones are throttled and "broken" ones fail
+        when(httpClient.execute(any(HttpUriRequest.class))).thenAnswer(invocation -> {
+            final HttpPost post = invocation.getArgument(0);
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            post.getEntity().writeTo(body);
+            if (body.toString().contains("\r\n\r\nbad")) {
+                return response(400, "{\"status\":0,\"errors\":[\"user key is invalid\"]}");
+            } else if (body.toString().contains("\r\n\r\nbusy")) {
+                return response(429, "{\"status\":0,\"errors\":[\"simulated throttling\"]}");
+            } else if (body.toString().contains("\r\n\r\nbroken")) {
+                return response(500, "{\"status\":0,\"errors\":[\"simulated server error\"]}");
+            }
+            return response(200, "{\"status\":1,\"devices\":[\"phone\"]}");
+        });
+    }
+
+    private static HttpResponse response(int httpStatus, String json) {
+        final HttpResponse response = mock(HttpResponse.class);
+        when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, httpStatus, null));
+        when(response.getEntity()).thenReturn(new StringEntity(json, "UTF-8"));
+        return response;
+    }
+
+    @Test
+    public void testPositiveResultIsCachedWithDevices() throws Exception {
+        final PushoverMessage msg = PushoverMessage.builderWithApiToken("token").setUserId("good").build();
+
+        final Response first = client.requestVerification(msg);
+        final Response second = client.requestVerification(msg);
+
+        assertEquals(1, second.getStatus());
+        assertEquals(List.of("phone"), second.getDevices());
+        verify(httpClient, times(1)).execute(any(HttpUriRequest.class));
+        assertEquals(1, cache.getHitCount());
+
+        //every caller gets its own copy
+        assertNotSame(first, second);
+        second.getDevices().clear();
+        second.setRemaining(0);
+        final Response third = client.requestVerification(msg);
+        assertEquals(List.of("phone"), third.getDevices());
+        assertEquals(Integer.MIN_VALUE, third.getRemaining());
+    }
+
+    @Test
+    public void testThrottlingAndServerErrorsAreNotCached() throws Exception {
+        final PushoverMessage busy = PushoverMessage.builderWithApiToken("token").setUserId("busy").build();
+        final PushoverMessage broken = PushoverMessage.builderWithApiToken("token").setUserId("broken").build();
+
+        assertEquals(0, client.requestVerification(busy).getStatus());
+        assertEquals(0, client.requestVerification(broken).getStatus());
+
+        assertEquals(0, cache.size());
+        client.requestVerification(busy);
+        verify(httpClient, times(3)).execute(any(HttpUriRequest.class));
+    }
+
+    @Test
+    public void testNegativeResultExpiresSooner() throws Exception {
+        final PushoverMessage msg = PushoverMessage.builderWithApiToken("token").setUserId("bad1").build();
+
+        assertEquals(0, client.requestVerification(msg).getStatus());
+        assertEquals(0, client.requestVerification(msg).getStatus());
+        verify(httpClient, times(1)).execute(any(HttpUriRequest.class));
+
+        Thread.sleep(80);
+
+        client.requestVerification(msg);
+        verify(httpClient, times(2)).execute(any(HttpUriRequest.class));
+    }
+
+    @Test
+    public void testCacheIsKeyedByDevice() throws Exception {
+        client.requestVerification(PushoverMessage.builderWithApiToken("token").setUserId("good").build());
+        client.requestVerification(PushoverMessage.builderWithApiToken("token").setUserId("good").setDevice("phone").build());
+
+        verify(httpClient, times(2)).execute(any(HttpUriRequest.class));
+    }
+
+    @Test
+    public void testValidateUsersDeduplicatesAndServesHits() throws Exception {
+        client.requestVerification(PushoverMessage.builderWithApiToken("token").setUserId("u1").build());
+
+        final Map<String, Response> results = client.validateUsers("token",
+                Arrays.asList("u1", "u2", "bad3", "u2", "u4", "u1"));
+
+        assertEquals(List.of("u1", "u2", "bad3", "u4"), List.copyOf(results.keySet()));
+        assertEquals(1, results.get("u1").getStatus());
+        assertEquals(1, results.get("u2").getStatus());
+        assertEquals(0, results.get("bad3").getStatus());
+        assertEquals(List.of("user key is invalid"), results.get("bad3").getErrors());
+        //u1 once up front, then u2, bad3 and u4
+        verify(httpClient, times(4)).execute(any(HttpUriRequest.class));
+    }
+
+    @Test
+    public void testTransportFailuresAreNotCached() throws Exception {
+        reset(httpClient);
+        when(httpClient.execute(any(HttpUriRequest.class))).thenThrow(new java.io.IOException("nope!"));
+
+        final PushoverMessage msg = PushoverMessage.builderWithApiToken("token").setUserId("good").build();
+        assertThrows(PushoverException.class, () -> client.requestVerification(msg));
+        assertEquals(0, cache.size());
+        assertThrows(PushoverException.class, () -> client.validateUsers("token", List.of("good")));
+    }
+}
@@ -0,0 +1,244 @@
+package net.pushover.client.cli;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.pushover.client.PushoverRestClient;
+import net.pushover.client.simulator.LatencyDistribution;
+import net.pushover.client.simulator.PushoverSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkSenderTest {
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @TempDir
+    Path dir;
+
+    private PushoverSimulator simulator;
+    private PushoverRestClient client;
+    private final ByteArrayOutputStream report = new ByteArrayOutputStream();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        simulator = PushoverSimulator.builder().addUser("u1").addUser("u2").addUser("u3").build().start();
+        client = new PushoverRestClient();
+        client.setApiBaseUrl(simulator.getBaseUrl());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        simulator.close();
+    }
+
+    private BulkSender.Builder sender(Path input, Path output) {
+        return BulkSender.builder()
+                .setClient(client)
+                .setInput(input)
+                .setOutput(output)
+                .setConcurrency(4)
+                .setDefaultToken("token")
+                .setRetryBackoff(Duration.ofMillis(1))
+                .setReport(new PrintStream(report, true, StandardCharsets.UTF_8));
+    }
+
+    private static List<JsonObject> results(Path output) throws IOException {
+        final List<JsonObject> results = new ArrayList<>();
+        for (String line : Files.readAllLines(output)) {
+            results.add(JsonParser.parseString(line).getAsJsonObject());
+        }
+        return results;
+    }
+
+    @Test
+    public void testSendsNdjson() throws Exception {
+        final Path input = dir.resolve("messages.ndjson");
+        final StringBuilder lines = new StringBuilder();
+        for (int i = 1; i <= 30; i++) {
+            lines.append("{\"user\":\"u").append(i % 3 + 1).append("\",\"message\":\"hello ").append(i)
+                    .append("\",\"priority\":1}\n");
+        }
+        Files.writeString(input, lines);
+        final Path output = dir.resolve("results.ndjson");
+
+        final BulkSender.Summary summary = sender(input, output).build().run();
+
+        assertEquals(30, summary.succeeded());
+        assertEquals(0, summary.failed());
+        assertEquals(30, simulator.getReceivedMessages().size());
+        assertEquals("1", simulator.getReceivedMessages().get(0).get("priority"));
+        final List<JsonObject> results = results(output);
+        assertEquals(30, results.size());
+        assertTrue(results.stream().allMatch(result -> "success".equals(result.get("result").getAsString())));
+        assertEquals("30", Files.readString(Path.of(output + ".checkpoint")).trim());
+        assertTrue(report.toString(StandardCharsets.UTF_8).contains("p95"));
+    }
+
+    @Test
+    public void testSendsCsvAndRecordsFailures() throws Exception {
+        final Path input = dir.resolve("messages.csv");
+        Files.writeString(input, "user,title,message\n"
+                + "u1,Maintenance,\"Tonight, 22:00 \"\"sharp\"\"\"\n"
+                + "unknown,Maintenance,hello\n"
+                + "u2,,plain\n");
+        final Path output = dir.resolve("results.ndjson");
+
+        final BulkSender.Summary summary = sender(input, output).build().run();
+
+        assertEquals(2, summary.succeeded());
+        assertEquals(1, summary.failed());
+        final List<Map<String, String>> received = simulator.getReceivedMessages();
+        assertTrue(received.stream().anyMatch(msg -> "Tonight, 22:00 \"sharp\"".equals(msg.get("message"))));
+        assertTrue(received.stream().anyMatch(msg -> "plain".equals(msg.get("message")) && msg.get("title") == null));
+        final JsonObject rejected = results(output).stream()
+                .filter(result -> result.get("line").getAsLong() == 3).findFirst().orElseThrow();
+        assertEquals("rejected", rejected.get("result").getAsString());
+        assertEquals(400, rejected.get("http").getAsInt());
+    }
+
+    @Test
+    public void testRecordsInvalidLines() throws Exception {
+        final Path input = dir.resolve("messages.ndjson");
+        Files.writeString(input, "{\"user\":\"u1\",\"message\":\"ok\"}\nnot json\n{\"user\":\"u1\",\"message\":\"x\",\"priority\":7}\n");
+        final Path output = dir.resolve("results.ndjson");
+
+        final BulkSender.Summary summary = sender(input, output).build().run();
+
+        assertEquals(1, summary.succeeded());
+        assertEquals(2, summary.failed());
+        assertEquals(1, simulator.getReceivedMessages().size());
+        assertEquals(2, results(output).stream().filter(result -> "invalid".equals(result.get("result").getAsString())).count());
+    }
+
+    @Test
+    public void testResumesFromCheckpoint() throws Exception {
+        final Path input = dir.resolve("messages.ndjson");
+        final StringBuilder lines = new StringBuilder();
+        for (int i = 1; i <= 10; i++) {
+            lines.append("{\"user\":\"u1\",\"message\":\"line ").append(i).append("\"}\n");
+        }
+        Files.writeString(input, lines);
+        final Path output = dir.resolve("results.ndjson");
+        //an interrupted run: lines 1-4 checkpointed, 6 and 7 written after the checkpoint, 5 still in flight
+        final StringBuilder earlier = new StringBuilder();
+        for (int line : new int[]{1, 2, 3, 4, 6, 7}) {
+            earlier.append("{\"line\":").append(line).append(",\"result\":\"success\"}\n");
+        }
+        earlier.append("{\"line\":8,\"res");
+        Files.writeString(output, earlier);
+        Files.writeString(Path.of(output + ".checkpoint"), "4\n");
+
+        final BulkSender.Summary summary = sender(input, output).build().run();
+
+        assertEquals(4, summary.succeeded());
+        assertEquals(6, summary.skipped());
+        final Set<String> sent = new HashSet<>();
+        simulator.getReceivedMessages().forEach(msg -> sent.add(msg.get("message")));
+        assertEquals(Set.of("line 5", "line 8", "line 9", "line 10"), sent);
+        assertEquals("10", Files.readString(Path.of(output + ".checkpoint")).trim());
+        final List<String> written = Files.readAllLines(output);
+        assertEquals(11, written.size());
+        assertEquals("{\"line\":8,\"res", written.get(6));
+
+        //a finished run sends nothing again
+        assertEquals(0, sender(input, output).build().run().succeeded());
+        assertEquals(4, simulator.getReceivedMessages().size());
+    }
+
+    @Test
+    public void testRetriesOnlySendsThatNeverLeft() throws Exception {
+        final Path input = dir.resolve("messages.ndjson");
+        Files.writeString(input, "{\"user\":\"u1\",\"message\":\"once\"}\n");
+
+        try (PushoverSimulator failing = PushoverSimulator.builder().addUser("u1").setErrorRate(1.0).build().start()) {
+            client.setApiBaseUrl(failing.getBaseUrl());
+            final Path output = dir.resolve("server-error.ndjson");
+            assertEquals(1, sender(input, output).build().run().failed());
+            //a 5xx may come after delivery, repeating it could notify twice
+            assertEquals(1, failing.getRequestCount());
+            assertEquals(1, results(output).get(0).get("attempts").getAsInt());
+        }
+
+        client.setApiBaseUrl("http://127.0.0.1:1/1/");
+        final Path output = dir.resolve("refused.ndjson");
+        assertEquals(1, sender(input, output).setMaxRetries(2).build().run().failed());
+        assertEquals(3, results(output).get(0).get("attempts").getAsInt());
+    }
+
+    @Test
+    public void testStopKeepsResultsOfSendsInFlight() throws Exception {
+        final Path input = dir.resolve("messages.ndjson");
+        final StringBuilder lines = new StringBuilder();
+        for (int i = 1; i <= 20; i++) {
+            lines.append("{\"user\":\"u1\",\"message\":\"line ").append(i).append("\"}\n");
+        }
+        Files.writeString(input, lines);
+        final Path output = dir.resolve("results.ndjson");
+
+        try (PushoverSimulator slow = PushoverSimulator.builder().addUser("u1")
+                .setLatency(LatencyDistribution.constant(200)).build().start()) {
+            client.setApiBaseUrl(slow.getBaseUrl());
+            final BulkSender sender = sender(input, output).build();
+            final CompletableFuture<BulkSender.Summary> run = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return sender.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            while (slow.getRequestCount() == 0) {
+                Thread.sleep(5);
+            }
+            //what the shutdown hook does on Ctrl-C
+            sender.stop();
+            run.get(1, TimeUnit.SECONDS);
+            final int delivered = slow.getReceivedMessages().size();
+            assertTrue(delivered > 0 && delivered < 20, "delivered " + delivered);
+            //every delivered message has its result, so resume does not send it again
+            assertEquals(delivered, results(output).size());
+
+            assertEquals(20 - delivered, sender(input, output).build().run().succeeded());
+            final Set<String> sent = new HashSet<>();
+            slow.getReceivedMessages().forEach(msg -> assertTrue(sent.add(msg.get("message"))));
+            assertEquals(20, sent.size());
+        }
+    }
+
+    @Test
+    public void testRefusesOutputWithoutCheckpoint() throws Exception {
+        final Path input = dir.resolve("messages.ndjson");
+        Files.writeString(input, "{\"user\":\"u1\",\"message\":\"ok\"}\n");
+        final Path output = dir.resolve("results.ndjson");
+        Files.writeString(output, "{\"line\":1}\n");
+
+        assertThrows(IOException.class, () -> sender(input, output).build().run());
+    }
+
+    @Test
+    public void testCsvLine() {
+        assertEquals(List.of("a", "b, c", "d\"e", ""), CsvLine.parse("a,\"b, c\",\"d\"\"e\","));
+        assertThrows(IllegalArgumentException.class, () -> CsvLine.parse("\"open"));
+    }
+}
@@ -0,0 +1,218 @@
+package net.pushover.client.logging;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import net.pushover.client.MessagePriority;
+import net.pushover.client.PushoverClient;
+import net.pushover.client.PushoverMessage;
+import net.pushover.client.Status;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AlertPagerTest {
+
+    private final List<PushoverMessage> pages = new CopyOnWriteArrayList<>();
+
+    private PushoverClient recordingClient() throws Exception {
+        final PushoverClient client = mock(PushoverClient.class);
+        when(client.pushMessage(any())).thenAnswer(invocation -> {
+            pages.add(invocation.getArgument(0));
+            return new Status(1);
+        });
+        return client;
+    }
+
+    private AlertPager.Builder pager(PushoverClient client) {
+        return AlertPager.builder().setClient(client).setApiToken("token").setUserId("user");
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private static Logger logger(String name, PushoverLogHandler handler) {
+        final Logger logger = Logger.getLogger(name);
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        return logger;
+    }
+
+    @Test
+    public void testExceptionStormIsPagedOncePerWindow() throws Exception {
+        try (AlertPager pager = pager(recordingClient()).setWindow(Duration.ofMillis(300)).build()) {
+            final PushoverLogHandler handler = new PushoverLogHandler(pager);
+            final Logger logger = logger("net.pushover.test.storm", handler);
+            for (int i = 0; i < 1000; i++) {
+                logger.log(Level.SEVERE, "order {0} failed", new Object[]{i});
+            }
+            logger.log(Level.SEVERE, "order failed", new IllegalStateException());
+            await(() -> pages.size() == 3);
+            Thread.sleep(400);
+
+            assertEquals(3, pages.size());
+            assertEquals("order 0 failed", pages.get(0).getMessage());
+            assertEquals(MessagePriority.HIGH, pages.get(0).getPriority());
+            assertEquals("net.pushover.test.storm", pages.get(0).getTitle());
+            //the exception has its own fingerprint
+            assertEquals("order failed\njava.lang.IllegalStateException", pages.get(1).getMessage());
+            assertEquals("order 999 failed\n(999 times since the last page)", pages.get(2).getMessage());
+            assertEquals(1001, pager.getAcceptedCount());
+            assertEquals(999, pager.getSuppressedCount());
+            assertEquals(3, pager.getSentCount());
+            logger.removeHandler(handler);
+        }
+    }
+
+    @Test
+    public void testLevelsBelowHandlerLevelAreIgnored() throws Exception {
+        try (AlertPager pager = pager(recordingClient()).build()) {
+            final PushoverLogHandler handler = new PushoverLogHandler(pager);
+            final Logger logger = logger("net.pushover.test.levels", handler);
+            logger.warning("disk almost full");
+            logger.severe("disk full");
+            handler.setLevel(Level.WARNING);
+            logger.warning("cpu hot");
+            await(() -> pages.size() == 2);
+
+            assertEquals("disk full", pages.get(0).getMessage());
+            assertEquals(MessagePriority.HIGH, pages.get(0).getPriority());
+            assertEquals("cpu hot", pages.get(1).getMessage());
+            assertEquals(MessagePriority.NORMAL, pages.get(1).getPriority());
+            assertEquals(MessagePriority.LOW, PushoverLogHandler.priorityOf(Level.INFO));
+            logger.removeHandler(handler);
+        }
+    }
+
+    @Test
+    public void testLog4jEventsArePaged() throws Exception {
+        try (AlertPager pager = pager(recordingClient()).build()) {
+            final PushoverLog4jAppender appender = new PushoverLog4jAppender("pager", null, pager,
+                    org.apache.logging.log4j.Level.ERROR);
+            appender.start();
+            appender.append(Log4jLogEvent.newBuilder().setLoggerName("net.pushover.test.log4j")
+                    .setLevel(org.apache.logging.log4j.Level.WARN).setMessage(new SimpleMessage("ignored")).build());
+            for (int i = 0; i < 3; i++) {
+                appender.append(Log4jLogEvent.newBuilder().setLoggerName("net.pushover.test.log4j")
+                        .setLevel(org.apache.logging.log4j.Level.FATAL)
+                        .setMessage(new ParameterizedMessage("order {} failed", i))
+                        .setThrown(new IllegalStateException()).build());
+            }
+            await(() -> pages.size() == 1);
+
+            assertEquals("order 0 failed\njava.lang.IllegalStateException", pages.get(0).getMessage());
+            assertEquals(MessagePriority.HIGH, pages.get(0).getPriority());
+            assertEquals("net.pushover.test.log4j", pages.get(0).getTitle());
+            assertEquals(3, pager.getAcceptedCount());
+            assertEquals(MessagePriority.NORMAL, PushoverLog4jAppender.priorityOf(org.apache.logging.log4j.Level.WARN));
+            appender.stop();
+        }
+    }
+
+    @Test
+    public void testLogbackEventsArePaged() throws Exception {
+        try (AlertPager pager = pager(recordingClient()).build()) {
+            final PushoverLogbackAppender appender = new PushoverLogbackAppender(pager);
+            final LoggerContext context = new LoggerContext();
+            appender.setContext(context);
+            appender.setLevel("WARN");
+            appender.start();
+            final ch.qos.logback.classic.Logger logger = context.getLogger("net.pushover.test.logback");
+            appender.doAppend(new LoggingEvent(null, logger, ch.qos.logback.classic.Level.INFO, "ignored", null, null));
+            appender.doAppend(new LoggingEvent(null, logger, ch.qos.logback.classic.Level.WARN, "queue {} is slow",
+                    null, new Object[]{"orders"}));
+            await(() -> pages.size() == 1);
+
+            assertEquals("queue orders is slow", pages.get(0).getMessage());
+            assertEquals(MessagePriority.NORMAL, pages.get(0).getPriority());
+            assertEquals(1, pager.getAcceptedCount());
+            assertEquals(MessagePriority.HIGH, PushoverLogbackAppender.priorityOf(ch.qos.logback.classic.Level.ERROR));
+            appender.stop();
+            //the pager was handed in, so it is still open
+            assertTrue(pager.page(new LogAlert("source", MessagePriority.HIGH, "after", "after", null, 0)));
+        }
+    }
+
+    @Test
+    public void testFullBufferDropsWithoutBlocking() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final PushoverClient client = mock(PushoverClient.class);
+        when(client.pushMessage(any())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return new Status(1);
+        });
+        try (AlertPager pager = pager(client).setCapacity(4).build()) {
+            pager.page(new LogAlert("source", MessagePriority.HIGH, "first", "first", null, 0));
+            await(() -> pager.getAcceptedCount() == 1);
+            Thread.sleep(100);  //the pager thread is now stuck sending
+
+            final long start = System.nanoTime();
+            int accepted = 0;
+            for (int i = 0; i < 100; i++) {
+                if (pager.page(new LogAlert("source", MessagePriority.HIGH, "alert " + i, "alert " + i, null, 0))) {
+                    accepted++;
+                }
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            assertEquals(4, accepted);
+            assertEquals(96, pager.getDroppedCount());
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testRingBufferKeepsOrderOfEveryProducer() throws Exception {
+        final RingBuffer<long[]> buffer = new RingBuffer<>(64);
+        assertEquals(64, buffer.capacity());
+        final int producers = 4;
+        final int perProducer = 20_000;
+        final List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            final Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(new long[]{producer, i})) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        final long[] next = new long[producers];
+        for (int received = 0; received < producers * perProducer; ) {
+            final long[] element = buffer.poll();
+            if (element == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            assertEquals(next[(int) element[0]]++, element[1]);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(buffer.poll());
+        assertEquals(4, new RingBuffer<>(3).capacity());
+    }
+}
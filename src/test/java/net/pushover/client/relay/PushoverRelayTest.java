@@ -0,0 +1,284 @@
+package net.pushover.client.relay;
+
+import net.pushover.client.MessagePriority;
+import net.pushover.client.PushResult;
+import net.pushover.client.PushoverMessage;
+import net.pushover.client.PushoverRestClient;
+import net.pushover.client.simulator.LatencyDistribution;
+import net.pushover.client.simulator.PushoverSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PushoverRelayTest {
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private PushoverSimulator simulator;
+    private PushoverRelay relay;
+
+    @AfterEach
+    public void tearDown() {
+        if (relay != null) {
+            relay.close();
+        }
+        if (simulator != null) {
+            simulator.close();
+        }
+    }
+
+    /**
+     * Starts simulator and relay and returns a client of an internal service that talks to the relay.
+     */
+    private PushoverRestClient serviceClient(PushoverSimulator.Builder simulatorBuilder,
+                                             PushoverRelay.Builder relayBuilder) throws IOException {
+        simulator = simulatorBuilder.build().start();
+        final PushoverRestClient shared = new PushoverRestClient();
+        shared.setApiBaseUrl(simulator.getBaseUrl());
+        relay = relayBuilder.setClient(shared).build().start();
+        final PushoverRestClient service = new PushoverRestClient();
+        service.setApiBaseUrl(relay.getBaseUrl());
+        return service;
+    }
+
+    private static PushoverMessage.Builder message(String text) {
+        return PushoverMessage.builderWithApiToken("token").setUserId("user").setMessage(text);
+    }
+
+    @Test
+    public void testRelaysMessage() throws Exception {
+        final PushoverRestClient service = serviceClient(PushoverSimulator.builder(), PushoverRelay.builder());
+
+        final PushResult result = service.send(message("hello").setTitle("title").setPriority(MessagePriority.HIGH).build());
+
+        assertInstanceOf(PushResult.Success.class, result);
+        assertNotNull(result.requestId());
+        assertEquals(1, simulator.getReceivedMessages().size());
+        assertEquals("hello", simulator.getReceivedMessages().get(0).get("message"));
+        assertEquals("1", simulator.getReceivedMessages().get(0).get("priority"));
+        assertEquals(1, relay.getSentCount());
+        assertTrue(relay.getQuota().isKnown());
+    }
+
+    @Test
+    public void testRelaysRejection() throws Exception {
+        final PushoverRestClient service = serviceClient(PushoverSimulator.builder().addUser("known"), PushoverRelay.builder());
+
+        final PushResult result = service.send(message("hello").setUserId("unknown").build());
+
+        assertInstanceOf(PushResult.Rejected.class, result);
+        assertEquals(400, result.httpStatus());
+        assertEquals(List.of("user identifier is invalid"), result.errors());
+    }
+
+    @Test
+    public void testEmergencyReceiptIsReturned() throws Exception {
+        final PushoverRestClient service = serviceClient(PushoverSimulator.builder(), PushoverRelay.builder());
+
+        final PushResult result = service.send(message("fire")
+                .setPriority(MessagePriority.EMERGENCY).setRetry(30).setExpire(600).build());
+
+        assertInstanceOf(PushResult.Success.class, result);
+        assertNotNull(((PushResult.Success) result).response().getReceipt());
+    }
+
+    @Test
+    public void testDeduplicatesIdenticalMessages() throws Exception {
+        final PushoverRestClient service = serviceClient(
+                PushoverSimulator.builder().setLatency(LatencyDistribution.constant(100)), PushoverRelay.builder());
+
+        final ExecutorService callers = Executors.newCachedThreadPool();
+        final List<Future<PushResult>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(callers.submit(() -> service.send(message("same").build())));
+        }
+        for (Future<PushResult> result : results) {
+            assertInstanceOf(PushResult.Success.class, result.get());
+        }
+        callers.shutdown();
+
+        assertEquals(1, simulator.getReceivedMessages().size());
+        assertEquals(4, relay.getDeduplicatedCount());
+    }
+
+    @Test
+    public void testIdempotencyKey() throws Exception {
+        serviceClient(PushoverSimulator.builder(), PushoverRelay.builder());
+        final HttpClient http = HttpClient.newHttpClient();
+
+        for (String text : List.of("first", "second")) {
+            final HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(relay.getBaseUrl() + "messages.json"))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .header(PushoverRelay.IDEMPOTENCY_KEY_HEADER, "alert-42")
+                    .POST(HttpRequest.BodyPublishers.ofString("token=token&user=user&message=" + text))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+        }
+
+        assertEquals(1, simulator.getReceivedMessages().size());
+        assertEquals("first", simulator.getReceivedMessages().get(0).get("message"));
+    }
+
+    @Test
+    public void testKeepsQuotaReserveForEmergencies() throws Exception {
+        final PushoverRestClient service = serviceClient(PushoverSimulator.builder().setMonthlyLimit(2),
+                PushoverRelay.builder().setQuotaReserve(1));
+
+        assertInstanceOf(PushResult.Success.class, service.send(message("one").build()));
+        final PushResult refused = service.send(message("two").build());
+        final PushResult emergency = service.send(message("three")
+                .setPriority(MessagePriority.EMERGENCY).setRetry(30).setExpire(600).build());
+
+        assertInstanceOf(PushResult.Throttled.class, refused);
+        assertInstanceOf(PushResult.Success.class, emergency);
+        assertEquals(1, relay.getRefusedCount());
+        assertEquals(0, simulator.getRemaining());
+    }
+
+    @Test
+    public void testRefusesWhenQueueIsFull() throws Exception {
+        final PushoverRestClient service = serviceClient(
+                PushoverSimulator.builder().setLatency(LatencyDistribution.constant(200)),
+                PushoverRelay.builder().setWorkers(1).setQueueCapacity(1));
+
+        final ExecutorService callers = Executors.newCachedThreadPool();
+        final List<Future<PushResult>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            final String text = "message " + i;
+            results.add(callers.submit(() -> service.send(message(text).build())));
+        }
+        int throttled = 0;
+        for (Future<PushResult> result : results) {
+            if (result.get() instanceof PushResult.Throttled) {
+                throttled++;
+            }
+        }
+        callers.shutdown();
+
+        assertTrue(throttled >= 1, "expected refused messages");
+        assertEquals(6 - throttled, simulator.getReceivedMessages().size());
+    }
+
+    @Test
+    public void testRejectsAttachments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PushoverRelay.toMessage(Map.of("token", "t", "user", "u", "message", "m", "attachment.size", "10")));
+    }
+
+    @Test
+    public void testDropsMessagesPastDeadline() throws Exception {
+        serviceClient(PushoverSimulator.builder(), PushoverRelay.builder());
+        final HttpClient http = HttpClient.newHttpClient();
+
+        final HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(relay.getBaseUrl() + "messages.json"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .header(PushoverRelay.DEADLINE_HEADER, String.valueOf(System.currentTimeMillis() / 1000 - 60))
+                .POST(HttpRequest.BodyPublishers.ofString("token=token&user=user&message=stale&ttl=60"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(400, response.statusCode());
+        assertTrue(simulator.getReceivedMessages().isEmpty());
+    }
+
+    @Test
+    public void testKeepsRecipientOrderUnderBacklog() throws Exception {
+        serviceClient(PushoverSimulator.builder().setLatency(LatencyDistribution.constant(100)),
+                PushoverRelay.builder().setWorkers(1));
+        final HttpClient http = HttpClient.newHttpClient();
+
+        final List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        responses.add(post(http, "u1", "1"));
+        await(() -> simulator.getRequestCount() == 1);
+        final String[][] backlog = {{"u1", "2"}, {"u2", "1"}, {"u1", "3"}};
+        for (int i = 0; i < backlog.length; i++) {
+            final int queued = i + 1;
+            responses.add(post(http, backlog[i][0], backlog[i][1]));
+            await(() -> relay.getQueueSize() == queued);
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.get(10, TimeUnit.SECONDS).statusCode());
+        }
+
+        final List<String> order = simulator.getReceivedMessages().stream()
+                .map(msg -> msg.get("user") + "/" + msg.get("message")).toList();
+        //the recipient with the newest message goes first, but its messages keep their order
+        assertEquals(List.of("u1/1", "u1/2", "u1/3", "u2/1"), order);
+    }
+
+    @Test
+    public void testSendsEachRecipientsMessagesOneAfterAnother() throws Exception {
+        serviceClient(PushoverSimulator.builder().setLatency(LatencyDistribution.constant(100)),
+                PushoverRelay.builder().setWorkers(4));
+        final HttpClient http = HttpClient.newHttpClient();
+
+        final List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        responses.add(post(http, "u1", "1"));
+        await(() -> simulator.getRequestCount() == 1);
+        //idle workers do not pick up u1's later messages while its first one is in flight
+        for (int i = 2; i <= 6; i++) {
+            final int queued = i - 1;
+            responses.add(post(http, "u1", String.valueOf(i)));
+            await(() -> relay.getQueueSize() == queued);
+        }
+        responses.add(post(http, "u2", "1"));
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.get(10, TimeUnit.SECONDS).statusCode());
+        }
+
+        final List<String> order = simulator.getReceivedMessages().stream()
+                .map(msg -> msg.get("user") + "/" + msg.get("message")).toList();
+        assertEquals(List.of("u1/1", "u1/2", "u1/3", "u1/4", "u1/5", "u1/6"),
+                order.stream().filter(sent -> sent.startsWith("u1/")).toList());
+        //another recipient does not wait behind them
+        assertTrue(order.indexOf("u2/1") < order.indexOf("u1/6"), order.toString());
+        assertEquals(0, relay.getQueueSize());
+    }
+
+    @Test
+    public void testRejectsOtherEndpoints() throws Exception {
+        serviceClient(PushoverSimulator.builder(), PushoverRelay.builder());
+        final HttpClient http = HttpClient.newHttpClient();
+
+        final HttpResponse<String> sounds = http.send(HttpRequest.newBuilder(URI.create(relay.getBaseUrl() + "sounds.json?token=token"))
+                .GET().build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(501, sounds.statusCode());
+        assertTrue(sounds.body().contains("sounds.json"));
+
+        final HttpResponse<String> plain = post(http, "user", "no receipt").get(10, TimeUnit.SECONDS);
+        assertEquals(200, plain.statusCode());
+        assertFalse(plain.body().contains("receipt"), plain.body());
+    }
+
+    private CompletableFuture<HttpResponse<String>> post(HttpClient http, String user, String text) {
+        return http.sendAsync(HttpRequest.newBuilder(URI.create(relay.getBaseUrl() + "messages.json"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("token=token&user=" + user + "&message=" + text))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package net.pushover.client.replay;
+
+import net.pushover.client.MessagePriority;
+import net.pushover.client.PushoverClient;
+import net.pushover.client.PushoverMessage;
+import net.pushover.client.PushoverRestClient;
+import net.pushover.client.Status;
+import net.pushover.client.simulator.PushoverSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+
+public class TraceReplayTest {
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @TempDir
+    Path dir;
+
+    private PushoverSimulator simulator;
+    private PushoverRestClient client;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        simulator = PushoverSimulator.builder().build().start();
+        client = new PushoverRestClient();
+        client.setApiBaseUrl(simulator.getBaseUrl());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        simulator.close();
+    }
+
+    private static List<TraceRecord> readAll(Path trace) throws IOException {
+        final List<TraceRecord> records = new ArrayList<>();
+        try (TraceReader reader = TraceReader.open(trace)) {
+            for (TraceRecord record = reader.next(); record != null; record = reader.next()) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private Path record(List<PushoverMessage> messages, long gapMillis) throws Exception {
+        final Path trace = dir.resolve("trace.bin");
+        final PushoverClient delegate = mock(PushoverClient.class);
+        when(delegate.pushMessage(any())).thenReturn(new Status(1));
+        try (TraceRecorder recorder = TraceRecorder.create(trace)) {
+            final PushoverClient recording = recorder.recording(delegate);
+            for (PushoverMessage msg : messages) {
+                recording.pushMessage(msg);
+                Thread.sleep(gapMillis);
+            }
+            assertEquals(messages.size(), recorder.getRecordedCount());
+        }
+        verify(delegate, times(messages.size())).pushMessage(any());
+        return trace;
+    }
+
+    private static PushoverMessage plain(String token, String user, String message) {
+        return PushoverMessage.builderWithApiToken(token).setUserId(user).setMessage(message).build();
+    }
+
+    @Test
+    public void testRecordsShapesWithoutContentOrKeys() throws Exception {
+        final File image = new File("src/test/java/net/pushover/client/image/test_image.jpg");
+        final Path trace = record(List.of(
+                PushoverMessage.builderWithApiToken("secret-token-a")
+                        .setUserId("secret-user-1")
+                        .setMessage("disk /dev/sda1 is full")
+                        .setTitle("db-01")
+                        .setUrl("https://grafana.internal/d/disk")
+                        .setTitleForURL("dashboard")
+                        .setDevice("pager")
+                        .setSound("siren")
+                        .setPriority(MessagePriority.EMERGENCY)
+                        .setRetry(60)
+                        .setExpire(3600)
+                        .setHTML(true)
+                        .setImage(image)
+                        .build(),
+                plain("secret-token-a", "secret-user-2", "ok"),
+                PushoverMessage.builderWithApiToken("secret-token-b")
+                        .setUserId("secret-user-1")
+                        .setMessage("quiet")
+                        .setPriority(MessagePriority.QUIET)
+                        .setMonospace(true)
+                        .setTtl(600)
+                        .build()), 5);
+
+        final String bytes = new String(Files.readAllBytes(trace), StandardCharsets.ISO_8859_1);
+        assertFalse(bytes.contains("secret"));
+        assertFalse(bytes.contains("disk"));
+        assertTrue(Files.size(trace) < 64);
+
+        final List<TraceRecord> records = readAll(trace);
+        assertEquals(3, records.size());
+        final TraceRecord first = records.get(0);
+        assertEquals(new TraceRecord(first.offsetNanos(), 0, 0, MessagePriority.EMERGENCY, 22, 5, 31, 9,
+                true, true, true, false, image.length(), 0, 60, 3600), first);
+        assertEquals(new TraceRecord(records.get(1).offsetNanos(), 0, 1, MessagePriority.NORMAL, 2, -1, -1, -1,
+                false, false, false, false, -1, 0, 0, 0), records.get(1));
+        assertEquals(new TraceRecord(records.get(2).offsetNanos(), 1, 0, MessagePriority.QUIET, 5, -1, -1, -1,
+                false, false, false, true, -1, 600, 0, 0), records.get(2));
+        assertTrue(records.get(1).offsetNanos() - first.offsetNanos() >= Duration.ofMillis(5).toNanos());
+        assertTrue(records.get(2).offsetNanos() > records.get(1).offsetNanos());
+    }
+
+    @Test
+    public void testReplaysShapesAgainstTheStub() throws Exception {
+        final Path trace = record(List.of(
+                PushoverMessage.builderWithApiToken("token").setUserId("user-a").setMessage("hello")
+                        .setTitle("greeting").setPriority(MessagePriority.HIGH).build(),
+                PushoverMessage.builderWithApiToken("token").setUserId("user-b").setMessage("with image")
+                        .setImage(new File("src/test/java/net/pushover/client/image/test_image.jpg")).build(),
+                plain("token", "user-a", "bye")), 0);
+
+        final ReplayReport report = TraceReplayer.builder().setClient(client).setSpeed(0).build().replay(trace);
+
+        assertEquals(3, report.sent());
+        assertEquals(3, report.succeeded());
+        assertEquals(0, report.failed());
+        assertTrue(report.throughput() > 0);
+        assertTrue(report.p50().compareTo(report.max()) <= 0);
+        assertTrue(report.max().compareTo(Duration.ZERO) > 0);
+        assertTrue(report.allocatedBytes() != 0);
+
+        final List<Map<String, String>> received = simulator.getReceivedMessages();
+        assertEquals(3, received.size());
+        assertEquals(List.of("replay-user-0", "replay-user-0", "replay-user-1"),
+                received.stream().map(form -> form.get("user")).sorted().toList());
+        final Map<String, String> first = received.stream()
+                .filter(form -> "mmmmm".equals(form.get("message"))).findFirst().orElseThrow();
+        assertEquals("tttttttt", first.get("title"));
+        assertEquals("1", first.get("priority"));
+        assertEquals("replay-token-0", first.get("token"));
+    }
+
+    @Test
+    public void testScaledSpeedKeepsTheRecordedPace() throws Exception {
+        final List<PushoverMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            messages.add(plain("token", "user", "tick " + i));
+        }
+        final Path trace = record(messages, 100);
+        final List<TraceRecord> records = readAll(trace);
+        final long recordedNanos = records.get(4).offsetNanos() - records.get(0).offsetNanos();
+
+        final ReplayReport doubled = TraceReplayer.builder().setClient(client).setSpeed(2).build().replay(trace);
+
+        assertEquals(5, doubled.succeeded());
+        assertTrue(doubled.elapsed().toNanos() >= recordedNanos / 2, doubled.toString());
+        assertTrue(doubled.elapsed().toNanos() < recordedNanos, doubled.toString());
+    }
+
+    @Test
+    public void testAsyncModeAndBoundedConcurrency() throws Exception {
+        final List<PushoverMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            messages.add(plain("token", "user-" + (i % 7), "message " + i));
+        }
+        final Path trace = record(messages, 0);
+
+        final ReplayReport report = TraceReplayer.builder()
+                .setClient(client)
+                .setMode(TraceReplayer.Mode.ASYNC)
+                .setConcurrency(2)
+                .setSpeed(0)
+                .build()
+                .replay(trace);
+
+        assertEquals(50, report.sent());
+        assertEquals(50, report.succeeded());
+        assertEquals(50, simulator.getReceivedMessages().size());
+        assertTrue(report.toString().startsWith("sent=50 succeeded=50 failed=0"), report.toString());
+    }
+
+    @Test
+    public void testRejectsFilesThatAreNoTrace() throws Exception {
+        final Path other = dir.resolve("other.bin");
+        Files.writeString(other, "hello world");
+        assertThrows(IOException.class, () -> TraceReader.open(other));
+
+        final Path truncated = dir.resolve("truncated.bin");
+        final Path trace = record(List.of(plain("token", "user", "hello")), 0);
+        final byte[] bytes = Files.readAllBytes(trace);
+        Files.write(truncated, java.util.Arrays.copyOf(bytes, bytes.length - 2));
+        try (TraceReader reader = TraceReader.open(truncated)) {
+            assertThrows(IOException.class, reader::next);
+        }
+    }
+}
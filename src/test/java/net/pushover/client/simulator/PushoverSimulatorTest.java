@@ -0,0 +1,175 @@
+package net.pushover.client.simulator;
+
+import net.pushover.client.MessagePriority;
+import net.pushover.client.PushResult;
+import net.pushover.client.PushoverMessage;
+import net.pushover.client.PushoverRestClient;
+import net.pushover.client.Receipt;
+import net.pushover.client.Response;
+import net.pushover.client.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PushoverSimulatorTest {
+
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private PushoverSimulator simulator;
+
+    @AfterEach
+    public void tearDown() {
+        if (simulator != null) {
+            simulator.close();
+        }
+    }
+
+    private PushoverRestClient clientFor(PushoverSimulator.Builder builder) throws IOException {
+        simulator = builder.build().start();
+        final PushoverRestClient client = new PushoverRestClient();
+        client.setApiBaseUrl(simulator.getBaseUrl());
+        return client;
+    }
+
+    private static PushoverMessage.Builder message() {
+        return PushoverMessage.builderWithApiToken("token").setUserId("user").setMessage("hello");
+    }
+
+    @Test
+    public void testPushMessage() throws Exception {
+        final PushoverRestClient client = clientFor(PushoverSimulator.builder().setMonthlyLimit(100));
+
+        final Status status = client.pushMessage(message().setTitle("title").setSound("bike").build());
+
+        assertEquals(1, status.getStatus());
+        assertNotNull(status.getRequestId());
+        final List<Map<String, String>> received = simulator.getReceivedMessages();
+        assertEquals(1, received.size());
+        assertEquals("hello", received.get(0).get("message"));
+        assertEquals("title", received.get(0).get("title"));
+        assertEquals(99, simulator.getRemaining());
+    }
+
+    @Test
+    public void testQuotaHeadersAndExhaustion() throws Exception {
+        final PushoverRestClient client = clientFor(PushoverSimulator.builder()
+                .setMonthlyLimit(1)
+                .setResetEpochSecond(1_700_000_000L));
+
+        final PushResult first = client.send(message().build());
+        final PushResult second = client.send(message().build());
+
+        assertInstanceOf(PushResult.Success.class, first);
+        assertEquals(1, first.quota().limit());
+        assertEquals(0, first.quota().remaining());
+        assertEquals(1_700_000_000L, first.quota().resetEpochSecond());
+        assertInstanceOf(PushResult.Throttled.class, second);
+        assertEquals(429, second.httpStatus());
+    }
+
+    @Test
+    public void testRejectsUnknownUser() throws Exception {
+        final PushoverRestClient client = clientFor(PushoverSimulator.builder().addUser("known", "phone", "tablet"));
+
+        final PushResult result = client.send(message().setUserId("unknown").build());
+        final Response validation = client.requestVerification(message().setUserId("known").build());
+
+        assertInstanceOf(PushResult.Rejected.class, result);
+        assertEquals(List.of("user identifier is invalid"), result.errors());
+        assertEquals(1, validation.getStatus());
+        assertEquals(List.of("phone", "tablet"), validation.getDevices());
+    }
+
+    @Test
+    public void testErrorInjection() throws Exception {
+        final PushoverRestClient client = clientFor(PushoverSimulator.builder().setErrorRate(1.0));
+
+        final PushResult result = client.send(message().build());
+
+        assertEquals(500, result.httpStatus());
+        assertTrue(simulator.getReceivedMessages().isEmpty());
+    }
+
+    @Test
+    public void testLatency() throws Exception {
+        final PushoverRestClient client = clientFor(PushoverSimulator.builder()
+                .setLatency(LatencyDistribution.constant(50)));
+
+        final long start = System.nanoTime();
+        client.pushMessage(message().build());
+
+        assertTrue(System.nanoTime() - start >= 50_000_000L);
+    }
+
+    @Test
+    public void testEmergencyReceiptLifecycle() throws Exception {
+        final PushoverRestClient client = clientFor(PushoverSimulator.builder());
+
+        final Response response = client.pushMessageResponse(message()
+                .setPriority(MessagePriority.EMERGENCY)
+                .setRetry(30)
+                .setExpire(3600)
+                .build());
+        final String receipt = response.getReceipt();
+        assertNotNull(receipt);
+
+        Receipt status = client.requestEmergencyReceipt("token", receipt);
+        assertEquals(0, status.getAcknowledged());
+        assertEquals(0, status.getExpired());
+
+        assertTrue(simulator.acknowledge(receipt, "user"));
+        status = client.requestEmergencyReceipt("token", receipt);
+        assertEquals(1, status.getAcknowledged());
+        assertEquals("user", status.getAcknowledgedBy());
+    }
+
+    @Test
+    public void testAutomaticAcknowledgementAndCancel() throws Exception {
+        final PushoverRestClient client = clientFor(PushoverSimulator.builder().setAcknowledgeAfter(Duration.ZERO));
+
+        final String receipt = client.pushMessageResponse(message()
+                .setPriority(MessagePriority.EMERGENCY)
+                .setRetry(60)
+                .setExpire(600)
+                .build()).getReceipt();
+
+        assertEquals(1, client.requestEmergencyReceipt("token", receipt).getAcknowledged());
+        assertEquals(1, client.cancelEmergencyMessage("token", receipt).getStatus());
+        assertEquals(1, client.requestEmergencyReceipt("token", receipt).getExpired());
+    }
+
+    @Test
+    public void testSounds() throws Exception {
+        final PushoverRestClient client = clientFor(PushoverSimulator.builder());
+
+        assertEquals(PushoverSimulator.SOUNDS.size(), client.getSounds().size());
+    }
+
+    @Test
+    public void testHistoryIsBounded() throws Exception {
+        final PushoverRestClient client = clientFor(PushoverSimulator.builder().setHistoryLimit(2));
+
+        final String[] receipts = new String[3];
+        for (int i = 0; i < 3; i++) {
+            receipts[i] = client.pushMessageResponse(message()
+                    .setMessage("alert " + i)
+                    .setPriority(MessagePriority.EMERGENCY)
+                    .setRetry(30)
+                    .setExpire(600)
+                    .build()).getReceipt();
+        }
+
+        assertEquals(List.of("alert 1", "alert 2"),
+                simulator.getReceivedMessages().stream().map(msg -> msg.get("message")).toList());
+        assertFalse(simulator.acknowledge(receipts[0], "user"));
+        assertTrue(simulator.acknowledge(receipts[2], "user"));
+    }
+}